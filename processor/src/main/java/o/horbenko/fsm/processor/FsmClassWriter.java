@@ -0,0 +1,259 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.processor;
+
+import java.util.Map;
+
+/**
+ * Writes source of FSM class, generated from {@link FsmDefinitionModel}.
+ * <p>
+ * Movement is dispatched by nested <code>switch</code> over state and trigger, actions of definition are called
+ * directly. Exception chain is executed in loop, like in {@link o.horbenko.fsm.impl.AbstractCoreFsm}.
+ *
+ * @author Oleksii Horbenko
+ */
+final class FsmClassWriter {
+
+    private final FsmDefinitionModel model;
+    private final StringBuilder source = new StringBuilder(4096);
+    private int indent;
+
+    private FsmClassWriter(FsmDefinitionModel model) {
+        this.model = model;
+    }
+
+    static String write(FsmDefinitionModel model) {
+        return new FsmClassWriter(model).writeClass();
+    }
+
+    private String writeClass() {
+        String s = model.stateType;
+        String t = model.triggerType;
+        String d = model.dataType;
+        String fsmType = "<" + s + ", " + t + ", " + d + ">";
+
+        if (!model.packageName.isEmpty()) {
+            line("package " + model.packageName + ";");
+            line("");
+        }
+        line("@javax.annotation.processing.Generated(\"" + FsmDefinitionProcessor.class.getName() + "\")");
+        open("public final class " + model.className + " implements o.horbenko.fsm.FiniteStateMachine" + fsmType);
+        line("");
+        line("private static final int MAX_EXCEPTION_CHAIN_HOPS = " + model.maxExceptionChainHops + ";");
+        line("");
+        line("private final " + model.definitionType + " definition;");
+        line("");
+        open("public " + model.className + "(" + model.definitionType + " definition)");
+        line("this.definition = java.util.Objects.requireNonNull(definition, \"definition\");");
+        close();
+        line("");
+
+        writeMove(s, t, d);
+        writeFindMovement(s, t, d, fsmType);
+        writeDelegates(s, t, d, fsmType);
+
+        close();
+        return source.toString();
+    }
+
+    private void writeMove(String s, String t, String d) {
+        line("@Override");
+        open("public " + d + " move(" + t + " trigger, " + d + " data)");
+        line("int exceptionChainHops = 0;");
+        open("while (true)");
+        line(s + " initialState = data.getState();");
+        line(t + " exceptionTrigger = null;");
+        open("try");
+        open("if (initialState != null && trigger != null)");
+        open("switch (initialState)");
+
+        for (Map.Entry<String, Map<String, FsmDefinitionModel.Movement>> state : model.movementsByState.entrySet()) {
+            caseOpen(state.getKey());
+            open("switch (trigger)");
+            for (FsmDefinitionModel.Movement movement : state.getValue().values()) {
+                caseOpen(movement.trigger);
+                if (movement.exceptionTrigger != null) {
+                    line("exceptionTrigger = " + t + "." + movement.exceptionTrigger + ";");
+                }
+                if (movement.action != null) {
+                    line("data = definition." + movement.action + "(data);");
+                }
+                line("data.setState(" + s + "." + movement.targetState + ");");
+                if (movement.postAction != null) {
+                    line("data = definition." + movement.postAction + "(data);");
+                }
+                line("return data;");
+                indent--;
+            }
+            defaultBreak();
+            close();
+            line("break;");
+            indent--;
+        }
+        defaultBreak();
+        close();
+        close();
+        closeOpen("} catch (Exception e) {");
+        line("data.setState(initialState);");
+        open("if (++exceptionChainHops > MAX_EXCEPTION_CHAIN_HOPS)");
+        line("throw new o.horbenko.fsm.error.ExceptionChainDepthExceededException(\"Exception chain from state = '\" + initialState + \"' exceeded max hops = \" + MAX_EXCEPTION_CHAIN_HOPS, e);");
+        close();
+        line("trigger = exceptionTrigger;");
+        line("continue;");
+        close();
+        line("throw new o.horbenko.fsm.error.NoMovementByTriggerInStateException(\"Unable to find movement from state = '\" + initialState + \"' by trigger = '\" + trigger + \"'\");");
+        close();
+        close();
+        line("");
+    }
+
+    /**
+     * Movement descriptors are used only to compile pipelines, so they contain target states without actions.
+     */
+    private void writeFindMovement(String s, String t, String d, String fsmType) {
+        open("private o.horbenko.fsm.movement.FsmMovement" + fsmType + " findMovement(" + s + " state, " + t + " trigger)");
+        open("if (state == null || trigger == null)");
+        line("return null;");
+        close();
+        line(s + " targetState = null;");
+        open("switch (state)");
+        for (Map.Entry<String, Map<String, FsmDefinitionModel.Movement>> state : model.movementsByState.entrySet()) {
+            caseOpen(state.getKey());
+            open("switch (trigger)");
+            for (FsmDefinitionModel.Movement movement : state.getValue().values()) {
+                caseOpen(movement.trigger);
+                line("targetState = " + s + "." + movement.targetState + ";");
+                line("break;");
+                indent--;
+            }
+            defaultBreak();
+            close();
+            line("break;");
+            indent--;
+        }
+        defaultBreak();
+        close();
+        line("return targetState == null");
+        line("        ? null");
+        line("        : new o.horbenko.fsm.movement.FsmMovement" + fsmType + "().targetState(targetState);");
+        close();
+        line("");
+    }
+
+    private void writeDelegates(String s, String t, String d, String fsmType) {
+        line("/**");
+        line(" * Actions are blocking, so movement is completed in caller thread.");
+        line(" */");
+        line("@Override");
+        open("public java.util.concurrent.CompletableFuture<" + d + "> moveAsync(" + t + " trigger, " + d + " data)");
+        open("try");
+        line("return java.util.concurrent.CompletableFuture.completedFuture(move(trigger, data));");
+        closeOpen("} catch (RuntimeException e) {");
+        line("return java.util.concurrent.CompletableFuture.failedFuture(e);");
+        close();
+        close();
+        line("");
+
+        line("@Override");
+        open("public " + d + " moveOnPipeline(" + d + " data, o.horbenko.fsm.pipeline.FsmPipeline<" + s + ", " + t + "> pipeline)");
+        open("while (true)");
+        line("java.util.Optional<" + t + "> trigger = pipeline.getTriggerForNextMovementByState(data.getState());");
+        open("if (trigger.isEmpty())");
+        line("return data;");
+        close();
+        line("data = move(trigger.get(), data);");
+        close();
+        close();
+        line("");
+
+        line("@Override");
+        open("public java.util.concurrent.CompletableFuture<" + d + "> moveOnPipelineAsync(" + d + " data, o.horbenko.fsm.pipeline.FsmPipeline<" + s + ", " + t + "> pipeline)");
+        open("try");
+        line("return java.util.concurrent.CompletableFuture.completedFuture(moveOnPipeline(data, pipeline));");
+        closeOpen("} catch (RuntimeException e) {");
+        line("return java.util.concurrent.CompletableFuture.failedFuture(e);");
+        close();
+        close();
+        line("");
+
+        line("@Override");
+        open("public o.horbenko.fsm.pipeline.CompiledFsmPipeline" + fsmType + " compilePipeline(o.horbenko.fsm.pipeline.FsmPipeline<" + s + ", " + t + "> pipeline)");
+        line("return new o.horbenko.fsm.pipeline.CompiledFsmPipeline<>(this, pipeline, this::findMovement);");
+        close();
+        line("");
+
+        line("@Override");
+        open("public " + d + " moveOnPipeline(" + d + " data, o.horbenko.fsm.pipeline.CompiledFsmPipeline" + fsmType + " pipeline)");
+        line("o.horbenko.fsm.pipeline.CompiledFsmPipeline.Step" + fsmType + " step = pipeline.getStepByState(data.getState());");
+        open("while (step != null)");
+        line("data = move(step.getTrigger(), data);");
+        line(s + " currentState = data.getState();");
+        line("step = currentState == step.getTargetState()");
+        line("        ? step.getNext()");
+        line("        : pipeline.getStepByState(currentState);");
+        close();
+        line("return data;");
+        close();
+        line("");
+    }
+
+    private void caseOpen(String constant) {
+        line("case " + constant + ":");
+        indent++;
+    }
+
+    private void defaultBreak() {
+        line("default:");
+        indent++;
+        line("break;");
+        indent--;
+    }
+
+    private void open(String statement) {
+        line(statement + " {");
+        indent++;
+    }
+
+    private void closeOpen(String statement) {
+        indent--;
+        line(statement);
+        indent++;
+    }
+
+    private void close() {
+        indent--;
+        line("}");
+    }
+
+    private void line(String line) {
+        if (!line.isEmpty()) {
+            for (int i = 0; i < indent; i++) {
+                source.append("    ");
+            }
+            source.append(line);
+        }
+        source.append('\n');
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.processor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Validated {@link o.horbenko.fsm.annotation.FsmDefinition}: qualified names of types and
+ * movements by state and trigger in declaration order.
+ *
+ * @author Oleksii Horbenko
+ */
+final class FsmDefinitionModel {
+
+    final String packageName;
+    final String className;
+    final String definitionType;
+    final String stateType;
+    final String triggerType;
+    final String dataType;
+    final int maxExceptionChainHops;
+
+    final Map<String, Map<String, Movement>> movementsByState = new LinkedHashMap<>();
+
+    FsmDefinitionModel(String packageName,
+                       String className,
+                       String definitionType,
+                       String stateType,
+                       String triggerType,
+                       String dataType,
+                       int maxExceptionChainHops) {
+        this.packageName = packageName;
+        this.className = className;
+        this.definitionType = definitionType;
+        this.stateType = stateType;
+        this.triggerType = triggerType;
+        this.dataType = dataType;
+        this.maxExceptionChainHops = maxExceptionChainHops;
+    }
+
+    /**
+     * @return <code>false</code> if movement from <code>state</code> by trigger of <code>movement</code>
+     * is already declared
+     */
+    boolean addMovement(String state, Movement movement) {
+        return movementsByState
+                .computeIfAbsent(state, s -> new LinkedHashMap<>())
+                .putIfAbsent(movement.trigger, movement) == null;
+    }
+
+
+    static final class Movement {
+
+        final String trigger;
+        final String targetState;
+        // nullable
+        final String action;
+        final String postAction;
+        final String exceptionTrigger;
+
+        Movement(String trigger, String targetState, String action, String postAction, String exceptionTrigger) {
+            this.trigger = trigger;
+            this.targetState = targetState;
+            this.action = action;
+            this.postAction = postAction;
+            this.exceptionTrigger = exceptionTrigger;
+        }
+    }
+
+}
@@ -0,0 +1,274 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.processor;
+
+import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.annotation.FsmDefinition;
+import o.horbenko.fsm.annotation.FsmTransition;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates {@link o.horbenko.fsm.FiniteStateMachine} implementations for classes, annotated
+ * by {@link FsmDefinition}. See {@link FsmClassWriter} for generated code.
+ * <p>
+ * Definition is validated at compile time: unknown states, triggers and actions, actions with wrong signature
+ * and duplicated movements are reported as compilation errors.
+ *
+ * @author Oleksii Horbenko
+ */
+@SupportedAnnotationTypes({
+        "o.horbenko.fsm.annotation.FsmDefinition",
+        "o.horbenko.fsm.annotation.FsmTransition",
+        "o.horbenko.fsm.annotation.FsmTransitions"
+})
+public class FsmDefinitionProcessor extends AbstractProcessor {
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(FsmDefinition.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error(element, "@FsmDefinition is applicable only to classes");
+                continue;
+            }
+
+            FsmDefinitionModel model = readDefinition((TypeElement) element);
+            if (model != null) {
+                writeSource(model, element);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return validated definition or <code>null</code> if errors were reported
+     */
+    private FsmDefinitionModel readDefinition(TypeElement definition) {
+        AnnotationMirror mirror = findAnnotationMirror(definition, FsmDefinition.class.getName());
+        TypeElement states = typeElementValue(mirror, "states");
+        TypeElement triggers = typeElementValue(mirror, "triggers");
+        TypeElement data = typeElementValue(mirror, "data");
+        FsmDefinition annotation = definition.getAnnotation(FsmDefinition.class);
+
+        if (states == null || states.getKind() != ElementKind.ENUM
+                || triggers == null || triggers.getKind() != ElementKind.ENUM || data == null) {
+            error(definition, "States and triggers of @FsmDefinition must be enums");
+            return null;
+        }
+        if (definition.getModifiers().contains(Modifier.PRIVATE)) {
+            error(definition, "Class annotated by @FsmDefinition must not be private");
+            return null;
+        }
+
+        TypeElement stateHolder = processingEnv.getElementUtils().getTypeElement(FsmStateHolder.class.getName());
+        DeclaredType expectedData = processingEnv.getTypeUtils().getDeclaredType(stateHolder, states.asType());
+        if (!processingEnv.getTypeUtils().isAssignable(data.asType(), expectedData)) {
+            error(definition, "Data " + data.getQualifiedName() + " must implement FsmStateHolder<" + states.getQualifiedName() + ">");
+            return null;
+        }
+
+        String className = annotation.name().isEmpty()
+                ? definition.getSimpleName() + "Fsm"
+                : annotation.name();
+
+        FsmDefinitionModel model = new FsmDefinitionModel(
+                processingEnv.getElementUtils().getPackageOf(definition).getQualifiedName().toString(),
+                className,
+                definition.getQualifiedName().toString(),
+                states.getQualifiedName().toString(),
+                triggers.getQualifiedName().toString(),
+                data.getQualifiedName().toString(),
+                annotation.maxExceptionChainHops());
+
+        Set<String> stateNames = enumConstantsOf(states);
+        Set<String> triggerNames = enumConstantsOf(triggers);
+        boolean valid = true;
+
+        for (FsmTransition transition : definition.getAnnotationsByType(FsmTransition.class)) {
+            valid &= checkName(definition, stateNames, transition.to(), "state");
+            valid &= checkName(definition, triggerNames, transition.trigger(), "trigger");
+            valid &= transition.exceptionTrigger().isEmpty()
+                    || checkName(definition, triggerNames, transition.exceptionTrigger(), "trigger");
+            valid &= transition.action().isEmpty() || checkAction(definition, data, transition.action());
+            valid &= transition.postAction().isEmpty() || checkAction(definition, data, transition.postAction());
+
+            FsmDefinitionModel.Movement movement = new FsmDefinitionModel.Movement(
+                    transition.trigger(),
+                    transition.to(),
+                    emptyToNull(transition.action()),
+                    emptyToNull(transition.postAction()),
+                    emptyToNull(transition.exceptionTrigger()));
+
+            for (String from : transition.from()) {
+                valid &= checkName(definition, stateNames, from, "state");
+                if (!model.addMovement(from, movement)) {
+                    error(definition, "Duplicated movement from state = " + from + " by trigger = " + transition.trigger());
+                    valid = false;
+                }
+            }
+        }
+
+        return valid ? model : null;
+    }
+
+    private boolean checkName(TypeElement definition, Set<String> names, String name, String kind) {
+        if (names.contains(name)) {
+            return true;
+        }
+        error(definition, "Unknown " + kind + " = " + name);
+        return false;
+    }
+
+    /**
+     * Action must be instance method with signature <code>D action(D data)</code>, that is accessible
+     * from package of definition, where FSM class is generated.
+     */
+    private boolean checkAction(TypeElement definition, TypeElement data, String name) {
+        PackageElement definitionPackage = processingEnv.getElementUtils().getPackageOf(definition);
+        ExecutableElement inaccessible = null;
+
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(definition))) {
+            if (!method.getSimpleName().contentEquals(name)) {
+                continue;
+            }
+
+            boolean signatureMatches = method.getParameters().size() == 1
+                    && !method.getModifiers().contains(Modifier.STATIC)
+                    && method.getReturnType().getKind() != TypeKind.VOID
+                    && processingEnv.getTypeUtils().isAssignable(data.asType(), method.getParameters().get(0).asType())
+                    && processingEnv.getTypeUtils().isAssignable(method.getReturnType(), data.asType());
+            if (!signatureMatches) {
+                continue;
+            }
+            if (isAccessibleFrom(method, definitionPackage)) {
+                return true;
+            }
+            inaccessible = method;
+        }
+
+        if (inaccessible != null) {
+            error(definition, "Action " + name + " of " + inaccessible.getEnclosingElement()
+                    + " is not accessible from package " + definitionPackage.getQualifiedName()
+                    + ", it must be public or declared in this package");
+            return false;
+        }
+
+        error(definition, "Action " + name + " must be non-private instance method with signature "
+                + data.getSimpleName() + " " + name + "(" + data.getSimpleName() + " data)");
+        return false;
+    }
+
+    /**
+     * Generated class is in the package of definition, but is not its subclass,
+     * so protected and package-private methods are accessible only if they are declared in this package.
+     */
+    private boolean isAccessibleFrom(ExecutableElement method, PackageElement generatedPackage) {
+        if (method.getModifiers().contains(Modifier.PUBLIC)) {
+            return true;
+        }
+        return !method.getModifiers().contains(Modifier.PRIVATE)
+                && processingEnv.getElementUtils().getPackageOf(method).equals(generatedPackage);
+    }
+
+    private void writeSource(FsmDefinitionModel model, Element definition) {
+        String qualifiedName = model.packageName.isEmpty()
+                ? model.className
+                : model.packageName + "." + model.className;
+
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, definition).openWriter()) {
+            writer.write(FsmClassWriter.write(model));
+        } catch (IOException e) {
+            error(definition, "Unable to write " + qualifiedName + ": " + e.getMessage());
+        }
+    }
+
+    private static Set<String> enumConstantsOf(TypeElement enumType) {
+        Set<String> constants = new HashSet<>();
+        for (Element element : enumType.getEnclosedElements()) {
+            if (element.getKind() == ElementKind.ENUM_CONSTANT) {
+                constants.add(element.getSimpleName().toString());
+            }
+        }
+        return constants;
+    }
+
+    private static AnnotationMirror findAnnotationMirror(Element element, String annotationType) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationType)) {
+                return mirror;
+            }
+        }
+        throw new IllegalStateException("Element " + element + " is not annotated by " + annotationType);
+    }
+
+    /**
+     * Class values of annotations are read from mirrors, because classes are not loaded at compile time.
+     */
+    private static TypeElement typeElementValue(AnnotationMirror mirror, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                TypeMirror type = (TypeMirror) entry.getValue().getValue();
+                return type.getKind() == TypeKind.DECLARED
+                        ? (TypeElement) ((DeclaredType) type).asElement()
+                        : null;
+            }
+        }
+        return null;
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+}
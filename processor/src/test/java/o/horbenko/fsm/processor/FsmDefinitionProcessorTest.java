@@ -0,0 +1,193 @@
+package o.horbenko.fsm.processor;
+
+import o.horbenko.fsm.FiniteStateMachine;
+import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.error.NoMovementByTriggerInStateException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FsmDefinitionProcessorTest {
+
+    private static final String ORDER_STATE = "package sample;\n"
+            + "public enum OrderState { NEW, PAID, SHIPPED, FAILED }\n";
+
+    private static final String ORDER_TRIGGER = "package sample;\n"
+            + "public enum OrderTrigger { PAY, SHIP, FAIL }\n";
+
+    private static final String ORDER = "package sample;\n"
+            + "public class Order implements o.horbenko.fsm.FsmStateHolder<OrderState> {\n"
+            + "    public OrderState state = OrderState.NEW;\n"
+            + "    public long amount;\n"
+            + "    public int postActions;\n"
+            + "    public OrderState getState() { return state; }\n"
+            + "    public void setState(OrderState state) { this.state = state; }\n"
+            + "}\n";
+
+    private static final String DEFINITION = "package sample;\n"
+            + "import o.horbenko.fsm.annotation.FsmDefinition;\n"
+            + "import o.horbenko.fsm.annotation.FsmTransition;\n"
+            + "@FsmDefinition(states = OrderState.class, triggers = OrderTrigger.class, data = Order.class)\n"
+            + "@FsmTransition(from = \"NEW\", trigger = \"PAY\", to = \"PAID\", action = \"pay\", postAction = \"afterPay\", exceptionTrigger = \"FAIL\")\n"
+            + "@FsmTransition(from = {\"NEW\", \"PAID\"}, trigger = \"FAIL\", to = \"FAILED\")\n"
+            + "@FsmTransition(from = \"PAID\", trigger = \"SHIP\", to = \"SHIPPED\")\n"
+            + "public class OrderFsmDefinition {\n"
+            + "    public Order pay(Order order) {\n"
+            + "        if (order.amount <= 0) throw new IllegalArgumentException();\n"
+            + "        return order;\n"
+            + "    }\n"
+            + "    Order afterPay(Order order) {\n"
+            + "        order.postActions++;\n"
+            + "        return order;\n"
+            + "    }\n"
+            + "}\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testGeneratedFsm() throws Exception {
+
+        // ARRANGE
+        ClassLoader classLoader = compile(DEFINITION);
+        Class<? extends Enum> triggerType = (Class<? extends Enum>) classLoader.loadClass("sample.OrderTrigger");
+        Object definition = classLoader.loadClass("sample.OrderFsmDefinition").getConstructor().newInstance();
+        FiniteStateMachine<Object, Object, FsmStateHolder<Object>> fsm = (FiniteStateMachine<Object, Object, FsmStateHolder<Object>>)
+                classLoader.loadClass("sample.OrderFsmDefinitionFsm")
+                        .getConstructor(definition.getClass())
+                        .newInstance(definition);
+
+        Class<?> orderType = classLoader.loadClass("sample.Order");
+        FsmStateHolder<Object> paid = (FsmStateHolder<Object>) orderType.getConstructor().newInstance();
+        orderType.getField("amount").setLong(paid, 100);
+        FsmStateHolder<Object> failed = (FsmStateHolder<Object>) orderType.getConstructor().newInstance();
+
+        // ACT
+        fsm.move(Enum.valueOf(triggerType, "PAY"), paid);
+        fsm.move(Enum.valueOf(triggerType, "SHIP"), paid);
+        fsm.moveAsync(Enum.valueOf(triggerType, "PAY"), failed).join();
+
+        // ASSERT
+        assertEquals("SHIPPED", paid.getState().toString());
+        assertEquals(1, orderType.getField("postActions").getInt(paid));
+        assertEquals("FAILED", failed.getState().toString());
+        assertEquals(0, orderType.getField("postActions").getInt(failed));
+
+        try {
+            fsm.move(Enum.valueOf(triggerType, "SHIP"), failed);
+            fail("Movement from terminal state must fail");
+        } catch (NoMovementByTriggerInStateException e) {
+            assertTrue(e.getMessage().contains("FAILED"));
+        }
+    }
+
+    @Test
+    public void testInvalidDefinition() throws Exception {
+
+        // ARRANGE
+        String definition = DEFINITION
+                .replace("to = \"SHIPPED\"", "to = \"DELIVERED\"")
+                .replace("action = \"pay\"", "action = \"charge\"");
+
+        // ACT
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        boolean compiled = compile(definition, diagnostics);
+
+        // ASSERT
+        assertFalse(compiled);
+        String errors = diagnostics.getDiagnostics().stream()
+                .filter(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR)
+                .map(diagnostic -> diagnostic.getMessage(null))
+                .reduce("", String::concat);
+        assertTrue(errors, errors.contains("Unknown state = DELIVERED"));
+        assertTrue(errors, errors.contains("Action charge"));
+    }
+
+    @Test
+    public void testInaccessibleInheritedAction() {
+
+        // ARRANGE: protected action of superclass in other package can not be called by generated class
+        String base = "package base;\n"
+                + "public class BaseDefinition {\n"
+                + "    protected sample.Order pay(sample.Order order) {\n"
+                + "        return order;\n"
+                + "    }\n"
+                + "}\n";
+        String definition = DEFINITION
+                .replace("public class OrderFsmDefinition {", "public class OrderFsmDefinition extends base.BaseDefinition {")
+                .replace("    public Order pay(Order order) {\n"
+                        + "        if (order.amount <= 0) throw new IllegalArgumentException();\n"
+                        + "        return order;\n"
+                        + "    }\n", "");
+
+        // ACT
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        boolean compiled = compile(definition, diagnostics, source("base/BaseDefinition", base));
+
+        // ASSERT: reported by processor, not by compilation of generated code
+        assertFalse(compiled);
+        List<String> errors = diagnostics.getDiagnostics().stream()
+                .filter(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR)
+                .map(diagnostic -> diagnostic.getMessage(null))
+                .collect(Collectors.toList());
+        assertEquals(errors.toString(), 1, errors.size());
+        assertTrue(errors.get(0), errors.get(0).contains("Action pay of base.BaseDefinition is not accessible"));
+    }
+
+    private ClassLoader compile(String definition) throws Exception {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        if (!compile(definition, diagnostics)) {
+            fail("Compilation failed: " + diagnostics.getDiagnostics());
+        }
+        return new URLClassLoader(new URL[]{folder.getRoot().toURI().toURL()}, getClass().getClassLoader());
+    }
+
+    private boolean compile(String definition,
+                            DiagnosticCollector<JavaFileObject> diagnostics,
+                            JavaFileObject... otherSources) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        List<JavaFileObject> sources = new ArrayList<>(List.of(
+                source("sample/OrderState", ORDER_STATE),
+                source("sample/OrderTrigger", ORDER_TRIGGER),
+                source("sample/Order", ORDER),
+                source("sample/OrderFsmDefinition", definition)));
+        sources.addAll(List.of(otherSources));
+        List<String> options = List.of(
+                "-classpath", System.getProperty("java.class.path"),
+                "-d", folder.getRoot().getAbsolutePath(),
+                "-s", folder.getRoot().getAbsolutePath() + File.separator,
+                "-processor", FsmDefinitionProcessor.class.getName());
+
+        return compiler.getTask(null, null, diagnostics, options, null, sources).call();
+    }
+
+    private static JavaFileObject source(String path, String code) {
+        return new SimpleJavaFileObject(URI.create("string:///" + path + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return code;
+            }
+        };
+    }
+
+}
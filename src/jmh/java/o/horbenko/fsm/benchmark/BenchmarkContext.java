@@ -0,0 +1,25 @@
+package o.horbenko.fsm.benchmark;
+
+import o.horbenko.fsm.FsmStateHolder;
+
+/**
+ * Minimal state holder for benchmarks.
+ */
+public class BenchmarkContext<S> implements FsmStateHolder<S> {
+
+    private S state;
+
+    public BenchmarkContext(S state) {
+        this.state = state;
+    }
+
+    @Override
+    public S getState() {
+        return state;
+    }
+
+    @Override
+    public void setState(S newState) {
+        this.state = newState;
+    }
+}
@@ -0,0 +1,14 @@
+package o.horbenko.fsm.benchmark;
+
+/**
+ * Preallocated stackless exception, so failure path benchmarks measure exception routing
+ * instead of stack trace filling.
+ */
+public class BenchmarkException extends RuntimeException {
+
+    public static final BenchmarkException INSTANCE = new BenchmarkException();
+
+    private BenchmarkException() {
+        super("benchmark", null, false, false);
+    }
+}
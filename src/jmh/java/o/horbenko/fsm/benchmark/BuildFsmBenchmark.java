@@ -0,0 +1,37 @@
+package o.horbenko.fsm.benchmark;
+
+import o.horbenko.fsm.configurer.FsmBuilder;
+import o.horbenko.fsm.impl.AbstractFiniteStateMachine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link FsmBuilder#buildFsm()} of ring FSM with 3 movements per state (see {@link MoveBenchmark}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BuildFsmBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    private int statesCount;
+
+    @Benchmark
+    public AbstractFiniteStateMachine<String, String, BenchmarkContext<String>> buildFsm() {
+        return MoveBenchmark.buildRingFsm(FsmBuilder.builder(), statesCount);
+    }
+
+}
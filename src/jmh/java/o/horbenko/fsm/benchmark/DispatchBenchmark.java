@@ -0,0 +1,61 @@
+package o.horbenko.fsm.benchmark;
+
+import o.horbenko.fsm.configurer.FsmBuilder;
+import o.horbenko.fsm.impl.AbstractFiniteStateMachine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code move} of ring FSM (see {@link MoveBenchmark}) by movement lookup:
+ * <br>map - {@link o.horbenko.fsm.impl.AbstractCoreFsm} lookup in state and trigger maps
+ * <br>validated - {@link o.horbenko.fsm.impl.ImmutableFiniteStateMachine} lookup in validated copy of configuration
+ * <br>methodHandle - {@link o.horbenko.fsm.impl.MethodHandleFiniteStateMachine} specialized dispatcher
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DispatchBenchmark {
+
+    @Param({"10", "32", "1000"})
+    private int statesCount;
+
+    @Param({"map", "validated", "methodHandle"})
+    private String dispatch;
+
+    private AbstractFiniteStateMachine<String, String, BenchmarkContext<String>> fsm;
+    private BenchmarkContext<String> context;
+
+    @Setup
+    public void setUp() {
+        FsmBuilder<String, String, BenchmarkContext<String>> builder = FsmBuilder.builder();
+        if ("methodHandle".equals(dispatch)) {
+            builder.withMethodHandleDispatch();
+        } else if ("validated".equals(dispatch)) {
+            builder.withGraphValidation(List.of("S0"));
+        }
+
+        fsm = MoveBenchmark.buildRingFsm(builder, statesCount);
+        context = new BenchmarkContext<>("S0");
+    }
+
+    @Benchmark
+    public BenchmarkContext<String> move_success() {
+        return fsm.move("NEXT", context);
+    }
+
+}
@@ -0,0 +1,95 @@
+package o.horbenko.fsm.benchmark;
+
+import o.horbenko.fsm.configurer.FsmBuilder;
+import o.horbenko.fsm.impl.AbstractFiniteStateMachine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code move} of FSM with enum states and triggers: map-based vs compiled transition table.
+ * <p>
+ * Ring FSM: S[i] --NEXT--> S[(i + 1) % 16].
+ * <br>S[i] --FAILING--> (action throws) --RECOVER--> S[i] measures exception trigger routing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EnumMoveBenchmark {
+
+    public enum BenchmarkState {
+        S0, S1, S2, S3, S4, S5, S6, S7, S8, S9, S10, S11, S12, S13, S14, S15
+    }
+
+    public enum BenchmarkTrigger {
+        NEXT, FAILING, RECOVER
+    }
+
+    @Param({"MAP", "COMPILED"})
+    private String mode;
+
+    private AbstractFiniteStateMachine<BenchmarkState, BenchmarkTrigger, BenchmarkContext<BenchmarkState>> fsm;
+    private BenchmarkContext<BenchmarkState> context;
+
+    @Setup
+    public void setUp() {
+        FsmBuilder<BenchmarkState, BenchmarkTrigger, BenchmarkContext<BenchmarkState>> fsmBuilder = FsmBuilder.builder();
+        if ("COMPILED".equals(mode)) {
+            fsmBuilder.withCompiledTransitionTable();
+        }
+
+        BenchmarkState[] states = BenchmarkState.values();
+        FsmBuilder.MovementBuilder<BenchmarkState, BenchmarkTrigger, BenchmarkContext<BenchmarkState>> movementBuilder = null;
+
+        for (int i = 0; i < states.length; i++) {
+            BenchmarkState state = states[i];
+            FsmBuilder.StateBuilder<BenchmarkState, BenchmarkTrigger, BenchmarkContext<BenchmarkState>> stateBuilder = movementBuilder == null
+                    ? fsmBuilder.andState(state)
+                    : movementBuilder.andState(state);
+
+            movementBuilder = stateBuilder
+                    .andStateMovementBy(BenchmarkTrigger.NEXT)
+                    .movementAction(data -> data)
+                    .postMovementAction(data -> data)
+                    .exceptionTrigger(BenchmarkTrigger.RECOVER)
+                    .targetStateOnSuccess(states[(i + 1) % states.length])
+
+                    .andStateMovementBy(BenchmarkTrigger.FAILING)
+                    .movementAction(data -> {
+                        throw BenchmarkException.INSTANCE;
+                    })
+                    .exceptionTrigger(BenchmarkException.class, BenchmarkTrigger.RECOVER)
+                    .targetStateOnSuccess(state)
+
+                    .andStateMovementBy(BenchmarkTrigger.RECOVER)
+                    .targetStateOnSuccess(state);
+        }
+
+        fsm = movementBuilder.buildFsm();
+        context = new BenchmarkContext<>(BenchmarkState.S0);
+    }
+
+    @Benchmark
+    public BenchmarkContext<BenchmarkState> move_success() {
+        return fsm.move(BenchmarkTrigger.NEXT, context);
+    }
+
+    @Benchmark
+    public BenchmarkContext<BenchmarkState> move_exceptionTrigger() {
+        return fsm.move(BenchmarkTrigger.FAILING, context);
+    }
+
+}
@@ -0,0 +1,99 @@
+package o.horbenko.fsm.benchmark;
+
+import o.horbenko.fsm.configurer.FsmBuilder;
+import o.horbenko.fsm.impl.AbstractFiniteStateMachine;
+import o.horbenko.fsm.journal.FsmJournalCodec;
+import o.horbenko.fsm.journal.FsmJournalConfig;
+import o.horbenko.fsm.journal.FsmJournalSyncPolicy;
+import o.horbenko.fsm.journal.MappedFsmJournal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * {@code move} of 2-state enum FSM with {@link MappedFsmJournal}: every movement appends one record.
+ * {@code NONE} journal mode is FSM without journal.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JournalBenchmark {
+
+    private static final Long KEY = 42L;
+
+    public enum BenchmarkState {
+        S0, S1
+    }
+
+    @Param({"NO_JOURNAL", "NONE", "INTERVAL"})
+    private String journalMode;
+
+    private Path directory;
+    private MappedFsmJournal<Long, BenchmarkState, BenchmarkState, BenchmarkContext<BenchmarkState>> journal;
+    private AbstractFiniteStateMachine<BenchmarkState, BenchmarkState, BenchmarkContext<BenchmarkState>> fsm;
+    private BenchmarkContext<BenchmarkState> context;
+
+    @Setup
+    public void setUp() throws IOException {
+        FsmBuilder<BenchmarkState, BenchmarkState, BenchmarkContext<BenchmarkState>> fsmBuilder = FsmBuilder.builder();
+
+        if (!"NO_JOURNAL".equals(journalMode)) {
+            directory = Files.createTempDirectory("fsm-journal-benchmark");
+            journal = new MappedFsmJournal<>(new FsmJournalConfig<Long, BenchmarkState, BenchmarkState, BenchmarkContext<BenchmarkState>>(
+                    directory,
+                    data -> KEY,
+                    FsmJournalCodec.ofLong(),
+                    FsmJournalCodec.ofEnum(BenchmarkState.class),
+                    FsmJournalCodec.ofEnum(BenchmarkState.class))
+                    .setSyncPolicy(FsmJournalSyncPolicy.valueOf(journalMode)));
+            fsmBuilder.withJournal(journal);
+        }
+
+        fsm = fsmBuilder
+                .andState(BenchmarkState.S0)
+                .andStateMovementBy(BenchmarkState.S1)
+                .targetStateOnSuccess(BenchmarkState.S1)
+                .andState(BenchmarkState.S1)
+                .andStateMovementBy(BenchmarkState.S0)
+                .targetStateOnSuccess(BenchmarkState.S0)
+                .buildFsm();
+        context = new BenchmarkContext<>(BenchmarkState.S0);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (journal == null) {
+            return;
+        }
+
+        journal.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public BenchmarkContext<BenchmarkState> move() {
+        return fsm.move(context.getState() == BenchmarkState.S0 ? BenchmarkState.S1 : BenchmarkState.S0, context);
+    }
+
+}
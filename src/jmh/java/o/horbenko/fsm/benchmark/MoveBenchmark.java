@@ -0,0 +1,91 @@
+package o.horbenko.fsm.benchmark;
+
+import o.horbenko.fsm.configurer.FsmBuilder;
+import o.horbenko.fsm.impl.AbstractFiniteStateMachine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code move} of FSM with {@link String} states and triggers.
+ * <p>
+ * Ring FSM: S[i] --NEXT--> S[(i + 1) % statesCount], so every invocation looks up another state.
+ * <br>S[i] --FAILING--> (action throws) --RECOVER--> S[i] measures exception trigger routing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoveBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    private int statesCount;
+
+    private AbstractFiniteStateMachine<String, String, BenchmarkContext<String>> fsm;
+    private BenchmarkContext<String> context;
+
+    @Setup
+    public void setUp() {
+        fsm = buildRingFsm(FsmBuilder.builder(), statesCount);
+        context = new BenchmarkContext<>("S0");
+    }
+
+    static AbstractFiniteStateMachine<String, String, BenchmarkContext<String>> buildRingFsm(
+            FsmBuilder<String, String, BenchmarkContext<String>> fsmBuilder, int statesCount) {
+
+        FsmBuilder.MovementBuilder<String, String, BenchmarkContext<String>> movementBuilder = null;
+
+        for (int i = 0; i < statesCount; i++) {
+            String state = "S" + i;
+            FsmBuilder.StateBuilder<String, String, BenchmarkContext<String>> stateBuilder = movementBuilder == null
+                    ? fsmBuilder.andState(state)
+                    : movementBuilder.andState(state);
+
+            movementBuilder = stateBuilder
+                    .andStateMovementBy("NEXT")
+                    .movementAction(data -> data)
+                    .postMovementAction(data -> data)
+                    .exceptionTrigger("RECOVER")
+                    .targetStateOnSuccess("S" + ((i + 1) % statesCount))
+
+                    .andStateMovementBy("FAILING")
+                    .movementAction(data -> {
+                        throw BenchmarkException.INSTANCE;
+                    })
+                    .exceptionTrigger(BenchmarkException.class, "RECOVER")
+                    .targetStateOnSuccess(state)
+
+                    .andStateMovementBy("RECOVER")
+                    .targetStateOnSuccess(state)
+
+                    .andStateMovementBy("CLOSE")
+                    .targetStateOnSuccess("CLOSED");
+        }
+
+        // terminal state makes ring a valid graph
+        return movementBuilder.andState("CLOSED").buildFsm();
+    }
+
+    @Benchmark
+    public BenchmarkContext<String> move_success() {
+        return fsm.move("NEXT", context);
+    }
+
+    @Benchmark
+    public BenchmarkContext<String> move_exceptionTrigger() {
+        return fsm.move("FAILING", context);
+    }
+
+}
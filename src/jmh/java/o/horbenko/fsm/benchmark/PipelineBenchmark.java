@@ -0,0 +1,72 @@
+package o.horbenko.fsm.benchmark;
+
+import o.horbenko.fsm.configurer.FsmBuilder;
+import o.horbenko.fsm.impl.AbstractFiniteStateMachine;
+import o.horbenko.fsm.pipeline.CompiledFsmPipeline;
+import o.horbenko.fsm.pipeline.FsmPipeline;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code moveOnPipeline} with pipelines of different length: S0 -> S1 -> ... -> S[pipelineLength].
+ * Context is reset to S0 before every run.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PipelineBenchmark {
+
+    @Param({"1", "8", "32"})
+    private int pipelineLength;
+
+    private AbstractFiniteStateMachine<String, String, BenchmarkContext<String>> fsm;
+    private FsmPipeline<String, String> pipeline;
+    private CompiledFsmPipeline<String, String, BenchmarkContext<String>> compiledPipeline;
+    private BenchmarkContext<String> context;
+
+    @Setup
+    public void setUp() {
+        fsm = MoveBenchmark.buildRingFsm(FsmBuilder.builder(), pipelineLength + 1);
+
+        pipeline = new FsmPipeline<>();
+        for (int i = 0; i < pipelineLength; i++) {
+            pipeline.addPipe("S" + i, "NEXT");
+        }
+        compiledPipeline = fsm.compilePipeline(pipeline);
+
+        context = new BenchmarkContext<>("S0");
+    }
+
+    @Benchmark
+    public BenchmarkContext<String> moveOnPipeline() {
+        context.setState("S0");
+        return fsm.moveOnPipeline(context, pipeline);
+    }
+
+    @Benchmark
+    public BenchmarkContext<String> moveOnCompiledPipeline() {
+        context.setState("S0");
+        return fsm.moveOnPipeline(context, compiledPipeline);
+    }
+
+    @Benchmark
+    public BenchmarkContext<String> moveOnPipelineAsync() {
+        context.setState("S0");
+        return fsm.moveOnPipelineAsync(context, pipeline).join();
+    }
+
+}
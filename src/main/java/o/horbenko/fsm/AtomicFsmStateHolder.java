@@ -0,0 +1,55 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm;
+
+/**
+ * {@link FsmStateHolder} with atomic state update. Allows optimistic (lock-free) movements of contexts,
+ * shared across threads (see {@link ConcurrentMovementPolicy}).
+ * <p>
+ * Could be implemented by {@link java.util.concurrent.atomic.AtomicReference} field
+ * (compares states by identity, suitable for enum states):
+ * <code>
+ * <br>class Order implements {@link AtomicFsmStateHolder}{@literal <}OrderState{@literal >} {
+ * <br>&nbsp;private final AtomicReference{@literal <}OrderState{@literal >} state = new AtomicReference{@literal <}{@literal >}(OrderState.NEW);
+ * <br>&nbsp;public OrderState getState() { return state.get(); }
+ * <br>&nbsp;public void setState(OrderState newState) { state.set(newState); }
+ * <br>&nbsp;public boolean compareAndSetState(OrderState expected, OrderState next) { return state.compareAndSet(expected, next); }
+ * <br>}
+ * </code>
+ *
+ * @param <S> State
+ * @author Oleksii Horbenko
+ */
+public interface AtomicFsmStateHolder<S> extends FsmStateHolder<S> {
+
+    /**
+     * Atomically sets state to <code>newState</code> if current state is <code>expectedState</code>.
+     *
+     * @param expectedState expected current state
+     * @param newState      new state
+     * @return <code>true</code> if state was changed
+     */
+    boolean compareAndSetState(S expectedState, S newState);
+
+}
@@ -0,0 +1,50 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm;
+
+/**
+ * Handling of state, that was changed by another thread during movement action.
+ * Applied only to {@link AtomicFsmStateHolder}s, other state holders are always overwritten.
+ *
+ * @author Oleksii Horbenko
+ */
+public enum ConcurrentMovementPolicy {
+
+    /**
+     * Target state is set without checks (default, non-optimistic mode).
+     */
+    OVERWRITE,
+
+    /**
+     * Movement fails with {@link o.horbenko.fsm.error.ConcurrentFsmMovementException}.
+     */
+    REJECT,
+
+    /**
+     * Movement by the same trigger is retried from the new current state. Movement action is executed again.
+     * Fails with {@link o.horbenko.fsm.error.ConcurrentFsmMovementException} when retries are exhausted.
+     */
+    RETRY
+
+}
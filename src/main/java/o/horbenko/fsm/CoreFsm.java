@@ -23,6 +23,8 @@
  * */
 package o.horbenko.fsm;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Basic Finite State Machine (FSM) implementation
  * <p>
@@ -30,11 +32,14 @@ package o.horbenko.fsm;
  * <ul>
  *     <li>
  *         1. If exception was thrown in movement action or in movement post-action - handle exception
- *         and try to move by exception trigger
+ *         and try to move by exception trigger (trigger registered for the closest superclass of thrown exception
+ *         or general exception trigger)
  *     </li>
  *     <li>
  *         2. If in exception handling movement was thrown exception
- *         - tries to handle recursively until there is no trigger defined by new exception state.
+ *         - tries to handle iteratively until there is no trigger defined by new exception state.
+ *         Count of exception movements in scope of one movement is limited
+ *         ({@link o.horbenko.fsm.error.ExceptionChainDepthExceededException} is thrown when limit is exceeded).
  *     </li>
  * </ul>
  *
@@ -54,4 +59,25 @@ public interface CoreFsm<S, T, D extends FsmStateHolder<S>> {
      */
     D move(T trigger, D initialDataToProcess);
 
+    /**
+     * Non-blocking alternative of {@link #move(Object, FsmStateHolder)}.
+     * Chains movement action, state update, post-movement action and movement by exception triggers
+     * without waiting for {@link o.horbenko.fsm.movementaction.AsyncFsmMovementAction}s completion.
+     * Blocking actions are executed in the thread, that completes previous stage.
+     * <p>
+     * Default implementation completes synchronously by {@link #move(Object, FsmStateHolder)}.
+     *
+     * @param trigger              trigger for movement to the next state
+     * @param initialDataToProcess data+state holder
+     * @return future of data+state after movement. Completes exceptionally in the same cases,
+     * when {@link #move(Object, FsmStateHolder)} throws exception
+     */
+    default CompletableFuture<D> moveAsync(T trigger, D initialDataToProcess) {
+        try {
+            return CompletableFuture.completedFuture(move(trigger, initialDataToProcess));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
 }
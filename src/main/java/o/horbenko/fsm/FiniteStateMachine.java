@@ -23,8 +23,13 @@
  * */
 package o.horbenko.fsm;
 
+import o.horbenko.fsm.error.PipelineConfigurationException;
+import o.horbenko.fsm.pipeline.CompiledFsmPipeline;
 import o.horbenko.fsm.pipeline.FsmPipeline;
 
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Finite State Machine (FSM) implementation with Pipeline execution support.
  *
@@ -55,4 +60,63 @@ public interface FiniteStateMachine<S, T, D extends FsmStateHolder<S>> extends C
      */
     D moveOnPipeline(D initialDataToProcess, FsmPipeline<S, T> pipelineToMoveOn);
 
+    /**
+     * Non-blocking alternative of {@link #moveOnPipeline(FsmStateHolder, FsmPipeline)}.
+     * Every movement is executed by {@link #moveAsync(Object, FsmStateHolder)}.
+     * <p>
+     * Default implementation completes synchronously by {@link #moveOnPipeline(FsmStateHolder, FsmPipeline)}.
+     *
+     * @param initialDataToProcess context of current state (initial state)
+     * @param pipelineToMoveOn     pipeline configuration
+     * @return future of context that contains execution result and updated state.
+     */
+    default CompletableFuture<D> moveOnPipelineAsync(D initialDataToProcess, FsmPipeline<S, T> pipelineToMoveOn) {
+        try {
+            return CompletableFuture.completedFuture(moveOnPipeline(initialDataToProcess, pipelineToMoveOn));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Compiles <code>pipeline</code> against current FSM: resolves movements of all pipes and links them
+     * into chain, so {@link #moveOnPipeline(FsmStateHolder, CompiledFsmPipeline)} does no lookups per step.
+     * <p>
+     * Default implementation resolves no movements: next step is looked up by state after each movement.
+     *
+     * @param pipeline pipeline configuration
+     * @return pipeline bound to current FSM
+     * @throws PipelineConfigurationException if FSM has no movement for one of pipes
+     */
+    default CompiledFsmPipeline<S, T, D> compilePipeline(FsmPipeline<S, T> pipeline) {
+        return new CompiledFsmPipeline<>(this, pipeline);
+    }
+
+    /**
+     * Same as {@link #moveOnPipeline(FsmStateHolder, FsmPipeline)}, but on precompiled pipeline.
+     * <p>
+     * Default implementation executes every step by {@link #move(Object, FsmStateHolder)}.
+     *
+     * @param initialDataToProcess context of current state (initial state)
+     * @param pipelineToMoveOn     pipeline compiled by current FSM
+     * @return context that contains execution result and updated state.
+     * @throws PipelineConfigurationException if pipeline was compiled by another FSM
+     */
+    default D moveOnPipeline(D initialDataToProcess, CompiledFsmPipeline<S, T, D> pipelineToMoveOn) {
+        if (pipelineToMoveOn.getFsm() != this) {
+            throw new PipelineConfigurationException("Pipeline was compiled by another FSM");
+        }
+
+        D result = initialDataToProcess;
+        CompiledFsmPipeline.Step<S, T, D> step = pipelineToMoveOn.getStepByState(result.getState());
+        while (step != null) { // exit point - no step from current state
+            result = move(step.getTrigger(), result);
+            S currentState = result.getState();
+            step = step.getNext() != null && Objects.equals(currentState, step.getTargetState())
+                    ? step.getNext()
+                    : pipelineToMoveOn.getStepByState(currentState);
+        }
+        return result;
+    }
+
 }
@@ -0,0 +1,72 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares FSM on enum states and triggers, which is generated at compile time by annotation processor
+ * of <code>fsm-processor</code> module as class that implements {@link o.horbenko.fsm.FiniteStateMachine}.
+ * <p>
+ * Movements are declared by {@link FsmTransition}s on annotated class, actions are instance methods of annotated
+ * class with signature <code>D action(D data)</code>. Generated class has constructor with instance of annotated
+ * class and dispatches movements by nested <code>switch</code> over state and trigger, calling actions directly.
+ *
+ * @author Oleksii Horbenko
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.CLASS)
+public @interface FsmDefinition {
+
+    /**
+     * @return enum of states
+     */
+    Class<? extends Enum<?>> states();
+
+    /**
+     * @return enum of triggers
+     */
+    Class<? extends Enum<?>> triggers();
+
+    /**
+     * @return data type, that implements {@link o.horbenko.fsm.FsmStateHolder} of {@link #states()}
+     */
+    Class<?> data();
+
+    /**
+     * @return simple name of generated class, <code>&lt;annotated class name&gt;Fsm</code> by default
+     */
+    String name() default "";
+
+    /**
+     * @return max count of movements by exception triggers in scope of one movement
+     */
+    int maxExceptionChainHops() default 32;
+
+}
@@ -0,0 +1,159 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.batch;
+
+import lombok.NonNull;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Rules, that reduce batch of triggers before movement
+ * (see {@link o.horbenko.fsm.impl.AbstractCoreFsm#moveBatch(List, o.horbenko.fsm.FsmStateHolder)}):
+ * <ul>
+ *     <li>idempotent trigger, that repeats previous applied trigger, is {@link FsmBatchOutcome#COALESCED};</li>
+ *     <li>trigger, that is followed in batch by trigger superseding it, is {@link FsmBatchOutcome#SUPERSEDED}
+ *     if superseding trigger is applied (see {@link #resolveSuperseded(List, byte[])}).</li>
+ * </ul>
+ * Rules are applied to triggers only, without states, so trigger must be declared idempotent only if
+ * the second movement by it changes nothing, and superseded only if it is useless before superseding one.
+ *
+ * @param <T> Trigger (Event)
+ * @author Oleksii Horbenko
+ */
+public class FsmBatchCoalescing<T> {
+
+    private final Set<T> idempotentTriggers = new HashSet<>();
+    private final Map<T, Set<T>> supersedingTriggers = new HashMap<>();
+
+    /**
+     * @param trigger trigger, repeats of which in a row are applied once
+     * @return current rules
+     */
+    public FsmBatchCoalescing<T> withIdempotentTrigger(@NonNull T trigger) {
+        idempotentTriggers.add(trigger);
+        return this;
+    }
+
+    /**
+     * @param newerTrigger trigger, that makes <code>olderTrigger</code> useless, e.g. next location update
+     *                     of device supersedes previous one (the same trigger can be passed twice)
+     * @param olderTrigger trigger, that is skipped if <code>newerTrigger</code> follows it in batch
+     * @return current rules
+     */
+    public FsmBatchCoalescing<T> withSupersedingTrigger(@NonNull T newerTrigger, @NonNull T olderTrigger) {
+        supersedingTriggers.computeIfAbsent(olderTrigger, key -> new HashSet<>()).add(newerTrigger);
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return idempotentTriggers.isEmpty() && supersedingTriggers.isEmpty();
+    }
+
+    /**
+     * @param triggers batch of triggers
+     * @return outcomes of triggers, that are not applied by rules, {@link FsmBatchOutcome#MOVED} for others
+     */
+    public byte[] coalesce(@NonNull List<T> triggers) {
+        byte[] outcomes = new byte[triggers.size()];
+        if (triggers.isEmpty() || isEmpty()) {
+            return outcomes;
+        }
+
+        if (!supersedingTriggers.isEmpty()) {
+            // backward pass: trigger is superseded, if any of next triggers supersedes it
+            Set<T> nextTriggers = new HashSet<>();
+            for (int i = triggers.size() - 1; i >= 0; i--) {
+                T trigger = triggers.get(i);
+                Set<T> superseding = supersedingTriggers.get(trigger);
+                if (superseding != null && containsAny(nextTriggers, superseding)) {
+                    outcomes[i] = FsmBatchOutcome.SUPERSEDED;
+                }
+                nextTriggers.add(trigger);
+            }
+        }
+
+        if (!idempotentTriggers.isEmpty()) {
+            T previous = null;
+            boolean hasPrevious = false;
+            for (int i = 0; i < outcomes.length; i++) {
+                if (outcomes[i] != FsmBatchOutcome.MOVED) {
+                    continue;
+                }
+                T trigger = triggers.get(i);
+                if (hasPrevious && Objects.equals(previous, trigger) && idempotentTriggers.contains(trigger)) {
+                    outcomes[i] = FsmBatchOutcome.COALESCED;
+                }
+                previous = trigger;
+                hasPrevious = true;
+            }
+        }
+
+        return outcomes;
+    }
+
+    /**
+     * Resolves {@link FsmBatchOutcome#SUPERSEDED} outcomes after movement: trigger stays superseded only if
+     * one of next triggers, that supersedes it, was applied (moved or superseded by applied trigger itself).
+     * Other superseded triggers were not applied at all, e.g. batch was stopped by failure before superseding trigger,
+     * so they become {@link FsmBatchOutcome#NOT_APPLIED}.
+     *
+     * @param triggers batch of triggers
+     * @param outcomes outcomes of movement by <code>triggers</code>, updated in place
+     */
+    public void resolveSuperseded(@NonNull List<T> triggers, @NonNull byte[] outcomes) {
+        if (supersedingTriggers.isEmpty()) {
+            return;
+        }
+
+        // backward pass: trigger is superseded, if any of next applied triggers supersedes it
+        Set<T> nextAppliedTriggers = new HashSet<>();
+        for (int i = outcomes.length - 1; i >= 0; i--) {
+            T trigger = triggers.get(i);
+            if (outcomes[i] == FsmBatchOutcome.SUPERSEDED) {
+                if (!containsAny(nextAppliedTriggers, supersedingTriggers.get(trigger))) {
+                    outcomes[i] = FsmBatchOutcome.NOT_APPLIED;
+                    continue;
+                }
+            } else if (outcomes[i] != FsmBatchOutcome.MOVED) {
+                continue;
+            }
+            nextAppliedTriggers.add(trigger);
+        }
+    }
+
+    private static <T> boolean containsAny(Set<T> set, Set<T> candidates) {
+        for (T candidate : candidates) {
+            if (set.contains(candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
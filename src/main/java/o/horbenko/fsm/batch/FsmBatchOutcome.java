@@ -0,0 +1,87 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.batch;
+
+/**
+ * Outcomes of triggers of batch (see {@link FsmBatchResult#getOutcomes()}).
+ * Constants are bytes, so outcomes of batch take one byte per trigger.
+ *
+ * @author Oleksii Horbenko
+ */
+public final class FsmBatchOutcome {
+
+    /**
+     * Movement by trigger was executed
+     */
+    public static final byte MOVED = 0;
+
+    /**
+     * There was no movement by trigger from state of context, trigger was ignored
+     */
+    public static final byte NO_MOVEMENT = 1;
+
+    /**
+     * Movement by trigger failed, batch was stopped (see {@link FsmBatchResult#getError()})
+     */
+    public static final byte FAILED = 2;
+
+    /**
+     * Trigger is repeat of previous idempotent trigger and was not applied
+     */
+    public static final byte COALESCED = 3;
+
+    /**
+     * Trigger is superseded by one of next applied triggers of batch and was not applied
+     */
+    public static final byte SUPERSEDED = 4;
+
+    /**
+     * Trigger was not applied, because movement by one of previous triggers failed
+     * or because it was skipped for superseding trigger, that was not applied
+     */
+    public static final byte NOT_APPLIED = 5;
+
+    private FsmBatchOutcome() {
+    }
+
+    public static String toString(byte outcome) {
+        switch (outcome) {
+            case MOVED:
+                return "MOVED";
+            case NO_MOVEMENT:
+                return "NO_MOVEMENT";
+            case FAILED:
+                return "FAILED";
+            case COALESCED:
+                return "COALESCED";
+            case SUPERSEDED:
+                return "SUPERSEDED";
+            case NOT_APPLIED:
+                return "NOT_APPLIED";
+            default:
+                return "UNKNOWN(" + outcome + ")";
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.batch;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Result of movement of one context by sequence of triggers
+ * (see {@link o.horbenko.fsm.impl.AbstractCoreFsm#moveBatch(java.util.List, o.horbenko.fsm.FsmStateHolder)}).
+ *
+ * @param <D> data type
+ * @author Oleksii Horbenko
+ */
+@Getter
+@RequiredArgsConstructor
+public class FsmBatchResult<D> {
+
+    /**
+     * Context after last executed movement
+     */
+    private final D data;
+
+    /**
+     * {@link FsmBatchOutcome} of every trigger of batch, in order of triggers. Array is not copied.
+     */
+    private final byte[] outcomes;
+
+    /**
+     * Exception of failed movement or <code>null</code>
+     */
+    private final Exception error;
+
+    public byte getOutcome(int triggerIndex) {
+        return outcomes[triggerIndex];
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * @return count of triggers with given outcome
+     */
+    public int count(byte outcome) {
+        int count = 0;
+        for (byte triggerOutcome : outcomes) {
+            if (triggerOutcome == outcome) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("FsmBatchResult(data=").append(data).append(", outcomes=[");
+        for (int i = 0; i < outcomes.length; i++) {
+            if (i > 0) {
+                result.append(", ");
+            }
+            result.append(FsmBatchOutcome.toString(outcomes[i]));
+        }
+        return result.append("], error=").append(error).append(')').toString();
+    }
+
+}
@@ -23,14 +23,34 @@
  */
 package o.horbenko.fsm.configurer;
 
+import o.horbenko.fsm.ConcurrentMovementPolicy;
 import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.batch.FsmBatchCoalescing;
 import o.horbenko.fsm.impl.AbstractFiniteStateMachine;
+import o.horbenko.fsm.impl.CompiledEnumFiniteStateMachine;
+import o.horbenko.fsm.impl.ImmutableFiniteStateMachine;
+import o.horbenko.fsm.impl.MethodHandleFiniteStateMachine;
+import o.horbenko.fsm.journal.FsmJournal;
+import o.horbenko.fsm.metrics.FsmMovementListener;
+import o.horbenko.fsm.metrics.PipelineTracer;
 import o.horbenko.fsm.movement.FsmMovement;
+import o.horbenko.fsm.movement.GuardedFsmMovement;
+import o.horbenko.fsm.movementaction.AsyncFsmMovementAction;
 import o.horbenko.fsm.movementaction.FsmMovementAction;
+import o.horbenko.fsm.pipeline.FsmParallelStage;
 import o.horbenko.fsm.state.FsmState;
+import o.horbenko.fsm.store.StateStore;
+import o.horbenko.fsm.timeout.FsmTimeoutScheduler;
+import o.horbenko.fsm.validation.FsmGraphValidator;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.Predicate;
 
 /**
  * Builder of {@link o.horbenko.fsm.FiniteStateMachine} instance with configuration of states,
@@ -41,6 +61,22 @@ import java.util.Map;
 public class FsmBuilder<S, T, D extends FsmStateHolder<S>> {
 
     private Map<S, FsmState<S, T, D>> stateConfigurationMap;
+    private Map<S, S> parentStates;
+    private boolean compiledTransitionTable;
+    private boolean methodHandleDispatch;
+    private Integer maxExceptionChainHops;
+    private Executor bulkExecutor;
+    private int bulkParallelism;
+    private ConcurrentMovementPolicy concurrentMovementPolicy;
+    private int maxConcurrentMovementRetries;
+    private FsmMovementListener<S, T> movementListener;
+    private PipelineTracer<S, T> pipelineTracer;
+    private FsmJournal<S, T, D> journal;
+    private StateStore<S, D> stateStore;
+    private FsmTimeoutScheduler<?, S, T, D> timeoutScheduler;
+    private FsmBatchCoalescing<T> batchCoalescing;
+    private int guardReorderInterval;
+    private Collection<S> validationInitialStates;
 
     public static <S, T, D extends FsmStateHolder<S>>
     FsmBuilder<S, T, D> builder() {
@@ -49,6 +85,177 @@ public class FsmBuilder<S, T, D extends FsmStateHolder<S>> {
 
     public FsmBuilder() {
         this.stateConfigurationMap = new HashMap<>();
+        this.parentStates = new HashMap<>();
+    }
+
+    /**
+     * Enables compiled mode. On {@link #buildFsm()} configuration is frozen into dense
+     * <code>[stateOrdinal][triggerOrdinal]</code> movement table (see {@link CompiledEnumFiniteStateMachine}).
+     * Supported only when states and triggers are enums.
+     *
+     * @return current builder
+     */
+    public FsmBuilder<S, T, D> withCompiledTransitionTable() {
+        this.compiledTransitionTable = true;
+        return this;
+    }
+
+    /**
+     * Enables runtime-specialized movement lookup. On {@link #buildFsm()} configuration is frozen into
+     * {@link java.lang.invoke.MethodHandle} tree (see {@link MethodHandleFiniteStateMachine}).
+     * Supports any types of states and triggers. Ignored in compiled mode.
+     * Effective for small FSMs only, large FSMs keep map lookup.
+     *
+     * @return current builder
+     */
+    public FsmBuilder<S, T, D> withMethodHandleDispatch() {
+        this.methodHandleDispatch = true;
+        return this;
+    }
+
+    /**
+     * @param maxExceptionChainHops max count of movements by exception triggers in scope of one movement
+     * @return current builder
+     * @see AbstractFiniteStateMachine#withMaxExceptionChainHops(int)
+     */
+    public FsmBuilder<S, T, D> withMaxExceptionChainHops(int maxExceptionChainHops) {
+        this.maxExceptionChainHops = maxExceptionChainHops;
+        return this;
+    }
+
+    /**
+     * @param bulkExecutor    executor of bulk movements
+     * @param bulkParallelism max count of partitions of bulk movement
+     * @return current builder
+     * @see AbstractFiniteStateMachine#withBulkExecutor(Executor, int)
+     */
+    public FsmBuilder<S, T, D> withBulkExecutor(Executor bulkExecutor, int bulkParallelism) {
+        this.bulkExecutor = bulkExecutor;
+        this.bulkParallelism = bulkParallelism;
+        return this;
+    }
+
+    /**
+     * @param concurrentMovementPolicy     handling of concurrent movements of {@link o.horbenko.fsm.AtomicFsmStateHolder}s
+     * @param maxConcurrentMovementRetries max count of retries for {@link ConcurrentMovementPolicy#RETRY}
+     * @return current builder
+     * @see AbstractFiniteStateMachine#withConcurrentMovementPolicy(ConcurrentMovementPolicy, int)
+     */
+    public FsmBuilder<S, T, D> withConcurrentMovementPolicy(ConcurrentMovementPolicy concurrentMovementPolicy,
+                                                           int maxConcurrentMovementRetries) {
+        this.concurrentMovementPolicy = concurrentMovementPolicy;
+        this.maxConcurrentMovementRetries = maxConcurrentMovementRetries;
+        return this;
+    }
+
+    /**
+     * @param movementListener listener of movements, e.g. {@link o.horbenko.fsm.metrics.FsmMetrics}
+     * @return current builder
+     * @see AbstractFiniteStateMachine#withMovementListener(FsmMovementListener)
+     */
+    public FsmBuilder<S, T, D> withMovementListener(FsmMovementListener<S, T> movementListener) {
+        this.movementListener = movementListener;
+        return this;
+    }
+
+    /**
+     * @param pipelineTracer sampling tracer of pipeline runs
+     * @return current builder
+     * @see AbstractFiniteStateMachine#withPipelineTracer(PipelineTracer)
+     */
+    public FsmBuilder<S, T, D> withPipelineTracer(PipelineTracer<S, T> pipelineTracer) {
+        this.pipelineTracer = pipelineTracer;
+        return this;
+    }
+
+    /**
+     * @param journal journal of movements, e.g. {@link o.horbenko.fsm.journal.MappedFsmJournal}
+     * @return current builder
+     * @see AbstractFiniteStateMachine#withJournal(FsmJournal)
+     */
+    public FsmBuilder<S, T, D> withJournal(FsmJournal<S, T, D> journal) {
+        this.journal = journal;
+        return this;
+    }
+
+    /**
+     * @param stateStore store of states, e.g. {@link o.horbenko.fsm.store.WriteBehindStateStore}
+     * @return current builder
+     * @see AbstractFiniteStateMachine#withStateStore(StateStore)
+     */
+    public FsmBuilder<S, T, D> withStateStore(StateStore<S, D> stateStore) {
+        this.stateStore = stateStore;
+        return this;
+    }
+
+    /**
+     * @param timeoutScheduler scheduler of timeouts of states, configured by {@link StateBuilder#timeout(Duration, Object)}
+     * @return current builder
+     * @see AbstractFiniteStateMachine#withTimeoutScheduler(FsmTimeoutScheduler)
+     */
+    public FsmBuilder<S, T, D> withTimeoutScheduler(FsmTimeoutScheduler<?, S, T, D> timeoutScheduler) {
+        this.timeoutScheduler = timeoutScheduler;
+        return this;
+    }
+
+    /**
+     * Repeats of <code>trigger</code> in a row are applied once in batch
+     * (see {@link FsmBatchCoalescing#withIdempotentTrigger(Object)}).
+     *
+     * @return current builder
+     * @see AbstractFiniteStateMachine#moveBatch(List, FsmStateHolder)
+     */
+    public FsmBuilder<S, T, D> withIdempotentBatchTrigger(T trigger) {
+        getBatchCoalescing().withIdempotentTrigger(trigger);
+        return this;
+    }
+
+    /**
+     * <code>olderTrigger</code> is skipped in batch, if it is followed by <code>newerTrigger</code>
+     * (see {@link FsmBatchCoalescing#withSupersedingTrigger(Object, Object)}).
+     *
+     * @return current builder
+     * @see AbstractFiniteStateMachine#moveBatch(List, FsmStateHolder)
+     */
+    public FsmBuilder<S, T, D> withSupersedingBatchTrigger(T newerTrigger, T olderTrigger) {
+        getBatchCoalescing().withSupersedingTrigger(newerTrigger, olderTrigger);
+        return this;
+    }
+
+    private FsmBatchCoalescing<T> getBatchCoalescing() {
+        if (batchCoalescing == null) {
+            batchCoalescing = new FsmBatchCoalescing<>();
+        }
+        return batchCoalescing;
+    }
+
+    /**
+     * Enables adaptive ordering of guarded movements (see {@link GuardedFsmMovement#withAdaptiveOrdering(int)}).
+     * Must be used only if guards of movements by the same trigger are mutually exclusive.
+     *
+     * @param reorderInterval count of selections between reorderings,
+     *                        e.g. {@link GuardedFsmMovement#DEFAULT_REORDER_INTERVAL}
+     * @return current builder
+     */
+    public FsmBuilder<S, T, D> withAdaptiveGuardOrdering(int reorderInterval) {
+        this.guardReorderInterval = reorderInterval;
+        return this;
+    }
+
+    /**
+     * Enables validation of FSM graph on {@link #buildFsm()} (see {@link FsmGraphValidator}).
+     * Valid FSM is built as {@link ImmutableFiniteStateMachine}. In compiled and method handle dispatch modes
+     * FSM is built from the same validated copies (see {@link ImmutableFiniteStateMachine#validatedCopy(Map, Collection)}),
+     * so later changes of builder do not affect it. Terminal states must be declared as states without movements.
+     * <p>
+     * Validation is done once and does not make movements cheaper: validated FSM executes the same checks per movement.
+     *
+     * @param initialStates states of new data, used to find unreachable states
+     * @return current builder
+     */
+    public FsmBuilder<S, T, D> withGraphValidation(Collection<S> initialStates) {
+        this.validationInitialStates = new ArrayList<>(initialStates);
+        return this;
     }
 
     public StateBuilder<S, T, D> andState(S state) {
@@ -56,17 +263,94 @@ public class FsmBuilder<S, T, D extends FsmStateHolder<S>> {
     }
 
     protected void addState(S state, Map<T, FsmMovement<S, T, D>> stateConfig) {
-        this.stateConfigurationMap.put(state, new FsmState<>(stateConfig));
+        addState(state, new FsmState<>(stateConfig));
     }
 
+    protected void addState(S state, FsmState<S, T, D> stateConfig) {
+        this.stateConfigurationMap.put(state, stateConfig);
+    }
+
+    protected void addParentState(S state, S parentState) {
+        this.parentStates.put(state, parentState);
+    }
+
+    /**
+     * Flattens hierarchy of states (see {@link StateBuilder#parent(Object)}), so every state contains
+     * its own and inherited movements and FSM dispatches movement by single lookup.
+     *
+     * @return configured FSM
+     * @throws o.horbenko.fsm.error.InvalidFsmConfigurationException if compiled mode is enabled
+     *                                                               but states or triggers are not enums,
+     *                                                               or if hierarchy of states is invalid
+     * @throws o.horbenko.fsm.error.FsmValidationException           if graph validation is enabled and graph is invalid
+     */
     public AbstractFiniteStateMachine<S, T, D> buildFsm() {
-        return new AbstractFiniteStateMachine<>(stateConfigurationMap);
+        Map<S, FsmState<S, T, D>> states = FsmStateHierarchy.flatten(stateConfigurationMap, parentStates);
+        if (guardReorderInterval > 0) {
+            enableAdaptiveGuardOrdering(states);
+        }
+
+        AbstractFiniteStateMachine<S, T, D> fsm;
+        if (compiledTransitionTable) {
+            fsm = new CompiledEnumFiniteStateMachine<>(validationInitialStates != null
+                    ? ImmutableFiniteStateMachine.validatedCopy(states, validationInitialStates)
+                    : states);
+        } else if (methodHandleDispatch) {
+            fsm = new MethodHandleFiniteStateMachine<>(validationInitialStates != null
+                    ? ImmutableFiniteStateMachine.validatedCopy(states, validationInitialStates)
+                    : states);
+        } else {
+            fsm = validationInitialStates != null
+                    ? new ImmutableFiniteStateMachine<>(states, validationInitialStates)
+                    : new AbstractFiniteStateMachine<>(states);
+        }
+
+        if (maxExceptionChainHops != null) {
+            fsm.withMaxExceptionChainHops(maxExceptionChainHops);
+        }
+        if (bulkExecutor != null) {
+            fsm.withBulkExecutor(bulkExecutor, bulkParallelism);
+        }
+        if (concurrentMovementPolicy != null) {
+            fsm.withConcurrentMovementPolicy(concurrentMovementPolicy, maxConcurrentMovementRetries);
+        }
+        if (movementListener != null) {
+            fsm.withMovementListener(movementListener);
+        }
+        if (pipelineTracer != null) {
+            fsm.withPipelineTracer(pipelineTracer);
+        }
+        if (journal != null) {
+            fsm.withJournal(journal);
+        }
+        if (stateStore != null) {
+            fsm.withStateStore(stateStore);
+        }
+        if (timeoutScheduler != null) {
+            fsm.withTimeoutScheduler(timeoutScheduler);
+        }
+        if (batchCoalescing != null) {
+            fsm.withBatchCoalescing(batchCoalescing);
+        }
+        return fsm;
+    }
+
+    private void enableAdaptiveGuardOrdering(Map<S, FsmState<S, T, D>> states) {
+        for (FsmState<S, T, D> state : states.values()) {
+            for (FsmMovement<S, T, D> movement : state.getPossibleMovements().values()) {
+                if (movement instanceof GuardedFsmMovement) {
+                    ((GuardedFsmMovement<S, T, D>) movement).withAdaptiveOrdering(guardReorderInterval);
+                }
+            }
+        }
     }
 
     public static class StateBuilder<S, T, D extends FsmStateHolder<S>> {
 
         private S state;
         private Map<T, FsmMovement<S, T, D>> possibleMovements;
+        private Duration timeout;
+        private T timeoutTrigger;
 
         private FsmBuilder<S, T, D> parentBuilder;
 
@@ -80,18 +364,64 @@ public class FsmBuilder<S, T, D extends FsmStateHolder<S>> {
             return new MovementBuilder<>(trigger, this);
         }
 
+        /**
+         * Fires <code>timeoutTrigger</code> if data stays in current state longer than <code>timeout</code>.
+         * Requires {@link FsmBuilder#withTimeoutScheduler(FsmTimeoutScheduler)}.
+         *
+         * @return current builder
+         */
+        public StateBuilder<S, T, D> timeout(Duration timeout, T timeoutTrigger) {
+            this.timeout = timeout;
+            this.timeoutTrigger = timeoutTrigger;
+            return this;
+        }
+
+        /**
+         * Current state inherits movements and timeout of <code>parentState</code>, that must be declared in builder.
+         * Own movements of state override inherited movements by the same triggers.
+         *
+         * @return current builder
+         */
+        public StateBuilder<S, T, D> parent(S parentState) {
+            this.parentBuilder.addParentState(this.state, parentState);
+            return this;
+        }
+
         public StateBuilder<S, T, D> andState(S state) {
-            this.parentBuilder.addState(this.state, possibleMovements);
+            this.parentBuilder.addState(this.state, buildState());
             return this.parentBuilder.andState(state);
         }
 
         public AbstractFiniteStateMachine<S, T, D> buildFsm() {
-            this.parentBuilder.addState(this.state, this.possibleMovements);
+            this.parentBuilder.addState(this.state, buildState());
             return parentBuilder.buildFsm();
         }
 
+        private FsmState<S, T, D> buildState() {
+            FsmState<S, T, D> stateConfig = new FsmState<>(possibleMovements);
+            if (timeoutTrigger != null) {
+                stateConfig.withTimeout(timeout, timeoutTrigger);
+            }
+            return stateConfig;
+        }
+
+        /**
+         * Movements by the same trigger are combined into {@link GuardedFsmMovement} if one of them has guard,
+         * otherwise the last movement wins.
+         */
         protected void addMovement(T trigger, FsmMovement<S, T, D> movement) {
-            this.possibleMovements.put(trigger, movement);
+            FsmMovement<S, T, D> existing = this.possibleMovements.get(trigger);
+            if (existing == null || (movement.getGuard() == null && !(existing instanceof GuardedFsmMovement))) {
+                this.possibleMovements.put(trigger, movement.getGuard() == null
+                        ? movement
+                        : new GuardedFsmMovement<S, T, D>().withCandidate(movement));
+                return;
+            }
+
+            GuardedFsmMovement<S, T, D> guarded = existing instanceof GuardedFsmMovement
+                    ? (GuardedFsmMovement<S, T, D>) existing
+                    : new GuardedFsmMovement<S, T, D>().withCandidate(existing);
+            this.possibleMovements.put(trigger, guarded.withCandidate(movement));
         }
     }
 
@@ -107,6 +437,15 @@ public class FsmBuilder<S, T, D extends FsmStateHolder<S>> {
             this.trigger = trigger;
         }
 
+        /**
+         * Movement is executed only if <code>guard</code> passes. Declare movements by the same trigger
+         * with different guards (and optionally one without guard as fallback) to route data by conditions.
+         */
+        public MovementBuilder<S, T, D> guard(Predicate<D> guard) {
+            this.movement.guard(guard);
+            return this;
+        }
+
         public MovementBuilder<S, T, D> movementAction(FsmMovementAction<D> action) {
             this.movement.movementAction(action);
             return this;
@@ -117,6 +456,27 @@ public class FsmBuilder<S, T, D extends FsmStateHolder<S>> {
             return this;
         }
 
+        public MovementBuilder<S, T, D> asyncMovementAction(AsyncFsmMovementAction<D> action) {
+            this.movement.asyncMovementAction(action);
+            return this;
+        }
+
+        /**
+         * Movement action fans out to branches of <code>stage</code> and joins them before movement to target state.
+         * Register exception trigger for {@link o.horbenko.fsm.error.ParallelStageJoinException} to route failed join.
+         *
+         * @throws o.horbenko.fsm.error.PipelineConfigurationException if stage is invalid, see {@link FsmParallelStage#validate()}
+         */
+        public MovementBuilder<S, T, D> parallelMovementAction(FsmParallelStage<D> stage) {
+            this.movement.asyncMovementAction(stage.validate());
+            return this;
+        }
+
+        public MovementBuilder<S, T, D> asyncPostMovementAction(AsyncFsmMovementAction<D> postMovementAction) {
+            this.movement.asyncPostMovementAction(postMovementAction);
+            return this;
+        }
+
         public MovementBuilder<S, T, D> targetStateOnSuccess(S targetState) {
             this.movement.targetState(targetState);
             return this;
@@ -0,0 +1,115 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.configurer;
+
+import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.error.InvalidFsmConfigurationException;
+import o.horbenko.fsm.movement.FsmMovement;
+import o.horbenko.fsm.state.FsmState;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Flattens hierarchy of states into flat table of {@link FsmState}s: every state gets movements and timeout
+ * of its ancestors, own configuration of state overrides inherited one. Inherited {@link FsmMovement}s
+ * are shared, not copied.
+ *
+ * @author Oleksii Horbenko
+ */
+final class FsmStateHierarchy {
+
+    private FsmStateHierarchy() {
+    }
+
+    /**
+     * @param states       configurations of states, declared in builder
+     * @param parentStates parent state by child state
+     * @return flat configurations of states
+     * @throws InvalidFsmConfigurationException if parent state is not declared or hierarchy contains cycle
+     */
+    static <S, T, D extends FsmStateHolder<S>>
+    Map<S, FsmState<S, T, D>> flatten(Map<S, FsmState<S, T, D>> states, Map<S, S> parentStates) {
+        if (parentStates.isEmpty()) {
+            return states;
+        }
+
+        Map<S, FsmState<S, T, D>> flattened = new HashMap<>(states.size() * 2);
+        for (S state : states.keySet()) {
+            flatten(state, states, parentStates, flattened);
+        }
+        return flattened;
+    }
+
+    private static <S, T, D extends FsmStateHolder<S>>
+    void flatten(S state,
+                 Map<S, FsmState<S, T, D>> states,
+                 Map<S, S> parentStates,
+                 Map<S, FsmState<S, T, D>> flattened) {
+
+        // chain of not flattened ancestors: state, parent, grandparent...
+        Set<S> chain = new LinkedHashSet<>();
+        S current = state;
+        while (current != null && !flattened.containsKey(current)) {
+            if (!chain.add(current)) {
+                throw new InvalidFsmConfigurationException("Cycle in hierarchy of states: " + chain + " -> " + current);
+            }
+            if (!states.containsKey(current)) {
+                throw new InvalidFsmConfigurationException("Parent state = '" + current + "' is not declared");
+            }
+            current = parentStates.get(current);
+        }
+
+        // flatten from the top ancestor down to state
+        List<S> ancestors = new ArrayList<>(chain);
+        for (int i = ancestors.size() - 1; i >= 0; i--) {
+            S ancestor = ancestors.get(i);
+            S parent = parentStates.get(ancestor);
+            FsmState<S, T, D> own = states.get(ancestor);
+
+            flattened.put(ancestor, parent == null
+                    ? own
+                    : merge(flattened.get(parent), own));
+        }
+    }
+
+    private static <S, T, D extends FsmStateHolder<S>>
+    FsmState<S, T, D> merge(FsmState<S, T, D> parent, FsmState<S, T, D> child) {
+        Map<T, FsmMovement<S, T, D>> movements = new HashMap<>(parent.getPossibleMovements());
+        movements.putAll(child.getPossibleMovements());
+
+        FsmState<S, T, D> merged = new FsmState<>(movements);
+        FsmState<S, T, D> timeoutSource = child.hasTimeout() ? child : parent;
+        if (timeoutSource.hasTimeout()) {
+            merged.withTimeout(Duration.ofMillis(timeoutSource.getTimeoutMillis()), timeoutSource.getTimeoutTrigger());
+        }
+        return merged;
+    }
+
+}
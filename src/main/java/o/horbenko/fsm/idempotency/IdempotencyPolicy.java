@@ -0,0 +1,56 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.idempotency;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * Bounds of deduplication cache of {@link IdempotentFsm}.
+ *
+ * @author Oleksii Horbenko
+ */
+@Data
+@Accessors(chain = true)
+public class IdempotencyPolicy {
+
+    public static final long DEFAULT_TTL_MILLIS = 10 * 60 * 1000;
+    public static final int DEFAULT_MAX_EVENTS = 100_000;
+
+    /**
+     * Time, during which outcome of event is remembered. Should cover redelivery window of upstream
+     */
+    private long ttlMillis = DEFAULT_TTL_MILLIS;
+
+    /**
+     * Max count of remembered events, the oldest events are evicted first
+     */
+    private int maxEvents = DEFAULT_MAX_EVENTS;
+
+    /**
+     * Remember failed movements too. By default failed movement is forgotten, so redelivered event is executed again
+     */
+    private boolean rememberFailures;
+
+}
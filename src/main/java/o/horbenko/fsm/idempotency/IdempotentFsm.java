@@ -0,0 +1,313 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.idempotency;
+
+import lombok.NonNull;
+import o.horbenko.fsm.CoreFsm;
+import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.error.InvalidFsmConfigurationException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Deduplicating decorator of {@link CoreFsm} for at-least-once delivered events.
+ * <p>
+ * Movement is executed only once per event ID: duplicate of completed event returns remembered outcome,
+ * duplicate of event in progress waits for (and shares) its outcome. Actions are not executed again.
+ * <p>
+ * Events are remembered in bounded concurrent cache: entries expire after {@link IdempotencyPolicy#getTtlMillis()}
+ * and the oldest entries are evicted when cache exceeds {@link IdempotencyPolicy#getMaxEvents()}.
+ * Eviction is amortized O(1): entries are evicted in insertion order, that is order of expiration.
+ * Forgotten and replaced events leave insertion order immediately, so cache is bounded by max count
+ * even if most of events fail.
+ * <p>
+ * Insertion order is striped by event ID, so movements of different events rarely contend:
+ * every stripe is bounded by its share of max count and is evicted by registration of event in it,
+ * under the same lock as the registration.
+ *
+ * @param <E> event ID type
+ * @param <S> State
+ * @param <T> Trigger (Event)
+ * @param <D> {@link FsmStateHolder} implementation
+ * @author Oleksii Horbenko
+ */
+public class IdempotentFsm<E, S, T, D extends FsmStateHolder<S>> {
+
+    private static final int MAX_STRIPES = 16;
+    private static final int MIN_EVENTS_PER_STRIPE = 1024;
+
+    private final CoreFsm<S, T, D> fsm;
+    private final IdempotencyPolicy policy;
+    private final LongSupplier nanoClock;
+    private final long ttlNanos;
+
+    private final ConcurrentHashMap<E, Outcome<E, D>> outcomeByEventId = new ConcurrentHashMap<>();
+
+    // stripes of insertion order of remembered outcomes, every stripe is guarded by itself
+    private final InsertionOrder<E, D>[] insertionOrders;
+
+    public IdempotentFsm(@NonNull CoreFsm<S, T, D> fsm, @NonNull IdempotencyPolicy policy) {
+        this(fsm, policy, System::nanoTime);
+    }
+
+    IdempotentFsm(CoreFsm<S, T, D> fsm, IdempotencyPolicy policy, LongSupplier nanoClock) {
+        if (policy.getTtlMillis() <= 0 || policy.getMaxEvents() < 1) {
+            throw new InvalidFsmConfigurationException("Invalid idempotency policy " + policy);
+        }
+
+        this.fsm = fsm;
+        this.policy = policy;
+        this.nanoClock = nanoClock;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(policy.getTtlMillis());
+
+        int stripes = Integer.highestOneBit(Math.max(1, Math.min(MAX_STRIPES, policy.getMaxEvents() / MIN_EVENTS_PER_STRIPE)));
+        @SuppressWarnings("unchecked")
+        InsertionOrder<E, D>[] insertionOrders = new InsertionOrder[stripes];
+        for (int i = 0; i < stripes; i++) {
+            insertionOrders[i] = new InsertionOrder<>(policy.getMaxEvents() / stripes);
+        }
+        this.insertionOrders = insertionOrders;
+    }
+
+    /**
+     * {@link CoreFsm#move(Object, FsmStateHolder)}, that is executed once per <code>eventId</code>.
+     *
+     * @param eventId ID of event, that delivered <code>trigger</code>
+     * @param trigger trigger for movement to the next state
+     * @param data    data+state holder
+     * @return data+state after the first movement by event
+     */
+    public D move(@NonNull E eventId, T trigger, D data) {
+        Outcome<E, D> owned = new Outcome<>(eventId, nanoClock.getAsLong() + ttlNanos);
+        Outcome<E, D> existing = register(owned);
+
+        if (existing != null) {
+            try {
+                return existing.result.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException
+                        ? (RuntimeException) e.getCause()
+                        : e;
+            }
+        }
+
+        try {
+            D result = fsm.move(trigger, data);
+            owned.result.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            fail(owned, e);
+            throw e;
+        }
+    }
+
+    /**
+     * {@link CoreFsm#moveAsync(Object, FsmStateHolder)}, that is executed once per <code>eventId</code>.
+     * If movement is not started (<code>moveAsync</code> of FSM throws), the event is forgotten
+     * and returned future is completed exceptionally.
+     *
+     * @return future of data+state after the first movement by event
+     */
+    public CompletableFuture<D> moveAsync(@NonNull E eventId, T trigger, D data) {
+        Outcome<E, D> owned = new Outcome<>(eventId, nanoClock.getAsLong() + ttlNanos);
+        Outcome<E, D> existing = register(owned);
+
+        if (existing != null) {
+            return existing.result.copy();
+        }
+
+        CompletableFuture<D> movement;
+        try {
+            movement = fsm.moveAsync(trigger, data);
+        } catch (RuntimeException | Error e) {
+            // movement was not started, so event is not remembered even if failures are
+            owned.result.completeExceptionally(e);
+            forget(owned);
+            return owned.result.copy();
+        }
+
+        movement.whenComplete((result, error) -> {
+            if (error == null) {
+                owned.result.complete(result);
+            } else {
+                fail(owned, error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            }
+        });
+        return owned.result.copy();
+    }
+
+    /**
+     * @return count of remembered events (including expired, but not yet evicted)
+     */
+    public int getRememberedEventsCount() {
+        return outcomeByEventId.size();
+    }
+
+    /**
+     * @return count of events in insertion order, that bounds memory of cache
+     */
+    int getOrderedEventsCount() {
+        int count = 0;
+        for (InsertionOrder<E, D> insertionOrder : insertionOrders) {
+            synchronized (insertionOrder) {
+                count += insertionOrder.size;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return existing not expired outcome of event or <code>null</code> if <code>owned</code> was registered
+     */
+    private Outcome<E, D> register(Outcome<E, D> owned) {
+        long now = nanoClock.getAsLong();
+
+        while (true) {
+            Outcome<E, D> existing = outcomeByEventId.putIfAbsent(owned.eventId, owned);
+            if (existing == null) {
+                InsertionOrder<E, D> insertionOrder = insertionOrderOf(owned.eventId);
+                synchronized (insertionOrder) {
+                    insertionOrder.link(owned);
+                    evict(insertionOrder, now);
+                }
+                return null;
+            }
+            if (!existing.isExpired(now)) {
+                return existing;
+            }
+            forget(existing);
+        }
+    }
+
+    private void fail(Outcome<E, D> owned, Throwable error) {
+        owned.result.completeExceptionally(error);
+        if (!policy.isRememberFailures()) {
+            forget(owned);
+        }
+    }
+
+    /**
+     * Removes <code>outcome</code> from cache and from insertion order.
+     */
+    private void forget(Outcome<E, D> outcome) {
+        outcomeByEventId.remove(outcome.eventId, outcome);
+        InsertionOrder<E, D> insertionOrder = insertionOrderOf(outcome.eventId);
+        synchronized (insertionOrder) {
+            insertionOrder.unlink(outcome);
+        }
+    }
+
+    /**
+     * Evicts expired and exceeding max count events from the head of <code>insertionOrder</code>.
+     * Must be called under lock of <code>insertionOrder</code>.
+     */
+    private void evict(InsertionOrder<E, D> insertionOrder, long now) {
+        Outcome<E, D> oldest;
+        while ((oldest = insertionOrder.head) != null
+                && (oldest.isExpired(now) || insertionOrder.size > insertionOrder.maxSize)) {
+
+            insertionOrder.unlink(oldest);
+            outcomeByEventId.remove(oldest.eventId, oldest);
+        }
+    }
+
+    private InsertionOrder<E, D> insertionOrderOf(E eventId) {
+        int hash = eventId.hashCode();
+        return insertionOrders[(hash ^ (hash >>> 16)) & (insertionOrders.length - 1)];
+    }
+
+    /**
+     * Doubly-linked list of outcomes, so outcome leaves the list in O(1) wherever it is.
+     */
+    private static final class InsertionOrder<E, D> {
+        private final int maxSize;
+        private Outcome<E, D> head;
+        private Outcome<E, D> tail;
+        private int size;
+
+        private InsertionOrder(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        private void link(Outcome<E, D> outcome) {
+            if (outcome.linked) {
+                return;
+            }
+            outcome.prev = tail;
+            if (tail == null) {
+                head = outcome;
+            } else {
+                tail.next = outcome;
+            }
+            tail = outcome;
+            outcome.linked = true;
+            size++;
+        }
+
+        private void unlink(Outcome<E, D> outcome) {
+            if (!outcome.linked) {
+                return;
+            }
+            if (outcome.prev == null) {
+                head = outcome.next;
+            } else {
+                outcome.prev.next = outcome.next;
+            }
+            if (outcome.next == null) {
+                tail = outcome.prev;
+            } else {
+                outcome.next.prev = outcome.prev;
+            }
+            outcome.prev = null;
+            outcome.next = null;
+            outcome.linked = false;
+            size--;
+        }
+    }
+
+    private static final class Outcome<E, D> {
+        private final E eventId;
+        private final long expiresAtNanos;
+        private final CompletableFuture<D> result = new CompletableFuture<>();
+
+        // guarded by insertion order
+        private Outcome<E, D> prev;
+        private Outcome<E, D> next;
+        private boolean linked;
+
+        private Outcome(E eventId, long expiresAtNanos) {
+            this.eventId = eventId;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiresAtNanos >= 0;
+        }
+    }
+
+}
@@ -24,17 +24,34 @@
 package o.horbenko.fsm.impl;
 
 import lombok.NonNull;
+import o.horbenko.fsm.AtomicFsmStateHolder;
+import o.horbenko.fsm.ConcurrentMovementPolicy;
 import o.horbenko.fsm.CoreFsm;
 import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.batch.FsmBatchCoalescing;
+import o.horbenko.fsm.batch.FsmBatchOutcome;
+import o.horbenko.fsm.batch.FsmBatchResult;
+import o.horbenko.fsm.error.ConcurrentFsmMovementException;
+import o.horbenko.fsm.error.ExceptionChainDepthExceededException;
+import o.horbenko.fsm.error.FsmJournalException;
 import o.horbenko.fsm.error.InvalidFsmConfigurationException;
 import o.horbenko.fsm.error.NoMovementByTriggerInStateException;
+import o.horbenko.fsm.error.StateStoreException;
+import o.horbenko.fsm.journal.FsmJournal;
+import o.horbenko.fsm.journal.FsmJournalOutcome;
+import o.horbenko.fsm.metrics.FsmMovementListener;
 import o.horbenko.fsm.movement.FsmMovement;
+import o.horbenko.fsm.movementaction.AsyncFsmMovementAction;
 import o.horbenko.fsm.movementaction.FsmMovementAction;
 import o.horbenko.fsm.state.FsmState;
+import o.horbenko.fsm.store.StateStore;
+import o.horbenko.fsm.timeout.FsmTimeoutScheduler;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 /**
  * Basic implementation of finite state machine with one business method - {@link CoreFsm#move(Object, FsmStateHolder)}
@@ -49,7 +66,17 @@ public class AbstractCoreFsm
         <S, T, D extends FsmStateHolder<S>>
         implements CoreFsm<S, T, D> {
 
+    public static final int DEFAULT_MAX_EXCEPTION_CHAIN_HOPS = 32;
+
     private Map<S, FsmState<S, T, D>> stateConfigurationMap;
+    private int maxExceptionChainHops = DEFAULT_MAX_EXCEPTION_CHAIN_HOPS;
+    private ConcurrentMovementPolicy concurrentMovementPolicy = ConcurrentMovementPolicy.OVERWRITE;
+    private int maxConcurrentMovementRetries;
+    private FsmMovementListener<S, T> movementListener;
+    private FsmJournal<S, T, D> journal;
+    private StateStore<S, D> stateStore;
+    private FsmTimeoutScheduler<?, S, T, D> timeoutScheduler;
+    private FsmBatchCoalescing<T> batchCoalescing;
 
     public AbstractCoreFsm() {
         this.stateConfigurationMap = new HashMap<>();
@@ -70,59 +97,598 @@ public class AbstractCoreFsm
         return this;
     }
 
+    /**
+     * Limits count of movements by exception triggers, that can be executed in scope of one movement.
+     * Prevents endless processing of exception cycles.
+     *
+     * @param maxExceptionChainHops max count of exception trigger movements (0 - exception triggers are not applied)
+     * @return current FSM
+     */
+    public AbstractCoreFsm<S, T, D> withMaxExceptionChainHops(int maxExceptionChainHops) {
+        if (maxExceptionChainHops < 0) {
+            throw new InvalidFsmConfigurationException("Max exception chain hops must not be negative, but was " + maxExceptionChainHops);
+        }
+
+        this.maxExceptionChainHops = maxExceptionChainHops;
+        return this;
+    }
+
+    /**
+     * Configures handling of concurrent movements of {@link AtomicFsmStateHolder}s.
+     *
+     * @param concurrentMovementPolicy     policy to apply, when state was changed concurrently during movement action
+     * @param maxConcurrentMovementRetries max count of retries for {@link ConcurrentMovementPolicy#RETRY}
+     * @return current FSM
+     */
+    public AbstractCoreFsm<S, T, D> withConcurrentMovementPolicy(@NonNull ConcurrentMovementPolicy concurrentMovementPolicy,
+                                                                int maxConcurrentMovementRetries) {
+        if (maxConcurrentMovementRetries < 0) {
+            throw new InvalidFsmConfigurationException("Max concurrent movement retries must not be negative, but was " + maxConcurrentMovementRetries);
+        }
+
+        this.concurrentMovementPolicy = concurrentMovementPolicy;
+        this.maxConcurrentMovementRetries = maxConcurrentMovementRetries;
+        return this;
+    }
+
+    /**
+     * Registers listener of movements, e.g. {@link o.horbenko.fsm.metrics.FsmMetrics}.
+     * Without listener movements are not measured at all.
+     *
+     * @param movementListener listener or <code>null</code> to disable observation
+     * @return current FSM
+     */
+    public AbstractCoreFsm<S, T, D> withMovementListener(FsmMovementListener<S, T> movementListener) {
+        this.movementListener = movementListener;
+        return this;
+    }
+
+    /**
+     * Registers journal of movements, e.g. {@link o.horbenko.fsm.journal.MappedFsmJournal}.
+     *
+     * @param journal journal or <code>null</code> to disable journaling
+     * @return current FSM
+     */
+    public AbstractCoreFsm<S, T, D> withJournal(FsmJournal<S, T, D> journal) {
+        this.journal = journal;
+        return this;
+    }
+
+    /**
+     * Registers store of states, that is updated after every successful movement,
+     * e.g. {@link o.horbenko.fsm.store.WriteBehindStateStore}.
+     * Failure of store does not roll movement back (see {@link StateStore}).
+     *
+     * @param stateStore store or <code>null</code> to disable
+     * @return current FSM
+     */
+    public AbstractCoreFsm<S, T, D> withStateStore(StateStore<S, D> stateStore) {
+        this.stateStore = stateStore;
+        return this;
+    }
+
+    /**
+     * Registers scheduler of timeouts of states (see {@link FsmState#withTimeout(java.time.Duration, Object)}).
+     * Timeout of state is scheduled after every successful movement into it.
+     * Failure of scheduling does not roll movement back, it is thrown to caller of movement.
+     *
+     * @param timeoutScheduler scheduler or <code>null</code> to disable timeouts
+     * @return current FSM
+     */
+    public AbstractCoreFsm<S, T, D> withTimeoutScheduler(FsmTimeoutScheduler<?, S, T, D> timeoutScheduler) {
+        this.timeoutScheduler = timeoutScheduler;
+        return this;
+    }
+
+    /**
+     * Registers rules, that reduce batch of triggers in {@link #moveBatch(List, FsmStateHolder)}.
+     *
+     * @param batchCoalescing rules or <code>null</code> to apply every trigger of batch
+     * @return current FSM
+     */
+    public AbstractCoreFsm<S, T, D> withBatchCoalescing(FsmBatchCoalescing<T> batchCoalescing) {
+        this.batchCoalescing = batchCoalescing;
+        return this;
+    }
+
+    /**
+     * Schedules timeout of current state of <code>data</code>, that was not moved by this FSM,
+     * e.g. of new or recovered entity.
+     */
+    public void scheduleStateTimeout(@NonNull D data) {
+        FsmTimeoutScheduler<?, S, T, D> timeoutScheduler = this.timeoutScheduler;
+        if (timeoutScheduler != null) {
+            timeoutScheduler.onStateEntered(this, data, stateConfigurationMap.get(data.getState()));
+        }
+    }
+
+    protected FsmMovementListener<S, T> getMovementListener() {
+        return movementListener;
+    }
+
     @Override
     public D move(T trigger, D stateHolder) {
+        return move(trigger, stateHolder, movementListener);
+    }
+
+    /**
+     * Same as {@link #move(Object, FsmStateHolder)}, but notifies given <code>listener</code>
+     * instead of listener of FSM.
+     */
+    protected D move(T trigger, D stateHolder, FsmMovementListener<S, T> listener) {
 
         // 1. Get current state
         S initialState = stateHolder.getState();
 
-        // 2. Get FsmState configuration
-        FsmState<S, T, D> stateConfiguration = stateConfigurationMap.get(initialState);
+        // 2. Get movement by state and trigger
+        FsmMovement<S, T, D> movement = findMovement(initialState, trigger);
+        if (movement == null) {
+            throw noMovementException(initialState, trigger);
+        }
+
+        // 3. Execute from the state, that movement was found for
+        return executeMovement(trigger, initialState, movement, stateHolder, listener);
+    }
+
+    /**
+     * Moves <code>stateHolder</code> by sequence of triggers in one call, e.g. by triggers,
+     * that were received from device at once.
+     * <p>
+     * Batch is reduced by coalescing rules (see {@link #withBatchCoalescing(FsmBatchCoalescing)}) before movement.
+     * Trigger without movement from current state is ignored. Failure of movement (after exception triggers)
+     * stops the batch, following triggers are not applied. Trigger, that was skipped as superseded,
+     * is reported as not applied if its superseding trigger was not applied.
+     *
+     * @param triggers    triggers to apply in order
+     * @param stateHolder data+state holder
+     * @return context after last executed movement with outcome of every trigger (see {@link FsmBatchOutcome})
+     */
+    public FsmBatchResult<D> moveBatch(@NonNull List<T> triggers, @NonNull D stateHolder) {
+        FsmBatchCoalescing<T> batchCoalescing = this.batchCoalescing;
+        FsmMovementListener<S, T> listener = this.movementListener;
+
+        byte[] outcomes = batchCoalescing == null
+                ? new byte[triggers.size()]
+                : batchCoalescing.coalesce(triggers);
+
+        D data = stateHolder;
+        Exception error = null;
+        for (int i = 0; i < outcomes.length; i++) {
+            if (outcomes[i] != FsmBatchOutcome.MOVED) {
+                continue;
+            }
+            if (error != null) {
+                outcomes[i] = FsmBatchOutcome.NOT_APPLIED;
+                continue;
+            }
+
+            T trigger = triggers.get(i);
+            S state = data.getState();
+            FsmMovement<S, T, D> movement = findMovement(state, trigger);
+            if (movement == null) {
+                // ignored without creation of exception
+                outcomes[i] = FsmBatchOutcome.NO_MOVEMENT;
+                continue;
+            }
 
-        // 3. Get movement by trigger
-        FsmMovement<S, T, D> movement = stateConfiguration
-                .getMovementByTrigger(trigger)
-                .orElseThrow(() -> new NoMovementByTriggerInStateException("Unable to find movement from state = '" + initialState.toString() + "' by trigger = '" + trigger + "'"));
+            try {
+                data = executeMovement(trigger, state, movement, data, listener);
+            } catch (Exception e) {
+                outcomes[i] = FsmBatchOutcome.FAILED;
+                error = e;
+            }
+        }
+
+        if (batchCoalescing != null) {
+            batchCoalescing.resolveSuperseded(triggers, outcomes);
+        }
+        return new FsmBatchResult<>(data, outcomes, error);
+    }
+
+    /**
+     * Resolves configured movement from <code>state</code> by <code>trigger</code>.
+     *
+     * @param state   state to move from
+     * @param trigger trigger of movement
+     * @return movement or <code>null</code> if there is no movement configured
+     */
+    protected FsmMovement<S, T, D> findMovement(S state, T trigger) {
+        FsmState<S, T, D> stateConfiguration = stateConfigurationMap.get(state);
+        if (stateConfiguration == null) {
+            return null;
+        }
+
+        return stateConfiguration.getMovementByTriggerOrNull(trigger);
+    }
 
-        // 4. Execute
-        return moveWithExceptionHandling(movement, stateHolder);
+    /**
+     * Executes resolved <code>movement</code> with exception handling.
+     * <p>
+     * Exception chain (movement by exception trigger, that fails and moves by next exception trigger, etc.)
+     * is executed iteratively and is limited by {@link #withMaxExceptionChainHops(int)}.
+     * <p>
+     * Concurrent movement of {@link AtomicFsmStateHolder} is handled according to {@link ConcurrentMovementPolicy}:
+     * <code>initialState</code> is expected state of commit and state of rollback, so movement, resolved for
+     * state, that was changed concurrently before execution, is not committed over the new state.
+     * <p>
+     * Hot path. Must not allocate on successful movement.
+     *
+     * @param trigger      trigger of <code>movement</code>
+     * @param initialState state of <code>data</code>, that <code>movement</code> was resolved for
+     * @param movement     movement from <code>initialState</code> (candidate is selected by guards)
+     * @param data         data+state holder
+     * @return data+state after movement
+     * @throws NoMovementByTriggerInStateException  if there is no movement by exception trigger or no guard passes
+     * @throws ExceptionChainDepthExceededException if exception chain is longer than max exception chain hops
+     * @throws ConcurrentFsmMovementException       if state was changed concurrently and movement was not retried
+     */
+    protected D executeMovement(T trigger, S initialState, FsmMovement<S, T, D> movement, D data) {
+        return executeMovement(trigger, initialState, movement, data, movementListener);
     }
 
+    /**
+     * Same as {@link #executeMovement(Object, Object, FsmMovement, FsmStateHolder)}, but notifies given
+     * <code>listener</code> instead of listener of FSM.
+     *
+     * @param listener listener of movement or <code>null</code>
+     */
+    protected D executeMovement(T trigger, S initialState, FsmMovement<S, T, D> movement, D data, FsmMovementListener<S, T> listener) {
+        FsmJournal<S, T, D> journal = this.journal;
+        StateStore<S, D> stateStore = this.stateStore;
+        FsmTimeoutScheduler<?, S, T, D> timeoutScheduler = this.timeoutScheduler;
+        int exceptionChainHops = 0;
+        int concurrentMovementRetries = 0;
+
+        while (true) {
+            movement = movement.selectByGuard(data);
+            if (movement == null) {
+                throw noMovementException(initialState, trigger);
+            }
+
+            boolean stateCommitted = false;
+            try {
+
+                data = listener == null
+                        ? applyActionIfExists(movement.getMovementActionOrNull(), data)
+                        : applyObservedAction(listener, initialState, trigger, movement.getMovementActionOrNull(), data, false);
+
+                stateCommitted = commitState(data, initialState, movement.getFutureStateOnSuccess());
+                if (stateCommitted) {
+                    if (journal != null) {
+                        journal.append(data, initialState, trigger, movement.getFutureStateOnSuccess(), FsmJournalOutcome.MOVED);
+                    }
+
+                    if (listener == null) {
+                        data = applyActionIfExists(movement.getPostMovementActionOrNull(), data);
+                    } else {
+                        listener.onMovement(initialState, trigger, movement.getFutureStateOnSuccess());
+                        data = applyObservedAction(listener, initialState, trigger, movement.getPostMovementActionOrNull(), data, true);
+                    }
+                }
+
+            } catch (Exception e) {
+                rollbackState(data, initialState, movement.getFutureStateOnSuccess(), stateCommitted, e);
+                if (journal != null && !(e instanceof FsmJournalException)) {
+                    journal.append(data, initialState, trigger, data.getState(), FsmJournalOutcome.FAILED);
+                }
+
+                if (++exceptionChainHops > maxExceptionChainHops) {
+                    throw new ExceptionChainDepthExceededException("Exception chain from state = '" + initialState + "' exceeded max hops = " + maxExceptionChainHops, e);
+                }
+
+                T exceptionTrigger = movement.resolveTriggerOnException(e.getClass());
+                if (listener != null) {
+                    listener.onExceptionTrigger(initialState, trigger, e.getClass(), exceptionTrigger);
+                }
+
+                trigger = exceptionTrigger;
+                movement = findMovement(initialState, trigger);
+                if (movement == null) {
+                    throw noMovementException(initialState, trigger);
+                }
+                continue;
+            }
+
+            if (stateCommitted) {
+                completeMovement(data, stateStore, timeoutScheduler);
+                return data;
+            }
+
+            // state was changed concurrently during movement action
+            if (concurrentMovementPolicy != ConcurrentMovementPolicy.RETRY
+                    || ++concurrentMovementRetries > maxConcurrentMovementRetries) {
+                throw concurrentMovementException(initialState, data.getState(), trigger, null);
+            }
+
+            initialState = data.getState();
+            movement = findMovement(initialState, trigger);
+            if (movement == null) {
+                throw noMovementException(initialState, trigger);
+            }
+        }
+    }
+
+    @Override
+    public CompletableFuture<D> moveAsync(T trigger, D stateHolder) {
+        return moveAsync(trigger, stateHolder, movementListener);
+    }
+
+    /**
+     * Same as {@link #moveAsync(Object, FsmStateHolder)}, but notifies given <code>listener</code>
+     * instead of listener of FSM.
+     */
+    protected CompletableFuture<D> moveAsync(T trigger, D stateHolder, FsmMovementListener<S, T> listener) {
+        S initialState = stateHolder.getState();
+
+        FsmMovement<S, T, D> movement = findMovement(initialState, trigger);
+        if (movement == null) {
+            return CompletableFuture.failedFuture(noMovementException(initialState, trigger));
+        }
+
+        return executeMovementAsync(trigger, initialState, movement, stateHolder, listener, 0, 0);
+    }
+
+    /**
+     * Non-blocking alternative of {@link #executeMovement(Object, Object, FsmMovement, FsmStateHolder)}.
+     *
+     * @param trigger                   trigger of <code>movement</code>
+     * @param initialState              state of <code>data</code>, that <code>guardedMovement</code> was resolved for
+     * @param guardedMovement           movement from <code>initialState</code>, candidate is selected by guards
+     * @param data                      data+state holder
+     * @param listener                  listener of movement or <code>null</code>
+     * @param exceptionChainHops        count of already executed movements by exception triggers
+     * @param concurrentMovementRetries count of already executed retries of concurrently changed movement
+     * @return future of data+state after movement
+     */
+    protected CompletableFuture<D> executeMovementAsync(T trigger,
+                                                        S initialState,
+                                                        FsmMovement<S, T, D> guardedMovement,
+                                                        D data,
+                                                        FsmMovementListener<S, T> listener,
+                                                        int exceptionChainHops,
+                                                        int concurrentMovementRetries) {
+        FsmMovement<S, T, D> movement = guardedMovement.selectByGuard(data);
+        if (movement == null) {
+            return CompletableFuture.failedFuture(noMovementException(initialState, trigger));
+        }
+
+        long actionStartNanos = listener == null ? 0 : System.nanoTime();
+
+        return applyActionAsync(movement.getAsyncMovementAction(), movement.getMovementActionOrNull(), data)
+                .handle((afterAction, actionError) -> {
+
+                    if (listener != null && movement.getMovementActionOrNull() != null) {
+                        listener.onMovementAction(initialState, trigger, System.nanoTime() - actionStartNanos, actionError != null);
+                    }
+
+                    if (actionError != null) {
+                        return handleMovementExceptionAsync(trigger, movement, data, listener, initialState, false, actionError, exceptionChainHops);
+                    }
+
+                    if (!commitState(afterAction, initialState, movement.getFutureStateOnSuccess())) {
+                        return handleConcurrentMovementAsync(trigger, afterAction, listener, initialState, exceptionChainHops, concurrentMovementRetries);
+                    }
+
+                    FsmJournal<S, T, D> journal = this.journal;
+                    if (journal != null) {
+                        try {
+                            journal.append(afterAction, initialState, trigger, movement.getFutureStateOnSuccess(), FsmJournalOutcome.MOVED);
+                        } catch (Exception e) {
+                            return handleMovementExceptionAsync(trigger, movement, afterAction, listener, initialState, true, e, exceptionChainHops);
+                        }
+                    }
+
+                    long postActionStartNanos = 0;
+                    if (listener != null) {
+                        listener.onMovement(initialState, trigger, movement.getFutureStateOnSuccess());
+                        postActionStartNanos = System.nanoTime();
+                    }
+                    long postActionStart = postActionStartNanos;
+
+                    return applyActionAsync(movement.getAsyncPostMovementAction(), movement.getPostMovementActionOrNull(), afterAction)
+                            .handle((afterPostAction, postActionError) -> {
+
+                                if (listener != null && movement.getPostMovementActionOrNull() != null) {
+                                    listener.onPostMovementAction(initialState, trigger, System.nanoTime() - postActionStart, postActionError != null);
+                                }
+
+                                if (postActionError != null) {
+                                    return handleMovementExceptionAsync(trigger, movement, afterAction, listener, initialState, true, postActionError, exceptionChainHops);
+                                }
+
+                                try {
+                                    completeMovement(afterPostAction, this.stateStore, this.timeoutScheduler);
+                                } catch (RuntimeException e) {
+                                    return CompletableFuture.<D>failedFuture(e);
+                                }
+                                return CompletableFuture.completedFuture(afterPostAction);
+                            })
+                            .thenCompose(Function.identity());
+                })
+                .thenCompose(Function.identity());
+    }
+
+    /**
+     * Schedules timeout of entered state and saves state of committed movement.
+     * Failures are not failures of movement: state is not rolled back and exception triggers are not applied,
+     * exception is thrown to caller of movement.
+     *
+     * @throws StateStoreException if state was not saved by <code>stateStore</code>
+     */
+    private void completeMovement(D data, StateStore<S, D> stateStore, FsmTimeoutScheduler<?, S, T, D> timeoutScheduler) {
+        if (timeoutScheduler != null) {
+            timeoutScheduler.onStateEntered(this, data, stateConfigurationMap.get(data.getState()));
+        }
+        if (stateStore != null) {
+            try {
+                stateStore.save(data);
+            } catch (StateStoreException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                throw new StateStoreException("Unable to save state = '" + data.getState() + "' after movement", e);
+            }
+        }
+    }
+
+    private CompletableFuture<D> handleMovementExceptionAsync(T trigger,
+                                                              FsmMovement<S, T, D> movement,
+                                                              D data,
+                                                              FsmMovementListener<S, T> listener,
+                                                              S initialState,
+                                                              boolean stateCommitted,
+                                                              Throwable error,
+                                                              int exceptionChainHops) {
+        Throwable cause = AsyncFsmMovementAction.unwrapError(error);
+        if (!(cause instanceof Exception)) {
+            // errors are not handled by exception triggers, as in blocking movement
+            return CompletableFuture.failedFuture(cause);
+        }
 
-    private D moveWithExceptionHandling(FsmMovement<S, T, D> movement, D data) {
-        S initialState = data.getState();
         try {
+            rollbackState(data, initialState, movement.getFutureStateOnSuccess(), stateCommitted, (Exception) cause);
 
-            data = applyActionIfExists(movement.getMovementAction(), data);
-            data.setState(movement.getFutureStateOnSuccess());
-            return applyActionIfExists(movement.getPostMovementAction(), data);
+            FsmJournal<S, T, D> journal = this.journal;
+            if (journal != null && !(cause instanceof FsmJournalException)) {
+                journal.append(data, initialState, trigger, data.getState(), FsmJournalOutcome.FAILED);
+            }
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
 
-        } catch (Exception e) {
-            data.setState(initialState);
-            return handleMovementException(movement, data, e);
+        if (exceptionChainHops + 1 > maxExceptionChainHops) {
+            return CompletableFuture.failedFuture(new ExceptionChainDepthExceededException("Exception chain from state = '" + initialState + "' exceeded max hops = " + maxExceptionChainHops, cause));
+        }
+
+        T exceptionTrigger = movement.resolveTriggerOnException(((Exception) cause).getClass());
+        if (listener != null) {
+            listener.onExceptionTrigger(initialState, trigger, ((Exception) cause).getClass(), exceptionTrigger);
+        }
+
+        FsmMovement<S, T, D> exceptionMovement = findMovement(initialState, exceptionTrigger);
+        if (exceptionMovement == null) {
+            return CompletableFuture.failedFuture(noMovementException(initialState, exceptionTrigger));
+        }
+
+        return executeMovementAsync(exceptionTrigger, initialState, exceptionMovement, data, listener, exceptionChainHops + 1, 0);
+    }
+
+    private CompletableFuture<D> handleConcurrentMovementAsync(T trigger,
+                                                               D data,
+                                                               FsmMovementListener<S, T> listener,
+                                                               S initialState,
+                                                               int exceptionChainHops,
+                                                               int concurrentMovementRetries) {
+        if (concurrentMovementPolicy != ConcurrentMovementPolicy.RETRY
+                || concurrentMovementRetries + 1 > maxConcurrentMovementRetries) {
+            return CompletableFuture.failedFuture(concurrentMovementException(initialState, data.getState(), trigger, null));
+        }
+
+        S currentState = data.getState();
+        FsmMovement<S, T, D> movement = findMovement(currentState, trigger);
+        if (movement == null) {
+            return CompletableFuture.failedFuture(noMovementException(currentState, trigger));
         }
+
+        return executeMovementAsync(trigger, currentState, movement, data, listener, exceptionChainHops, concurrentMovementRetries + 1);
     }
 
-    private D handleMovementException(FsmMovement<S, T, D> movement,
-                                      D data,
-                                      Exception e) {
-        Optional<T> concreteExceptionTriggerOpt = movement
-                .getTriggerByConcreteException(e.getClass());
+    private CompletableFuture<D> applyActionAsync(AsyncFsmMovementAction<D> asyncAction,
+                                                  FsmMovementAction<D> action,
+                                                  D data) {
+        try {
+            if (asyncAction != null) {
+                CompletableFuture<D> result = asyncAction.execute(data);
+                return result != null
+                        ? result
+                        : CompletableFuture.failedFuture(new NullPointerException("Async movement action returned null instead of future"));
+            }
+            return CompletableFuture.completedFuture(applyActionIfExists(action, data));
+        } catch (Throwable e) {
+            // errors complete the future too, they are not handled by exception triggers
+            return CompletableFuture.failedFuture(e);
+        }
+    }
 
-        T nextMovementTrigger = concreteExceptionTriggerOpt
-                .orElseGet(movement::getTriggerOnGeneralException);
+    /**
+     * Sets <code>targetState</code> to <code>data</code>. In optimistic mode ({@link ConcurrentMovementPolicy#REJECT},
+     * {@link ConcurrentMovementPolicy#RETRY}) state of {@link AtomicFsmStateHolder} is changed only if it is still
+     * <code>initialState</code>.
+     *
+     * @return <code>false</code> if state was changed concurrently
+     */
+    @SuppressWarnings("unchecked")
+    private boolean commitState(D data, S initialState, S targetState) {
+        if (concurrentMovementPolicy != ConcurrentMovementPolicy.OVERWRITE && data instanceof AtomicFsmStateHolder) {
+            return ((AtomicFsmStateHolder<S>) data).compareAndSetState(initialState, targetState);
+        }
 
-        return move(nextMovementTrigger, data);
+        data.setState(targetState);
+        return true;
     }
 
-    private D applyActionIfExists(Optional<FsmMovementAction<D>> actionOpt, D data) {
-        if (actionOpt.isPresent()) {
-            return actionOpt
-                    .get().execute(data);
+    /**
+     * Restores <code>initialState</code> after failed movement.
+     * In optimistic mode state of {@link AtomicFsmStateHolder} is not touched if it was not committed by movement,
+     * and is restored only if it was not changed concurrently after commit.
+     *
+     * @throws ConcurrentFsmMovementException if committed state was changed concurrently
+     */
+    @SuppressWarnings("unchecked")
+    private void rollbackState(D data, S initialState, S targetState, boolean stateCommitted, Exception cause) {
+        if (concurrentMovementPolicy == ConcurrentMovementPolicy.OVERWRITE || !(data instanceof AtomicFsmStateHolder)) {
+            data.setState(initialState);
+            return;
+        }
+
+        if (stateCommitted && !((AtomicFsmStateHolder<S>) data).compareAndSetState(targetState, initialState)) {
+            throw concurrentMovementException(initialState, data.getState(), null, cause);
+        }
+    }
+
+    private D applyObservedAction(FsmMovementListener<S, T> listener,
+                                  S initialState,
+                                  T trigger,
+                                  FsmMovementAction<D> action,
+                                  D data,
+                                  boolean postMovementAction) {
+        if (action == null) {
+            return data;
+        }
+
+        long startNanos = System.nanoTime();
+        boolean failed = true;
+        try {
+            D result = action.execute(data);
+            failed = false;
+            return result;
+        } finally {
+            long durationNanos = System.nanoTime() - startNanos;
+            if (postMovementAction) {
+                listener.onPostMovementAction(initialState, trigger, durationNanos, failed);
+            } else {
+                listener.onMovementAction(initialState, trigger, durationNanos, failed);
+            }
+        }
+    }
+
+    private D applyActionIfExists(FsmMovementAction<D> action, D data) {
+        if (action != null) {
+            return action.execute(data);
         } else {
             // do nothing
             return data;
         }
     }
 
+    private static ConcurrentFsmMovementException concurrentMovementException(Object initialState,
+                                                                              Object currentState,
+                                                                              Object trigger,
+                                                                              Exception cause) {
+        return new ConcurrentFsmMovementException("State was concurrently changed from '" + initialState + "' to '" + currentState + "' during movement by trigger = '" + trigger + "'", cause);
+    }
+
+    private static NoMovementByTriggerInStateException noMovementException(Object state, Object trigger) {
+        return new NoMovementByTriggerInStateException("Unable to find movement from state = '" + state + "' by trigger = '" + trigger + "'");
+    }
+
 }
@@ -26,11 +26,27 @@ package o.horbenko.fsm.impl;
 import lombok.NonNull;
 import o.horbenko.fsm.FiniteStateMachine;
 import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.error.InvalidFsmConfigurationException;
+import o.horbenko.fsm.error.PipelineConfigurationException;
+import o.horbenko.fsm.metrics.FsmMovementListener;
+import o.horbenko.fsm.metrics.PipelineTrace;
+import o.horbenko.fsm.metrics.PipelineTracer;
+import o.horbenko.fsm.pipeline.CompiledFsmPipeline;
 import o.horbenko.fsm.pipeline.FsmPipeline;
+import o.horbenko.fsm.result.FsmMoveResult;
 import o.horbenko.fsm.state.FsmState;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.UnaryOperator;
 
 /**
  * Extends {@link AbstractCoreFsm} with basic {@link o.horbenko.fsm.CoreFsm#move(Object, FsmStateHolder)} functionality.
@@ -46,6 +62,10 @@ public class AbstractFiniteStateMachine
         extends AbstractCoreFsm<S, T, D>
         implements FiniteStateMachine<S, T, D> {
 
+    private Executor bulkExecutor = ForkJoinPool.commonPool();
+    private int bulkParallelism = ForkJoinPool.getCommonPoolParallelism();
+    private PipelineTracer<S, T> pipelineTracer;
+
     public AbstractFiniteStateMachine() {
         super();
     }
@@ -54,6 +74,41 @@ public class AbstractFiniteStateMachine
         super(stateConfigurationMap);
     }
 
+    /**
+     * Configures executor of bulk movements ({@link #moveAll(Object, Collection)},
+     * {@link #moveAllOnPipeline(Collection, FsmPipeline)}).
+     * By default partitions are run on {@link ForkJoinPool#commonPool()} with its parallelism,
+     * that is suitable only for CPU-bound actions. Movements with blocking actions (I/O, locks) must be run
+     * on dedicated executor, e.g. fixed thread pool sized for expected blocking, with the same <code>parallelism</code>,
+     * otherwise they block threads of common pool, that are shared with the whole JVM.
+     *
+     * @param bulkExecutor    executor to run partitions of bulk movement on
+     * @param bulkParallelism max count of partitions, that bulk movement is split into
+     * @return current FSM
+     */
+    public AbstractFiniteStateMachine<S, T, D> withBulkExecutor(@NonNull Executor bulkExecutor,
+                                                               int bulkParallelism) {
+        if (bulkParallelism < 1) {
+            throw new InvalidFsmConfigurationException("Bulk parallelism must be positive, but was " + bulkParallelism);
+        }
+
+        this.bulkExecutor = bulkExecutor;
+        this.bulkParallelism = bulkParallelism;
+        return this;
+    }
+
+    /**
+     * Enables sampled tracing of pipeline runs. Every movement of sampled run is recorded as span
+     * with action durations and taken exception route.
+     *
+     * @param pipelineTracer tracer or <code>null</code> to disable tracing
+     * @return current FSM
+     */
+    public AbstractFiniteStateMachine<S, T, D> withPipelineTracer(PipelineTracer<S, T> pipelineTracer) {
+        this.pipelineTracer = pipelineTracer;
+        return this;
+    }
+
     /**
      * StateMachine tries to catch all exceptions in transition action, but will throw exception
      * if no exception logic found or on transition to exception state.
@@ -77,6 +132,7 @@ public class AbstractFiniteStateMachine
                             @NonNull FsmPipeline<S, T> pipelineToMoveOn) {
 
         D result = initialDataToProcess;
+        PipelineTrace<S, T> trace = startTrace();
 
         /*
          * Terminates in case, when pipeline does not contains trigger for next movement by current state
@@ -88,9 +144,181 @@ public class AbstractFiniteStateMachine
 
             if (movementTriggerOpt.isEmpty()) { // exit point
                 return result;
-            } else {
+            } else if (trace == null) {
                 result = move(movementTriggerOpt.get(), result);
+            } else {
+                try {
+                    result = move(movementTriggerOpt.get(), result, trace);
+                } finally {
+                    trace.endStep();
+                }
+            }
+        }
+    }
+
+    /**
+     * Movements that are completed synchronously (blocking actions) are processed in loop,
+     * so long pipelines do not grow the stack.
+     */
+    @Override
+    public CompletableFuture<D> moveOnPipelineAsync(@NonNull D initialDataToProcess,
+                                                    @NonNull FsmPipeline<S, T> pipelineToMoveOn) {
+        return moveOnPipelineAsync(initialDataToProcess, pipelineToMoveOn, startTrace());
+    }
+
+    private CompletableFuture<D> moveOnPipelineAsync(D initialDataToProcess,
+                                                     FsmPipeline<S, T> pipelineToMoveOn,
+                                                     PipelineTrace<S, T> trace) {
+        D result = initialDataToProcess;
+
+        while (true) {
+
+            Optional<T> movementTriggerOpt = pipelineToMoveOn
+                    .getTriggerForNextMovementByState(result.getState());
+
+            if (movementTriggerOpt.isEmpty()) { // exit point
+                return CompletableFuture.completedFuture(result);
+            }
+
+            CompletableFuture<D> movementResult = trace == null
+                    ? moveAsync(movementTriggerOpt.get(), result)
+                    : moveAsync(movementTriggerOpt.get(), result, trace);
+
+            if (!movementResult.isDone()) {
+                return movementResult
+                        .whenComplete((next, error) -> endStep(trace))
+                        .thenCompose(next -> moveOnPipelineAsync(next, pipelineToMoveOn, trace));
+            }
+
+            endStep(trace);
+            if (movementResult.isCompletedExceptionally()) {
+                return movementResult;
+            }
+            result = movementResult.join();
+        }
+    }
+
+    @Override
+    public CompiledFsmPipeline<S, T, D> compilePipeline(@NonNull FsmPipeline<S, T> pipeline) {
+        return new CompiledFsmPipeline<>(this, pipeline, this::findMovement);
+    }
+
+    /**
+     * Follows resolved movements of compiled pipeline. Lookup of next step by state is done only
+     * when movement ended not in its target state (movement by exception trigger).
+     */
+    @Override
+    public D moveOnPipeline(@NonNull D initialDataToProcess,
+                            @NonNull CompiledFsmPipeline<S, T, D> pipelineToMoveOn) {
+
+        if (pipelineToMoveOn.getFsm() != this) {
+            throw new PipelineConfigurationException("Pipeline was compiled by another FSM");
+        }
+
+        D result = initialDataToProcess;
+        CompiledFsmPipeline.Step<S, T, D> step = pipelineToMoveOn.getStepByState(result.getState());
+        PipelineTrace<S, T> trace = step == null ? null : startTrace();
+
+        while (step != null) { // exit point - no step from current state
+
+            if (trace == null) {
+                result = executeMovement(step.getTrigger(), step.getState(), step.getMovement(), result);
+            } else {
+                try {
+                    result = executeMovement(step.getTrigger(), step.getState(), step.getMovement(), result, trace);
+                } finally {
+                    trace.endStep();
+                }
             }
+
+            S currentState = result.getState();
+            step = Objects.equals(currentState, step.getTargetState())
+                    ? step.getNext()
+                    : pipelineToMoveOn.getStepByState(currentState);
+        }
+
+        return result;
+    }
+
+    private PipelineTrace<S, T> startTrace() {
+        PipelineTracer<S, T> tracer = pipelineTracer;
+        return tracer == null
+                ? null
+                : tracer.startTrace(getMovementListener());
+    }
+
+    private static void endStep(PipelineTrace<?, ?> trace) {
+        if (trace != null) {
+            trace.endStep();
+        }
+    }
+
+    /**
+     * Moves every context of <code>dataToProcess</code> by <code>trigger</code> in parallel.
+     * Contexts are split into partitions, that are executed on bulk executor (see {@link #withBulkExecutor(Executor, int)}).
+     * Blocks until all movements are done. Failure of one movement does not affect others.
+     * Blocking actions require dedicated bulk executor instead of default common pool.
+     *
+     * @param trigger       trigger for movement to the next state
+     * @param dataToProcess independent contexts to move
+     * @return results of movements in iteration order of <code>dataToProcess</code>
+     */
+    public List<FsmMoveResult<D>> moveAll(T trigger, @NonNull Collection<D> dataToProcess) {
+        return applyToAll(dataToProcess, data -> move(trigger, data));
+    }
+
+    /**
+     * Same as {@link #moveAll(Object, Collection)}, but moves every context on pipeline.
+     */
+    public List<FsmMoveResult<D>> moveAllOnPipeline(@NonNull Collection<D> dataToProcess,
+                                                    @NonNull FsmPipeline<S, T> pipelineToMoveOn) {
+        return applyToAll(dataToProcess, data -> moveOnPipeline(data, pipelineToMoveOn));
+    }
+
+    /**
+     * Same as {@link #moveAll(Object, Collection)}, but moves every context on compiled pipeline.
+     */
+    public List<FsmMoveResult<D>> moveAllOnPipeline(@NonNull Collection<D> dataToProcess,
+                                                    @NonNull CompiledFsmPipeline<S, T, D> pipelineToMoveOn) {
+        return applyToAll(dataToProcess, data -> moveOnPipeline(data, pipelineToMoveOn));
+    }
+
+    private List<FsmMoveResult<D>> applyToAll(Collection<D> dataToProcess, UnaryOperator<D> movement) {
+        List<D> items = new ArrayList<>(dataToProcess);
+        if (items.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // partitions set results by own indexes
+        List<FsmMoveResult<D>> results = new ArrayList<>(Collections.<FsmMoveResult<D>>nCopies(items.size(), null));
+
+        int partitions = Math.min(bulkParallelism, items.size());
+        int partitionSize = (items.size() + partitions - 1) / partitions;
+
+        List<CompletableFuture<Void>> partitionResults = new ArrayList<>(partitions);
+        for (int from = 0; from < items.size(); from += partitionSize) {
+            int partitionFrom = from;
+            int partitionTo = Math.min(items.size(), from + partitionSize);
+
+            partitionResults.add(CompletableFuture.runAsync(() -> {
+                for (int i = partitionFrom; i < partitionTo; i++) {
+                    results.set(i, applySafely(movement, items.get(i)));
+                }
+            }, bulkExecutor));
+        }
+
+        CompletableFuture
+                .allOf(partitionResults.toArray(new CompletableFuture<?>[0]))
+                .join();
+
+        return results;
+    }
+
+    private FsmMoveResult<D> applySafely(UnaryOperator<D> movement, D data) {
+        try {
+            return FsmMoveResult.success(movement.apply(data));
+        } catch (Exception e) {
+            return FsmMoveResult.failure(data, e);
         }
     }
 
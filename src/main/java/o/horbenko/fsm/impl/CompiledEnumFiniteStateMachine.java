@@ -0,0 +1,133 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.impl;
+
+import lombok.NonNull;
+import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.error.InvalidFsmConfigurationException;
+import o.horbenko.fsm.movement.FsmMovement;
+import o.horbenko.fsm.state.FsmState;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link AbstractFiniteStateMachine} with configuration frozen into dense
+ * <code>[stateOrdinal][triggerOrdinal]</code> movement table.
+ * Movement lookup is two array index operations instead of two {@link java.util.HashMap} lookups.
+ * <p>
+ * Can be used only when both states and triggers are enums. States and triggers of other types
+ * are resolved by map lookup of {@link AbstractCoreFsm}.
+ * Configuration can not be changed after compilation.
+ *
+ * @param <S> State type (enum)
+ * @param <T> Trigger (event) type (enum)
+ * @param <D> {@link FsmStateHolder} implementation
+ * @author Oleksii Horbenko
+ */
+public class CompiledEnumFiniteStateMachine
+        <S, T, D extends FsmStateHolder<S>>
+        extends AbstractFiniteStateMachine<S, T, D> {
+
+    private final FsmMovement<S, T, D>[][] movementTable;
+    private final Class<?> stateType;
+    private final Class<?> triggerType;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public CompiledEnumFiniteStateMachine(@NonNull Map<S, FsmState<S, T, D>> stateConfigurationMap) {
+        super(Collections.unmodifiableMap(new HashMap<>(stateConfigurationMap)));
+
+        if (stateConfigurationMap.isEmpty()) {
+            throw new InvalidFsmConfigurationException("Unable to compile FSM without states");
+        }
+
+        this.stateType = enumTypeOf(stateConfigurationMap.keySet().iterator().next(), "state");
+        this.triggerType = resolveTriggerType(stateConfigurationMap);
+        int triggersCount = triggerType == null ? 0 : triggerType.getEnumConstants().length;
+
+        this.movementTable = new FsmMovement[stateType.getEnumConstants().length][];
+
+        for (Map.Entry<S, FsmState<S, T, D>> stateEntry : stateConfigurationMap.entrySet()) {
+            Map<T, FsmMovement<S, T, D>> possibleMovements = stateEntry.getValue().getPossibleMovements();
+            if (possibleMovements.isEmpty()) {
+                continue;
+            }
+
+            FsmMovement<S, T, D>[] row = new FsmMovement[triggersCount];
+            for (Map.Entry<T, FsmMovement<S, T, D>> movementEntry : possibleMovements.entrySet()) {
+                row[ordinalOf(movementEntry.getKey(), triggerType, "trigger")] = movementEntry.getValue();
+            }
+
+            this.movementTable[ordinalOf(stateEntry.getKey(), stateType, "state")] = row;
+        }
+    }
+
+    @Override
+    protected FsmMovement<S, T, D> findMovement(S state, T trigger) {
+        if (!isOfType(state, stateType) || !isOfType(trigger, triggerType)) {
+            // null or value of other type, that is not indexed by movement table
+            return super.findMovement(state, trigger);
+        }
+
+        FsmMovement<S, T, D>[] row = movementTable[((Enum<?>) state).ordinal()];
+        return row == null
+                ? null
+                : row[((Enum<?>) trigger).ordinal()];
+    }
+
+    @Override
+    public AbstractCoreFsm<S, T, D> withState(S state, FsmState<S, T, D> stateConfig) {
+        throw new InvalidFsmConfigurationException("Compiled FSM configuration can not be changed. State = " + state);
+    }
+
+    private static <S, T, D extends FsmStateHolder<S>>
+    Class<?> resolveTriggerType(Map<S, FsmState<S, T, D>> stateConfigurationMap) {
+        for (FsmState<S, T, D> stateConfig : stateConfigurationMap.values()) {
+            for (T trigger : stateConfig.getPossibleMovements().keySet()) {
+                return enumTypeOf(trigger, "trigger");
+            }
+        }
+        return null;
+    }
+
+    private static Class<?> enumTypeOf(Object value, String kind) {
+        if (!(value instanceof Enum)) {
+            throw new InvalidFsmConfigurationException("Compiled FSM supports only enum " + kind + "s, but got " + kind + " = " + value);
+        }
+        return ((Enum<?>) value).getDeclaringClass();
+    }
+
+    private static boolean isOfType(Object value, Class<?> enumType) {
+        return value instanceof Enum && ((Enum<?>) value).getDeclaringClass() == enumType;
+    }
+
+    private static int ordinalOf(Object value, Class<?> enumType, String kind) {
+        if (enumTypeOf(value, kind) != enumType) {
+            throw new InvalidFsmConfigurationException("All " + kind + "s of compiled FSM must be of type " + enumType.getName() + ", but got " + kind + " = " + value);
+        }
+        return ((Enum<?>) value).ordinal();
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.impl;
+
+import lombok.NonNull;
+import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.error.FsmValidationException;
+import o.horbenko.fsm.error.InvalidFsmConfigurationException;
+import o.horbenko.fsm.movement.FsmMovement;
+import o.horbenko.fsm.movement.GuardedFsmMovement;
+import o.horbenko.fsm.state.FsmState;
+import o.horbenko.fsm.validation.FsmGraphValidator;
+import o.horbenko.fsm.validation.FsmValidationIssue;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link AbstractFiniteStateMachine} with configuration, validated by {@link FsmGraphValidator} and frozen:
+ * states and movements are copied on creation and validated copies are used for movements,
+ * so later changes of passed configuration (e.g. by builder) do not affect FSM.
+ * Exception and timeout triggers are guaranteed to resolve.
+ * <p>
+ * Movements are resolved and executed as by {@link AbstractCoreFsm}: validation is done once on creation,
+ * but per-call checks of movement are kept, so move of validated FSM is not cheaper than move of not validated one.
+ * Configuration can not be changed after creation.
+ *
+ * @param <S> State type
+ * @param <T> Trigger (event) type
+ * @param <D> {@link FsmStateHolder} implementation
+ * @author Oleksii Horbenko
+ */
+public class ImmutableFiniteStateMachine
+        <S, T, D extends FsmStateHolder<S>>
+        extends AbstractFiniteStateMachine<S, T, D> {
+
+    /**
+     * @param stateConfigurationMap configurations of states
+     * @param initialStates         states of new data, see {@link FsmGraphValidator#validate(Map, Collection)}
+     * @throws FsmValidationException if FSM graph is invalid
+     */
+    public ImmutableFiniteStateMachine(@NonNull Map<S, FsmState<S, T, D>> stateConfigurationMap,
+                                       @NonNull Collection<S> initialStates) {
+        this(validatedCopy(stateConfigurationMap, initialStates));
+    }
+
+    private ImmutableFiniteStateMachine(Map<S, FsmState<S, T, D>> validatedStates) {
+        super(validatedStates);
+    }
+
+    @Override
+    public AbstractCoreFsm<S, T, D> withState(S state, FsmState<S, T, D> stateConfig) {
+        throw new InvalidFsmConfigurationException("Immutable FSM configuration can not be changed. State = " + state);
+    }
+
+    /**
+     * Copies states and movements and validates copies by {@link FsmGraphValidator}.
+     * Used by FSM implementations, that must not be affected by later changes of passed configuration.
+     * Target states of copied movements are replaced by equal state keys, so lookup of state after movement
+     * matches key by reference.
+     *
+     * @param stateConfigurationMap configurations of states
+     * @param initialStates         states of new data, see {@link FsmGraphValidator#validate(Map, Collection)}
+     * @return read-only map of validated copies
+     * @throws FsmValidationException if FSM graph is invalid
+     */
+    public static <S, T, D extends FsmStateHolder<S>> Map<S, FsmState<S, T, D>> validatedCopy(@NonNull Map<S, FsmState<S, T, D>> stateConfigurationMap,
+                                                                                            @NonNull Collection<S> initialStates) {
+        Map<S, FsmState<S, T, D>> states = new HashMap<>(stateConfigurationMap.size() * 2);
+        for (Map.Entry<S, FsmState<S, T, D>> stateEntry : stateConfigurationMap.entrySet()) {
+            states.put(stateEntry.getKey(), copy(stateEntry.getValue()));
+        }
+
+        Map<S, S> stateKeys = new HashMap<>(states.size() * 2);
+        states.keySet().forEach(state -> stateKeys.put(state, state));
+        for (FsmState<S, T, D> state : states.values()) {
+            state.getPossibleMovements().values().forEach(movement -> useStateKeyAsTarget(movement, stateKeys));
+        }
+
+        List<FsmValidationIssue> issues = FsmGraphValidator.validate(states, initialStates);
+        if (!issues.isEmpty()) {
+            throw new FsmValidationException(issues);
+        }
+        return Collections.unmodifiableMap(states);
+    }
+
+    private static <S, T, D extends FsmStateHolder<S>> void useStateKeyAsTarget(FsmMovement<S, T, D> movement,
+                                                                                Map<S, S> stateKeys) {
+        if (movement == null) {
+            return;
+        }
+        S stateKey = stateKeys.get(movement.getFutureStateOnSuccess());
+        if (stateKey != null) {
+            movement.setFutureStateOnSuccess(stateKey);
+        }
+        if (movement instanceof GuardedFsmMovement) {
+            GuardedFsmMovement<S, T, D> guardedMovement = (GuardedFsmMovement<S, T, D>) movement;
+            guardedMovement.getCandidates().forEach(candidate -> useStateKeyAsTarget(candidate, stateKeys));
+            useStateKeyAsTarget(guardedMovement.getFallbackOrNull(), stateKeys);
+        }
+    }
+
+    private static <S, T, D extends FsmStateHolder<S>> FsmState<S, T, D> copy(FsmState<S, T, D> state) {
+        FsmState<S, T, D> copy = new FsmState<>();
+        state.getPossibleMovements().forEach((trigger, movement) -> copy.withMovement(trigger, movement == null
+                ? null
+                : movement.copy()));
+        if (state.hasTimeout()) {
+            copy.withTimeout(Duration.ofMillis(state.getTimeoutMillis()), state.getTimeoutTrigger());
+        }
+        return copy;
+    }
+
+}
@@ -0,0 +1,203 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Generates bytecode of {@link MovementDispatcher} implementation:
+ * <pre>
+ * public final class MethodHandleDispatcher implements MovementDispatcher {
+ *     private static final MethodHandle DISPATCHER =
+ *             (MethodHandle) ((Supplier) MethodHandleDispatcher.class.getClassLoader()).get();
+ *
+ *     public FsmMovement find(Object state, Object trigger) {
+ *         return (FsmMovement) DISPATCHER.invokeExact(state, trigger);
+ *     }
+ * }
+ * </pre>
+ * Method handle in <code>static final</code> field is constant for JIT, so the whole tree is inlined into
+ * <code>find</code>. Java 11 has no hidden classes, so the class is defined by its own class loader,
+ * that supplies the tree, and is unloaded together with the loader. The class uses only public types,
+ * as it is not in the runtime package of this library.
+ *
+ * @author Oleksii Horbenko
+ */
+final class MethodHandleDispatcherClass {
+
+    private static final int JAVA_8_CLASS_VERSION = 52;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final byte CONSTANT_UTF8 = 1;
+    private static final byte CONSTANT_CLASS = 7;
+    private static final byte CONSTANT_FIELDREF = 9;
+    private static final byte CONSTANT_METHODREF = 10;
+    private static final byte CONSTANT_INTERFACE_METHODREF = 11;
+    private static final byte CONSTANT_NAME_AND_TYPE = 12;
+
+    private static final String PACKAGE = "o/horbenko/fsm/impl/";
+    static final String CLASS_NAME = PACKAGE + "MethodHandleDispatcher";
+    private static final String FIND_DESCRIPTOR = "(Ljava/lang/Object;Ljava/lang/Object;)Lo/horbenko/fsm/movement/FsmMovement;";
+
+    private MethodHandleDispatcherClass() {
+    }
+
+    /**
+     * Class loader of generated class must implement {@link java.util.function.Supplier} of the tree.
+     */
+    static byte[] generate() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(JAVA_8_CLASS_VERSION);
+
+            // constant pool of 35 entries, indexes are referenced by code below
+            out.writeShort(35 + 1);
+            utf8(out, CLASS_NAME);                                                  // 1
+            reference(out, CONSTANT_CLASS, 1);                                      // 2 this class
+            utf8(out, "java/lang/Object");                                          // 3
+            reference(out, CONSTANT_CLASS, 3);                                      // 4 super class
+            utf8(out, PACKAGE + "MovementDispatcher");                              // 5
+            reference(out, CONSTANT_CLASS, 5);                                      // 6 interface
+            utf8(out, "DISPATCHER");                                                // 7
+            utf8(out, "Ljava/lang/invoke/MethodHandle;");                           // 8
+            reference(out, CONSTANT_NAME_AND_TYPE, 7, 8);                           // 9
+            reference(out, CONSTANT_FIELDREF, 2, 9);                                // 10 DISPATCHER field
+            utf8(out, "<init>");                                                    // 11
+            utf8(out, "()V");                                                       // 12
+            reference(out, CONSTANT_NAME_AND_TYPE, 11, 12);                         // 13
+            reference(out, CONSTANT_METHODREF, 4, 13);                              // 14 Object.<init>
+            utf8(out, "<clinit>");                                                  // 15
+            utf8(out, "java/lang/Class");                                           // 16
+            reference(out, CONSTANT_CLASS, 16);                                     // 17
+            utf8(out, "getClassLoader");                                            // 18
+            utf8(out, "()Ljava/lang/ClassLoader;");                                 // 19
+            reference(out, CONSTANT_NAME_AND_TYPE, 18, 19);                         // 20
+            reference(out, CONSTANT_METHODREF, 17, 20);                             // 21 Class.getClassLoader
+            utf8(out, "find");                                                      // 22
+            utf8(out, FIND_DESCRIPTOR);                                             // 23
+            utf8(out, "java/lang/invoke/MethodHandle");                             // 24
+            reference(out, CONSTANT_CLASS, 24);                                     // 25
+            utf8(out, "invokeExact");                                               // 26
+            reference(out, CONSTANT_NAME_AND_TYPE, 26, 23);                         // 27
+            reference(out, CONSTANT_METHODREF, 25, 27);                             // 28 MethodHandle.invokeExact
+            utf8(out, "Code");                                                      // 29
+            utf8(out, "java/util/function/Supplier");                               // 30
+            reference(out, CONSTANT_CLASS, 30);                                     // 31
+            utf8(out, "get");                                                       // 32
+            utf8(out, "()Ljava/lang/Object;");                                      // 33
+            reference(out, CONSTANT_NAME_AND_TYPE, 32, 33);                         // 34
+            reference(out, CONSTANT_INTERFACE_METHODREF, 31, 34);                   // 35 Supplier.get
+
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(2);
+            out.writeShort(4);
+            out.writeShort(1);
+            out.writeShort(6);
+
+            // fields
+            out.writeShort(1);
+            out.writeShort(ACC_PRIVATE | ACC_STATIC | ACC_FINAL);
+            out.writeShort(7);
+            out.writeShort(8);
+            out.writeShort(0);
+
+            // methods
+            out.writeShort(3);
+            method(out, ACC_PUBLIC, 11, 12, 1, 1, new byte[]{
+                    0x2a,                       // aload_0
+                    (byte) 0xb7, 0x00, 0x0e,    // invokespecial Object.<init>
+                    (byte) 0xb1                 // return
+            });
+            method(out, ACC_STATIC, 15, 12, 1, 0, new byte[]{
+                    0x12, 0x02,                 // ldc this class
+                    (byte) 0xb6, 0x00, 0x15,    // invokevirtual Class.getClassLoader
+                    (byte) 0xc0, 0x00, 0x1f,    // checkcast Supplier
+                    (byte) 0xb9, 0x00, 0x23,    // invokeinterface Supplier.get
+                    0x01, 0x00,                 // count of arguments with receiver, 0
+                    (byte) 0xc0, 0x00, 0x19,    // checkcast MethodHandle
+                    (byte) 0xb3, 0x00, 0x0a,    // putstatic DISPATCHER
+                    (byte) 0xb1                 // return
+            });
+            method(out, ACC_PUBLIC, 22, 23, 3, 3, new byte[]{
+                    (byte) 0xb2, 0x00, 0x0a,    // getstatic DISPATCHER
+                    0x2b,                       // aload_1
+                    0x2c,                       // aload_2
+                    (byte) 0xb6, 0x00, 0x1c,    // invokevirtual MethodHandle.invokeExact
+                    (byte) 0xb0                 // areturn
+            });
+
+            // class attributes
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void utf8(DataOutputStream out, String value) throws IOException {
+        out.writeByte(CONSTANT_UTF8);
+        out.writeUTF(value);
+    }
+
+    private static void reference(DataOutputStream out, byte tag, int... indexes) throws IOException {
+        out.writeByte(tag);
+        for (int index : indexes) {
+            out.writeShort(index);
+        }
+    }
+
+    private static void method(DataOutputStream out,
+                               int access,
+                               int name,
+                               int descriptor,
+                               int maxStack,
+                               int maxLocals,
+                               byte[] code) throws IOException {
+        out.writeShort(access);
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);
+
+        // Code attribute without exception table and attributes
+        out.writeShort(29);
+        out.writeInt(2 + 2 + 4 + code.length + 2 + 2);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0);
+        out.writeShort(0);
+    }
+
+}
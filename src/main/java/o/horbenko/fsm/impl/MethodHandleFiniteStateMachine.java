@@ -0,0 +1,254 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.impl;
+
+import lombok.NonNull;
+import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.error.InvalidFsmConfigurationException;
+import o.horbenko.fsm.movement.FsmMovement;
+import o.horbenko.fsm.state.FsmState;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * {@link AbstractFiniteStateMachine} with movement lookup specialized at runtime into {@link MethodHandle} tree.
+ * <p>
+ * Dispatcher <code>(state, trigger) -&gt; movement</code> is a binary search by hash code of state, followed by
+ * the same search by hash code of trigger. States, triggers and movements are bound into the tree as constants,
+ * so lookup has no hash tables, no {@link FsmState} indirection and no boxing.
+ * <p>
+ * JIT inlines method handle only if it is constant, so every FSM defines its own small class
+ * (see {@link MethodHandleDispatcherClass}) with the tree in <code>static final</code> field.
+ * The class is defined by its own class loader, so it is unloaded together with the FSM
+ * and FSMs can be rebuilt at runtime.
+ * <p>
+ * Tree of large FSM is too big to be compiled as one method and is executed by lambda forms instead,
+ * that is much slower than hash table lookup. So FSM with more than {@value #MAX_SPECIALIZED_STATES} states
+ * is not specialized and uses lookup of {@link AbstractFiniteStateMachine}.
+ * <p>
+ * Configuration can not be changed after creation.
+ *
+ * @param <S> State type
+ * @param <T> Trigger (event) type
+ * @param <D> {@link FsmStateHolder} implementation
+ * @author Oleksii Horbenko
+ */
+public class MethodHandleFiniteStateMachine
+        <S, T, D extends FsmStateHolder<S>>
+        extends AbstractFiniteStateMachine<S, T, D> {
+
+    private static final MethodType DISPATCHER_TYPE = MethodType.methodType(FsmMovement.class, Object.class, Object.class);
+    private static final MethodType TRIGGER_DISPATCHER_TYPE = MethodType.methodType(FsmMovement.class, Object.class);
+
+    private static final MethodHandle HASH;
+    private static final MethodHandle SAME;
+    private static final MethodHandle LESS_THAN;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            HASH = lookup.findStatic(MethodHandleFiniteStateMachine.class, "hash",
+                    MethodType.methodType(int.class, Object.class));
+            SAME = lookup.findStatic(MethodHandleFiniteStateMachine.class, "same",
+                    MethodType.methodType(boolean.class, Object.class, Object.class));
+            LESS_THAN = lookup.findStatic(MethodHandleFiniteStateMachine.class, "lessThan",
+                    MethodType.methodType(boolean.class, int.class, int.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    static final int MAX_SPECIALIZED_STATES = 32;
+
+    /**
+     * <code>null</code> if FSM is too large to be specialized
+     */
+    private final MovementDispatcher dispatcher;
+
+    public MethodHandleFiniteStateMachine(@NonNull Map<S, FsmState<S, T, D>> stateConfigurationMap) {
+        super(Collections.unmodifiableMap(new HashMap<>(stateConfigurationMap)));
+
+        if (stateConfigurationMap.size() > MAX_SPECIALIZED_STATES) {
+            this.dispatcher = null;
+            return;
+        }
+
+        Map<Object, MethodHandle> triggerDispatcherByState = new HashMap<>(stateConfigurationMap.size() * 2);
+        for (Map.Entry<S, FsmState<S, T, D>> stateEntry : stateConfigurationMap.entrySet()) {
+            Map<Object, MethodHandle> movementByTrigger = new HashMap<>();
+            for (Map.Entry<T, FsmMovement<S, T, D>> movementEntry : stateEntry.getValue().getPossibleMovements().entrySet()) {
+                movementByTrigger.put(movementEntry.getKey(), MethodHandles.dropArguments(
+                        MethodHandles.constant(FsmMovement.class, movementEntry.getValue()), 0, Object.class));
+            }
+
+            // (state, trigger) -> movement, state is not used by trigger dispatcher
+            triggerDispatcherByState.put(stateEntry.getKey(), MethodHandles.dropArguments(
+                    searchTree(movementByTrigger, TRIGGER_DISPATCHER_TYPE), 0, Object.class));
+        }
+
+        this.dispatcher = defineDispatcher(searchTree(triggerDispatcherByState, DISPATCHER_TYPE));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected FsmMovement<S, T, D> findMovement(S state, T trigger) {
+        if (dispatcher == null) {
+            return super.findMovement(state, trigger);
+        }
+        return (FsmMovement<S, T, D>) dispatcher.find(state, trigger);
+    }
+
+    /**
+     * @return <code>true</code> if movement lookup is specialized into method handle tree
+     */
+    public boolean isSpecialized() {
+        return dispatcher != null;
+    }
+
+    @Override
+    public AbstractCoreFsm<S, T, D> withState(S state, FsmState<S, T, D> stateConfig) {
+        throw new InvalidFsmConfigurationException("Specialized FSM configuration can not be changed. State = " + state);
+    }
+
+    /**
+     * Defines dispatcher class, that binds <code>tree</code> into its <code>static final</code> field on initialization.
+     */
+    private static MovementDispatcher defineDispatcher(MethodHandle tree) {
+        try {
+            Class<?> dispatcherClass = new DispatcherClassLoader(tree).define(MethodHandleDispatcherClass.generate());
+            return (MovementDispatcher) dispatcherClass.getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to define movement dispatcher", e);
+        }
+    }
+
+    /**
+     * @param targetByKey targets of type <code>type</code>, first argument of <code>type</code> is key
+     * @return handle of type <code>type</code>, that invokes target by key (first argument)
+     * or returns <code>null</code> if there is no target for key
+     */
+    private static MethodHandle searchTree(Map<Object, MethodHandle> targetByKey, MethodType type) {
+        List<Object> keys = new ArrayList<>(targetByKey.keySet());
+        keys.sort(Comparator.comparingInt(MethodHandleFiniteStateMachine::hash));
+
+        // (int hash, key, ...) -> target
+        MethodType hashedType = type.insertParameterTypes(0, int.class);
+        MethodHandle tree = searchTree(keys, 0, keys.size(), targetByKey, hashedType);
+
+        // hash of key is computed once
+        return MethodHandles.foldArguments(tree, HASH);
+    }
+
+    private static MethodHandle searchTree(List<Object> sortedKeys,
+                                           int from,
+                                           int to,
+                                           Map<Object, MethodHandle> targetByKey,
+                                           MethodType hashedType) {
+        if (from == to) {
+            return MethodHandles.empty(hashedType);
+        }
+
+        int firstHash = hash(sortedKeys.get(from));
+        if (hash(sortedKeys.get(to - 1)) == firstHash) {
+            // keys with the same hash: chain of equality checks
+            MethodHandle chain = MethodHandles.empty(hashedType);
+            for (int i = to - 1; i >= from; i--) {
+                Object key = sortedKeys.get(i);
+                MethodHandle test = MethodHandles.dropArguments(MethodHandles.insertArguments(SAME, 0, key), 0, int.class);
+                MethodHandle target = MethodHandles.dropArguments(targetByKey.get(key), 0, int.class);
+                chain = MethodHandles.guardWithTest(test, target, chain);
+            }
+            return chain;
+        }
+
+        // split by hash of middle key, keys with equal hashes stay in one half
+        int middle = (from + to) >>> 1;
+        int pivot = hash(sortedKeys.get(middle));
+        while (middle > from && hash(sortedKeys.get(middle - 1)) == pivot) {
+            middle--;
+        }
+        if (middle == from) {
+            while (middle < to && hash(sortedKeys.get(middle)) == pivot) {
+                middle++;
+            }
+            pivot = hash(sortedKeys.get(middle));
+        }
+
+        MethodHandle test = MethodHandles.insertArguments(LESS_THAN, 1, pivot);
+        return MethodHandles.guardWithTest(test,
+                searchTree(sortedKeys, from, middle, targetByKey, hashedType),
+                searchTree(sortedKeys, middle, to, targetByKey, hashedType));
+    }
+
+    /**
+     * Loader of one dispatcher class, that supplies the tree to its static initializer.
+     * Only the dispatcher instance of FSM references the class, so both are unloaded with FSM.
+     */
+    private static final class DispatcherClassLoader extends ClassLoader implements Supplier<MethodHandle> {
+
+        private MethodHandle tree;
+
+        private DispatcherClassLoader(MethodHandle tree) {
+            super(MethodHandleFiniteStateMachine.class.getClassLoader());
+            this.tree = tree;
+        }
+
+        private Class<?> define(byte[] bytecode) {
+            return defineClass(MethodHandleDispatcherClass.CLASS_NAME.replace('/', '.'), bytecode, 0, bytecode.length);
+        }
+
+        /**
+         * Called once by static initializer of dispatcher class.
+         */
+        @Override
+        public synchronized MethodHandle get() {
+            MethodHandle tree = this.tree;
+            this.tree = null;
+            return tree;
+        }
+    }
+
+    private static int hash(Object key) {
+        return Objects.hashCode(key);
+    }
+
+    private static boolean same(Object constant, Object key) {
+        return constant == key || Objects.equals(constant, key);
+    }
+
+    private static boolean lessThan(int hash, int pivot) {
+        return hash < pivot;
+    }
+
+}
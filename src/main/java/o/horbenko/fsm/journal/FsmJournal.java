@@ -0,0 +1,54 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.journal;
+
+import o.horbenko.fsm.FsmStateHolder;
+
+/**
+ * Journal of movements. Registered by {@link o.horbenko.fsm.impl.AbstractCoreFsm#withJournal(FsmJournal)}.
+ * <p>
+ * FSM appends record on every change of state: {@link FsmJournalOutcome#MOVED} after state was set to target state
+ * of movement (before post-movement action) and {@link FsmJournalOutcome#FAILED} after failed movement was rolled back.
+ * So the last record of entity always contains its current state.
+ * <p>
+ * Append is executed on the hot path. Exception thrown by journal after state change is handled
+ * as exception of movement (state is rolled back).
+ *
+ * @param <S> State
+ * @param <T> Trigger (Event)
+ * @param <D> {@link FsmStateHolder} implementation
+ * @author Oleksii Horbenko
+ */
+public interface FsmJournal<S, T, D extends FsmStateHolder<S>> {
+
+    /**
+     * @param data      moved entity
+     * @param fromState state before movement
+     * @param trigger   trigger of movement
+     * @param toState   state after movement
+     * @param outcome   outcome of movement
+     */
+    void append(D data, S fromState, T trigger, S toState, FsmJournalOutcome outcome);
+
+}
@@ -0,0 +1,155 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.journal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary codec of keys, states and triggers of journal records.
+ *
+ * @param <V> type of encoded value
+ * @author Oleksii Horbenko
+ */
+public interface FsmJournalCodec<V> {
+
+    /**
+     * Writes <code>value</code> at current position of <code>target</code>.
+     * Executed on the hot path, should not allocate.
+     */
+    void write(V value, ByteBuffer target);
+
+    /**
+     * Reads value at current position of <code>source</code>.
+     */
+    V read(ByteBuffer source);
+
+    /**
+     * Encodes enum constant (or <code>null</code>) as 2-byte ordinal.
+     */
+    static <E extends Enum<E>> FsmJournalCodec<E> ofEnum(Class<E> enumType) {
+        E[] constants = enumType.getEnumConstants();
+
+        return new FsmJournalCodec<E>() {
+            @Override
+            public void write(E value, ByteBuffer target) {
+                target.putShort(value == null ? -1 : (short) value.ordinal());
+            }
+
+            @Override
+            public E read(ByteBuffer source) {
+                short ordinal = source.getShort();
+                return ordinal < 0 ? null : constants[ordinal];
+            }
+        };
+    }
+
+    /**
+     * Encodes string (or <code>null</code>) as length-prefixed UTF-8 bytes.
+     */
+    static FsmJournalCodec<String> ofString() {
+        return new FsmJournalCodec<String>() {
+            @Override
+            public void write(String value, ByteBuffer target) {
+                if (value == null) {
+                    target.putInt(-1);
+                    return;
+                }
+
+                int lengthPosition = target.position();
+                target.putInt(0);
+
+                for (int i = 0; i < value.length(); ) {
+                    int codePoint = value.codePointAt(i);
+                    i += Character.charCount(codePoint);
+
+                    if (codePoint < 0x80) {
+                        target.put((byte) codePoint);
+                    } else if (codePoint < 0x800) {
+                        target.put((byte) (0xC0 | (codePoint >> 6)));
+                        target.put((byte) (0x80 | (codePoint & 0x3F)));
+                    } else if (codePoint < 0x10000) {
+                        target.put((byte) (0xE0 | (codePoint >> 12)));
+                        target.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                        target.put((byte) (0x80 | (codePoint & 0x3F)));
+                    } else {
+                        target.put((byte) (0xF0 | (codePoint >> 18)));
+                        target.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                        target.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                        target.put((byte) (0x80 | (codePoint & 0x3F)));
+                    }
+                }
+
+                target.putInt(lengthPosition, target.position() - lengthPosition - Integer.BYTES);
+            }
+
+            @Override
+            public String read(ByteBuffer source) {
+                int length = source.getInt();
+                if (length < 0) {
+                    return null;
+                }
+
+                byte[] bytes = new byte[length];
+                source.get(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+        };
+    }
+
+    /**
+     * Encodes not null long as 8 bytes.
+     */
+    static FsmJournalCodec<Long> ofLong() {
+        return new FsmJournalCodec<Long>() {
+            @Override
+            public void write(Long value, ByteBuffer target) {
+                target.putLong(value);
+            }
+
+            @Override
+            public Long read(ByteBuffer source) {
+                return source.getLong();
+            }
+        };
+    }
+
+    /**
+     * Encodes not null integer as 4 bytes.
+     */
+    static FsmJournalCodec<Integer> ofInteger() {
+        return new FsmJournalCodec<Integer>() {
+            @Override
+            public void write(Integer value, ByteBuffer target) {
+                target.putInt(value);
+            }
+
+            @Override
+            public Integer read(ByteBuffer source) {
+                return source.getInt();
+            }
+        };
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.journal;
+
+import lombok.Data;
+import lombok.NonNull;
+import lombok.experimental.Accessors;
+
+import java.nio.file.Path;
+import java.util.function.Function;
+
+/**
+ * Configuration of {@link MappedFsmJournal}.
+ *
+ * @param <K> entity key type
+ * @param <S> State
+ * @param <T> Trigger (Event)
+ * @param <D> entity type
+ * @author Oleksii Horbenko
+ */
+@Data
+@Accessors(chain = true)
+public class FsmJournalConfig<K, S, T, D> {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    public static final int DEFAULT_MAX_RECORD_SIZE = 4 * 1024;
+    public static final long DEFAULT_SYNC_INTERVAL_MILLIS = 10;
+
+    /**
+     * Directory of segment files
+     */
+    @NonNull
+    private Path directory;
+
+    /**
+     * Extracts key of entity, that is written to every record
+     */
+    @NonNull
+    private Function<D, K> keyExtractor;
+
+    @NonNull
+    private FsmJournalCodec<K> keyCodec;
+    @NonNull
+    private FsmJournalCodec<S> stateCodec;
+    @NonNull
+    private FsmJournalCodec<T> triggerCodec;
+
+    /**
+     * Size of one memory-mapped segment file in bytes
+     */
+    private int segmentSize = DEFAULT_SEGMENT_SIZE;
+
+    /**
+     * Max size of one encoded record in bytes
+     */
+    private int maxRecordSize = DEFAULT_MAX_RECORD_SIZE;
+
+    @NonNull
+    private FsmJournalSyncPolicy syncPolicy = FsmJournalSyncPolicy.INTERVAL;
+
+    /**
+     * Interval of forcing records to disk for {@link FsmJournalSyncPolicy#INTERVAL}, must be positive
+     */
+    private long syncIntervalMillis = DEFAULT_SYNC_INTERVAL_MILLIS;
+
+}
@@ -0,0 +1,342 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.journal;
+
+import lombok.NonNull;
+import o.horbenko.fsm.error.FsmJournalException;
+import o.horbenko.fsm.error.InvalidFsmConfigurationException;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Rebuilds current state of entities from {@link MappedFsmJournal} directory: the latest snapshot
+ * plus journal segments, written after it.
+ * <p>
+ * Snapshot and segments are scanned sequentially, each on its own task of executor,
+ * then last states are merged in order of segments.
+ * Snapshots are written by {@link #compact()}, periodically if scheduled by {@link #scheduleCompaction(ScheduledExecutorService, Duration)}.
+ * Recovery and compaction of the same instance are serialized, one instance should be used per directory.
+ *
+ * @param <K> entity key type
+ * @param <S> State
+ * @param <T> Trigger (Event)
+ * @author Oleksii Horbenko
+ */
+public class FsmJournalRecovery<K, S, T> {
+
+    static final int SNAPSHOT_MAGIC = 0x46534D53; // FSMS
+    static final int SNAPSHOT_VERSION = 1;
+
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final int SNAPSHOT_WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_SNAPSHOT_WRITE_BUFFER_SIZE = 1 << 30;
+
+    private final Path directory;
+    private final FsmJournalCodec<K> keyCodec;
+    private final FsmJournalCodec<S> stateCodec;
+    private final FsmJournalCodec<T> triggerCodec;
+    private final Executor executor;
+    private final LongAdder failedCompactions = new LongAdder();
+
+    public FsmJournalRecovery(@NonNull Path directory,
+                              @NonNull FsmJournalCodec<K> keyCodec,
+                              @NonNull FsmJournalCodec<S> stateCodec,
+                              @NonNull FsmJournalCodec<T> triggerCodec) {
+        this(directory, keyCodec, stateCodec, triggerCodec, ForkJoinPool.commonPool());
+    }
+
+    public FsmJournalRecovery(@NonNull Path directory,
+                              @NonNull FsmJournalCodec<K> keyCodec,
+                              @NonNull FsmJournalCodec<S> stateCodec,
+                              @NonNull FsmJournalCodec<T> triggerCodec,
+                              @NonNull Executor executor) {
+        this.directory = directory;
+        this.keyCodec = keyCodec;
+        this.stateCodec = stateCodec;
+        this.triggerCodec = triggerCodec;
+        this.executor = executor;
+    }
+
+    /**
+     * @return current state by entity key
+     */
+    public synchronized Map<K, S> recover() {
+        deleteStaleTemporaryFiles();
+        return recover(Long.MAX_VALUE);
+    }
+
+    /**
+     * Writes snapshot of all sealed segments (all except the last one, that is written by journal)
+     * and deletes these segments and older snapshots. Should be executed periodically, so recovery
+     * replays only short tail of journal.
+     *
+     * @return <code>false</code> if there are no sealed segments to compact
+     */
+    public synchronized boolean compact() {
+        deleteStaleTemporaryFiles();
+
+        List<Path> segments = FsmJournalSegments.listSegments(directory);
+        if (segments.size() < 2) {
+            return false;
+        }
+
+        List<Path> sealedSegments = segments.subList(0, segments.size() - 1);
+        long lastSealedSegmentIndex = FsmJournalSegments.segmentIndexOf(sealedSegments.get(sealedSegments.size() - 1));
+
+        writeSnapshot(lastSealedSegmentIndex, recover(lastSealedSegmentIndex));
+
+        try {
+            for (Path segment : sealedSegments) {
+                Files.deleteIfExists(segment);
+            }
+            for (Path snapshot : listSnapshots()) {
+                if (snapshotIndexOf(snapshot) < lastSealedSegmentIndex) {
+                    Files.deleteIfExists(snapshot);
+                }
+            }
+        } catch (IOException e) {
+            throw new FsmJournalException("Unable to delete compacted journal files in " + directory, e);
+        }
+        return true;
+    }
+
+    /**
+     * Executes {@link #compact()} on <code>scheduler</code> with fixed delay <code>interval</code>.
+     * Failed compaction is counted (see {@link #getFailedCompactionsCount()}) and retried by the next run.
+     *
+     * @return future, that cancels compactions
+     */
+    public ScheduledFuture<?> scheduleCompaction(@NonNull ScheduledExecutorService scheduler, @NonNull Duration interval) {
+        if (interval.isNegative() || interval.isZero()) {
+            throw new InvalidFsmConfigurationException("Compaction interval must be positive, but was " + interval);
+        }
+
+        long intervalNanos = interval.toNanos();
+        return scheduler.scheduleWithFixedDelay(this::compactQuietly, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getFailedCompactionsCount() {
+        return failedCompactions.sum();
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (RuntimeException e) {
+            // counted, compacted by next run
+            failedCompactions.increment();
+        }
+    }
+
+    private Map<K, S> recover(long maxSegmentIndex) {
+        List<Path> snapshots = listSnapshots();
+        Path snapshot = null;
+        for (Path candidate : snapshots) {
+            if (snapshotIndexOf(candidate) <= maxSegmentIndex) {
+                snapshot = candidate;
+            }
+        }
+        long snapshotIndex = snapshot == null ? -1 : snapshotIndexOf(snapshot);
+
+        List<CompletableFuture<Map<K, S>>> parts = new ArrayList<>();
+        if (snapshot != null) {
+            Path snapshotToRead = snapshot;
+            parts.add(CompletableFuture.supplyAsync(() -> readSnapshot(snapshotToRead), executor));
+        }
+
+        for (Path segment : FsmJournalSegments.listSegments(directory)) {
+            long segmentIndex = FsmJournalSegments.segmentIndexOf(segment);
+            if (segmentIndex > snapshotIndex && segmentIndex <= maxSegmentIndex) {
+                parts.add(CompletableFuture.supplyAsync(() -> readLastStates(segment), executor));
+            }
+        }
+
+        try {
+            // merge in order of writing: later segments override states of earlier ones
+            Map<K, S> stateByKey = new HashMap<>();
+            for (CompletableFuture<Map<K, S>> part : parts) {
+                stateByKey.putAll(part.join());
+            }
+            return stateByKey;
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof FsmJournalException
+                    ? (FsmJournalException) e.getCause()
+                    : new FsmJournalException("Unable to recover states from journal " + directory, e.getCause());
+        }
+    }
+
+    private Map<K, S> readLastStates(Path segment) {
+        Map<K, S> stateByKey = new HashMap<>();
+        FsmJournalSegments.read(segment, keyCodec, stateCodec, triggerCodec,
+                record -> stateByKey.put(record.getKey(), record.getToState()));
+        return stateByKey;
+    }
+
+    private Map<K, S> readSnapshot(Path snapshot) {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != SNAPSHOT_VERSION) {
+                throw new FsmJournalException("File " + snapshot + " is not a journal snapshot of version " + SNAPSHOT_VERSION);
+            }
+            buffer.getLong(); // last covered segment index
+            long entries = buffer.getLong();
+
+            Map<K, S> stateByKey = new HashMap<>((int) Math.min(Integer.MAX_VALUE, entries * 4 / 3 + 1));
+            for (long i = 0; i < entries; i++) {
+                K key = keyCodec.read(buffer);
+                stateByKey.put(key, stateCodec.read(buffer));
+            }
+            return stateByKey;
+        } catch (IOException e) {
+            throw new FsmJournalException("Unable to read journal snapshot " + snapshot, e);
+        }
+    }
+
+    /**
+     * Snapshot is written to temporary file and atomically renamed, so partially written snapshot is never read.
+     * Directory is synced after rename, so published snapshot survives crash before segments are deleted.
+     * Write buffer grows to fit entries larger than it.
+     */
+    private void writeSnapshot(long lastSegmentIndex, Map<K, S> stateByKey) {
+        Path snapshot = directory.resolve(String.format("%020d", lastSegmentIndex) + SNAPSHOT_SUFFIX);
+        Path temporary = directory.resolve(snapshot.getFileName() + TEMPORARY_SUFFIX);
+
+        try (FileChannel channel = FileChannel.open(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            ByteBuffer buffer = ByteBuffer.allocate(SNAPSHOT_WRITE_BUFFER_SIZE);
+            buffer.putInt(SNAPSHOT_MAGIC);
+            buffer.putInt(SNAPSHOT_VERSION);
+            buffer.putLong(lastSegmentIndex);
+            buffer.putLong(stateByKey.size());
+
+            for (Map.Entry<K, S> entry : stateByKey.entrySet()) {
+                int entryPosition = buffer.position();
+                while (true) {
+                    try {
+                        keyCodec.write(entry.getKey(), buffer);
+                        stateCodec.write(entry.getValue(), buffer);
+                        break;
+                    } catch (BufferOverflowException e) {
+                        buffer.position(entryPosition);
+                        if (entryPosition > 0) {
+                            writeFully(channel, buffer);
+                            entryPosition = 0;
+                        } else if (buffer.capacity() < MAX_SNAPSHOT_WRITE_BUFFER_SIZE) {
+                            buffer = ByteBuffer.allocate((int) Math.min(2L * buffer.capacity(), MAX_SNAPSHOT_WRITE_BUFFER_SIZE));
+                        } else {
+                            throw new FsmJournalException("Snapshot entry of key = '" + entry.getKey()
+                                    + "' exceeds max size " + MAX_SNAPSHOT_WRITE_BUFFER_SIZE, e);
+                        }
+                    }
+                }
+            }
+            writeFully(channel, buffer);
+            channel.force(true);
+
+        } catch (IOException e) {
+            throw new FsmJournalException("Unable to write journal snapshot " + snapshot, e);
+        }
+
+        try {
+            Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new FsmJournalException("Unable to publish journal snapshot " + snapshot, e);
+        }
+        FsmJournalSegments.syncDirectory(directory);
+    }
+
+    /**
+     * Deletes snapshots, that were not published because of crash during {@link #writeSnapshot(long, Map)}.
+     */
+    private void deleteStaleTemporaryFiles() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().endsWith(SNAPSHOT_SUFFIX + TEMPORARY_SUFFIX)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            throw new FsmJournalException("Unable to delete temporary snapshots of journal " + directory, e);
+        }
+    }
+
+    private List<Path> listSnapshots() {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(file -> file.getFileName().toString().endsWith(SNAPSHOT_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new FsmJournalException("Unable to list snapshots of journal " + directory, e);
+        }
+    }
+
+    private static long snapshotIndexOf(Path snapshot) {
+        String fileName = snapshot.getFileName().toString();
+        return Long.parseLong(fileName.substring(0, fileName.length() - SNAPSHOT_SUFFIX.length()));
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+}
@@ -0,0 +1,211 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.journal;
+
+import o.horbenko.fsm.error.FsmJournalException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Layout and reading of {@link MappedFsmJournal} segment files.
+ * <p>
+ * Segment: <code>[int magic][int version]</code> header and records until zero length.
+ * Record: <code>[int length][int checksum][long timestampMillis][byte outcome][key][fromState][trigger][toState]</code>,
+ * where <code>length</code> is size of record without length itself and <code>checksum</code> is CRC32C
+ * of the bytes after it. Zero length after the record is written before its length,
+ * and length is written the last, so partially written record is never visible to reader of live journal.
+ * Records, that were torn by crash of OS (pages are flushed in any order), are detected by checksum:
+ * reading of segment stops at the first record with invalid checksum.
+ *
+ * @author Oleksii Horbenko
+ */
+public final class FsmJournalSegments {
+
+    static final int MAGIC = 0x46534D4A; // FSMJ
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 2 * Integer.BYTES;
+    static final int CHECKSUM_SIZE = Integer.BYTES;
+
+    private static final String SEGMENT_SUFFIX = ".segment";
+    private static final ThreadLocal<CRC32C> CHECKSUM = ThreadLocal.withInitial(CRC32C::new);
+
+    private FsmJournalSegments() {
+    }
+
+    /**
+     * @return segment files of journal <code>directory</code> in order of writing
+     */
+    public static List<Path> listSegments(Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new FsmJournalException("Unable to list segments of journal " + directory, e);
+        }
+    }
+
+    /**
+     * Reads all complete records of <code>segment</code>.
+     *
+     * @param segment      segment file
+     * @param keyCodec     codec of entity keys
+     * @param stateCodec   codec of states
+     * @param triggerCodec codec of triggers
+     * @param consumer     consumer of records in order of writing
+     */
+    public static <K, S, T> void read(Path segment,
+                                      FsmJournalCodec<K> keyCodec,
+                                      FsmJournalCodec<S> stateCodec,
+                                      FsmJournalCodec<T> triggerCodec,
+                                      Consumer<FsmJournalRecord<K, S, T>> consumer) {
+
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (!checkHeader(segment, buffer)) {
+                return;
+            }
+
+            int end = findEndOfRecords(buffer);
+            buffer.position(HEADER_SIZE);
+            while (buffer.position() < end) {
+                int length = buffer.getInt();
+                int recordEnd = buffer.position() + length;
+                buffer.getInt(); // checksum, verified by findEndOfRecords
+                long timestampMillis = buffer.getLong();
+                FsmJournalOutcome outcome = FsmJournalOutcome.ofCode(buffer.get());
+                K key = keyCodec.read(buffer);
+                S fromState = stateCodec.read(buffer);
+                T trigger = triggerCodec.read(buffer);
+                S toState = stateCodec.read(buffer);
+                buffer.position(recordEnd);
+
+                consumer.accept(new FsmJournalRecord<>(key, fromState, trigger, toState, timestampMillis, outcome));
+            }
+        } catch (IOException e) {
+            throw new FsmJournalException("Unable to read journal segment " + segment, e);
+        }
+    }
+
+    static Path segmentPath(Path directory, long segmentIndex) {
+        return directory.resolve(String.format("%020d", segmentIndex) + SEGMENT_SUFFIX);
+    }
+
+    static long segmentIndexOf(Path segment) {
+        String fileName = segment.getFileName().toString();
+        return Long.parseLong(fileName.substring(0, fileName.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Segment, that was created, but its header did not reach disk because of crash, has no records.
+     *
+     * @return <code>false</code> if header of segment is not written
+     * @throws FsmJournalException if <code>segment</code> is not a journal segment of current version
+     */
+    static boolean checkHeader(Path segment, ByteBuffer buffer) {
+        if (buffer.remaining() == 0
+                || buffer.remaining() >= HEADER_SIZE && buffer.getInt(0) == 0 && buffer.getInt(Integer.BYTES) == 0) {
+            return false;
+        }
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new FsmJournalException("File " + segment + " is not a journal segment of version " + VERSION);
+        }
+        return true;
+    }
+
+    /**
+     * Forces creation, deletion and renaming of files in <code>directory</code> to disk.
+     */
+    static void syncDirectory(Path directory) {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            // directory can not be opened on some platforms (e.g. Windows), metadata is durable there
+            return;
+        }
+
+        try (channel) {
+            channel.force(true);
+        } catch (IOException e) {
+            throw new FsmJournalException("Unable to sync journal directory " + directory, e);
+        }
+    }
+
+    /**
+     * @return position after the last complete record of segment with valid checksum
+     */
+    static int findEndOfRecords(ByteBuffer buffer) {
+        int position = HEADER_SIZE;
+        while (position + Integer.BYTES <= buffer.limit()) {
+            int length = buffer.getInt(position);
+            if (length <= CHECKSUM_SIZE || length > buffer.limit() - position - Integer.BYTES) {
+                break;
+            }
+
+            int checksumPosition = position + Integer.BYTES;
+            if (buffer.getInt(checksumPosition) != checksum(buffer, checksumPosition + CHECKSUM_SIZE, length - CHECKSUM_SIZE)) {
+                break;
+            }
+            position += Integer.BYTES + length;
+        }
+        return position;
+    }
+
+    /**
+     * Calculated on every append by thread-local checksum without allocation.
+     * Position and limit of <code>buffer</code> are restored.
+     *
+     * @return CRC32C of <code>length</code> bytes of <code>buffer</code> from <code>from</code>
+     */
+    static int checksum(ByteBuffer buffer, int from, int length) {
+        int position = buffer.position();
+        int limit = buffer.limit();
+        buffer.limit(from + length).position(from);
+
+        CRC32C crc = CHECKSUM.get();
+        crc.reset();
+        crc.update(buffer);
+
+        buffer.limit(limit).position(position);
+        return (int) crc.getValue();
+    }
+
+}
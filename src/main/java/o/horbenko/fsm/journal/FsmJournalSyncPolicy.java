@@ -0,0 +1,51 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.journal;
+
+/**
+ * Durability of {@link MappedFsmJournal} records.
+ *
+ * @author Oleksii Horbenko
+ */
+public enum FsmJournalSyncPolicy {
+
+    /**
+     * Journal never forces records to disk, operating system decides when to write dirty pages.
+     * Records survive crash of process, but not crash of machine.
+     */
+    NONE,
+
+    /**
+     * Records are forced to disk by background thread with configured interval.
+     * Crash of machine loses at most one interval of records. Append does not wait for disk.
+     */
+    INTERVAL,
+
+    /**
+     * Every record is forced to disk before append returns. Concurrent appends wait for one shared force
+     * (group commit), so throughput grows with count of appending threads. Slowest, no records are lost.
+     */
+    ALWAYS
+
+}
@@ -0,0 +1,318 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.journal;
+
+import lombok.NonNull;
+import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.error.FsmJournalException;
+import o.horbenko.fsm.error.InvalidFsmConfigurationException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only {@link FsmJournal}, that writes binary records into segmented memory-mapped files
+ * (see {@link FsmJournalSegments} for layout).
+ * <p>
+ * Record is encoded into thread-local buffer without lock, only copying into segment is serialized.
+ * Durability is defined by {@link FsmJournalSyncPolicy}. Disk is forced outside of append lock: with
+ * {@link FsmJournalSyncPolicy#ALWAYS} appender waits for the first force, that covers its record,
+ * so one force acknowledges all records appended before it (group commit).
+ * Opened on existing directory, journal continues appending after the last complete record.
+ *
+ * @param <K> entity key type
+ * @param <S> State
+ * @param <T> Trigger (Event)
+ * @param <D> {@link FsmStateHolder} implementation
+ * @author Oleksii Horbenko
+ */
+public class MappedFsmJournal<K, S, T, D extends FsmStateHolder<S>>
+        implements FsmJournal<S, T, D>, Closeable {
+
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES + FsmJournalSegments.CHECKSUM_SIZE + Long.BYTES + Byte.BYTES;
+
+    private final FsmJournalConfig<K, S, T, D> config;
+    private final ThreadLocal<ByteBuffer> recordBuffer;
+    private final ScheduledExecutorService syncScheduler;
+
+    private final Object appendLock = new Object();
+    private final Object syncLock = new Object();
+    private long segmentIndex;
+    private long appendedRecords;
+    private volatile long syncedRecords;
+    private FileChannel segmentChannel;
+    private MappedByteBuffer segment;
+    private volatile boolean closed;
+
+    public MappedFsmJournal(@NonNull FsmJournalConfig<K, S, T, D> config) {
+        if (config.getMaxRecordSize() <= RECORD_HEADER_SIZE
+                || config.getSegmentSize() < FsmJournalSegments.HEADER_SIZE + config.getMaxRecordSize() + Integer.BYTES) {
+            throw new InvalidFsmConfigurationException("Journal segment size " + config.getSegmentSize()
+                    + " is too small for max record size " + config.getMaxRecordSize());
+        }
+        if (config.getSyncPolicy() == FsmJournalSyncPolicy.INTERVAL && config.getSyncIntervalMillis() <= 0) {
+            throw new InvalidFsmConfigurationException("Journal sync interval must be positive, but was "
+                    + config.getSyncIntervalMillis() + " ms");
+        }
+
+        this.config = config;
+        this.recordBuffer = ThreadLocal.withInitial(() -> ByteBuffer.allocate(config.getMaxRecordSize()));
+
+        try {
+            Files.createDirectories(config.getDirectory());
+            openLastSegment();
+        } catch (IOException e) {
+            throw new FsmJournalException("Unable to open journal in " + config.getDirectory(), e);
+        }
+
+        if (config.getSyncPolicy() == FsmJournalSyncPolicy.INTERVAL) {
+            this.syncScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "fsm-journal-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.syncScheduler.scheduleWithFixedDelay(this::sync,
+                    config.getSyncIntervalMillis(), config.getSyncIntervalMillis(), TimeUnit.MILLISECONDS);
+        } else {
+            this.syncScheduler = null;
+        }
+    }
+
+    @Override
+    public void append(D data, S fromState, T trigger, S toState, FsmJournalOutcome outcome) {
+        ByteBuffer record = encode(data, fromState, trigger, toState, outcome);
+        int length = record.remaining() - Integer.BYTES;
+
+        long recordNumber;
+        synchronized (appendLock) {
+            if (closed) {
+                throw new FsmJournalException("Journal is closed");
+            }
+            // space for zero length after the last record as end marker
+            if (segment.remaining() < record.remaining() + Integer.BYTES) {
+                rollSegment();
+            }
+
+            int recordPosition = segment.position();
+            record.position(Integer.BYTES);
+            segment.position(recordPosition + Integer.BYTES);
+            segment.put(record);
+
+            // end marker is written before length, so stale bytes after the record are never read as record
+            segment.putInt(segment.position(), 0);
+            segment.putInt(recordPosition, length);
+            recordNumber = ++appendedRecords;
+        }
+
+        if (config.getSyncPolicy() == FsmJournalSyncPolicy.ALWAYS) {
+            awaitSync(recordNumber);
+        }
+    }
+
+    /**
+     * Forces appended records to disk.
+     */
+    public void sync() {
+        synchronized (syncLock) {
+            forceAppendedRecords();
+        }
+    }
+
+    /**
+     * Waits until record is forced to disk. The first waiter forces all appended records,
+     * others are acknowledged by its force or force the rest after it.
+     */
+    private void awaitSync(long recordNumber) {
+        if (syncedRecords >= recordNumber) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (syncedRecords < recordNumber) {
+                forceAppendedRecords();
+            }
+        }
+    }
+
+    /**
+     * Must be called under sync lock. Records of previous segments are forced on roll of segment.
+     */
+    private void forceAppendedRecords() {
+        MappedByteBuffer currentSegment;
+        long records;
+        synchronized (appendLock) {
+            if (closed) {
+                syncedRecords = appendedRecords;
+                return;
+            }
+            currentSegment = segment;
+            records = appendedRecords;
+        }
+        // forced outside of append lock, so appends are not blocked by disk
+        currentSegment.force();
+        syncedRecords = records;
+    }
+
+    /**
+     * Forces records to disk and closes current segment.
+     */
+    @Override
+    public void close() {
+        if (syncScheduler != null) {
+            syncScheduler.shutdownNow();
+        }
+
+        synchronized (appendLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+
+            if (config.getSyncPolicy() != FsmJournalSyncPolicy.NONE) {
+                segment.force();
+            }
+            closeSegmentChannel();
+        }
+    }
+
+    private ByteBuffer encode(D data, S fromState, T trigger, S toState, FsmJournalOutcome outcome) {
+        ByteBuffer record = recordBuffer.get();
+        record.clear();
+
+        try {
+            record.putInt(0); // length placeholder
+            record.putInt(0); // checksum placeholder
+            record.putLong(System.currentTimeMillis());
+            record.put(outcome.getCode());
+            config.getKeyCodec().write(config.getKeyExtractor().apply(data), record);
+            config.getStateCodec().write(fromState, record);
+            config.getTriggerCodec().write(trigger, record);
+            config.getStateCodec().write(toState, record);
+        } catch (BufferOverflowException e) {
+            throw new FsmJournalException("Journal record of movement from state = '" + fromState + "' by trigger = '"
+                    + trigger + "' exceeds max record size " + config.getMaxRecordSize(), e);
+        }
+
+        record.flip();
+
+        int payloadPosition = Integer.BYTES + FsmJournalSegments.CHECKSUM_SIZE;
+        record.putInt(Integer.BYTES, FsmJournalSegments.checksum(record, payloadPosition, record.limit() - payloadPosition));
+        return record;
+    }
+
+    private void openLastSegment() throws IOException {
+        List<Path> segments = FsmJournalSegments.listSegments(config.getDirectory());
+        if (segments.isEmpty()) {
+            openNewSegment(0);
+            return;
+        }
+
+        Path lastSegment = segments.get(segments.size() - 1);
+        long lastSegmentIndex = FsmJournalSegments.segmentIndexOf(lastSegment);
+        FileChannel channel = FileChannel.open(lastSegment, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer;
+        boolean hasHeader;
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            hasHeader = FsmJournalSegments.checkHeader(lastSegment, buffer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+
+        if (!hasHeader) {
+            // header of created segment did not reach disk, so nothing was appended to it
+            channel.close();
+            Files.delete(lastSegment);
+            openNewSegment(lastSegmentIndex);
+            return;
+        }
+
+        this.segmentIndex = lastSegmentIndex;
+        this.segmentChannel = channel;
+        this.segment = buffer;
+
+        // torn record after the last complete one is overwritten by next appends
+        int end = FsmJournalSegments.findEndOfRecords(segment);
+        if (end + Integer.BYTES <= segment.limit()) {
+            segment.putInt(end, 0);
+        }
+        segment.position(end);
+    }
+
+    private void openNewSegment(long index) throws IOException {
+        Path path = FsmJournalSegments.segmentPath(config.getDirectory(), index);
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, config.getSegmentSize());
+            buffer.putInt(FsmJournalSegments.MAGIC);
+            buffer.putInt(FsmJournalSegments.VERSION);
+
+            // forced on any sync policy: once per segment, so segment file never outlives crash without header
+            buffer.force();
+            FsmJournalSegments.syncDirectory(config.getDirectory());
+
+            this.segmentIndex = index;
+            this.segmentChannel = channel;
+            this.segment = buffer;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void rollSegment() {
+        if (config.getSyncPolicy() != FsmJournalSyncPolicy.NONE) {
+            segment.force();
+        }
+        closeSegmentChannel();
+
+        try {
+            openNewSegment(segmentIndex + 1);
+        } catch (IOException e) {
+            throw new FsmJournalException("Unable to create journal segment " + (segmentIndex + 1), e);
+        }
+    }
+
+    private void closeSegmentChannel() {
+        try {
+            // mapping stays valid until buffer is collected
+            segmentChannel.close();
+        } catch (IOException e) {
+            throw new FsmJournalException("Unable to close journal segment " + segmentIndex, e);
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.metrics;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link FsmMovementListener}, that collects {@link FsmMovementMetrics} per movement (state + trigger).
+ * <p>
+ * Counters are striped ({@link java.util.concurrent.atomic.LongAdder}), latencies are recorded by lock-free
+ * {@link LatencyHistogram}s, so recording does not block and does not allocate after the first movement
+ * by the same state and trigger.
+ *
+ * @param <S> State
+ * @param <T> Trigger (Event)
+ * @author Oleksii Horbenko
+ */
+public class FsmMetrics<S, T> implements FsmMovementListener<S, T> {
+
+    private final ConcurrentMap<S, ConcurrentMap<T, FsmMovementMetrics>> metricsByStateAndTrigger = new ConcurrentHashMap<>();
+
+    @Override
+    public void onMovementAction(S fromState, T trigger, long durationNanos, boolean failed) {
+        FsmMovementMetrics metrics = metricsOf(fromState, trigger);
+        if (metrics != null) {
+            metrics.recordMovementAction(durationNanos, failed);
+        }
+    }
+
+    @Override
+    public void onMovement(S fromState, T trigger, S toState) {
+        FsmMovementMetrics metrics = metricsOf(fromState, trigger);
+        if (metrics != null) {
+            metrics.recordMovement();
+        }
+    }
+
+    @Override
+    public void onPostMovementAction(S fromState, T trigger, long durationNanos, boolean failed) {
+        FsmMovementMetrics metrics = metricsOf(fromState, trigger);
+        if (metrics != null) {
+            metrics.recordPostMovementAction(durationNanos, failed);
+        }
+    }
+
+    @Override
+    public void onExceptionTrigger(S fromState, T trigger, Class<? extends Exception> exceptionType, T exceptionTrigger) {
+        FsmMovementMetrics metrics = metricsOf(fromState, trigger);
+        if (metrics != null) {
+            metrics.recordExceptionTrigger();
+        }
+    }
+
+    /**
+     * @return metrics of movement from <code>fromState</code> by <code>trigger</code>
+     * or <code>null</code> if there were no such movements
+     */
+    public FsmMovementMetrics getMovementMetrics(S fromState, T trigger) {
+        Map<T, FsmMovementMetrics> metricsByTrigger = metricsByStateAndTrigger.get(fromState);
+        return metricsByTrigger == null
+                ? null
+                : metricsByTrigger.get(trigger);
+    }
+
+    /**
+     * @return read-only snapshot of all collected metrics by states and triggers.
+     * Movements, recorded after call, are not added to snapshot, but returned metrics keep counting.
+     */
+    public Map<S, Map<T, FsmMovementMetrics>> getAllMovementMetrics() {
+        Map<S, Map<T, FsmMovementMetrics>> snapshot = new HashMap<>();
+        metricsByStateAndTrigger.forEach((state, metricsByTrigger) ->
+                snapshot.put(state, Collections.unmodifiableMap(new HashMap<>(metricsByTrigger))));
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    private FsmMovementMetrics metricsOf(S fromState, T trigger) {
+        if (fromState == null || trigger == null) {
+            return null;
+        }
+
+        ConcurrentMap<T, FsmMovementMetrics> metricsByTrigger = metricsByStateAndTrigger.get(fromState);
+        if (metricsByTrigger == null) {
+            metricsByTrigger = metricsByStateAndTrigger.computeIfAbsent(fromState, state -> new ConcurrentHashMap<>());
+        }
+
+        FsmMovementMetrics metrics = metricsByTrigger.get(trigger);
+        if (metrics == null) {
+            metrics = metricsByTrigger.computeIfAbsent(trigger, t -> new FsmMovementMetrics());
+        }
+        return metrics;
+    }
+
+}
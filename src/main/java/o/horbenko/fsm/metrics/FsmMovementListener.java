@@ -0,0 +1,78 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.metrics;
+
+/**
+ * Observability SPI of FSM movements. Registered by
+ * {@link o.horbenko.fsm.impl.AbstractCoreFsm#withMovementListener(FsmMovementListener)}.
+ * <p>
+ * Callbacks are invoked synchronously on the hot path, so implementations must be cheap, thread-safe
+ * and must not throw exceptions. When no listener is registered, FSM does not measure time at all.
+ *
+ * @param <S> State
+ * @param <T> Trigger (Event)
+ * @author Oleksii Horbenko
+ */
+public interface FsmMovementListener<S, T> {
+
+    /**
+     * Movement action was executed (invoked only for movements with movement action).
+     *
+     * @param fromState     state to move from
+     * @param trigger       trigger of movement
+     * @param durationNanos duration of action execution
+     * @param failed        <code>true</code> if action threw exception
+     */
+    void onMovementAction(S fromState, T trigger, long durationNanos, boolean failed);
+
+    /**
+     * State was changed to target state of movement.
+     *
+     * @param fromState state to move from
+     * @param trigger   trigger of movement
+     * @param toState   new state
+     */
+    void onMovement(S fromState, T trigger, S toState);
+
+    /**
+     * Post-movement action was executed (invoked only for movements with post-movement action).
+     *
+     * @param fromState     state to move from
+     * @param trigger       trigger of movement
+     * @param durationNanos duration of action execution
+     * @param failed        <code>true</code> if action threw exception
+     */
+    void onPostMovementAction(S fromState, T trigger, long durationNanos, boolean failed);
+
+    /**
+     * Failed movement is routed by exception trigger.
+     *
+     * @param fromState        state to move from
+     * @param trigger          trigger of failed movement
+     * @param exceptionType    type of exception, that movement failed with
+     * @param exceptionTrigger resolved trigger of the next movement (<code>null</code> if no exception trigger defined)
+     */
+    void onExceptionTrigger(S fromState, T trigger, Class<? extends Exception> exceptionType, T exceptionTrigger);
+
+}
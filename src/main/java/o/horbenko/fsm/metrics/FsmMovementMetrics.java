@@ -0,0 +1,95 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of one movement (state + trigger): counters and latency histograms of actions.
+ *
+ * @author Oleksii Horbenko
+ */
+public class FsmMovementMetrics {
+
+    private final LongAdder movements = new LongAdder();
+    private final LongAdder movementActionFailures = new LongAdder();
+    private final LongAdder postMovementActionFailures = new LongAdder();
+    private final LongAdder exceptionTriggers = new LongAdder();
+
+    private final LatencyHistogram movementActionLatency = new LatencyHistogram();
+    private final LatencyHistogram postMovementActionLatency = new LatencyHistogram();
+
+    void recordMovementAction(long durationNanos, boolean failed) {
+        movementActionLatency.record(durationNanos);
+        if (failed) {
+            movementActionFailures.increment();
+        }
+    }
+
+    void recordMovement() {
+        movements.increment();
+    }
+
+    void recordPostMovementAction(long durationNanos, boolean failed) {
+        postMovementActionLatency.record(durationNanos);
+        if (failed) {
+            postMovementActionFailures.increment();
+        }
+    }
+
+    void recordExceptionTrigger() {
+        exceptionTriggers.increment();
+    }
+
+    /**
+     * @return count of state changes to target state of movement
+     */
+    public long getMovements() {
+        return movements.sum();
+    }
+
+    public long getMovementActionFailures() {
+        return movementActionFailures.sum();
+    }
+
+    public long getPostMovementActionFailures() {
+        return postMovementActionFailures.sum();
+    }
+
+    /**
+     * @return count of failed movements, routed by exception triggers
+     */
+    public long getExceptionTriggers() {
+        return exceptionTriggers.sum();
+    }
+
+    public LatencyHistogram getMovementActionLatency() {
+        return movementActionLatency;
+    }
+
+    public LatencyHistogram getPostMovementActionLatency() {
+        return postMovementActionLatency;
+    }
+
+}
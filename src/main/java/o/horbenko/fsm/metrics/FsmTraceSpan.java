@@ -0,0 +1,84 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.metrics;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Exported span of one movement, executed in scope of traced pipeline run.
+ * Failed movement, routed by exception trigger, and movement by exception trigger are separate spans
+ * of the same step.
+ *
+ * @param <S> State
+ * @param <T> Trigger (Event)
+ * @author Oleksii Horbenko
+ */
+@Getter
+@ToString
+public class FsmTraceSpan<S, T> {
+
+    /**
+     * Duration value of action, that is not configured for movement
+     */
+    public static final long NOT_EXECUTED = -1;
+
+    private final long traceId;
+    private final int stepIndex;
+    private final S state;
+    private final T trigger;
+    private final S targetState;
+    private final long movementActionNanos;
+    private final long postMovementActionNanos;
+    private final Class<? extends Exception> exceptionType;
+    private final T exceptionTrigger;
+
+    FsmTraceSpan(long traceId,
+                 int stepIndex,
+                 S state,
+                 T trigger,
+                 S targetState,
+                 long movementActionNanos,
+                 long postMovementActionNanos,
+                 Class<? extends Exception> exceptionType,
+                 T exceptionTrigger) {
+        this.traceId = traceId;
+        this.stepIndex = stepIndex;
+        this.state = state;
+        this.trigger = trigger;
+        this.targetState = targetState;
+        this.movementActionNanos = movementActionNanos;
+        this.postMovementActionNanos = postMovementActionNanos;
+        this.exceptionType = exceptionType;
+        this.exceptionTrigger = exceptionTrigger;
+    }
+
+    /**
+     * @return <code>true</code> if movement failed and was routed by exception trigger
+     */
+    public boolean isExceptionRouted() {
+        return exceptionType != null;
+    }
+
+}
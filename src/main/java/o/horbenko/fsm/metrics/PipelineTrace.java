@@ -0,0 +1,137 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.metrics;
+
+/**
+ * Trace of one sampled pipeline run. Collects events of current movement and writes them
+ * as {@link FsmTraceSpan} into ring buffer of {@link PipelineTracer}.
+ * <p>
+ * Steps of one pipeline run are executed sequentially, so trace is not thread-safe.
+ *
+ * @param <S> State
+ * @param <T> Trigger (Event)
+ * @author Oleksii Horbenko
+ */
+public class PipelineTrace<S, T> implements FsmMovementListener<S, T> {
+
+    private final PipelineTracer<S, T> tracer;
+    private final FsmMovementListener<S, T> delegate;
+    private final long traceId;
+
+    private int stepIndex;
+
+    private boolean pending;
+    private S state;
+    private T trigger;
+    private S targetState;
+    private long movementActionNanos;
+    private long postMovementActionNanos;
+
+    PipelineTrace(PipelineTracer<S, T> tracer, FsmMovementListener<S, T> delegate, long traceId) {
+        this.tracer = tracer;
+        this.delegate = delegate;
+        this.traceId = traceId;
+        reset();
+    }
+
+    @Override
+    public void onMovementAction(S fromState, T trigger, long durationNanos, boolean failed) {
+        begin(fromState, trigger);
+        this.movementActionNanos = durationNanos;
+
+        if (delegate != null) {
+            delegate.onMovementAction(fromState, trigger, durationNanos, failed);
+        }
+    }
+
+    @Override
+    public void onMovement(S fromState, T trigger, S toState) {
+        begin(fromState, trigger);
+        this.targetState = toState;
+
+        if (delegate != null) {
+            delegate.onMovement(fromState, trigger, toState);
+        }
+    }
+
+    @Override
+    public void onPostMovementAction(S fromState, T trigger, long durationNanos, boolean failed) {
+        begin(fromState, trigger);
+        this.postMovementActionNanos = durationNanos;
+
+        if (delegate != null) {
+            delegate.onPostMovementAction(fromState, trigger, durationNanos, failed);
+        }
+    }
+
+    @Override
+    public void onExceptionTrigger(S fromState, T trigger, Class<? extends Exception> exceptionType, T exceptionTrigger) {
+        begin(fromState, trigger);
+        // state was rolled back
+        this.targetState = null;
+        flush(exceptionType, exceptionTrigger);
+
+        if (delegate != null) {
+            delegate.onExceptionTrigger(fromState, trigger, exceptionType, exceptionTrigger);
+        }
+    }
+
+    /**
+     * Completes current step of pipeline.
+     */
+    public void endStep() {
+        if (pending) {
+            flush(null, null);
+        }
+        stepIndex++;
+    }
+
+    public long getTraceId() {
+        return traceId;
+    }
+
+    private void begin(S fromState, T trigger) {
+        if (!pending) {
+            this.pending = true;
+            this.state = fromState;
+            this.trigger = trigger;
+        }
+    }
+
+    private void flush(Class<? extends Exception> exceptionType, T exceptionTrigger) {
+        tracer.record(traceId, stepIndex, state, trigger, targetState,
+                movementActionNanos, postMovementActionNanos, exceptionType, exceptionTrigger);
+        reset();
+    }
+
+    private void reset() {
+        this.pending = false;
+        this.state = null;
+        this.trigger = null;
+        this.targetState = null;
+        this.movementActionNanos = FsmTraceSpan.NOT_EXECUTED;
+        this.postMovementActionNanos = FsmTraceSpan.NOT_EXECUTED;
+    }
+
+}
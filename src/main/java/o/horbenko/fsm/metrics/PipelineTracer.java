@@ -0,0 +1,219 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.metrics;
+
+import o.horbenko.fsm.error.InvalidFsmConfigurationException;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sampling tracer of pipeline runs. Registered by
+ * {@link o.horbenko.fsm.impl.AbstractFiniteStateMachine#withPipelineTracer(PipelineTracer)}.
+ * <p>
+ * Only <code>sampleRate</code> part of runs is traced. Spans of traced runs are written into preallocated
+ * ring buffer, so the oldest spans are overwritten when buffer is full. Not sampled runs are executed
+ * without any tracing overhead except one random number generation.
+ * <p>
+ * Slot of ring buffer is written by one writer at a time: writer claims slot by CAS of its sequence.
+ * If slot is being written by other writer or already holds newer span (ring wrapped during write),
+ * span is dropped (see {@link #getDroppedSpansCount()}).
+ *
+ * @param <S> State
+ * @param <T> Trigger (Event)
+ * @author Oleksii Horbenko
+ */
+public class PipelineTracer<S, T> {
+
+    private final double sampleRate;
+    private final SpanSlot<S, T>[] ring;
+    private final AtomicLong spanSequence = new AtomicLong();
+    private final AtomicLong traceSequence = new AtomicLong();
+    private final AtomicLong droppedSpans = new AtomicLong();
+
+    /**
+     * @param sampleRate part of pipeline runs to trace in range [0, 1]
+     * @param capacity   count of spans in ring buffer
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public PipelineTracer(double sampleRate, int capacity) {
+        if (!(sampleRate >= 0 && sampleRate <= 1)) {
+            throw new InvalidFsmConfigurationException("Sample rate must be in range [0, 1], but was " + sampleRate);
+        }
+        if (capacity < 1) {
+            throw new InvalidFsmConfigurationException("Trace buffer capacity must be positive, but was " + capacity);
+        }
+
+        this.sampleRate = sampleRate;
+        this.ring = new SpanSlot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new SpanSlot<>();
+        }
+    }
+
+    /**
+     * Starts trace of pipeline run if run is sampled.
+     *
+     * @param delegate listener of FSM to notify about traced movements too (nullable)
+     * @return trace or <code>null</code> if run is not sampled
+     */
+    public PipelineTrace<S, T> startTrace(FsmMovementListener<S, T> delegate) {
+        if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return null;
+        }
+        return new PipelineTrace<>(this, delegate, traceSequence.incrementAndGet());
+    }
+
+    /**
+     * Copies spans, that are currently stored in ring buffer. Spans, that are overwritten
+     * during export, are skipped.
+     *
+     * @return spans in order of recording
+     */
+    public List<FsmTraceSpan<S, T>> export() {
+        long end = spanSequence.get();
+        long start = Math.max(0, end - ring.length);
+
+        List<FsmTraceSpan<S, T>> spans = new ArrayList<>((int) (end - start));
+        for (long sequence = start; sequence < end; sequence++) {
+            FsmTraceSpan<S, T> span = ring[(int) (sequence % ring.length)].read(sequence);
+            if (span != null) {
+                spans.add(span);
+            }
+        }
+        return spans;
+    }
+
+    /**
+     * @return count of spans, that were not written because their slot was claimed by other writer
+     */
+    public long getDroppedSpansCount() {
+        return droppedSpans.get();
+    }
+
+    void record(long traceId,
+                int stepIndex,
+                S state,
+                T trigger,
+                S targetState,
+                long movementActionNanos,
+                long postMovementActionNanos,
+                Class<? extends Exception> exceptionType,
+                T exceptionTrigger) {
+
+        long sequence = spanSequence.getAndIncrement();
+        boolean written = ring[(int) (sequence % ring.length)].write(sequence, traceId, stepIndex, state, trigger, targetState,
+                movementActionNanos, postMovementActionNanos, exceptionType, exceptionTrigger);
+        if (!written) {
+            droppedSpans.incrementAndGet();
+        }
+    }
+
+
+    /**
+     * Reusable span of ring buffer, guarded by sequence lock.
+     */
+    private static final class SpanSlot<S, T> {
+
+        private static final long EMPTY = -2;
+        private static final long WRITING = -1;
+        private static final VarHandle SEQUENCE;
+
+        static {
+            try {
+                SEQUENCE = MethodHandles.lookup().findVarHandle(SpanSlot.class, "sequence", long.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private volatile long sequence = EMPTY;
+
+        private long traceId;
+        private int stepIndex;
+        private S state;
+        private T trigger;
+        private S targetState;
+        private long movementActionNanos;
+        private long postMovementActionNanos;
+        private Class<? extends Exception> exceptionType;
+        private T exceptionTrigger;
+
+        /**
+         * @return <code>false</code> if slot is being written by other writer or holds newer span
+         */
+        boolean write(long sequence,
+                   long traceId,
+                   int stepIndex,
+                   S state,
+                   T trigger,
+                   S targetState,
+                   long movementActionNanos,
+                   long postMovementActionNanos,
+                   Class<? extends Exception> exceptionType,
+                   T exceptionTrigger) {
+
+            long published;
+            do {
+                published = this.sequence;
+                if (published == WRITING || published > sequence) {
+                    return false;
+                }
+            } while (!SEQUENCE.compareAndSet(this, published, WRITING));
+            VarHandle.releaseFence();
+
+            this.traceId = traceId;
+            this.stepIndex = stepIndex;
+            this.state = state;
+            this.trigger = trigger;
+            this.targetState = targetState;
+            this.movementActionNanos = movementActionNanos;
+            this.postMovementActionNanos = postMovementActionNanos;
+            this.exceptionType = exceptionType;
+            this.exceptionTrigger = exceptionTrigger;
+
+            this.sequence = sequence;
+            return true;
+        }
+
+        FsmTraceSpan<S, T> read(long expectedSequence) {
+            if (sequence != expectedSequence) {
+                return null;
+            }
+
+            FsmTraceSpan<S, T> span = new FsmTraceSpan<>(traceId, stepIndex, state, trigger, targetState,
+                    movementActionNanos, postMovementActionNanos, exceptionType, exceptionTrigger);
+
+            VarHandle.acquireFence();
+            return sequence == expectedSequence
+                    ? span
+                    : null;
+        }
+    }
+
+}
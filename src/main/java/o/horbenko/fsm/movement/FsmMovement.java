@@ -23,15 +23,25 @@
  * */
 package o.horbenko.fsm.movement;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NonNull;
+import lombok.Setter;
+import lombok.ToString;
 import lombok.experimental.Accessors;
 import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.movementaction.AsyncFsmMovementAction;
 import o.horbenko.fsm.movementaction.FsmMovementAction;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
 
 /**
  * StateMachine transition configuration.
@@ -40,6 +50,17 @@ import java.util.Optional;
  * State of domain is initial (initial state before transition)
  * {@link FsmMovement#postMovementAction} - action after successful {@link #movementAction}.
  * State of domain is {@link FsmMovement#futureStateOnSuccess}. Can be used for storing new state in DB.
+ * <p>
+ * {@link FsmMovement#asyncMovementAction} and {@link FsmMovement#asyncPostMovementAction} - non-blocking
+ * alternatives of actions, used by {@link o.horbenko.fsm.CoreFsm#moveAsync(Object, FsmStateHolder)}.
+ * Blocking movement waits for their completion.
+ * <p>
+ * Exception triggers are resolved by exception type hierarchy: trigger of the closest registered superclass wins.
+ * Resolution result is cached per exception class, so registrations must be done
+ * by {@link #triggerOnException(Class, Object)} or {@link #setTriggerByException(Map)}.
+ * <p>
+ * {@link FsmMovement#guard} - optional condition of movement on data. Several guarded movements by the same
+ * trigger are combined into {@link GuardedFsmMovement}.
  *
  * @param <S> state type
  * @param <T> trigger (event) type
@@ -50,15 +71,31 @@ import java.util.Optional;
 @Accessors(chain = true)
 public class FsmMovement<S, T, D extends FsmStateHolder<S>> {
 
+    /*
+     * Cached resolution result for exception types without registered trigger in hierarchy
+     * */
+    private static final Object NO_CONCRETE_TRIGGER = new Object();
+
     private FsmMovementAction<D> movementAction;
     private FsmMovementAction<D> postMovementAction;
 
+    private AsyncFsmMovementAction<D> asyncMovementAction;
+    private AsyncFsmMovementAction<D> asyncPostMovementAction;
+
     private S futureStateOnSuccess;
 
+    private Predicate<D> guard;
+
     // exceptions handling
     private Map<Class<? extends Exception>, T> triggerByException;
     private T triggerOnGeneralException;
 
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private final ConcurrentMap<Class<?>, Object> resolvedTriggerByExceptionType = new ConcurrentHashMap<>();
+
 
     public FsmMovement() {
         this.triggerByException = new HashMap<>();
@@ -69,13 +106,44 @@ public class FsmMovement<S, T, D extends FsmStateHolder<S>> {
         return this;
     }
 
+    public FsmMovement<S, T, D> guard(@NonNull Predicate<D> guard) {
+        this.guard = guard;
+        return this;
+    }
+
+    /**
+     * Selects movement to execute for <code>data</code>. Called by FSM before every execution of movement.
+     *
+     * @param data data+state holder to move
+     * @return current movement or <code>null</code> if its guard rejects <code>data</code>
+     */
+    public FsmMovement<S, T, D> selectByGuard(D data) {
+        return guard == null || guard.test(data)
+                ? this
+                : null;
+    }
+
     public FsmMovement<S, T, D> movementAction(@NonNull FsmMovementAction<D> action) {
         this.movementAction = action;
+        this.asyncMovementAction = null;
         return this;
     }
 
     public FsmMovement<S, T, D> postMovementAction(@NonNull FsmMovementAction<D> action) {
         this.postMovementAction = action;
+        this.asyncPostMovementAction = null;
+        return this;
+    }
+
+    public FsmMovement<S, T, D> asyncMovementAction(@NonNull AsyncFsmMovementAction<D> action) {
+        this.asyncMovementAction = action;
+        this.movementAction = AsyncFsmMovementAction.blocking(action);
+        return this;
+    }
+
+    public FsmMovement<S, T, D> asyncPostMovementAction(@NonNull AsyncFsmMovementAction<D> action) {
+        this.asyncPostMovementAction = action;
+        this.postMovementAction = AsyncFsmMovementAction.blocking(action);
         return this;
     }
 
@@ -87,21 +155,104 @@ public class FsmMovement<S, T, D extends FsmStateHolder<S>> {
     public FsmMovement<S, T, D> triggerOnException(@NonNull Class<? extends Exception> exceptionType,
                                                    @NonNull T triggerOnException) {
         this.triggerByException.put(exceptionType, triggerOnException);
+        this.resolvedTriggerByExceptionType.clear();
         return this;
     }
 
+    /**
+     * @return read-only view of triggers by exception types. Registrations are changed only by
+     * {@link #triggerOnException(Class, Object)} and {@link #setTriggerByException(Map)}, so cache of resolved
+     * triggers is never stale
+     */
+    public Map<Class<? extends Exception>, T> getTriggerByException() {
+        return Collections.unmodifiableMap(triggerByException);
+    }
+
+    public FsmMovement<S, T, D> setTriggerByException(@NonNull Map<Class<? extends Exception>, T> triggerByException) {
+        this.triggerByException = new HashMap<>(triggerByException);
+        this.resolvedTriggerByExceptionType.clear();
+        return this;
+    }
+
+    /**
+     * Resolves trigger for movement on exception. Trigger registered for the closest superclass
+     * of <code>exceptionType</code> (including <code>exceptionType</code> itself) wins.
+     * Falls back to {@link #getTriggerOnGeneralException()} when there is no registered trigger in hierarchy.
+     * <p>
+     * Hierarchy is walked once per exception class, subsequent calls are served from cache.
+     *
+     * @param exceptionType type of thrown exception
+     * @return trigger to move on, or <code>null</code> if neither concrete nor general exception trigger defined
+     */
+    @SuppressWarnings("unchecked")
+    public T resolveTriggerOnException(Class<? extends Exception> exceptionType) {
+        Object resolved = resolvedTriggerByExceptionType.get(exceptionType);
+
+        if (resolved == null) {
+            resolved = findClosestTriggerInHierarchy(exceptionType);
+            resolvedTriggerByExceptionType.putIfAbsent(exceptionType, resolved);
+        }
+
+        return resolved == NO_CONCRETE_TRIGGER
+                ? triggerOnGeneralException
+                : (T) resolved;
+    }
+
+    private Object findClosestTriggerInHierarchy(Class<?> exceptionType) {
+        for (Class<?> type = exceptionType; type != null; type = type.getSuperclass()) {
+            T trigger = triggerByException.get(type);
+            if (trigger != null) {
+                return trigger;
+            }
+        }
+        return NO_CONCRETE_TRIGGER;
+    }
+
+    /**
+     * @return independent copy of movement configuration, later changes of current movement do not affect it
+     */
+    public FsmMovement<S, T, D> copy() {
+        return copyConfigurationTo(new FsmMovement<>());
+    }
+
+    protected <M extends FsmMovement<S, T, D>> M copyConfigurationTo(M copy) {
+        copy.setMovementAction(movementAction);
+        copy.setPostMovementAction(postMovementAction);
+        copy.setAsyncMovementAction(asyncMovementAction);
+        copy.setAsyncPostMovementAction(asyncPostMovementAction);
+        copy.setFutureStateOnSuccess(futureStateOnSuccess);
+        copy.setGuard(guard);
+        copy.setTriggerByException(triggerByException);
+        copy.setTriggerOnGeneralException(triggerOnGeneralException);
+        return copy;
+    }
+
     public Optional<T> getTriggerByConcreteException(Class<? extends Exception> exceptionType) {
         return Optional.ofNullable(triggerByException.get(exceptionType));
     }
 
 
+    /**
+     * Convenience API. FSM uses allocation-free {@link #getMovementActionOrNull()}.
+     */
     public Optional<FsmMovementAction<D>> getMovementAction() {
         return Optional.ofNullable(movementAction);
     }
 
+    /**
+     * Convenience API. FSM uses allocation-free {@link #getPostMovementActionOrNull()}.
+     */
     public Optional<FsmMovementAction<D>> getPostMovementAction() {
         return Optional.ofNullable(postMovementAction);
     }
 
+    public FsmMovementAction<D> getMovementActionOrNull() {
+        return movementAction;
+    }
+
+    public FsmMovementAction<D> getPostMovementActionOrNull() {
+        return postMovementAction;
+    }
+
 
 }
@@ -0,0 +1,243 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.movement;
+
+import lombok.NonNull;
+import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.error.InvalidFsmConfigurationException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Movement by trigger with several candidate movements, selected by their guards (see {@link FsmMovement#guard}).
+ * <p>
+ * Candidates are evaluated in order of registration, the first candidate with passed guard is executed.
+ * Candidate without guard is fallback, that is executed when no guard passes.
+ * <p>
+ * With adaptive ordering candidates are periodically reordered by frequency of passed guards, so frequently
+ * selected candidates are evaluated first. Reordering changes result of selection
+ * if guards are not mutually exclusive, so it must be enabled only for exclusive guards.
+ * Selections are counted per thread and published to shared statistics every reorder interval
+ * of the thread, so selection does not write shared memory. Only one thread reorders at a time.
+ *
+ * @param <S> state type
+ * @param <T> trigger (event) type
+ * @param <D> state holder or context
+ * @author Oleksii Horbenko
+ */
+public class GuardedFsmMovement<S, T, D extends FsmStateHolder<S>> extends FsmMovement<S, T, D> {
+
+    public static final int DEFAULT_REORDER_INTERVAL = 4096;
+
+    private volatile Candidate<S, T, D>[] candidates = newCandidates(0);
+    private FsmMovement<S, T, D> fallback;
+
+    private boolean adaptiveOrdering;
+    private int reorderInterval;
+
+    private final ThreadLocal<SelectionStatistics> selectionStatistics = ThreadLocal.withInitial(SelectionStatistics::new);
+    private final AtomicBoolean reordering = new AtomicBoolean();
+
+    /**
+     * Adds candidate movement. Movement without guard replaces fallback.
+     *
+     * @return current movement
+     */
+    public GuardedFsmMovement<S, T, D> withCandidate(@NonNull FsmMovement<S, T, D> movement) {
+        if (movement instanceof GuardedFsmMovement) {
+            throw new InvalidFsmConfigurationException("Guarded movement can not be candidate of guarded movement");
+        }
+
+        if (movement.getGuard() == null) {
+            this.fallback = movement;
+        } else {
+            Candidate<S, T, D>[] extended = Arrays.copyOf(candidates, candidates.length + 1);
+            extended[candidates.length] = new Candidate<>(candidates.length, movement.getGuard(), movement);
+            this.candidates = extended;
+        }
+        return this;
+    }
+
+    /**
+     * Enables adaptive ordering of candidates. Must be used only if guards of candidates are mutually exclusive.
+     *
+     * @param reorderInterval count of selections between reorderings
+     * @return current movement
+     */
+    public GuardedFsmMovement<S, T, D> withAdaptiveOrdering(int reorderInterval) {
+        if (reorderInterval < 1) {
+            throw new InvalidFsmConfigurationException("Reorder interval must be positive, but = " + reorderInterval);
+        }
+        this.adaptiveOrdering = true;
+        this.reorderInterval = reorderInterval;
+        return this;
+    }
+
+    @Override
+    public FsmMovement<S, T, D> selectByGuard(D data) {
+        Candidate<S, T, D>[] candidates = this.candidates;
+
+        for (Candidate<S, T, D> candidate : candidates) {
+            if (candidate.guard.test(data)) {
+                if (adaptiveOrdering) {
+                    onSelection(candidate.index);
+                }
+                return candidate.movement;
+            }
+        }
+
+        if (adaptiveOrdering) {
+            onSelection(-1);
+        }
+        return fallback;
+    }
+
+    /**
+     * @return independent copy of movement with copies of candidates in current order of evaluation
+     */
+    @Override
+    public GuardedFsmMovement<S, T, D> copy() {
+        GuardedFsmMovement<S, T, D> copy = copyConfigurationTo(new GuardedFsmMovement<>());
+
+        Candidate<S, T, D>[] candidates = this.candidates;
+        Candidate<S, T, D>[] copiedCandidates = newCandidates(candidates.length);
+        for (int i = 0; i < candidates.length; i++) {
+            copiedCandidates[i] = new Candidate<>(i, candidates[i].guard, candidates[i].movement.copy());
+        }
+        copy.candidates = copiedCandidates;
+        copy.fallback = fallback == null
+                ? null
+                : fallback.copy();
+        copy.adaptiveOrdering = adaptiveOrdering;
+        copy.reorderInterval = reorderInterval;
+        return copy;
+    }
+
+    /**
+     * @return guarded candidates in current order of evaluation
+     */
+    public List<FsmMovement<S, T, D>> getCandidates() {
+        Candidate<S, T, D>[] candidates = this.candidates;
+        List<FsmMovement<S, T, D>> movements = new ArrayList<>(candidates.length);
+        for (Candidate<S, T, D> candidate : candidates) {
+            movements.add(candidate.movement);
+        }
+        return Collections.unmodifiableList(movements);
+    }
+
+    /**
+     * @return movement without guard or <code>null</code>
+     */
+    public FsmMovement<S, T, D> getFallbackOrNull() {
+        return fallback;
+    }
+
+    private void onSelection(int candidateIndex) {
+        SelectionStatistics statistics = selectionStatistics.get();
+        if (candidateIndex >= 0) {
+            statistics.hit(candidateIndex);
+        }
+        if (++statistics.selections < reorderInterval) {
+            return;
+        }
+
+        statistics.selections = 0;
+        publish(statistics);
+        if (reordering.compareAndSet(false, true)) {
+            try {
+                reorder();
+            } finally {
+                reordering.set(false);
+            }
+        }
+    }
+
+    private void publish(SelectionStatistics statistics) {
+        long[] hits = statistics.hits;
+        for (Candidate<S, T, D> candidate : candidates) {
+            if (candidate.index < hits.length && hits[candidate.index] != 0) {
+                candidate.hits.addAndGet(hits[candidate.index]);
+            }
+        }
+        Arrays.fill(hits, 0);
+    }
+
+    private void reorder() {
+        Candidate<S, T, D>[] reordered = candidates.clone();
+        // snapshot of hits is sorted, so concurrent publishing does not change order during sort;
+        // decay, so order follows recent distribution of data
+        for (Candidate<S, T, D> candidate : reordered) {
+            candidate.rank = candidate.hits.getAndUpdate(hits -> hits >>> 1);
+        }
+        // stable sort keeps order of registration for equally frequent candidates
+        Arrays.sort(reordered, Comparator.comparingLong((Candidate<S, T, D> candidate) -> candidate.rank).reversed());
+        this.candidates = reordered;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <S, T, D extends FsmStateHolder<S>> Candidate<S, T, D>[] newCandidates(int length) {
+        return (Candidate<S, T, D>[]) new Candidate[length];
+    }
+
+
+    private static final class Candidate<S, T, D extends FsmStateHolder<S>> {
+
+        private final int index;
+        private final Predicate<D> guard;
+        private final FsmMovement<S, T, D> movement;
+        private final AtomicLong hits = new AtomicLong();
+        // snapshot of hits, used only by reordering thread
+        private long rank;
+
+        private Candidate(int index, Predicate<D> guard, FsmMovement<S, T, D> movement) {
+            this.index = index;
+            this.guard = guard;
+            this.movement = movement;
+        }
+    }
+
+    /**
+     * Selections of current thread since last publishing, hits are indexed by {@link Candidate#index}.
+     */
+    private static final class SelectionStatistics {
+
+        private long[] hits = new long[0];
+        private int selections;
+
+        private void hit(int candidateIndex) {
+            if (candidateIndex >= hits.length) {
+                hits = Arrays.copyOf(hits, candidateIndex + 1);
+            }
+            hits[candidateIndex]++;
+        }
+    }
+
+}
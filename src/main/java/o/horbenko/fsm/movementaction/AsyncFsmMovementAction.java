@@ -0,0 +1,78 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.movementaction;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Non-blocking alternative of {@link FsmMovementAction}. Used by {@link o.horbenko.fsm.CoreFsm#moveAsync(Object, o.horbenko.fsm.FsmStateHolder)}.
+ * <p>
+ * Exception thrown by {@link #execute(Object)} or exceptional completion of returned future
+ * are handled by exception triggers of the movement.
+ *
+ * @param <D> data type
+ * @author Oleksii Horbenko
+ */
+public interface AsyncFsmMovementAction<D> {
+
+    CompletableFuture<D> execute(D data);
+
+    /**
+     * Adapts async action to blocking {@link FsmMovementAction}. Waits for completion of the returned future
+     * and rethrows the original exception of exceptional completion (checked exceptions too),
+     * so exception triggers are resolved by the same exception as in async movement.
+     *
+     * @param asyncAction action to adapt
+     * @param <D>         data type
+     * @return blocking action
+     */
+    static <D> FsmMovementAction<D> blocking(AsyncFsmMovementAction<D> asyncAction) {
+        return data -> {
+            try {
+                return asyncAction.execute(data).join();
+            } catch (CompletionException e) {
+                throw AsyncFsmMovementAction.<RuntimeException>rethrow(unwrapError(e));
+            }
+        };
+    }
+
+    /**
+     * @param error exceptional completion of future
+     * @return original exception, wrapped by {@link CompletionException} or {@link ExecutionException}
+     */
+    static Throwable unwrapError(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E extends Throwable> E rethrow(Throwable error) throws E {
+        throw (E) error;
+    }
+
+}
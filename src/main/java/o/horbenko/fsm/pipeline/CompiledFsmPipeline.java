@@ -0,0 +1,140 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.pipeline;
+
+import lombok.Getter;
+import lombok.NonNull;
+import o.horbenko.fsm.FiniteStateMachine;
+import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.error.PipelineConfigurationException;
+import o.horbenko.fsm.movement.FsmMovement;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * {@link FsmPipeline} compiled against concrete {@link FiniteStateMachine}.
+ * <p>
+ * Each pipe is resolved to {@link FsmMovement} of the FSM and linked to the step of the movement target state,
+ * so running of the pipeline follows references instead of pipeline and FSM lookups.
+ * Lookup by state is done only on pipeline start and after movement by exception trigger.
+ * <p>
+ * Can be created by {@link FiniteStateMachine#compilePipeline(FsmPipeline)}
+ * and executed only by the same FSM.
+ *
+ * @param <S> - State
+ * @param <T> - Trigger (Event)
+ * @param <D> - Data type
+ * @author Oleksii Horbenko
+ */
+public class CompiledFsmPipeline<S, T, D extends FsmStateHolder<S>> {
+
+    @Getter
+    private final FiniteStateMachine<S, T, D> fsm;
+
+    private final Map<S, Step<S, T, D>> stepByState;
+
+    /**
+     * @param fsm            FSM to bind pipeline to
+     * @param pipeline       pipeline to compile
+     * @param movementLookup resolves movement of <code>fsm</code> by state and trigger (returns <code>null</code> if not found)
+     * @throws PipelineConfigurationException if FSM has no movement for one of pipes
+     */
+    public CompiledFsmPipeline(@NonNull FiniteStateMachine<S, T, D> fsm,
+                               @NonNull FsmPipeline<S, T> pipeline,
+                               @NonNull BiFunction<S, T, FsmMovement<S, T, D>> movementLookup) {
+        this.fsm = fsm;
+        this.stepByState = new HashMap<>();
+
+        // 1. Resolve movements
+        for (Map.Entry<S, T> pipe : pipeline.getTriggersByState().entrySet()) {
+            FsmMovement<S, T, D> movement = movementLookup.apply(pipe.getKey(), pipe.getValue());
+            if (movement == null) {
+                throw new PipelineConfigurationException("FSM has no movement from state=" + pipe.getKey() + " by trigger=" + pipe.getValue());
+            }
+            stepByState.put(pipe.getKey(), new Step<>(pipe.getKey(), pipe.getValue(), movement));
+        }
+
+        // 2. Link steps by movement target states
+        for (Step<S, T, D> step : stepByState.values()) {
+            step.next = stepByState.get(step.movement.getFutureStateOnSuccess());
+        }
+    }
+
+    /**
+     * Pipeline without resolved movements. Every step has no {@link Step#getMovement()} and no {@link Step#getNext()},
+     * so next step is looked up by state after each movement.
+     * Used by FSMs, that give no access to their movements.
+     *
+     * @param fsm      FSM to bind pipeline to
+     * @param pipeline pipeline to compile
+     */
+    public CompiledFsmPipeline(@NonNull FiniteStateMachine<S, T, D> fsm,
+                               @NonNull FsmPipeline<S, T> pipeline) {
+        this.fsm = fsm;
+        this.stepByState = new HashMap<>();
+        for (Map.Entry<S, T> pipe : pipeline.getTriggersByState().entrySet()) {
+            stepByState.put(pipe.getKey(), new Step<>(pipe.getKey(), pipe.getValue(), null));
+        }
+    }
+
+    /**
+     * @param state current state
+     * @return step to execute from <code>state</code> or <code>null</code> if pipeline has no pipe from <code>state</code>
+     */
+    public Step<S, T, D> getStepByState(S state) {
+        return stepByState.get(state);
+    }
+
+    /**
+     * Resolved pipe of compiled pipeline.
+     */
+    @Getter
+    public static final class Step<S, T, D extends FsmStateHolder<S>> {
+
+        private final S state;
+        private final T trigger;
+        private final FsmMovement<S, T, D> movement;
+
+        /**
+         * Step from target state of {@link #movement} or <code>null</code> if pipeline ends there.
+         */
+        private Step<S, T, D> next;
+
+        private Step(S state, T trigger, FsmMovement<S, T, D> movement) {
+            this.state = state;
+            this.trigger = trigger;
+            this.movement = movement;
+        }
+
+        /**
+         * @return state after successful movement of the step or <code>null</code> if movement is not resolved
+         */
+        public S getTargetState() {
+            return movement == null ? null : movement.getFutureStateOnSuccess();
+        }
+    }
+
+}
@@ -0,0 +1,375 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.pipeline;
+
+import lombok.Getter;
+import lombok.NonNull;
+import o.horbenko.fsm.error.ParallelStageJoinException;
+import o.horbenko.fsm.error.PipelineConfigurationException;
+import o.horbenko.fsm.movementaction.AsyncFsmMovementAction;
+import o.horbenko.fsm.movementaction.FsmMovementAction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Fan-out / fan-in stage of pipeline: movement action, that runs branches in parallel on executor
+ * and joins them by {@link JoinPolicy}. Latency of stage is latency of the slowest required branch
+ * instead of sum of latencies.
+ * <p>
+ * Stage is registered as async action of movement of pipe
+ * (see {@link o.horbenko.fsm.movement.FsmMovement#asyncMovementAction(AsyncFsmMovementAction)}),
+ * so it is executed by blocking, async and compiled pipelines and movement moves to single target state after join.
+ * Failed join throws {@link ParallelStageJoinException}, that is handled by exception triggers of the movement.
+ * <p>
+ * Branches are shared or isolated:
+ * <ul>
+ *     <li>shared (default, only {@link JoinPolicy#ALL}) - all branches enrich the same context in place,
+ *     so they must not modify the same fields. Join completes after all branches are done,
+ *     so the movement never runs concurrently with branches;</li>
+ *     <li>isolated (see {@link #withIsolatedBranches(UnaryOperator)}) - every branch gets its own context.
+ *     Join completes as soon as result of policy is known: required count of branches succeeded
+ *     or it can not be reached. Branches, that are still running, are ignored: their results are dropped
+ *     and branches, that were not started yet, are skipped.</li>
+ * </ul>
+ * Results of branches, that succeeded before join completed, are passed in branch order to combiner
+ * (see {@link #withCombiner(BiFunction)}), that returns data of the movement.
+ * Default combiner returns the context of the stage, so stage with isolated branches requires combiner.
+ * <p>
+ * Configuration is checked by {@link #validate()} when stage is registered as movement action
+ * (see {@link o.horbenko.fsm.configurer.FsmBuilder.MovementBuilder#parallelMovementAction(FsmParallelStage)})
+ * and can not be changed after that.
+ *
+ * @param <D> data type
+ * @author Oleksii Horbenko
+ */
+public class FsmParallelStage<D> implements AsyncFsmMovementAction<D> {
+
+    public enum JoinPolicy {
+
+        /**
+         * All branches must succeed
+         */
+        ALL,
+
+        /**
+         * At least one branch must succeed
+         */
+        FIRST_SUCCESS,
+
+        /**
+         * Configured count of branches must succeed
+         */
+        QUORUM
+    }
+
+    @Getter
+    private final JoinPolicy joinPolicy;
+    private final int quorum;
+    private final Executor executor;
+    private final List<FsmMovementAction<D>> branches;
+    private BiFunction<D, List<D>, D> combiner;
+    private UnaryOperator<D> branchContext;
+    private volatile boolean validated;
+
+    private FsmParallelStage(JoinPolicy joinPolicy, int quorum, Executor executor) {
+        this.joinPolicy = joinPolicy;
+        this.quorum = quorum;
+        this.executor = executor;
+        this.branches = new ArrayList<>();
+    }
+
+    public static <D> FsmParallelStage<D> all(@NonNull Executor executor) {
+        return new FsmParallelStage<>(JoinPolicy.ALL, 0, executor);
+    }
+
+    /**
+     * Requires isolated branches, see {@link #withIsolatedBranches(UnaryOperator)}.
+     */
+    public static <D> FsmParallelStage<D> firstSuccess(@NonNull Executor executor) {
+        return new FsmParallelStage<>(JoinPolicy.FIRST_SUCCESS, 1, executor);
+    }
+
+    /**
+     * Requires isolated branches, see {@link #withIsolatedBranches(UnaryOperator)}.
+     *
+     * @param quorum   count of branches, that must succeed
+     * @param executor executor to run branches on
+     */
+    public static <D> FsmParallelStage<D> quorum(int quorum, @NonNull Executor executor) {
+        if (quorum < 1) {
+            throw new PipelineConfigurationException("Quorum of parallel stage must be positive, but was " + quorum);
+        }
+        return new FsmParallelStage<>(JoinPolicy.QUORUM, quorum, executor);
+    }
+
+    /**
+     * @param branch action to run in parallel with other branches
+     * @return current stage
+     */
+    public FsmParallelStage<D> withBranch(@NonNull FsmMovementAction<D> branch) {
+        checkNotValidated();
+        this.branches.add(branch);
+        return this;
+    }
+
+    /**
+     * @param combiner function of context and results of successful branches (in branch order),
+     *                 that returns data of the movement. Exception of combiner fails the stage
+     * @return current stage
+     */
+    public FsmParallelStage<D> withCombiner(@NonNull BiFunction<D, List<D>, D> combiner) {
+        checkNotValidated();
+        this.combiner = combiner;
+        return this;
+    }
+
+    /**
+     * Isolates branches, so join completes without waiting for branches, that are not required by policy.
+     * Results of isolated branches reach data of the movement only by combiner, so combiner is required.
+     *
+     * @param branchContext function of context of the stage, that returns context of one branch, e.g. copy.
+     *                      Applied by thread of the stage before branches are started, so copy never races
+     *                      with another branch. {@link UnaryOperator#identity()} is allowed only if branches
+     *                      do not modify context
+     * @return current stage
+     */
+    public FsmParallelStage<D> withIsolatedBranches(@NonNull UnaryOperator<D> branchContext) {
+        checkNotValidated();
+        this.branchContext = branchContext;
+        return this;
+    }
+
+    /**
+     * @return read-only view of branches
+     */
+    public List<FsmMovementAction<D>> getBranches() {
+        return Collections.unmodifiableList(branches);
+    }
+
+    /**
+     * @return count of branches, that must succeed
+     */
+    public int getRequiredSuccesses() {
+        return joinPolicy == JoinPolicy.ALL
+                ? branches.size()
+                : quorum;
+    }
+
+    /**
+     * Checks configuration of stage. Stage can not be changed after successful validation.
+     *
+     * @return current stage
+     * @throws PipelineConfigurationException if stage has no branches, fewer branches than required successes,
+     *                                        join policy other than {@link JoinPolicy#ALL} with shared branches
+     *                                        or isolated branches without combiner
+     */
+    public FsmParallelStage<D> validate() {
+        int requiredSuccesses = getRequiredSuccesses();
+        if (branches.isEmpty() || requiredSuccesses > branches.size()) {
+            throw new PipelineConfigurationException(
+                    "Parallel stage requires " + requiredSuccesses + " successful branches, but has " + branches.size());
+        }
+        if (joinPolicy != JoinPolicy.ALL && branchContext == null) {
+            throw new PipelineConfigurationException(
+                    "Parallel stage with join policy " + joinPolicy + " requires isolated branches");
+        }
+        if (branchContext != null && combiner == null) {
+            throw new PipelineConfigurationException("Parallel stage with isolated branches requires combiner");
+        }
+
+        this.validated = true;
+        return this;
+    }
+
+    /**
+     * Runs branches and returns future of join, that completes with result of combiner.
+     *
+     * @throws PipelineConfigurationException if stage was not validated and is invalid, see {@link #validate()}
+     */
+    @Override
+    public CompletableFuture<D> execute(D data) {
+        if (!validated) {
+            validate();
+        }
+
+        BiFunction<D, List<D>, D> combiner = this.combiner == null
+                ? (stageData, branchResults) -> stageData
+                : this.combiner;
+        Join<D> join = new Join<>(data, branches.size(), getRequiredSuccesses(), branchContext != null, combiner);
+        for (int i = 0; i < branches.size(); i++) {
+            FsmMovementAction<D> branch = branches.get(i);
+            int index = i;
+            D context;
+            try {
+                context = branchContext == null
+                        ? data
+                        : branchContext.apply(data);
+            } catch (Throwable e) {
+                join.onBranchDone(index, new BranchFailure(e));
+                continue;
+            }
+
+            try {
+                executor.execute(() -> runBranch(branch, index, context, join));
+            } catch (RejectedExecutionException e) {
+                join.onBranchDone(index, new BranchFailure(e));
+            }
+        }
+        return join.result;
+    }
+
+    private void checkNotValidated() {
+        if (validated) {
+            throw new PipelineConfigurationException("Parallel stage can not be changed after validation");
+        }
+    }
+
+    private void runBranch(FsmMovementAction<D> branch, int index, D context, Join<D> join) {
+        if (join.decided.get()) {
+            // join completed without this branch
+            return;
+        }
+
+        Object outcome;
+        try {
+            outcome = branch.execute(context);
+        } catch (Throwable e) {
+            outcome = new BranchFailure(e);
+        }
+        join.onBranchDone(index, outcome);
+    }
+
+    private static final class BranchFailure {
+        private final Throwable error;
+
+        private BranchFailure(Throwable error) {
+            this.error = error;
+        }
+    }
+
+    private static final class Join<D> {
+        private static final Object NULL_RESULT = new Object();
+
+        private final CompletableFuture<D> result = new CompletableFuture<>();
+        private final D data;
+        private final int requiredSuccesses;
+        private final int toleratedFailures;
+        private final boolean isolated;
+        private final BiFunction<D, List<D>, D> combiner;
+        private final AtomicReferenceArray<Object> outcomes;
+        private final AtomicInteger successes = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicInteger done = new AtomicInteger();
+        private final AtomicBoolean decided = new AtomicBoolean();
+
+        private Join(D data, int branches, int requiredSuccesses, boolean isolated, BiFunction<D, List<D>, D> combiner) {
+            this.data = data;
+            this.requiredSuccesses = requiredSuccesses;
+            this.toleratedFailures = branches - requiredSuccesses;
+            this.isolated = isolated;
+            this.combiner = combiner;
+            this.outcomes = new AtomicReferenceArray<>(branches);
+        }
+
+        /**
+         * @param outcome result of branch or {@link BranchFailure}
+         */
+        private void onBranchDone(int index, Object outcome) {
+            // outcome is published before it is counted, so counted outcomes are visible to deciding branch
+            outcomes.set(index, outcome == null ? NULL_RESULT : outcome);
+            if (outcome instanceof BranchFailure) {
+                failures.incrementAndGet();
+            } else {
+                successes.incrementAndGet();
+            }
+
+            // shared context is released only after all branches are done
+            if (done.incrementAndGet() < outcomes.length() && !isolated) {
+                return;
+            }
+
+            if (successes.get() >= requiredSuccesses) {
+                if (decided.compareAndSet(false, true)) {
+                    complete();
+                }
+            } else if (failures.get() > toleratedFailures) {
+                if (decided.compareAndSet(false, true)) {
+                    result.completeExceptionally(joinFailure());
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void complete() {
+            List<D> branchResults = new ArrayList<>(outcomes.length());
+            for (int i = 0; i < outcomes.length(); i++) {
+                Object outcome = outcomes.get(i);
+                if (outcome != null && !(outcome instanceof BranchFailure)) {
+                    branchResults.add(outcome == NULL_RESULT ? null : (D) outcome);
+                }
+            }
+
+            try {
+                result.complete(combiner.apply(data, Collections.unmodifiableList(branchResults)));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        }
+
+        private Throwable joinFailure() {
+            List<Throwable> errors = new ArrayList<>();
+            for (int i = 0; i < outcomes.length(); i++) {
+                Object outcome = outcomes.get(i);
+                if (outcome instanceof BranchFailure) {
+                    errors.add(((BranchFailure) outcome).error);
+                }
+            }
+
+            Throwable firstFailure = errors.get(0);
+            if (firstFailure instanceof Error) {
+                // errors are not handled by exception triggers
+                return firstFailure;
+            }
+
+            ParallelStageJoinException exception = new ParallelStageJoinException("Parallel stage failed: "
+                    + errors.size() + " of " + outcomes.length() + " branches failed, required successes = " + requiredSuccesses,
+                    firstFailure);
+            for (int i = 1; i < errors.size(); i++) {
+                exception.addSuppressed(errors.get(i));
+            }
+            return exception;
+        }
+    }
+
+}
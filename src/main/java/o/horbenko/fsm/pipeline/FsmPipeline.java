@@ -26,6 +26,7 @@ package o.horbenko.fsm.pipeline;
 import lombok.NonNull;
 import o.horbenko.fsm.error.PipelineConfigurationException;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -48,6 +49,9 @@ import java.util.Optional;
  * <br>&nbsp;.addPipe(States.A, Triggers.T1)
  * <br>&nbsp;.addPipe(States.B, Triggers.T2);
  * </code>
+ * <p>
+ * Pipe is one movement, but its action can fan out to several branches, executed in parallel
+ * and joined before movement to the next state (see {@link FsmParallelStage}).
  *
  * @param <S> - State
  * @param <T> - Trigger (Event)
@@ -69,6 +73,13 @@ public class FsmPipeline<S, T> {
         return Optional.ofNullable(triggerByStateMap.get(currentState));
     }
 
+    /**
+     * @return read-only view of triggers for next movement by states
+     */
+    public Map<S, T> getTriggersByState() {
+        return Collections.unmodifiableMap(triggerByStateMap);
+    }
+
     /**
      * Adds new movement in pipeline. (Specifies new transition from <code>stateFrom</code> to new state by trigger <code>triggerForNextMovement</code>)
      *
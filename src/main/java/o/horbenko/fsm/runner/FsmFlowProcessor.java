@@ -0,0 +1,287 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.runner;
+
+import lombok.NonNull;
+import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.error.InvalidFsmConfigurationException;
+import o.horbenko.fsm.result.FsmMoveResult;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * {@link Flow.Processor}, that moves consumed events on {@link KeyedFsmRunner} and publishes results of movements.
+ * <p>
+ * Events of the same entity (see key extractor) are moved one by one in order of consumption,
+ * events of different entities are moved in parallel. Results are published in order of completion.
+ * Failed movement is published as {@link FsmMoveResult#failure(Object, Exception)} and does not stop the stream.
+ * <p>
+ * Backpressure: at most <code>maxInFlight</code> events are requested from upstream and not yet published downstream
+ * (moving or waiting for downstream demand). Next event is requested from upstream only when result is published,
+ * so slow movements or slow downstream slow down the source, and memory usage is bounded.
+ * <p>
+ * Processor has single downstream subscriber and single upstream subscription.
+ *
+ * @param <K> entity key type
+ * @param <S> State
+ * @param <T> Trigger (Event)
+ * @param <D> Data type
+ * @author Oleksii Horbenko
+ */
+public class FsmFlowProcessor<K, S, T, D extends FsmStateHolder<S>>
+        implements Flow.Processor<FsmEvent<T, D>, FsmMoveResult<D>> {
+
+    private final KeyedFsmRunner<K, S, T, D> runner;
+    private final Function<D, K> keyExtractor;
+    private final int maxInFlight;
+
+    private final AtomicReference<Flow.Subscription> upstream = new AtomicReference<>();
+    private final AtomicReference<Flow.Subscriber<? super FsmMoveResult<D>>> downstream = new AtomicReference<>();
+
+    private final Queue<FsmMoveResult<D>> results = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicInteger drainWip = new AtomicInteger();
+
+    private volatile boolean upstreamDone;
+    private volatile Throwable upstreamError;
+    private volatile Throwable fatalError;
+    private volatile boolean cancelled;
+
+    /**
+     * @param runner       runner of movements with per-entity ordering
+     * @param keyExtractor key of entity, that data belongs to
+     * @param maxInFlight  max count of consumed and not yet published events
+     */
+    public FsmFlowProcessor(@NonNull KeyedFsmRunner<K, S, T, D> runner,
+                            @NonNull Function<D, K> keyExtractor,
+                            int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new InvalidFsmConfigurationException("Max in-flight events count must be positive. Actual = " + maxInFlight);
+        }
+        this.runner = runner;
+        this.keyExtractor = keyExtractor;
+        this.maxInFlight = maxInFlight;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super FsmMoveResult<D>> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+
+        if (!downstream.compareAndSet(null, subscriber)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("Processor supports only one subscriber"));
+            return;
+        }
+
+        subscriber.onSubscribe(new DownstreamSubscription());
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        Objects.requireNonNull(subscription, "subscription");
+
+        if (!upstream.compareAndSet(null, subscription) || cancelled) {
+            subscription.cancel();
+            return;
+        }
+        subscription.request(maxInFlight);
+    }
+
+    @Override
+    public void onNext(FsmEvent<T, D> event) {
+        Objects.requireNonNull(event, "event");
+        if (cancelled) {
+            return;
+        }
+
+        inFlight.incrementAndGet();
+
+        D data = event.getData();
+        CompletableFuture<D> movement;
+        try {
+            movement = runner.submit(keyExtractor.apply(data), event.getTrigger(), data);
+        } catch (RuntimeException e) {
+            movement = CompletableFuture.failedFuture(e);
+        }
+
+        movement.whenComplete((movedData, error) -> onMoved(data, movedData, error));
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        Objects.requireNonNull(throwable, "throwable");
+        upstreamError = throwable;
+        upstreamDone = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        upstreamDone = true;
+        drain();
+    }
+
+    /**
+     * @return count of consumed events, that are not moved yet
+     */
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+
+    private void onMoved(D initialData, D movedData, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause()
+                : error;
+
+        if (cause == null) {
+            results.offer(FsmMoveResult.success(movedData));
+        } else if (cause instanceof Exception) {
+            results.offer(FsmMoveResult.failure(initialData, (Exception) cause));
+        } else {
+            // errors are not results of movement, stream is terminated
+            fatalError = cause;
+            cancelUpstream();
+        }
+
+        // result is offered before decrement, so drain sees it when in-flight count is zero
+        inFlight.decrementAndGet();
+        drain();
+    }
+
+    /**
+     * Publishes results on downstream demand and requests upstream event for every published result.
+     * Only one thread drains at a time, others just mark, that drain has to be repeated.
+     */
+    private void drain() {
+        if (drainWip.getAndIncrement() != 0) {
+            return;
+        }
+
+        int missed = 1;
+        do {
+            Flow.Subscriber<? super FsmMoveResult<D>> subscriber = downstream.get();
+            if (subscriber != null) {
+                if (cancelled) {
+                    results.clear();
+                    return;
+                }
+
+                Throwable fatal = fatalError;
+                if (fatal != null) {
+                    terminate();
+                    subscriber.onError(fatal);
+                    return;
+                }
+
+                long demand = requested.get();
+                long emitted = 0;
+                FsmMoveResult<D> result;
+                while (emitted != demand && !cancelled && (result = results.poll()) != null) {
+                    subscriber.onNext(result);
+                    emitted++;
+                }
+
+                if (emitted != 0) {
+                    if (demand != Long.MAX_VALUE) {
+                        requested.addAndGet(-emitted);
+                    }
+                    requestUpstream(emitted);
+                }
+
+                if (!cancelled && upstreamDone && inFlight.get() == 0 && results.isEmpty()) {
+                    terminate();
+                    Throwable error = upstreamError;
+                    if (error == null) {
+                        subscriber.onComplete();
+                    } else {
+                        subscriber.onError(error);
+                    }
+                    return;
+                }
+            }
+
+            missed = drainWip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void requestUpstream(long n) {
+        Flow.Subscription subscription = upstream.get();
+        if (subscription != null && !upstreamDone) {
+            subscription.request(n);
+        }
+    }
+
+    private void cancelUpstream() {
+        Flow.Subscription subscription = upstream.get();
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
+    private void terminate() {
+        cancelled = true;
+        results.clear();
+    }
+
+    private final class DownstreamSubscription implements Flow.Subscription {
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                fatalError = new IllegalArgumentException("Requested count must be positive. Actual = " + n);
+                cancelUpstream();
+            } else {
+                requested.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            cancelUpstream();
+            drain();
+        }
+    }
+
+}
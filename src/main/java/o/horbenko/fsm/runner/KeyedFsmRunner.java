@@ -0,0 +1,189 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.runner;
+
+import lombok.NonNull;
+import o.horbenko.fsm.CoreFsm;
+import o.horbenko.fsm.FsmStateHolder;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+/**
+ * Runs movements of {@link CoreFsm} with per-entity serialization.
+ * <p>
+ * Every entity key has its own queue of submitted movements (mailbox). Movements of the same key
+ * are executed one by one in submission order, movements of different keys are executed in parallel on executor.
+ * Mailbox of the key is removed, when there is nothing to execute for the key.
+ * If executor rejects movements, their futures are completed exceptionally with the rejection.
+ *
+ * @param <K> entity key type
+ * @param <S> State
+ * @param <T> Trigger (Event)
+ * @param <D> Data type
+ * @author Oleksii Horbenko
+ */
+public class KeyedFsmRunner<K, S, T, D extends FsmStateHolder<S>> {
+
+    /**
+     * Max count of movements executed in one run of mailbox. Lets other keys use executor threads.
+     */
+    private static final int MAX_MOVEMENTS_PER_RUN = 64;
+
+    private final CoreFsm<S, T, D> fsm;
+    private final Executor executor;
+    private final ConcurrentMap<K, Mailbox<K>> mailboxes;
+
+    public KeyedFsmRunner(@NonNull CoreFsm<S, T, D> fsm,
+                          @NonNull Executor executor) {
+        this.fsm = fsm;
+        this.executor = executor;
+        this.mailboxes = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Submits movement of <code>data</code> by <code>trigger</code>. Movement is executed after all movements,
+     * previously submitted for the same <code>entityKey</code>, and never concurrently with them.
+     *
+     * @param entityKey key of entity, that <code>data</code> belongs to
+     * @param trigger   trigger for movement to the next state
+     * @param data      data+state holder
+     * @return future of data+state after movement
+     */
+    public CompletableFuture<D> submit(@NonNull K entityKey, T trigger, @NonNull D data) {
+        return submit(entityKey, trigger, data, null);
+    }
+
+    /**
+     * Same as {@link #submit(Object, Object, FsmStateHolder)}, but movement is executed only if
+     * <code>precondition</code> passes right before it, in serialized scope of entity.
+     * Lets to check state of entity without race with its other movements (e.g. for timeouts).
+     *
+     * @param precondition condition of movement or <code>null</code>
+     * @return future of data+state after movement or of unchanged <code>data</code> if precondition failed
+     */
+    public CompletableFuture<D> submit(@NonNull K entityKey, T trigger, @NonNull D data, Predicate<? super D> precondition) {
+        CompletableFuture<D> result = new CompletableFuture<>();
+
+        PendingMovement movement = new PendingMovement(result, () -> {
+            try {
+                result.complete(precondition == null || precondition.test(data)
+                        ? fsm.move(trigger, data)
+                        : data);
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+
+        Mailbox<K> mailbox = mailboxes.compute(entityKey, (key, existing) -> {
+            Mailbox<K> target = existing == null ? new Mailbox<>(key) : existing;
+            target.movements.add(movement);
+            return target;
+        });
+
+        schedule(mailbox);
+        return result;
+    }
+
+    /**
+     * @return count of keys, that have pending or running movements
+     */
+    public int getActiveKeysCount() {
+        return mailboxes.size();
+    }
+
+    /**
+     * If executor rejects run of mailbox, all its pending movements are failed with the rejection,
+     * so nothing waits for mailbox, that would be drained only by next submit.
+     */
+    private void schedule(Mailbox<K> mailbox) {
+        if (mailbox.scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(() -> run(mailbox));
+            } catch (RejectedExecutionException e) {
+                PendingMovement movement;
+                while ((movement = mailbox.movements.poll()) != null) {
+                    movement.result.completeExceptionally(e);
+                }
+                release(mailbox);
+            }
+        }
+    }
+
+    private void run(Mailbox<K> mailbox) {
+        PendingMovement movement;
+        int executed = 0;
+        while (executed < MAX_MOVEMENTS_PER_RUN && (movement = mailbox.movements.poll()) != null) {
+            movement.execution.run();
+            executed++;
+        }
+
+        release(mailbox);
+    }
+
+    /**
+     * Removes empty mailbox or schedules next run of it.
+     */
+    private void release(Mailbox<K> mailbox) {
+        mailbox.scheduled.set(false);
+
+        // new movements are added only inside of compute(), so mailbox removed here is guaranteed to be empty
+        mailboxes.computeIfPresent(mailbox.key, (key, existing) ->
+                existing == mailbox && mailbox.movements.isEmpty() && !mailbox.scheduled.get()
+                        ? null
+                        : existing);
+
+        if (!mailbox.movements.isEmpty()) {
+            schedule(mailbox);
+        }
+    }
+
+    private static final class PendingMovement {
+        private final CompletableFuture<?> result;
+        private final Runnable execution;
+
+        private PendingMovement(CompletableFuture<?> result, Runnable execution) {
+            this.result = result;
+            this.execution = execution;
+        }
+    }
+
+    private static final class Mailbox<K> {
+        private final K key;
+        private final Queue<PendingMovement> movements = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private Mailbox(K key) {
+            this.key = key;
+        }
+    }
+
+}
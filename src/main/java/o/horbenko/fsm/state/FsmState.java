@@ -25,8 +25,11 @@ package o.horbenko.fsm.state;
 
 import lombok.NonNull;
 import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.error.InvalidFsmConfigurationException;
 import o.horbenko.fsm.movement.FsmMovement;
 
+import java.time.Duration;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -42,6 +45,8 @@ import java.util.Optional;
 public class FsmState<S, T, D extends FsmStateHolder<S>> {
 
     private Map<T, FsmMovement<S, T, D>> possibleMovements;
+    private long timeoutMillis;
+    private T timeoutTrigger;
 
     public FsmState() {
         this.possibleMovements = new HashMap<>();
@@ -57,11 +62,64 @@ public class FsmState<S, T, D extends FsmStateHolder<S>> {
         return this;
     }
 
+    /**
+     * Configures timeout of state: if data stays in this state longer than <code>timeout</code>,
+     * <code>timeoutTrigger</code> is fired by {@link o.horbenko.fsm.timeout.FsmTimeoutScheduler}.
+     *
+     * @param timeout        max time in state, sub-millisecond part is rounded up to the whole millisecond
+     * @param timeoutTrigger trigger of movement from state on timeout
+     * @return current state configuration
+     */
+    public FsmState<S, T, D> withTimeout(@NonNull Duration timeout,
+                                         @NonNull T timeoutTrigger) {
+        if (timeout.isNegative() || timeout.isZero()) {
+            throw new InvalidFsmConfigurationException("Timeout of state must be positive, but = " + timeout);
+        }
+        long timeoutMillis = timeout.toMillis();
+        this.timeoutMillis = timeout.minusMillis(timeoutMillis).isZero()
+                ? timeoutMillis
+                : timeoutMillis + 1;
+        this.timeoutTrigger = timeoutTrigger;
+        return this;
+    }
+
+    public boolean hasTimeout() {
+        return timeoutTrigger != null;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * @return trigger fired on timeout or <code>null</code> if state has no timeout
+     */
+    public T getTimeoutTrigger() {
+        return timeoutTrigger;
+    }
+
     public Optional<FsmMovement<S, T, D>> getMovementByTrigger(T trigger) {
+        return Optional.ofNullable(getMovementByTriggerOrNull(trigger));
+    }
+
+    /**
+     * Allocation-free alternative of {@link #getMovementByTrigger(Object)}. Used on FSM hot path.
+     *
+     * @param trigger trigger of movement
+     * @return movement or <code>null</code> if there is no movement by <code>trigger</code>
+     */
+    public FsmMovement<S, T, D> getMovementByTriggerOrNull(T trigger) {
         if (trigger == null)
-            return Optional.empty();
+            return null;
+
+        return possibleMovements.get(trigger);
+    }
 
-        return Optional.ofNullable(possibleMovements.get(trigger));
+    /**
+     * @return read-only view of configured movements by triggers.
+     */
+    public Map<T, FsmMovement<S, T, D>> getPossibleMovements() {
+        return Collections.unmodifiableMap(possibleMovements);
     }
 
 }
@@ -0,0 +1,257 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.store;
+
+import lombok.NonNull;
+import o.horbenko.fsm.error.StateStoreException;
+import o.horbenko.fsm.journal.FsmJournalCodec;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Local-file {@link StateStoreBackend} for tests and single-node setups.
+ * Every batch is appended to file as <code>[int length][int checksum][int count][key][state]...</code>,
+ * where <code>length</code> is size of batch after checksum and <code>checksum</code> is CRC32C of these bytes.
+ * Reading replays all batches and stops at the first torn batch (e.g. written partially before crash).
+ * Torn tail is truncated by reading and before the first write, so batches are appended after the last complete one.
+ *
+ * @param <K> entity key type
+ * @param <S> State
+ * @author Oleksii Horbenko
+ */
+public class FileStateStoreBackend<K, S> implements StateStoreBackend<K, S> {
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_WRITE_BUFFER_SIZE = 1 << 30;
+    private static final int BATCH_HEADER_SIZE = 2 * Integer.BYTES;
+
+    private final Path file;
+    private final FsmJournalCodec<K> keyCodec;
+    private final FsmJournalCodec<S> stateCodec;
+    private final boolean forceOnWrite;
+
+    // torn tail of file, left by previous process or failed truncation, was dropped
+    private boolean tailChecked;
+
+    /**
+     * @param file         file of states
+     * @param keyCodec     codec of entity keys
+     * @param stateCodec   codec of states
+     * @param forceOnWrite force every batch to disk
+     */
+    public FileStateStoreBackend(@NonNull Path file,
+                                 @NonNull FsmJournalCodec<K> keyCodec,
+                                 @NonNull FsmJournalCodec<S> stateCodec,
+                                 boolean forceOnWrite) {
+        this.file = file;
+        this.keyCodec = keyCodec;
+        this.stateCodec = stateCodec;
+        this.forceOnWrite = forceOnWrite;
+    }
+
+    /**
+     * Batch is encoded as a whole and appended by one write. Partially appended batch is truncated on failure.
+     *
+     * @throws StateStoreException if batch can not be written or is larger than 1 GiB
+     */
+    @Override
+    public synchronized void writeAll(Map<K, S> stateByKey) {
+        ByteBuffer buffer = encode(stateByKey);
+
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+            if (!tailChecked) {
+                dropTornTail(channel, readFully(channel));
+                tailChecked = true;
+            }
+
+            long batchPosition = channel.size();
+            try {
+                channel.position(batchPosition);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                if (forceOnWrite) {
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                truncateQuietly(channel, batchPosition, e);
+                throw e;
+            }
+        } catch (IOException | ArithmeticException e) {
+            throw new StateStoreException("Unable to write states to " + file, e);
+        }
+    }
+
+    @Override
+    public synchronized Map<K, S> readAll() {
+        Map<K, S> stateByKey = new HashMap<>();
+        if (!Files.exists(file)) {
+            return stateByKey;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = readFully(channel);
+            int validEnd = dropTornTail(channel, buffer);
+            tailChecked = true;
+
+            int batchPosition = 0;
+            while (batchPosition < validEnd) {
+                int batchEnd = completeBatchEnd(buffer, batchPosition);
+
+                buffer.limit(batchEnd).position(batchPosition + BATCH_HEADER_SIZE);
+                int count = buffer.getInt();
+                for (int i = 0; i < count; i++) {
+                    K key = keyCodec.read(buffer);
+                    stateByKey.put(key, stateCodec.read(buffer));
+                }
+                buffer.limit(validEnd);
+                batchPosition = batchEnd;
+            }
+            return stateByKey;
+        } catch (IOException | ArithmeticException e) {
+            throw new StateStoreException("Unable to read states from " + file, e);
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(channel.size()));
+        channel.position(0);
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            // until end of file
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Truncates file after the last complete batch of <code>content</code>.
+     *
+     * @return size of complete batches
+     */
+    private static int dropTornTail(FileChannel channel, ByteBuffer content) throws IOException {
+        int validEnd = 0;
+        int batchEnd;
+        while (validEnd < content.limit() && (batchEnd = completeBatchEnd(content, validEnd)) >= 0) {
+            validEnd = batchEnd;
+        }
+
+        if (validEnd < content.limit()) {
+            channel.truncate(validEnd);
+            content.limit(validEnd);
+        }
+        return validEnd;
+    }
+
+    /**
+     * Encodes batch with header. Buffer grows to fit batches larger than it.
+     *
+     * @return buffer, ready to be written
+     */
+    private ByteBuffer encode(Map<K, S> stateByKey) {
+        ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        while (true) {
+            try {
+                buffer.position(BATCH_HEADER_SIZE);
+                buffer.putInt(stateByKey.size());
+                for (Map.Entry<K, S> entry : stateByKey.entrySet()) {
+                    keyCodec.write(entry.getKey(), buffer);
+                    stateCodec.write(entry.getValue(), buffer);
+                }
+                break;
+            } catch (BufferOverflowException e) {
+                if (buffer.capacity() >= MAX_WRITE_BUFFER_SIZE) {
+                    throw new StateStoreException("Batch of " + stateByKey.size() + " states exceeds max size "
+                            + MAX_WRITE_BUFFER_SIZE, e);
+                }
+                buffer = ByteBuffer.allocate((int) Math.min(2L * buffer.capacity(), MAX_WRITE_BUFFER_SIZE));
+            }
+        }
+
+        int length = buffer.position() - BATCH_HEADER_SIZE;
+        buffer.flip();
+        buffer.putInt(0, length);
+        buffer.putInt(Integer.BYTES, checksum(buffer, BATCH_HEADER_SIZE, length));
+        return buffer;
+    }
+
+    /**
+     * @return end of complete batch, that starts at <code>batchPosition</code>, or -1 if batch is torn
+     */
+    private static int completeBatchEnd(ByteBuffer buffer, int batchPosition) {
+        int available = buffer.limit() - batchPosition;
+        if (available < BATCH_HEADER_SIZE + Integer.BYTES) {
+            return -1;
+        }
+
+        int length = buffer.getInt(batchPosition);
+        if (length < Integer.BYTES || length > available - BATCH_HEADER_SIZE) {
+            return -1;
+        }
+
+        int checksum = buffer.getInt(batchPosition + Integer.BYTES);
+        if (checksum != checksum(buffer, batchPosition + BATCH_HEADER_SIZE, length)) {
+            return -1;
+        }
+        return batchPosition + BATCH_HEADER_SIZE + length;
+    }
+
+    /**
+     * Position and limit of <code>buffer</code> are restored.
+     *
+     * @return CRC32C of <code>length</code> bytes of <code>buffer</code> from <code>from</code>
+     */
+    private static int checksum(ByteBuffer buffer, int from, int length) {
+        int position = buffer.position();
+        int limit = buffer.limit();
+        buffer.limit(from + length).position(from);
+
+        CRC32C crc = new CRC32C();
+        crc.update(buffer);
+
+        buffer.limit(limit).position(position);
+        return (int) crc.getValue();
+    }
+
+    private void truncateQuietly(FileChannel channel, long size, IOException cause) {
+        try {
+            channel.truncate(size);
+        } catch (IOException e) {
+            // torn batch stays in file and is dropped before the next write
+            tailChecked = false;
+            cause.addSuppressed(e);
+        }
+    }
+
+}
@@ -0,0 +1,49 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.store;
+
+import o.horbenko.fsm.FsmStateHolder;
+
+/**
+ * Persistence of states, that is updated by FSM after every successful movement
+ * (after post-movement action). Registered by {@link o.horbenko.fsm.impl.AbstractCoreFsm#withStateStore(StateStore)}.
+ * <p>
+ * Exception thrown by store is not handled as exception of movement: state is not rolled back and
+ * exception triggers are not applied. It is thrown to caller of movement as {@link o.horbenko.fsm.error.StateStoreException}.
+ *
+ * @param <S> State
+ * @param <D> {@link FsmStateHolder} implementation
+ * @author Oleksii Horbenko
+ * @see WriteBehindStateStore
+ */
+public interface StateStore<S, D extends FsmStateHolder<S>> {
+
+    /**
+     * Saves current state of <code>data</code>.
+     *
+     * @param data moved entity
+     */
+    void save(D data);
+
+}
@@ -0,0 +1,60 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.store;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * Durability/latency trade-off of {@link WriteBehindStateStore}.
+ * <p>
+ * Longer flush interval and bigger batches mean fewer round-trips to backend,
+ * but more states, that are lost on crash.
+ *
+ * @author Oleksii Horbenko
+ */
+@Data
+@Accessors(chain = true)
+public class WriteBehindPolicy {
+
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 100;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+    public static final int DEFAULT_MAX_PENDING_STATES = 100_000;
+
+    /**
+     * Max time, that state waits in memory before it is written to backend
+     */
+    private long flushIntervalMillis = DEFAULT_FLUSH_INTERVAL_MILLIS;
+
+    /**
+     * Max count of states in one batch. Reaching it triggers flush before interval elapses
+     */
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+    /**
+     * Max count of not written entities. Saving thread flushes synchronously when it is exceeded (backpressure)
+     */
+    private int maxPendingStates = DEFAULT_MAX_PENDING_STATES;
+
+}
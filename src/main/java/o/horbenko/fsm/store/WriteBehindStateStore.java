@@ -0,0 +1,196 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.store;
+
+import lombok.NonNull;
+import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.error.InvalidFsmConfigurationException;
+import o.horbenko.fsm.error.StateStoreException;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * {@link StateStore}, that keeps the latest state of every moved entity in memory and writes
+ * them to {@link StateStoreBackend} in batches by background thread.
+ * <p>
+ * Movements of the same entity between flushes are coalesced: only the latest state is written.
+ * Flushes are serialized, so states of the same entity are written in order of movements.
+ * Failed batch is returned to pending states (unless entity was moved again) and written by next flush.
+ * <p>
+ * {@link #save(FsmStateHolder)} never throws exception of backend (even if it flushes under backpressure),
+ * so failure of backend does not roll back movement, that is already pending. Failed flushes are counted
+ * (see {@link #getFailedFlushesCount()}).
+ * <p>
+ * After {@link #close()} store rejects states by {@link StateStoreException}, that is thrown to caller of movement,
+ * that can not be stored.
+ *
+ * @param <K> entity key type
+ * @param <S> State
+ * @param <D> {@link FsmStateHolder} implementation
+ * @author Oleksii Horbenko
+ */
+public class WriteBehindStateStore<K, S, D extends FsmStateHolder<S>>
+        implements StateStore<S, D>, Closeable {
+
+    private final Function<D, K> keyExtractor;
+    private final StateStoreBackend<K, S> backend;
+    private final WriteBehindPolicy policy;
+
+    private final ConcurrentHashMap<K, S> pendingStateByKey = new ConcurrentHashMap<>();
+    private final Object flushLock = new Object();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final LongAdder failedFlushes = new LongAdder();
+    private final ScheduledExecutorService flushScheduler;
+    private volatile boolean closed;
+
+    public WriteBehindStateStore(@NonNull Function<D, K> keyExtractor,
+                                 @NonNull StateStoreBackend<K, S> backend,
+                                 @NonNull WriteBehindPolicy policy) {
+        if (policy.getFlushIntervalMillis() <= 0 || policy.getMaxBatchSize() < 1
+                || policy.getMaxPendingStates() < policy.getMaxBatchSize()) {
+            throw new InvalidFsmConfigurationException("Invalid write-behind policy " + policy);
+        }
+
+        this.keyExtractor = keyExtractor;
+        this.backend = backend;
+        this.policy = policy;
+
+        this.flushScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fsm-state-store-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flushScheduler.scheduleWithFixedDelay(this::flushQuietly,
+                policy.getFlushIntervalMillis(), policy.getFlushIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @throws StateStoreException if store is closed
+     */
+    @Override
+    public void save(D data) {
+        if (closed) {
+            throw new StateStoreException("State store is closed, state of " + keyExtractor.apply(data) + " is not saved");
+        }
+        pendingStateByKey.put(keyExtractor.apply(data), data.getState());
+
+        int pendingStates = pendingStateByKey.size();
+        if (pendingStates >= policy.getMaxPendingStates()) {
+            // backpressure: backend does not keep up with movements.
+            // Failure is not propagated, otherwise FSM rolls back entity, which state stays pending
+            flushQuietly();
+        } else if (pendingStates >= policy.getMaxBatchSize() && flushScheduled.compareAndSet(false, true)) {
+            try {
+                flushScheduler.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                // closed concurrently, state stays pending until explicit flush
+                flushScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Writes all pending states to backend.
+     *
+     * @throws RuntimeException exception of backend, failed states stay pending
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            flushScheduled.set(false);
+
+            // states, saved during flush, are not awaited, so flush ends under continuous load
+            int statesToWrite = pendingStateByKey.size();
+            while (statesToWrite > 0 && !pendingStateByKey.isEmpty()) {
+                Map<K, S> batch = takeBatch();
+                statesToWrite -= batch.size();
+                try {
+                    backend.writeAll(batch);
+                } catch (RuntimeException e) {
+                    failedFlushes.increment();
+                    batch.forEach(pendingStateByKey::putIfAbsent);
+                    throw e;
+                }
+            }
+        }
+    }
+
+    public int getPendingStatesCount() {
+        return pendingStateByKey.size();
+    }
+
+    public long getFailedFlushesCount() {
+        return failedFlushes.sum();
+    }
+
+    /**
+     * Stops background flushes and writes all pending states. States are not accepted after close.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        flushScheduler.shutdown();
+        try {
+            flushScheduler.awaitTermination(policy.getFlushIntervalMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private Map<K, S> takeBatch() {
+        Map<K, S> batch = new HashMap<>();
+
+        Iterator<Map.Entry<K, S>> pending = pendingStateByKey.entrySet().iterator();
+        while (pending.hasNext() && batch.size() < policy.getMaxBatchSize()) {
+            Map.Entry<K, S> entry = pending.next();
+            K key = entry.getKey();
+            S state = entry.getValue();
+
+            batch.put(key, state);
+            // entity, moved concurrently, stays pending with the newer state
+            pendingStateByKey.remove(key, state);
+        }
+        return batch;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // counted, states are written by next flush
+        }
+    }
+
+}
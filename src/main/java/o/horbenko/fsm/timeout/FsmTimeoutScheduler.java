@@ -0,0 +1,210 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.timeout;
+
+import lombok.NonNull;
+import o.horbenko.fsm.CoreFsm;
+import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.runner.KeyedFsmRunner;
+import o.horbenko.fsm.state.FsmState;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Fires timeout triggers of states (see {@link FsmState#withTimeout(java.time.Duration, Object)}) by
+ * {@link HierarchicalTimingWheel}.
+ * <p>
+ * Keeps one timer per entity: movement into another state cancels timer of previous state in O(1).
+ * Timer fires trigger only if entity is still in the state, that scheduled it.
+ * <p>
+ * With runner (see {@link #withRunner(KeyedFsmRunner)}) the check of state and movement by timeout trigger
+ * are executed in mailbox of entity, so they are serialized with other movements submitted to the runner.
+ * Without runner they are executed on timer thread and race with concurrent movements of the entity,
+ * so runner is required, if entities are moved by several threads.
+ *
+ * @param <K> Type of key of entity
+ * @param <S> State type
+ * @param <T> Trigger type
+ * @param <D> Data that holds state (implements {@link FsmStateHolder})
+ * @author Oleksii Horbenko
+ */
+public class FsmTimeoutScheduler<K, S, T, D extends FsmStateHolder<S>> {
+
+    private final Function<D, K> keyExtractor;
+    private final HierarchicalTimingWheel timingWheel;
+    private final ConcurrentMap<K, StateTimeout> timeouts = new ConcurrentHashMap<>();
+    private final LongAdder failedTimeouts = new LongAdder();
+    private volatile KeyedFsmRunner<K, S, T, D> runner;
+
+    /**
+     * @param keyExtractor key of entity, data of one entity must have the same key
+     * @param timingWheel  wheel of timers
+     */
+    public FsmTimeoutScheduler(@NonNull Function<D, K> keyExtractor,
+                               @NonNull HierarchicalTimingWheel timingWheel) {
+        this.keyExtractor = keyExtractor;
+        this.timingWheel = timingWheel;
+    }
+
+    /**
+     * Routes movements by timeout triggers through <code>runner</code>, that must be used for other movements
+     * of entities too. Runner is set after creation, because its FSM is built with this scheduler.
+     *
+     * @param runner runner with the same entity keys or <code>null</code> to move on timer thread
+     * @return current scheduler
+     */
+    public FsmTimeoutScheduler<K, S, T, D> withRunner(KeyedFsmRunner<K, S, T, D> runner) {
+        this.runner = runner;
+        return this;
+    }
+
+    /**
+     * Invoked by FSM after movement of <code>data</code> into state with configuration <code>stateConfig</code>.
+     * Cancels timeout of previous state and schedules timeout of new state, if it is configured.
+     *
+     * @param fsm         FSM to fire timeout trigger
+     * @param data        moved data
+     * @param stateConfig configuration of current state or <code>null</code>
+     */
+    public void onStateEntered(@NonNull CoreFsm<S, T, D> fsm, @NonNull D data, FsmState<S, T, D> stateConfig) {
+        K key = keyExtractor.apply(data);
+
+        if (stateConfig == null || !stateConfig.hasTimeout()) {
+            StateTimeout previous = timeouts.remove(key);
+            if (previous != null) {
+                previous.cancel();
+            }
+            return;
+        }
+
+        StateTimeout timeout = new StateTimeout(fsm, key, data, data.getState(), stateConfig.getTimeoutTrigger());
+        StateTimeout previous = timeouts.put(key, timeout);
+        if (previous != null) {
+            previous.cancel();
+        }
+
+        timeout.timer = timingWheel.schedule(stateConfig.getTimeoutMillis(), timeout);
+        // cancel() sets flag before reading timer, so timer published after concurrent cancel is cancelled here
+        if (timeout.cancelled) {
+            timeout.timer.cancel();
+        }
+    }
+
+    /**
+     * Cancels timeout of entity, e.g. on its removal.
+     *
+     * @return <code>false</code> if entity has no pending timeout
+     */
+    public boolean cancel(@NonNull K key) {
+        StateTimeout timeout = timeouts.remove(key);
+        if (timeout == null) {
+            return false;
+        }
+        timeout.cancel();
+        return true;
+    }
+
+    /**
+     * @return count of entities with pending timeouts
+     */
+    public int getPendingTimeoutsCount() {
+        return timeouts.size();
+    }
+
+    /**
+     * @return count of timeout triggers, that failed with exception
+     */
+    public long getFailedTimeoutsCount() {
+        return failedTimeouts.sum();
+    }
+
+
+    private final class StateTimeout implements Runnable {
+
+        private final CoreFsm<S, T, D> fsm;
+        private final K key;
+        private final D data;
+        private final S state;
+        private final T trigger;
+
+        private volatile TimingWheelTimer timer;
+        private volatile boolean cancelled;
+
+        private StateTimeout(CoreFsm<S, T, D> fsm, K key, D data, S state, T trigger) {
+            this.fsm = fsm;
+            this.key = key;
+            this.data = data;
+            this.state = state;
+            this.trigger = trigger;
+        }
+
+        private void cancel() {
+            cancelled = true;
+            TimingWheelTimer timer = this.timer;
+            if (timer != null) {
+                timer.cancel();
+            }
+        }
+
+        @Override
+        public void run() {
+            if (cancelled || !timeouts.remove(key, this)) {
+                return;
+            }
+
+            KeyedFsmRunner<K, S, T, D> runner = FsmTimeoutScheduler.this.runner;
+            if (runner != null) {
+                try {
+                    runner.submit(key, trigger, data, this::isInTimedOutState)
+                            .whenComplete((result, error) -> {
+                                if (error != null) {
+                                    failedTimeouts.increment();
+                                }
+                            });
+                } catch (RuntimeException e) {
+                    failedTimeouts.increment();
+                }
+                return;
+            }
+
+            if (!isInTimedOutState(data)) {
+                return;
+            }
+            try {
+                fsm.move(trigger, data);
+            } catch (RuntimeException e) {
+                failedTimeouts.increment();
+            }
+        }
+
+        private boolean isInTimedOutState(D data) {
+            return Objects.equals(data.getState(), state);
+        }
+    }
+
+}
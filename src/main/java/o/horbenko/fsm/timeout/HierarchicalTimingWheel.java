@@ -0,0 +1,291 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.timeout;
+
+import lombok.NonNull;
+import o.horbenko.fsm.error.InvalidFsmConfigurationException;
+
+import java.io.Closeable;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Hierarchical timing wheel for large count of timers (e.g. timeouts of states of millions of entities).
+ * <p>
+ * Level <code>L</code> has <code>wheelSize</code> slots, every slot of level <code>L</code> covers
+ * <code>wheelSize<sup>L</sup></code> ticks. Timer is put to the lowest level, that covers its deadline, and is moved
+ * (cascaded) to lower levels when wheel reaches its slot. Timers beyond the top level wait in the last slot of top level.
+ * <p>
+ * Schedule and cancel are O(1) and lock-free: new and cancelled timers are passed to single worker thread by
+ * concurrent queues, only worker thread touches slots. Expired tasks are executed on task executor
+ * with precision of one tick.
+ *
+ * @author Oleksii Horbenko
+ */
+public class HierarchicalTimingWheel implements Closeable {
+
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+    public static final int DEFAULT_LEVELS = 4;
+
+    private final long tickNanos;
+    private final int wheelBits;
+    private final int wheelMask;
+    private final int levels;
+    private final TimingWheelTimer.Bucket[][] wheels;
+
+    private final LongSupplier nanoClock;
+    private final long startNanos;
+    private final Executor taskExecutor;
+
+    private final Queue<TimingWheelTimer> newTimers = new ConcurrentLinkedQueue<>();
+    private final Queue<TimingWheelTimer> cancelledTimers = new ConcurrentLinkedQueue<>();
+    private final LongAdder pendingTimers = new LongAdder();
+
+    private final Thread worker;
+    private volatile boolean closed;
+
+    // owned by worker thread
+    private long currentTick;
+
+    /**
+     * Creates wheel with {@link #DEFAULT_WHEEL_SIZE} slots and {@link #DEFAULT_LEVELS} levels and starts worker thread.
+     *
+     * @param tickMillis   precision of timers
+     * @param taskExecutor executor of expired tasks
+     */
+    public HierarchicalTimingWheel(long tickMillis, @NonNull Executor taskExecutor) {
+        this(TimeUnit.MILLISECONDS.toNanos(tickMillis), DEFAULT_WHEEL_SIZE, DEFAULT_LEVELS, taskExecutor, System::nanoTime, true);
+    }
+
+    /**
+     * @param tickMillis   precision of timers
+     * @param wheelSize    count of slots of one level, power of two
+     * @param levels       count of levels
+     * @param taskExecutor executor of expired tasks
+     */
+    public HierarchicalTimingWheel(long tickMillis, int wheelSize, int levels, @NonNull Executor taskExecutor) {
+        this(TimeUnit.MILLISECONDS.toNanos(tickMillis), wheelSize, levels, taskExecutor, System::nanoTime, true);
+    }
+
+    HierarchicalTimingWheel(long tickNanos,
+                            int wheelSize,
+                            int levels,
+                            Executor taskExecutor,
+                            LongSupplier nanoClock,
+                            boolean startWorker) {
+        if (tickNanos <= 0 || wheelSize < 2 || Integer.bitCount(wheelSize) != 1 || levels < 1
+                || Integer.numberOfTrailingZeros(wheelSize) * levels >= Long.SIZE - 1) {
+            throw new InvalidFsmConfigurationException("Invalid timing wheel: tick = " + tickNanos
+                    + "ns, wheel size = " + wheelSize + ", levels = " + levels);
+        }
+
+        this.tickNanos = tickNanos;
+        this.wheelBits = Integer.numberOfTrailingZeros(wheelSize);
+        this.wheelMask = wheelSize - 1;
+        this.levels = levels;
+        this.wheels = new TimingWheelTimer.Bucket[levels][wheelSize];
+        for (TimingWheelTimer.Bucket[] wheel : wheels) {
+            for (int slot = 0; slot < wheelSize; slot++) {
+                wheel[slot] = new TimingWheelTimer.Bucket();
+            }
+        }
+
+        this.taskExecutor = taskExecutor;
+        this.nanoClock = nanoClock;
+        this.startNanos = nanoClock.getAsLong();
+
+        if (startWorker) {
+            this.worker = new Thread(this::runWorker, "fsm-timing-wheel");
+            this.worker.setDaemon(true);
+            this.worker.start();
+        } else {
+            this.worker = null;
+        }
+    }
+
+    /**
+     * Schedules execution of <code>task</code> after <code>delayMillis</code>.
+     *
+     * @return handle to cancel task
+     */
+    public TimingWheelTimer schedule(long delayMillis, @NonNull Runnable task) {
+        long deadlineNanos = nanoClock.getAsLong() - startNanos + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+        long deadlineTick = (deadlineNanos + tickNanos - 1) / tickNanos;
+
+        TimingWheelTimer timer = new TimingWheelTimer(this, deadlineTick, task);
+        pendingTimers.increment();
+        newTimers.add(timer);
+        return timer;
+    }
+
+    /**
+     * @return count of scheduled, not expired and not cancelled timers
+     */
+    public long getPendingTimersCount() {
+        return pendingTimers.sum();
+    }
+
+    /**
+     * Stops worker thread. Pending tasks are not executed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (worker != null) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    void onCancelled(TimingWheelTimer timer) {
+        pendingTimers.decrement();
+        cancelledTimers.add(timer);
+    }
+
+    long getCurrentTick() {
+        return currentTick;
+    }
+
+    /**
+     * Processes all ticks, elapsed by clock. Executed by worker thread (or by test instead of it).
+     */
+    void advance() {
+        long elapsedTick = (nanoClock.getAsLong() - startNanos) / tickNanos;
+
+        do {
+            unlinkCancelledTimers();
+            addNewTimers();
+
+            if (currentTick < elapsedTick) {
+                currentTick++;
+                cascade();
+                expireCurrentSlot();
+            }
+        } while (currentTick < elapsedTick);
+    }
+
+    private void runWorker() {
+        while (!closed) {
+            advance();
+
+            long nextTickNanos = startNanos + (currentTick + 1) * tickNanos;
+            long sleepNanos = nextTickNanos - nanoClock.getAsLong();
+            if (sleepNanos > 0) {
+                LockSupport.parkNanos(this, sleepNanos);
+            }
+        }
+    }
+
+    private void addNewTimers() {
+        TimingWheelTimer timer;
+        while ((timer = newTimers.poll()) != null) {
+            if (timer.isPending()) {
+                insert(timer);
+            }
+        }
+    }
+
+    private void unlinkCancelledTimers() {
+        TimingWheelTimer timer;
+        while ((timer = cancelledTimers.poll()) != null) {
+            if (timer.bucket != null) {
+                timer.bucket.remove(timer);
+            }
+        }
+    }
+
+    private void insert(TimingWheelTimer timer) {
+        long delta = timer.deadlineTick - currentTick;
+        if (delta <= 0) {
+            expire(timer);
+            return;
+        }
+
+        int level = 0;
+        while (level < levels - 1 && delta >= 1L << (wheelBits * (level + 1))) {
+            level++;
+        }
+
+        long slotGroup = delta >= 1L << (wheelBits * (level + 1))
+                // beyond the top level: wait in the slot, that is cascaded the last
+                ? (currentTick >>> (wheelBits * level)) + wheelMask
+                : timer.deadlineTick >>> (wheelBits * level);
+
+        wheels[level][(int) (slotGroup & wheelMask)].add(timer);
+    }
+
+    /**
+     * Moves timers of current slots of upper levels to lower levels, starting from the top level.
+     */
+    private void cascade() {
+        for (int level = levels - 1; level > 0; level--) {
+            if ((currentTick & ((1L << (wheelBits * level)) - 1)) != 0) {
+                continue;
+            }
+
+            int slot = (int) ((currentTick >>> (wheelBits * level)) & wheelMask);
+            TimingWheelTimer timer = wheels[level][slot].clear();
+            while (timer != null) {
+                TimingWheelTimer next = timer.next;
+                timer.bucket = null;
+                timer.previous = null;
+                timer.next = null;
+
+                if (timer.isPending()) {
+                    insert(timer);
+                }
+                timer = next;
+            }
+        }
+    }
+
+    private void expireCurrentSlot() {
+        TimingWheelTimer timer = wheels[0][(int) (currentTick & wheelMask)].clear();
+        while (timer != null) {
+            TimingWheelTimer next = timer.next;
+            timer.bucket = null;
+            timer.previous = null;
+            timer.next = null;
+
+            expire(timer);
+            timer = next;
+        }
+    }
+
+    private void expire(TimingWheelTimer timer) {
+        if (timer.expire()) {
+            pendingTimers.decrement();
+            try {
+                taskExecutor.execute(timer.task);
+            } catch (RuntimeException e) {
+                // task is lost, but wheel keeps working
+            }
+        }
+    }
+
+}
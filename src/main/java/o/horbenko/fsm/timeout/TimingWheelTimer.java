@@ -0,0 +1,140 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.timeout;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Handle of task, scheduled by {@link HierarchicalTimingWheel}.
+ *
+ * @author Oleksii Horbenko
+ */
+public final class TimingWheelTimer {
+
+    static final int PENDING = 0;
+    static final int EXPIRED = 1;
+    static final int CANCELLED = 2;
+
+    private static final AtomicIntegerFieldUpdater<TimingWheelTimer> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(TimingWheelTimer.class, "state");
+
+    final HierarchicalTimingWheel wheel;
+    final long deadlineTick;
+    final Runnable task;
+
+    private volatile int state = PENDING;
+
+    // owned by worker thread of wheel
+    TimingWheelTimer.Bucket bucket;
+    TimingWheelTimer previous;
+    TimingWheelTimer next;
+
+    TimingWheelTimer(HierarchicalTimingWheel wheel, long deadlineTick, Runnable task) {
+        this.wheel = wheel;
+        this.deadlineTick = deadlineTick;
+        this.task = task;
+    }
+
+    /**
+     * Cancels task in O(1). Timer is unlinked from wheel by worker thread.
+     *
+     * @return <code>false</code> if task was already executed or cancelled
+     */
+    public boolean cancel() {
+        if (!STATE.compareAndSet(this, PENDING, CANCELLED)) {
+            return false;
+        }
+        wheel.onCancelled(this);
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return state == CANCELLED;
+    }
+
+    public boolean isExpired() {
+        return state == EXPIRED;
+    }
+
+    boolean isPending() {
+        return state == PENDING;
+    }
+
+    boolean expire() {
+        return STATE.compareAndSet(this, PENDING, EXPIRED);
+    }
+
+
+    /**
+     * Doubly-linked list of timers of one slot of wheel.
+     */
+    static final class Bucket {
+
+        private TimingWheelTimer head;
+        private TimingWheelTimer tail;
+
+        void add(TimingWheelTimer timer) {
+            timer.bucket = this;
+            timer.previous = tail;
+            timer.next = null;
+
+            if (tail == null) {
+                head = timer;
+            } else {
+                tail.next = timer;
+            }
+            tail = timer;
+        }
+
+        void remove(TimingWheelTimer timer) {
+            if (timer.previous == null) {
+                head = timer.next;
+            } else {
+                timer.previous.next = timer.next;
+            }
+            if (timer.next == null) {
+                tail = timer.previous;
+            } else {
+                timer.next.previous = timer.previous;
+            }
+
+            timer.bucket = null;
+            timer.previous = null;
+            timer.next = null;
+        }
+
+        /**
+         * Removes all timers from bucket.
+         *
+         * @return head of detached list of timers
+         */
+        TimingWheelTimer clear() {
+            TimingWheelTimer timers = head;
+            head = null;
+            tail = null;
+            return timers;
+        }
+    }
+
+}
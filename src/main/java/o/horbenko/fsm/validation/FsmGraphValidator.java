@@ -0,0 +1,299 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.validation;
+
+import lombok.NonNull;
+import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.movement.FsmMovement;
+import o.horbenko.fsm.movement.GuardedFsmMovement;
+import o.horbenko.fsm.state.FsmState;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Validates graph of FSM states once, before FSM is built:
+ * <ul>
+ * <li>every target state of movement is declared;</li>
+ * <li>every exception trigger and timeout trigger has movement from the same state;</li>
+ * <li>every state is reachable from initial states;</li>
+ * <li>there are no cycles without exit (strongly connected components without movements out of them).</li>
+ * </ul>
+ * Terminal states must be declared as states without movements.
+ *
+ * @author Oleksii Horbenko
+ */
+public final class FsmGraphValidator {
+
+    private FsmGraphValidator() {
+    }
+
+    /**
+     * @param states        configurations of states
+     * @param initialStates states of new data; reachability is not checked if empty
+     * @return found issues, empty if graph is valid
+     */
+    public static <S, T, D extends FsmStateHolder<S>>
+    List<FsmValidationIssue> validate(@NonNull Map<S, FsmState<S, T, D>> states,
+                                      @NonNull Collection<S> initialStates) {
+
+        List<FsmValidationIssue> issues = new ArrayList<>();
+
+        List<S> stateByIndex = new ArrayList<>(states.keySet());
+        Map<S, Integer> indexByState = new HashMap<>(stateByIndex.size() * 2);
+        for (int i = 0; i < stateByIndex.size(); i++) {
+            indexByState.put(stateByIndex.get(i), i);
+        }
+
+        // 1. Movements: target states, exception triggers and edges of graph
+        int[][] edges = new int[stateByIndex.size()][];
+        for (int i = 0; i < stateByIndex.size(); i++) {
+            S state = stateByIndex.get(i);
+            FsmState<S, T, D> stateConfig = states.get(state);
+            Set<Integer> targets = new LinkedHashSet<>();
+
+            for (Map.Entry<T, FsmMovement<S, T, D>> entry : stateConfig.getPossibleMovements().entrySet()) {
+                for (FsmMovement<S, T, D> movement : executableMovements(entry.getValue())) {
+                    validateMovement(state, entry.getKey(), movement, stateConfig, indexByState, targets, issues);
+                }
+            }
+
+            if (stateConfig.hasTimeout() && stateConfig.getMovementByTriggerOrNull(stateConfig.getTimeoutTrigger()) == null) {
+                issues.add(new FsmValidationIssue(FsmValidationIssue.Type.UNRESOLVED_TIMEOUT_TRIGGER, state,
+                        "State = '" + state + "' has no movement by timeout trigger = '" + stateConfig.getTimeoutTrigger() + "'"));
+            }
+
+            edges[i] = targets.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        // 2. Reachability
+        if (!initialStates.isEmpty()) {
+            validateReachability(initialStates, stateByIndex, indexByState, edges, issues);
+        }
+
+        // 3. Cycles without exit
+        List<int[]> components = stronglyConnectedComponents(edges);
+        int[] componentByState = new int[edges.length];
+        for (int i = 0; i < components.size(); i++) {
+            for (int state : components.get(i)) {
+                componentByState[state] = i;
+            }
+        }
+
+        for (int i = 0; i < components.size(); i++) {
+            int[] component = components.get(i);
+            if (isTrap(i, component, componentByState, edges)) {
+                List<S> cycle = new ArrayList<>(component.length);
+                for (int state : component) {
+                    cycle.add(stateByIndex.get(state));
+                }
+                issues.add(new FsmValidationIssue(FsmValidationIssue.Type.TRAP_CYCLE, cycle.get(0),
+                        "Cycle of states " + cycle + " has no movement out of it"));
+            }
+        }
+
+        return issues;
+    }
+
+    private static <S, T, D extends FsmStateHolder<S>>
+    void validateMovement(S state,
+                          T trigger,
+                          FsmMovement<S, T, D> movement,
+                          FsmState<S, T, D> stateConfig,
+                          Map<S, Integer> indexByState,
+                          Set<Integer> targets,
+                          List<FsmValidationIssue> issues) {
+
+        Integer target = movement.getFutureStateOnSuccess() == null
+                ? null
+                : indexByState.get(movement.getFutureStateOnSuccess());
+        if (target == null) {
+            issues.add(new FsmValidationIssue(FsmValidationIssue.Type.UNDEFINED_TARGET_STATE, state,
+                    "Movement from state = '" + state + "' by trigger = '" + trigger + "' has undefined target state = '"
+                            + movement.getFutureStateOnSuccess() + "'"));
+        } else {
+            targets.add(target);
+        }
+
+        List<T> exceptionTriggers = new ArrayList<>(movement.getTriggerByException().values());
+        if (movement.getTriggerOnGeneralException() != null) {
+            exceptionTriggers.add(movement.getTriggerOnGeneralException());
+        }
+        for (T exceptionTrigger : exceptionTriggers) {
+            if (stateConfig.getMovementByTriggerOrNull(exceptionTrigger) == null) {
+                issues.add(new FsmValidationIssue(FsmValidationIssue.Type.UNRESOLVED_EXCEPTION_TRIGGER, state,
+                        "Movement from state = '" + state + "' by trigger = '" + trigger
+                                + "' has exception trigger = '" + exceptionTrigger + "' without movement"));
+            }
+        }
+    }
+
+    private static <S, T, D extends FsmStateHolder<S>>
+    List<FsmMovement<S, T, D>> executableMovements(FsmMovement<S, T, D> movement) {
+        if (!(movement instanceof GuardedFsmMovement)) {
+            return List.of(movement);
+        }
+
+        GuardedFsmMovement<S, T, D> guarded = (GuardedFsmMovement<S, T, D>) movement;
+        List<FsmMovement<S, T, D>> movements = new ArrayList<>(guarded.getCandidates());
+        if (guarded.getFallbackOrNull() != null) {
+            movements.add(guarded.getFallbackOrNull());
+        }
+        return movements;
+    }
+
+    private static <S> void validateReachability(Collection<S> initialStates,
+                                                 List<S> stateByIndex,
+                                                 Map<S, Integer> indexByState,
+                                                 int[][] edges,
+                                                 List<FsmValidationIssue> issues) {
+        boolean[] reached = new boolean[stateByIndex.size()];
+        Deque<Integer> queue = new ArrayDeque<>();
+
+        for (S initialState : initialStates) {
+            Integer index = indexByState.get(initialState);
+            if (index == null) {
+                issues.add(new FsmValidationIssue(FsmValidationIssue.Type.UNDEFINED_INITIAL_STATE, initialState,
+                        "Initial state = '" + initialState + "' is not declared"));
+            } else if (!reached[index]) {
+                reached[index] = true;
+                queue.add(index);
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            for (int target : edges[queue.poll()]) {
+                if (!reached[target]) {
+                    reached[target] = true;
+                    queue.add(target);
+                }
+            }
+        }
+
+        for (int i = 0; i < reached.length; i++) {
+            if (!reached[i]) {
+                issues.add(new FsmValidationIssue(FsmValidationIssue.Type.UNREACHABLE_STATE, stateByIndex.get(i),
+                        "State = '" + stateByIndex.get(i) + "' is unreachable from initial states " + initialStates));
+            }
+        }
+    }
+
+    /**
+     * Iterative Tarjan's algorithm, so depth of graph is not limited by stack of thread.
+     *
+     * @return strongly connected components of graph
+     */
+    static List<int[]> stronglyConnectedComponents(int[][] edges) {
+        int count = edges.length;
+        int[] order = new int[count];
+        int[] lowLink = new int[count];
+        int[] nextEdge = new int[count];
+        boolean[] onStack = new boolean[count];
+        Arrays.fill(order, -1);
+
+        int[] componentStack = new int[count];
+        int componentStackSize = 0;
+        int[] callStack = new int[count];
+        int callStackSize = 0;
+        int visited = 0;
+
+        List<int[]> components = new ArrayList<>();
+
+        for (int root = 0; root < count; root++) {
+            if (order[root] != -1) {
+                continue;
+            }
+
+            order[root] = lowLink[root] = visited++;
+            componentStack[componentStackSize++] = root;
+            onStack[root] = true;
+            callStack[callStackSize++] = root;
+
+            while (callStackSize > 0) {
+                int node = callStack[callStackSize - 1];
+
+                if (nextEdge[node] < edges[node].length) {
+                    int target = edges[node][nextEdge[node]++];
+                    if (order[target] == -1) {
+                        order[target] = lowLink[target] = visited++;
+                        componentStack[componentStackSize++] = target;
+                        onStack[target] = true;
+                        callStack[callStackSize++] = target;
+                    } else if (onStack[target]) {
+                        lowLink[node] = Math.min(lowLink[node], order[target]);
+                    }
+                    continue;
+                }
+
+                // all edges of node are visited
+                callStackSize--;
+                if (callStackSize > 0) {
+                    int parent = callStack[callStackSize - 1];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+                }
+
+                if (lowLink[node] == order[node]) {
+                    int size = 0;
+                    while (componentStack[componentStackSize - 1 - size] != node) {
+                        size++;
+                    }
+                    size++;
+
+                    int[] component = new int[size];
+                    for (int i = 0; i < size; i++) {
+                        component[i] = componentStack[--componentStackSize];
+                        onStack[component[i]] = false;
+                    }
+                    components.add(component);
+                }
+            }
+        }
+        return components;
+    }
+
+    /**
+     * @return <code>true</code> if component is cycle (not single state without self-movement) without edges out of it
+     */
+    private static boolean isTrap(int componentIndex, int[] component, int[] componentByState, int[][] edges) {
+        boolean cycle = component.length > 1;
+        for (int state : component) {
+            for (int target : edges[state]) {
+                if (componentByState[target] != componentIndex) {
+                    return false;
+                }
+                cycle |= target == state;
+            }
+        }
+        return cycle;
+    }
+
+}
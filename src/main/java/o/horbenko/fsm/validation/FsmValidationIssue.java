@@ -0,0 +1,58 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Oleksii Horbenko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * */
+package o.horbenko.fsm.validation;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Problem of FSM graph, found by {@link FsmGraphValidator}.
+ *
+ * @author Oleksii Horbenko
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class FsmValidationIssue {
+
+    public enum Type {
+        UNDEFINED_INITIAL_STATE,
+        UNDEFINED_TARGET_STATE,
+        UNRESOLVED_EXCEPTION_TRIGGER,
+        UNRESOLVED_TIMEOUT_TRIGGER,
+        UNREACHABLE_STATE,
+        TRAP_CYCLE
+    }
+
+    private final Type type;
+
+    /**
+     * State with issue (for {@link Type#TRAP_CYCLE} - one of states of cycle)
+     */
+    private final Object state;
+
+    private final String message;
+
+}
@@ -0,0 +1,83 @@
+package o.horbenko.fsm.batch;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static o.horbenko.fsm.batch.FsmBatchOutcome.COALESCED;
+import static o.horbenko.fsm.batch.FsmBatchOutcome.MOVED;
+import static o.horbenko.fsm.batch.FsmBatchOutcome.NOT_APPLIED;
+import static o.horbenko.fsm.batch.FsmBatchOutcome.NO_MOVEMENT;
+import static o.horbenko.fsm.batch.FsmBatchOutcome.SUPERSEDED;
+import static org.junit.Assert.assertArrayEquals;
+
+public class FsmBatchCoalescingTest {
+
+    @Test
+    public void testCoalesce_noRules() {
+        byte[] actual = new FsmBatchCoalescing<String>()
+                .coalesce(Arrays.asList("PING", "PING", "LOCATION"));
+
+        assertArrayEquals(new byte[]{MOVED, MOVED, MOVED}, actual);
+    }
+
+    @Test
+    public void testCoalesce_idempotentRepeatsInRow() {
+
+        // ARRANGE
+        FsmBatchCoalescing<String> coalescing = new FsmBatchCoalescing<String>()
+                .withIdempotentTrigger("PING");
+
+        // ACT
+        byte[] actual = coalescing.coalesce(Arrays.asList("PING", "PING", "PING", "LOCATION", "PING", "LOCATION", "LOCATION"));
+
+        // ASSERT: repeat after other trigger is applied, not idempotent triggers are not coalesced
+        assertArrayEquals(new byte[]{MOVED, COALESCED, COALESCED, MOVED, MOVED, MOVED, MOVED}, actual);
+    }
+
+    @Test
+    public void testCoalesce_superseded() {
+
+        // ARRANGE
+        FsmBatchCoalescing<String> coalescing = new FsmBatchCoalescing<String>()
+                .withSupersedingTrigger("LOCATION", "LOCATION")
+                .withSupersedingTrigger("RESET", "CONFIGURE");
+
+        // ACT
+        byte[] actual = coalescing.coalesce(Arrays.asList("LOCATION", "CONFIGURE", "LOCATION", "RESET", "CONFIGURE", "LOCATION"));
+
+        // ASSERT: only the last location is applied, configure is superseded by the next reset only
+        assertArrayEquals(new byte[]{SUPERSEDED, SUPERSEDED, SUPERSEDED, MOVED, MOVED, MOVED}, actual);
+    }
+
+    @Test
+    public void testCoalesce_idempotentAfterSuperseded() {
+
+        // ARRANGE
+        FsmBatchCoalescing<String> coalescing = new FsmBatchCoalescing<String>()
+                .withIdempotentTrigger("PING")
+                .withSupersedingTrigger("LOCATION", "LOCATION");
+
+        // ACT
+        byte[] actual = coalescing.coalesce(Arrays.asList("PING", "LOCATION", "PING", "LOCATION"));
+
+        // ASSERT: superseded trigger is removed before repeats are found
+        assertArrayEquals(new byte[]{MOVED, SUPERSEDED, COALESCED, MOVED}, actual);
+    }
+
+    @Test
+    public void testResolveSuperseded_supersedingTriggerNotApplied() {
+
+        // ARRANGE: the last location had no movement
+        FsmBatchCoalescing<String> coalescing = new FsmBatchCoalescing<String>()
+                .withSupersedingTrigger("LOCATION", "LOCATION");
+        byte[] outcomes = new byte[]{SUPERSEDED, SUPERSEDED, MOVED, SUPERSEDED, NO_MOVEMENT};
+
+        // ACT
+        coalescing.resolveSuperseded(Arrays.asList("LOCATION", "LOCATION", "LOCATION", "LOCATION", "LOCATION"), outcomes);
+
+        // ASSERT
+        assertArrayEquals(new byte[]{SUPERSEDED, SUPERSEDED, MOVED, NOT_APPLIED, NO_MOVEMENT}, outcomes);
+    }
+
+}
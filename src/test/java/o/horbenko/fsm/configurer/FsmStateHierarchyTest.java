@@ -0,0 +1,134 @@
+package o.horbenko.fsm.configurer;
+
+import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.error.InvalidFsmConfigurationException;
+import o.horbenko.fsm.error.NoMovementByTriggerInStateException;
+import o.horbenko.fsm.impl.AbstractFiniteStateMachine;
+import o.horbenko.fsm.movement.FsmMovement;
+import o.horbenko.fsm.state.FsmState;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FsmStateHierarchyTest {
+
+    @Test
+    public void testBuildFsm_inheritedMovements() {
+
+        // ARRANGE
+        AbstractFiniteStateMachine<String, String, Data> fsm = buildFsm();
+
+        // ACT & ASSERT
+        assertEquals("CANCELLED", fsm.move("CANCEL", new Data("ACTIVE_PAYMENT")).getState());
+        assertEquals("CANCELLED", fsm.move("CANCEL", new Data("ACTIVE_DELIVERY")).getState());
+        assertEquals("ACTIVE_DELIVERY", fsm.move("PAY", new Data("ACTIVE_PAYMENT")).getState());
+        assertEquals("SUSPENDED", fsm.move("SUSPEND", new Data("ACTIVE_DELIVERY")).getState());
+    }
+
+    @Test
+    public void testBuildFsm_childOverridesParent() {
+
+        // ARRANGE
+        AbstractFiniteStateMachine<String, String, Data> fsm = buildFsm();
+
+        // ACT
+        Data actual = fsm.move("SUSPEND", new Data("ACTIVE_PAYMENT"));
+
+        // ASSERT
+        assertEquals("PAYMENT_ON_HOLD", actual.getState());
+    }
+
+    @Test(expected = NoMovementByTriggerInStateException.class)
+    public void testBuildFsm_parentDoesNotInheritFromChild() {
+        buildFsm().move("PAY", new Data("ACTIVE"));
+    }
+
+    @Test
+    public void testFlatten_sharesInheritedMovementsAndTimeout() {
+
+        // ARRANGE
+        FsmState<String, String, Data> parent = new FsmState<String, String, Data>()
+                .withTimeout(Duration.ofSeconds(30), "TIMEOUT")
+                .withMovement("CANCEL", new FsmMovement<String, String, Data>().targetState("CANCELLED"));
+        FsmState<String, String, Data> child = new FsmState<>();
+
+        Map<String, FsmState<String, String, Data>> states = new HashMap<>();
+        states.put("PARENT", parent);
+        states.put("CHILD", child);
+        Map<String, String> parentStates = new HashMap<>();
+        parentStates.put("CHILD", "PARENT");
+
+        // ACT
+        Map<String, FsmState<String, String, Data>> actual = FsmStateHierarchy.flatten(states, parentStates);
+
+        // ASSERT
+        FsmState<String, String, Data> flatChild = actual.get("CHILD");
+        assertSame(parent.getMovementByTriggerOrNull("CANCEL"), flatChild.getMovementByTriggerOrNull("CANCEL"));
+        assertTrue(flatChild.hasTimeout());
+        assertEquals(30_000, flatChild.getTimeoutMillis());
+        assertSame(parent, actual.get("PARENT"));
+    }
+
+    @Test(expected = InvalidFsmConfigurationException.class)
+    public void testBuildFsm_cycle() {
+        FsmBuilder.<String, String, Data>builder()
+                .andState("A").parent("C")
+                .andState("B").parent("A")
+                .andState("C").parent("B")
+                .buildFsm();
+    }
+
+    @Test(expected = InvalidFsmConfigurationException.class)
+    public void testBuildFsm_undeclaredParent() {
+        FsmBuilder.<String, String, Data>builder()
+                .andState("A").parent("UNKNOWN")
+                .buildFsm();
+    }
+
+    /**
+     * ACTIVE: CANCEL -> CANCELLED, SUSPEND -> SUSPENDED
+     * ACTIVE_PAYMENT extends ACTIVE: PAY -> ACTIVE_DELIVERY, SUSPEND -> PAYMENT_ON_HOLD
+     * ACTIVE_DELIVERY extends ACTIVE
+     */
+    private AbstractFiniteStateMachine<String, String, Data> buildFsm() {
+        return FsmBuilder.<String, String, Data>builder()
+                .andState("ACTIVE_PAYMENT")
+                .parent("ACTIVE")
+                .andStateMovementBy("PAY")
+                .targetStateOnSuccess("ACTIVE_DELIVERY")
+                .andStateMovementBy("SUSPEND")
+                .targetStateOnSuccess("PAYMENT_ON_HOLD")
+                .andState("ACTIVE_DELIVERY")
+                .parent("ACTIVE")
+                .andState("ACTIVE")
+                .andStateMovementBy("CANCEL")
+                .targetStateOnSuccess("CANCELLED")
+                .andStateMovementBy("SUSPEND")
+                .targetStateOnSuccess("SUSPENDED")
+                .buildFsm();
+    }
+
+
+    public static class Data implements FsmStateHolder<String> {
+        private String state;
+
+        public Data(String state) {
+            this.state = state;
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        public void setState(String state) {
+            this.state = state;
+        }
+    }
+
+}
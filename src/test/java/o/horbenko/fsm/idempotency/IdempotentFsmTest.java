@@ -0,0 +1,258 @@
+package o.horbenko.fsm.idempotency;
+
+import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.configurer.FsmBuilder;
+import o.horbenko.fsm.error.NoMovementByTriggerInStateException;
+import o.horbenko.fsm.impl.AbstractFiniteStateMachine;
+import o.horbenko.fsm.movementaction.FsmMovementAction;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
+
+public class IdempotentFsmTest {
+
+    private final AtomicInteger actionExecutions = new AtomicInteger();
+    private final AtomicLong clock = new AtomicLong();
+
+    private volatile FsmMovementAction<Data> action = data -> data;
+    private AbstractFiniteStateMachine<String, String, Data> fsm;
+
+    @Before
+    public void initFsm() {
+        fsm = FsmBuilder.<String, String, Data>builder()
+                .andState("S1")
+                .andStateMovementBy("T")
+                .movementAction(data -> {
+                    actionExecutions.incrementAndGet();
+                    return action.execute(data);
+                })
+                .targetStateOnSuccess("S2")
+                .buildFsm();
+    }
+
+    @Test
+    public void testMove_duplicateReturnsPriorOutcome() {
+
+        // ARRANGE
+        IdempotentFsm<String, String, String, Data> idempotentFsm = idempotentFsm(new IdempotencyPolicy());
+        Data first = new Data();
+
+        // ACT
+        Data actual = idempotentFsm.move("event-1", "T", first);
+        Data duplicate = idempotentFsm.move("event-1", "T", new Data());
+
+        // ASSERT
+        assertSame(actual, duplicate);
+        assertEquals("S2", duplicate.getState());
+        assertEquals(1, actionExecutions.get());
+    }
+
+    @Test
+    public void testMove_expiredEventIsExecutedAgain() {
+
+        // ARRANGE
+        IdempotentFsm<String, String, String, Data> idempotentFsm = idempotentFsm(new IdempotencyPolicy().setTtlMillis(1000));
+        idempotentFsm.move("event-1", "T", new Data());
+
+        // ACT
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        idempotentFsm.move("event-1", "T", new Data());
+
+        // ASSERT
+        assertEquals(2, actionExecutions.get());
+    }
+
+    @Test
+    public void testMove_oldestEventsAreEvicted() {
+
+        // ARRANGE
+        IdempotentFsm<String, String, String, Data> idempotentFsm = idempotentFsm(new IdempotencyPolicy().setMaxEvents(10));
+
+        // ACT
+        for (int i = 0; i < 100; i++) {
+            idempotentFsm.move("event-" + i, "T", new Data());
+        }
+        idempotentFsm.move("event-99", "T", new Data());
+        idempotentFsm.move("event-0", "T", new Data());
+
+        // ASSERT
+        assertTrue(idempotentFsm.getRememberedEventsCount() <= 11);
+        assertEquals(101, actionExecutions.get());
+    }
+
+    @Test
+    public void testMove_failureIsForgotten() {
+
+        // ARRANGE
+        IdempotentFsm<String, String, String, Data> idempotentFsm = idempotentFsm(new IdempotencyPolicy());
+        action = data -> {
+            throw new IllegalStateException();
+        };
+
+        // ACT
+        try {
+            idempotentFsm.move("event-1", "T", new Data());
+            fail("Exception of movement must be thrown");
+        } catch (NoMovementByTriggerInStateException e) {
+            // expected
+        }
+        action = data -> data;
+        Data actual = idempotentFsm.move("event-1", "T", new Data());
+
+        // ASSERT
+        assertEquals("S2", actual.getState());
+        assertEquals(2, actionExecutions.get());
+    }
+
+    @Test
+    public void testMove_stripedCacheIsBounded() {
+
+        // ARRANGE: max count is large enough for striped insertion order
+        IdempotentFsm<String, String, String, Data> idempotentFsm = idempotentFsm(new IdempotencyPolicy().setMaxEvents(16 * 1024));
+
+        // ACT
+        for (int i = 0; i < 100_000; i++) {
+            idempotentFsm.move("event-" + i, "T", new Data());
+        }
+        idempotentFsm.move("event-99999", "T", new Data());
+
+        // ASSERT
+        assertTrue(idempotentFsm.getRememberedEventsCount() <= 16 * 1024);
+        assertEquals(idempotentFsm.getRememberedEventsCount(), idempotentFsm.getOrderedEventsCount());
+        assertEquals(100_000, actionExecutions.get());
+    }
+
+    @Test
+    public void testMove_forgottenFailuresDoNotGrowCache() {
+
+        // ARRANGE: live event at the head of insertion order, then every movement fails
+        IdempotentFsm<String, String, String, Data> idempotentFsm = idempotentFsm(new IdempotencyPolicy().setMaxEvents(10));
+        Data first = idempotentFsm.move("event-live", "T", new Data());
+        action = data -> {
+            throw new IllegalStateException();
+        };
+
+        // ACT
+        for (int i = 0; i < 1000; i++) {
+            try {
+                idempotentFsm.move("event-" + i, "T", new Data());
+                fail("Exception of movement must be thrown");
+            } catch (NoMovementByTriggerInStateException e) {
+                // expected
+            }
+        }
+
+        // ASSERT
+        assertEquals(1, idempotentFsm.getRememberedEventsCount());
+        assertEquals(1, idempotentFsm.getOrderedEventsCount());
+        assertSame(first, idempotentFsm.move("event-live", "T", new Data()));
+        assertEquals(1001, actionExecutions.get());
+    }
+
+    @Test
+    public void testMove_failureIsRemembered() {
+
+        // ARRANGE
+        IdempotentFsm<String, String, String, Data> idempotentFsm = idempotentFsm(new IdempotencyPolicy().setRememberFailures(true));
+        action = data -> {
+            throw new IllegalStateException();
+        };
+
+        // ACT
+        for (int i = 0; i < 2; i++) {
+            try {
+                idempotentFsm.move("event-1", "T", new Data());
+                fail("Exception of movement must be thrown");
+            } catch (NoMovementByTriggerInStateException e) {
+                // expected
+            }
+        }
+
+        // ASSERT
+        assertEquals(1, actionExecutions.get());
+    }
+
+    @Test
+    public void testMoveAsync_inFlightDuplicateSharesOutcome() throws InterruptedException {
+
+        // ARRANGE
+        IdempotentFsm<String, String, String, Data> idempotentFsm = idempotentFsm(new IdempotencyPolicy());
+        CountDownLatch actionStarted = new CountDownLatch(1);
+        CountDownLatch releaseAction = new CountDownLatch(1);
+        action = data -> {
+            actionStarted.countDown();
+            try {
+                releaseAction.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return data;
+        };
+
+        // ACT
+        CompletableFuture<Data> first = CompletableFuture
+                .supplyAsync(() -> idempotentFsm.move("event-1", "T", new Data()));
+        actionStarted.await();
+        CompletableFuture<Data> duplicate = idempotentFsm.moveAsync("event-1", "T", new Data());
+
+        // ASSERT
+        assertFalse(duplicate.isDone());
+        releaseAction.countDown();
+        assertSame(first.join(), duplicate.join());
+        assertEquals(1, actionExecutions.get());
+    }
+
+    @Test
+    public void testMoveAsync_synchronousFailureIsForgotten() {
+
+        // ARRANGE: failures are remembered, but movement is not even started
+        AbstractFiniteStateMachine<String, String, Data> rejectingFsm = spy(fsm);
+        doThrow(new IllegalStateException("FSM is closed"))
+                .doCallRealMethod()
+                .when(rejectingFsm).moveAsync(eq("T"), any());
+        IdempotentFsm<String, String, String, Data> idempotentFsm =
+                new IdempotentFsm<>(rejectingFsm, new IdempotencyPolicy().setRememberFailures(true), clock::get);
+
+        // ACT
+        CompletableFuture<Data> rejected = idempotentFsm.moveAsync("event-1", "T", new Data());
+        Data retried = idempotentFsm.moveAsync("event-1", "T", new Data()).join();
+
+        // ASSERT
+        assertTrue(rejected.isCompletedExceptionally());
+        assertEquals("S2", retried.getState());
+        assertEquals(1, actionExecutions.get());
+    }
+
+    private IdempotentFsm<String, String, String, Data> idempotentFsm(IdempotencyPolicy policy) {
+        return new IdempotentFsm<>(fsm, policy, clock::get);
+    }
+
+
+    public static class Data implements FsmStateHolder<String> {
+        private String state = "S1";
+
+        public String getState() {
+            return state;
+        }
+
+        public void setState(String state) {
+            this.state = state;
+        }
+    }
+
+}
@@ -0,0 +1,178 @@
+package o.horbenko.fsm.impl;
+
+import o.horbenko.fsm.CoreFsm;
+import o.horbenko.fsm.FiniteStateMachine;
+import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.configurer.FsmBuilder;
+import o.horbenko.fsm.pipeline.CompiledFsmPipeline;
+import o.horbenko.fsm.pipeline.FsmPipeline;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AbstractCoreFsmAllocationTest {
+
+    private static final int WARM_UP_ITERATIONS = 200_000;
+    private static final int MEASURED_ITERATIONS = 100_000;
+    private static final int MEASUREMENT_ROUNDS = 5;
+
+    /**
+     * Allowed allocation of all measured iterations, one allocating iteration exceeds it
+     */
+    private static final long MAX_ALLOCATED_BYTES = 256;
+
+    private com.sun.management.ThreadMXBean threadMXBean;
+
+    @Before
+    public void initThreadMXBean() {
+        threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void testMove_doesNotAllocate() {
+
+        // ARRANGE
+        CoreFsm<String, String, Data> fsm = FsmBuilder.<String, String, Data>builder()
+                .andState("S1")
+                .andStateMovementBy("T")
+                .movementAction(data -> data)
+                .postMovementAction(data -> data)
+                .exceptionTrigger("ERR")
+                .targetStateOnSuccess("S2")
+                .andState("S2")
+                .andStateMovementBy("T")
+                .movementAction(data -> data)
+                .targetStateOnSuccess("S1")
+                .buildFsm();
+
+        Data data = new Data("S1");
+
+        // ACT
+        long allocatedBytes = measureAllocatedBytes(() -> fsm.move("T", data));
+
+        // ASSERT
+        assertEquals("S1", data.getState());
+        assertTrue("move() allocated " + allocatedBytes + " bytes", allocatedBytes <= MAX_ALLOCATED_BYTES);
+    }
+
+    @Test
+    public void testMove_compiled_doesNotAllocate() {
+
+        // ARRANGE
+        CoreFsm<State, State, EnumData> fsm = FsmBuilder.<State, State, EnumData>builder()
+                .withCompiledTransitionTable()
+                .andState(State.S1)
+                .andStateMovementBy(State.S2)
+                .movementAction(data -> data)
+                .targetStateOnSuccess(State.S2)
+                .andState(State.S2)
+                .andStateMovementBy(State.S1)
+                .postMovementAction(data -> data)
+                .targetStateOnSuccess(State.S1)
+                .buildFsm();
+
+        EnumData data = new EnumData();
+
+        // ACT
+        long allocatedBytes = measureAllocatedBytes(() -> fsm.move(data.getState() == State.S1 ? State.S2 : State.S1, data));
+
+        // ASSERT
+        assertTrue("move() allocated " + allocatedBytes + " bytes", allocatedBytes <= MAX_ALLOCATED_BYTES);
+    }
+
+    @Test
+    public void testMoveOnCompiledPipeline_doesNotAllocate() {
+
+        // ARRANGE
+        FiniteStateMachine<String, String, Data> fsm = FsmBuilder.<String, String, Data>builder()
+                .andState("S1")
+                .andStateMovementBy("T")
+                .movementAction(data -> data)
+                .targetStateOnSuccess("S2")
+                .andState("S2")
+                .andStateMovementBy("T")
+                .postMovementAction(data -> data)
+                .targetStateOnSuccess("S3")
+                .andState("S3")
+                .andStateMovementBy("RESET")
+                .targetStateOnSuccess("S1")
+                .buildFsm();
+
+        CompiledFsmPipeline<String, String, Data> pipeline = fsm.compilePipeline(new FsmPipeline<String, String>()
+                .addPipe("S1", "T")
+                .addPipe("S2", "T"));
+
+        Data data = new Data("S1");
+
+        // ACT
+        long allocatedBytes = measureAllocatedBytes(() -> {
+            fsm.moveOnPipeline(data, pipeline);
+            fsm.move("RESET", data);
+        });
+
+        // ASSERT
+        assertEquals("S1", data.getState());
+        assertTrue("moveOnPipeline() allocated " + allocatedBytes + " bytes", allocatedBytes <= MAX_ALLOCATED_BYTES);
+    }
+
+    /**
+     * Runs <code>iteration</code> until it is compiled, then measures allocation of
+     * {@link #MEASURED_ITERATIONS} iterations. The lowest of {@link #MEASUREMENT_ROUNDS} rounds is returned,
+     * so round with deoptimization or background compilation does not fail the test.
+     */
+    private long measureAllocatedBytes(Runnable iteration) {
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+            iteration.run();
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long minAllocatedBytes = Long.MAX_VALUE;
+        for (int round = 0; round < MEASUREMENT_ROUNDS; round++) {
+            long before = threadMXBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+                iteration.run();
+            }
+            minAllocatedBytes = Math.min(minAllocatedBytes, threadMXBean.getThreadAllocatedBytes(threadId) - before);
+        }
+        return minAllocatedBytes;
+    }
+
+
+    enum State {
+        S1, S2
+    }
+
+    public static class Data implements FsmStateHolder<String> {
+        private String state;
+
+        public Data(String state) {
+            this.state = state;
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        public void setState(String state) {
+            this.state = state;
+        }
+    }
+
+    public static class EnumData implements FsmStateHolder<State> {
+        private State state = State.S1;
+
+        public State getState() {
+            return state;
+        }
+
+        public void setState(State state) {
+            this.state = state;
+        }
+    }
+
+}
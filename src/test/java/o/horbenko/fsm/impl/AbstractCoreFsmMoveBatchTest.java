@@ -0,0 +1,156 @@
+package o.horbenko.fsm.impl;
+
+import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.batch.FsmBatchResult;
+import o.horbenko.fsm.configurer.FsmBuilder;
+import o.horbenko.fsm.error.NoMovementByTriggerInStateException;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static o.horbenko.fsm.batch.FsmBatchOutcome.COALESCED;
+import static o.horbenko.fsm.batch.FsmBatchOutcome.FAILED;
+import static o.horbenko.fsm.batch.FsmBatchOutcome.MOVED;
+import static o.horbenko.fsm.batch.FsmBatchOutcome.NOT_APPLIED;
+import static o.horbenko.fsm.batch.FsmBatchOutcome.NO_MOVEMENT;
+import static o.horbenko.fsm.batch.FsmBatchOutcome.SUPERSEDED;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AbstractCoreFsmMoveBatchTest {
+
+    private final AtomicInteger pings = new AtomicInteger();
+    private final AtomicInteger locations = new AtomicInteger();
+
+    @Test
+    public void testMoveBatch_withoutCoalescing() {
+
+        // ARRANGE
+        AbstractFiniteStateMachine<String, String, Data> fsm = buildFsm(FsmBuilder.builder());
+
+        // ACT
+        FsmBatchResult<Data> actual = fsm.moveBatch(
+                Arrays.asList("PING", "PING", "ACTIVATE", "LOCATION", "ACTIVATE", "LOCATION"), new Data("IDLE"));
+
+        // ASSERT
+        assertTrue(actual.isSuccess());
+        assertNull(actual.getError());
+        assertEquals("ACTIVE", actual.getData().getState());
+        assertArrayEquals(new byte[]{MOVED, MOVED, MOVED, MOVED, NO_MOVEMENT, MOVED}, actual.getOutcomes());
+        assertEquals(2, pings.get());
+        assertEquals(2, locations.get());
+    }
+
+    @Test
+    public void testMoveBatch_coalescingRulesOfBuilder() {
+
+        // ARRANGE
+        AbstractFiniteStateMachine<String, String, Data> fsm = buildFsm(FsmBuilder.<String, String, Data>builder()
+                .withIdempotentBatchTrigger("PING")
+                .withSupersedingBatchTrigger("LOCATION", "LOCATION"));
+
+        // ACT
+        FsmBatchResult<Data> actual = fsm.moveBatch(
+                Arrays.asList("PING", "PING", "ACTIVATE", "LOCATION", "LOCATION"), new Data("IDLE"));
+
+        // ASSERT
+        assertArrayEquals(new byte[]{MOVED, COALESCED, MOVED, SUPERSEDED, MOVED}, actual.getOutcomes());
+        assertEquals(1, pings.get());
+        assertEquals(1, locations.get());
+        assertEquals(3, actual.count(MOVED));
+    }
+
+    @Test
+    public void testMoveBatch_failureStopsBatch() {
+
+        // ARRANGE
+        AbstractFiniteStateMachine<String, String, Data> fsm = buildFsm(FsmBuilder.builder());
+
+        // ACT
+        FsmBatchResult<Data> actual = fsm.moveBatch(
+                Arrays.asList("ACTIVATE", "FAIL", "LOCATION", "PING"), new Data("IDLE"));
+
+        // ASSERT: there is no exception trigger for failed movement
+        assertTrue(actual.getError() instanceof NoMovementByTriggerInStateException);
+        assertEquals("ACTIVE", actual.getData().getState());
+        assertArrayEquals(new byte[]{MOVED, FAILED, NOT_APPLIED, NOT_APPLIED}, actual.getOutcomes());
+        assertEquals(0, locations.get());
+    }
+
+    @Test
+    public void testMoveBatch_failureBeforeSupersedingTrigger() {
+
+        // ARRANGE
+        AbstractFiniteStateMachine<String, String, Data> fsm = buildFsm(FsmBuilder.<String, String, Data>builder()
+                .withSupersedingBatchTrigger("LOCATION", "LOCATION"));
+
+        // ACT
+        FsmBatchResult<Data> actual = fsm.moveBatch(
+                Arrays.asList("ACTIVATE", "LOCATION", "FAIL", "LOCATION"), new Data("IDLE"));
+
+        // ASSERT: the first location was skipped for location, that was not applied
+        assertArrayEquals(new byte[]{MOVED, NOT_APPLIED, FAILED, NOT_APPLIED}, actual.getOutcomes());
+        assertEquals(0, locations.get());
+    }
+
+    @Test
+    public void testMoveBatch_empty() {
+        Data data = new Data("IDLE");
+
+        FsmBatchResult<Data> actual = buildFsm(FsmBuilder.builder()).moveBatch(Collections.emptyList(), data);
+
+        assertEquals(data, actual.getData());
+        assertEquals(0, actual.getOutcomes().length);
+    }
+
+    /**
+     * IDLE --PING--> IDLE, IDLE --ACTIVATE--> ACTIVE, ACTIVE --LOCATION--> ACTIVE, ACTIVE --FAIL--> (exception)
+     */
+    private AbstractFiniteStateMachine<String, String, Data> buildFsm(FsmBuilder<String, String, Data> builder) {
+        return builder
+                .andState("IDLE")
+                .andStateMovementBy("PING")
+                .movementAction(data -> {
+                    pings.incrementAndGet();
+                    return data;
+                })
+                .targetStateOnSuccess("IDLE")
+                .andStateMovementBy("ACTIVATE")
+                .targetStateOnSuccess("ACTIVE")
+                .andState("ACTIVE")
+                .andStateMovementBy("LOCATION")
+                .movementAction(data -> {
+                    locations.incrementAndGet();
+                    return data;
+                })
+                .targetStateOnSuccess("ACTIVE")
+                .andStateMovementBy("FAIL")
+                .movementAction(data -> {
+                    throw new IllegalStateException();
+                })
+                .targetStateOnSuccess("ACTIVE")
+                .buildFsm();
+    }
+
+
+    public static class Data implements FsmStateHolder<String> {
+        private String state;
+
+        public Data(String state) {
+            this.state = state;
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        public void setState(String state) {
+            this.state = state;
+        }
+    }
+
+}
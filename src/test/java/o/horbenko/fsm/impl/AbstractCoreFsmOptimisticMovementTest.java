@@ -0,0 +1,286 @@
+package o.horbenko.fsm.impl;
+
+import o.horbenko.fsm.AtomicFsmStateHolder;
+import o.horbenko.fsm.ConcurrentMovementPolicy;
+import o.horbenko.fsm.configurer.FsmBuilder;
+import o.horbenko.fsm.error.ConcurrentFsmMovementException;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AbstractCoreFsmOptimisticMovementTest {
+
+    private final AtomicInteger actionExecutions = new AtomicInteger();
+
+    @Test
+    public void testMove_overwrite() {
+
+        // ARRANGE
+        AbstractFiniteStateMachine<String, String, Data> fsm = buildFsm(ConcurrentMovementPolicy.OVERWRITE, 0);
+
+        // ACT
+        Data actual = fsm.move("T", new Data("INITIAL"));
+
+        // ASSERT
+        assertEquals("S1", actual.getState());
+    }
+
+    @Test
+    public void testMove_reject() {
+
+        // ARRANGE
+        AbstractFiniteStateMachine<String, String, Data> fsm = buildFsm(ConcurrentMovementPolicy.REJECT, 0);
+        Data data = new Data("INITIAL");
+
+        // ACT
+        try {
+            fsm.move("T", data);
+            fail("Concurrent movement must be rejected");
+        } catch (ConcurrentFsmMovementException e) {
+
+            // ASSERT
+            assertEquals("CONCURRENT", data.getState());
+            assertEquals(1, actionExecutions.get());
+        }
+    }
+
+    @Test
+    public void testMove_retry() {
+
+        // ARRANGE
+        AbstractFiniteStateMachine<String, String, Data> fsm = buildFsm(ConcurrentMovementPolicy.RETRY, 1);
+
+        // ACT
+        Data actual = fsm.move("T", new Data("INITIAL"));
+
+        // ASSERT
+        assertEquals("S2", actual.getState());
+        assertEquals(2, actionExecutions.get());
+    }
+
+    @Test(expected = ConcurrentFsmMovementException.class)
+    public void testMove_retriesExhausted() {
+
+        // ARRANGE
+        AbstractFiniteStateMachine<String, String, Data> fsm = buildFsm(ConcurrentMovementPolicy.RETRY, 0);
+
+        // ACT
+        fsm.move("T", new Data("INITIAL"));
+    }
+
+    @Test
+    public void testMove_rollbackAfterConcurrentMovement() {
+
+        // ARRANGE
+        AbstractFiniteStateMachine<String, String, Data> fsm = FsmBuilder.<String, String, Data>builder()
+                .withConcurrentMovementPolicy(ConcurrentMovementPolicy.REJECT, 0)
+                .andState("INITIAL")
+                .andStateMovementBy("T")
+                .targetStateOnSuccess("S1")
+                .postMovementAction(data -> {
+                    data.setState("CONCURRENT");
+                    throw new IllegalStateException();
+                })
+                .exceptionTrigger("ERR")
+                .andStateMovementBy("ERR")
+                .targetStateOnSuccess("S_ERR")
+                .buildFsm();
+
+        Data data = new Data("INITIAL");
+
+        // ACT
+        try {
+            fsm.move("T", data);
+            fail("Rollback of concurrently changed state must fail");
+        } catch (ConcurrentFsmMovementException e) {
+
+            // ASSERT
+            assertTrue(e.getCause() instanceof IllegalStateException);
+            assertEquals("CONCURRENT", data.getState());
+        }
+    }
+
+    @Test
+    public void testMoveAsync_reject() {
+
+        // ARRANGE
+        AbstractFiniteStateMachine<String, String, Data> fsm = buildFsm(ConcurrentMovementPolicy.REJECT, 0);
+
+        // ACT
+        try {
+            fsm.moveAsync("T", new Data("INITIAL")).join();
+            fail("Concurrent movement must be rejected");
+        } catch (CompletionException e) {
+
+            // ASSERT
+            assertTrue(e.getCause() instanceof ConcurrentFsmMovementException);
+        }
+    }
+
+    @Test
+    public void testMoveAsync_retry() {
+
+        // ARRANGE
+        AbstractFiniteStateMachine<String, String, Data> fsm = buildFsm(ConcurrentMovementPolicy.RETRY, 1);
+
+        // ACT
+        Data actual = fsm.moveAsync("T", new Data("INITIAL")).join();
+
+        // ASSERT
+        assertEquals("S2", actual.getState());
+    }
+
+    @Test
+    public void testMove_stateChangedAfterLookup_reject() {
+
+        // ARRANGE
+        AbstractFiniteStateMachine<String, String, Data> fsm = buildFsmWithoutActions(ConcurrentMovementPolicy.REJECT, 0);
+        Data data = new ChangedAfterFirstReadData();
+
+        // ACT
+        try {
+            fsm.move("T", data);
+            fail("Movement resolved for previous state must be rejected");
+        } catch (ConcurrentFsmMovementException e) {
+
+            // ASSERT: concurrently set state is not overwritten
+            assertEquals("CONCURRENT", data.getState());
+        }
+    }
+
+    @Test
+    public void testMove_stateChangedAfterLookup_retry() {
+
+        // ARRANGE
+        AbstractFiniteStateMachine<String, String, Data> fsm = buildFsmWithoutActions(ConcurrentMovementPolicy.RETRY, 1);
+
+        // ACT
+        Data actual = fsm.move("T", new ChangedAfterFirstReadData());
+
+        // ASSERT: movement is resolved again for the new state
+        assertEquals("S2", actual.getState());
+    }
+
+    @Test
+    public void testMoveAsync_stateChangedAfterLookup_reject() {
+
+        // ARRANGE
+        AbstractFiniteStateMachine<String, String, Data> fsm = buildFsmWithoutActions(ConcurrentMovementPolicy.REJECT, 0);
+        Data data = new ChangedAfterFirstReadData();
+
+        // ACT
+        try {
+            fsm.moveAsync("T", data).join();
+            fail("Movement resolved for previous state must be rejected");
+        } catch (CompletionException e) {
+
+            // ASSERT
+            assertTrue(e.getCause() instanceof ConcurrentFsmMovementException);
+            assertEquals("CONCURRENT", data.getState());
+        }
+    }
+
+    @Test
+    public void testMoveBatch_stateChangedAfterLookup_retry() {
+
+        // ARRANGE
+        AbstractFiniteStateMachine<String, String, Data> fsm = buildFsmWithoutActions(ConcurrentMovementPolicy.RETRY, 1);
+
+        // ACT
+        Data actual = fsm.moveBatch(List.of("T"), new ChangedAfterFirstReadData()).getData();
+
+        // ASSERT
+        assertEquals("S2", actual.getState());
+    }
+
+    /**
+     * INITIAL --T--> S1, CONCURRENT --T--> S2
+     */
+    private AbstractFiniteStateMachine<String, String, Data> buildFsmWithoutActions(ConcurrentMovementPolicy policy, int retries) {
+        return FsmBuilder.<String, String, Data>builder()
+                .withConcurrentMovementPolicy(policy, retries)
+                .andState("INITIAL")
+                .andStateMovementBy("T")
+                .targetStateOnSuccess("S1")
+                .andState("CONCURRENT")
+                .andStateMovementBy("T")
+                .targetStateOnSuccess("S2")
+                .buildFsm();
+    }
+
+    /**
+     * INITIAL --T--> S1, action of first execution simulates concurrent movement INITIAL -> CONCURRENT
+     * CONCURRENT --T--> S2
+     */
+    private AbstractFiniteStateMachine<String, String, Data> buildFsm(ConcurrentMovementPolicy policy, int retries) {
+        return FsmBuilder.<String, String, Data>builder()
+                .withConcurrentMovementPolicy(policy, retries)
+                .andState("INITIAL")
+                .andStateMovementBy("T")
+                .movementAction(data -> {
+                    if (actionExecutions.incrementAndGet() == 1) {
+                        data.setState("CONCURRENT");
+                    }
+                    return data;
+                })
+                .targetStateOnSuccess("S1")
+                .andState("CONCURRENT")
+                .andStateMovementBy("T")
+                .movementAction(data -> {
+                    actionExecutions.incrementAndGet();
+                    return data;
+                })
+                .targetStateOnSuccess("S2")
+                .buildFsm();
+    }
+
+
+    public static class Data implements AtomicFsmStateHolder<String> {
+        private final AtomicReference<String> state;
+
+        public Data(String state) {
+            this.state = new AtomicReference<>(state);
+        }
+
+        public String getState() {
+            return state.get();
+        }
+
+        public void setState(String state) {
+            this.state.set(state);
+        }
+
+        public boolean compareAndSetState(String expectedState, String newState) {
+            return state.compareAndSet(expectedState, newState);
+        }
+    }
+
+    /**
+     * Simulates concurrent movement INITIAL -> CONCURRENT right after the first read of state (lookup of movement)
+     */
+    public static class ChangedAfterFirstReadData extends Data {
+        private boolean read;
+
+        public ChangedAfterFirstReadData() {
+            super("INITIAL");
+        }
+
+        @Override
+        public String getState() {
+            String state = super.getState();
+            if (!read) {
+                read = true;
+                setState("CONCURRENT");
+            }
+            return state;
+        }
+    }
+
+}
@@ -3,12 +3,20 @@ package o.horbenko.fsm.impl;
 import o.horbenko.fsm.FiniteStateMachine;
 import o.horbenko.fsm.FsmStateHolder;
 import o.horbenko.fsm.configurer.FsmBuilder;
+import o.horbenko.fsm.error.ExceptionChainDepthExceededException;
 import o.horbenko.fsm.error.NoMovementByTriggerInStateException;
+import o.horbenko.fsm.movement.FsmMovement;
 import o.horbenko.fsm.movementaction.FsmMovementAction;
+import o.horbenko.fsm.state.FsmState;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.when;
 
@@ -132,10 +140,217 @@ public class AbstractCoreFsmTest {
         Assert.assertEquals(expectedState, actual.getState());
     }
 
+    @Test
+    public void testMove_CustomExceptionSubclassInAction() {
+        // ARRANGE
+        Data initial = new Data("INITIAL");
+        String expectedState = "S_CUSTOM_ERROR";
+
+        when(action.execute(initial)).thenThrow(new CustomSubException());
+
+        // ACT
+        Data actual = fsm.move("E1", initial);
+
+        // ASSERT
+        Assert.assertEquals(expectedState, actual.getState());
+    }
+
+    @Test
+    public void testMove_exceptionCycle() {
+        // ARRANGE
+        AtomicInteger executions = new AtomicInteger();
+        FiniteStateMachine<String, String, Data> cyclicFsm = FsmBuilder.<String, String, Data>builder()
+                .withMaxExceptionChainHops(100)
+                .andState("INITIAL")
+                .andStateMovementBy("E1")
+                .targetStateOnSuccess("S1")
+                .movementAction(data -> {
+                    executions.incrementAndGet();
+                    throw new CustomException();
+                })
+                .exceptionTrigger("E1")
+                .buildFsm();
+
+        // ACT
+        try {
+            cyclicFsm.move("E1", new Data("INITIAL"));
+            Assert.fail("Exception cycle must be interrupted");
+        } catch (ExceptionChainDepthExceededException e) {
+
+            // ASSERT
+            Assert.assertEquals(101, executions.get());
+            Assert.assertTrue(e.getCause() instanceof CustomException);
+            Assert.assertEquals(0, e.getStackTrace().length);
+        }
+    }
+
+    @Test
+    public void testMove_longExceptionChain() {
+        // ARRANGE
+        int chainLength = 10_000;
+        FsmState<String, String, Data> initialState = new FsmState<>();
+
+        // INITIAL --E0-> (on exception) --E1-> (on exception) ... --E10000-> S_END
+        for (int i = 0; i < chainLength; i++) {
+            initialState.withMovement("E" + i, new FsmMovement<String, String, Data>()
+                    .targetState("S" + i)
+                    .movementAction(data -> {
+                        throw new CustomException();
+                    })
+                    .triggerOnGeneralException("E" + (i + 1)));
+        }
+        initialState.withMovement("E" + chainLength, new FsmMovement<String, String, Data>()
+                .targetState("S_END"));
+
+        AbstractFiniteStateMachine<String, String, Data> chainFsm = new AbstractFiniteStateMachine<>();
+        chainFsm.withState("INITIAL", initialState)
+                .withMaxExceptionChainHops(chainLength);
+
+        // ACT
+        Data actual = chainFsm.move("E0", new Data("INITIAL"));
+
+        // ASSERT
+        Assert.assertEquals("S_END", actual.getState());
+    }
+
+    @Test
+    public void testMoveAsync_asyncAction() {
+        // ARRANGE
+        CompletableFuture<Data> actionResult = new CompletableFuture<>();
+        FiniteStateMachine<String, String, Data> asyncFsm = FsmBuilder.<String, String, Data>builder()
+                .andState("INITIAL")
+                .andStateMovementBy("E1")
+                .targetStateOnSuccess("S1")
+                .asyncMovementAction(data -> actionResult)
+                .buildFsm();
+        Data initial = new Data("INITIAL");
+
+        // ACT
+        CompletableFuture<Data> actual = asyncFsm.moveAsync("E1", initial);
+
+        // ASSERT
+        Assert.assertFalse(actual.isDone());
+        Assert.assertEquals("INITIAL", initial.getState());
+
+        actionResult.complete(initial);
+        Assert.assertEquals("S1", actual.join().getState());
+    }
+
+    @Test
+    public void testMoveAsync_blockingActions() {
+        // ARRANGE
+        Data initial = new Data("INITIAL");
+
+        // ACT
+        Data actual = fsm.moveAsync("E1", initial).join();
+
+        // ASSERT
+        Assert.assertEquals("S1", actual.getState());
+    }
+
+    @Test
+    public void testMoveAsync_exceptionalCompletionInAction() {
+        // ARRANGE
+        CompletableFuture<Data> actionResult = new CompletableFuture<>();
+        FiniteStateMachine<String, String, Data> asyncFsm = FsmBuilder.<String, String, Data>builder()
+                .andState("INITIAL")
+                .andStateMovementBy("E1")
+                .targetStateOnSuccess("S1")
+                .asyncMovementAction(data -> actionResult)
+                .exceptionTrigger(CustomException.class, "E_CUSTOM")
+                .exceptionTrigger("E_E1")
+                .andStateMovementBy("E_CUSTOM")
+                .targetStateOnSuccess("S_CUSTOM_ERROR")
+                .andStateMovementBy("E_E1")
+                .targetStateOnSuccess("S_ERR_1")
+                .buildFsm();
+
+        // ACT
+        CompletableFuture<Data> actual = asyncFsm.moveAsync("E1", new Data("INITIAL"));
+        actionResult.completeExceptionally(new CustomSubException());
+
+        // ASSERT
+        Assert.assertEquals("S_CUSTOM_ERROR", actual.join().getState());
+    }
+
+    @Test
+    public void testMove_checkedExceptionOfAsyncAction() {
+        // ARRANGE
+        FiniteStateMachine<String, String, Data> asyncFsm = FsmBuilder.<String, String, Data>builder()
+                .andState("INITIAL")
+                .andStateMovementBy("E1")
+                .targetStateOnSuccess("S1")
+                .asyncMovementAction(data -> CompletableFuture.failedFuture(new IOException("Remote call failed")))
+                .exceptionTrigger(IOException.class, "E_IO")
+                .exceptionTrigger("E_E1")
+                .andStateMovementBy("E_IO")
+                .targetStateOnSuccess("S_IO_ERROR")
+                .andStateMovementBy("E_E1")
+                .targetStateOnSuccess("S_ERR_1")
+                .buildFsm();
+
+        // ACT
+        Data blocking = asyncFsm.move("E1", new Data("INITIAL"));
+        Data async = asyncFsm.moveAsync("E1", new Data("INITIAL")).join();
+
+        // ASSERT: blocking and async movements are routed by the same exception
+        Assert.assertEquals("S_IO_ERROR", blocking.getState());
+        Assert.assertEquals("S_IO_ERROR", async.getState());
+    }
+
+    @Test
+    public void testMoveAsync_exceptionInPostAction() {
+        // ARRANGE
+        Data initial = new Data("INITIAL");
+        when(postMovementAction.execute(initial)).thenThrow(new RuntimeException());
+
+        // ACT
+        Data actual = fsm.moveAsync("E1", initial).join();
+
+        // ASSERT
+        Assert.assertEquals("S_ERR_1", actual.getState());
+    }
+
+    @Test
+    public void testMoveAsync_errorInBlockingAction() {
+        // ARRANGE
+        Data initial = new Data("INITIAL");
+        when(action.execute(initial)).thenThrow(new StackOverflowError());
+
+        // ACT
+        CompletableFuture<Data> actual = fsm.moveAsync("E1", initial);
+
+        // ASSERT: error completes the future and is not handled by exception triggers
+        try {
+            actual.join();
+            Assert.fail("Movement must fail");
+        } catch (CompletionException e) {
+            Assert.assertTrue(e.getCause() instanceof StackOverflowError);
+        }
+        Assert.assertEquals("INITIAL", initial.getState());
+    }
+
+    @Test
+    public void testMoveAsync_noMovement() {
+        // ACT
+        CompletableFuture<Data> actual = fsm.moveAsync("UNKNOWN", new Data("INITIAL"));
+
+        // ASSERT
+        try {
+            actual.join();
+            Assert.fail("Movement must fail");
+        } catch (CompletionException e) {
+            Assert.assertTrue(e.getCause() instanceof NoMovementByTriggerInStateException);
+        }
+    }
+
 
     static class CustomException extends RuntimeException {
     }
 
+    static class CustomSubException extends CustomException {
+    }
+
 
     public static class Data implements FsmStateHolder<String> {
         private String state;
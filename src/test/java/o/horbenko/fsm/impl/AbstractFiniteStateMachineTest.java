@@ -4,18 +4,30 @@ import o.horbenko.fsm.FiniteStateMachine;
 import o.horbenko.fsm.FsmStateHolder;
 import o.horbenko.fsm.configurer.FsmBuilder;
 import o.horbenko.fsm.error.NoMovementByTriggerInStateException;
+import o.horbenko.fsm.error.PipelineConfigurationException;
 import o.horbenko.fsm.movementaction.FsmMovementAction;
+import o.horbenko.fsm.pipeline.CompiledFsmPipeline;
 import o.horbenko.fsm.pipeline.FsmPipeline;
+import o.horbenko.fsm.result.FsmMoveResult;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.when;
 
 public class AbstractFiniteStateMachineTest {
 
-    private FiniteStateMachine<String, String, Data> fsm;
+    private AbstractFiniteStateMachine<String, String, Data> fsm;
 
     private MovementAction actionOnS2S3 = spy(new MovementAction());
     private MovementAction errorStatePostMovementAction = spy(new MovementAction());
@@ -126,6 +138,178 @@ public class AbstractFiniteStateMachineTest {
         fsm.moveOnPipeline(initial, s1s2s3s4);
     }
 
+    @Test
+    public void testMoveOnCompiledPipeline_s1s2s3s4() {
+
+        // ARRANGE
+        CompiledFsmPipeline<String, String, Data> s1s2s3s4 = fsm.compilePipeline(new FsmPipeline<String, String>()
+                .addPipe("S1", "TS1S2")
+                .addPipe("S2", "TS2S3")
+                .addPipe("S3", "TS3S4"));
+
+        Data initial = new Data("S1");
+        String expectedState = "S4";
+
+        // ACT
+        Data result = fsm.moveOnPipeline(initial, s1s2s3s4);
+
+        // ASSERT
+        assertEquals(expectedState, result.getState());
+    }
+
+    @Test
+    public void testMoveOnCompiledPipeline_exceptionTrigger() {
+
+        // ARRANGE
+        CompiledFsmPipeline<String, String, Data> pipeline = fsm.compilePipeline(new FsmPipeline<String, String>()
+                .addPipe("S1", "TS1S2")
+                .addPipe("S2", "TS2S3")
+                .addPipe("S3", "TS3S4")
+                .addPipe("S_ERROR_S2S3", "TS_ERROR_S2S3S1"));
+
+        Data initial = new Data("S1");
+        when(actionOnS2S3.execute(initial))
+                .thenThrow(new RuntimeException())
+                .thenReturn(initial);
+        String expectedState = "S4";
+
+        // ACT
+        Data result = fsm.moveOnPipeline(initial, pipeline);
+
+        // ASSERT
+        assertEquals(expectedState, result.getState());
+    }
+
+    @Test(expected = PipelineConfigurationException.class)
+    public void testCompilePipeline_missingMovement() {
+        fsm.compilePipeline(new FsmPipeline<String, String>()
+                .addPipe("S1", "TS1S2")
+                .addPipe("S2", "TS1S2"));
+    }
+
+    @Test(expected = PipelineConfigurationException.class)
+    public void testMoveOnCompiledPipeline_anotherFsm() {
+
+        // ARRANGE
+        FiniteStateMachine<String, String, Data> anotherFsm = FsmBuilder.<String, String, Data>builder()
+                .andState("S1")
+                .andStateMovementBy("TS1S2")
+                .targetStateOnSuccess("S2")
+                .buildFsm();
+
+        CompiledFsmPipeline<String, String, Data> pipeline = anotherFsm.compilePipeline(new FsmPipeline<String, String>()
+                .addPipe("S1", "TS1S2"));
+
+        // ACT
+        fsm.moveOnPipeline(new Data("S1"), pipeline);
+    }
+
+    @Test
+    public void testMoveOnPipelineAsync_s1s2s3s4() {
+
+        // ARRANGE
+        FsmPipeline<String, String> s1s2s3s4 = new FsmPipeline<String, String>()
+                .addPipe("S1", "TS1S2")
+                .addPipe("S2", "TS2S3")
+                .addPipe("S3", "TS3S4");
+
+        Data initial = new Data("S1");
+        String expectedState = "S4";
+
+        // ACT
+        Data result = fsm.moveOnPipelineAsync(initial, s1s2s3s4).join();
+
+        // ASSERT
+        assertEquals(expectedState, result.getState());
+    }
+
+    @Test
+    public void testMoveOnPipelineAsync_asyncAction() {
+
+        // ARRANGE
+        FiniteStateMachine<String, String, Data> asyncFsm = FsmBuilder.<String, String, Data>builder()
+                .andState("S1")
+                .andStateMovementBy("TS1S2")
+                .asyncMovementAction(data -> CompletableFuture.supplyAsync(() -> data))
+                .targetStateOnSuccess("S2")
+                .andState("S2")
+                .andStateMovementBy("TS2S3")
+                .asyncPostMovementAction(data -> CompletableFuture.supplyAsync(() -> data))
+                .targetStateOnSuccess("S3")
+                .buildFsm();
+
+        FsmPipeline<String, String> s1s2s3 = new FsmPipeline<String, String>()
+                .addPipe("S1", "TS1S2")
+                .addPipe("S2", "TS2S3");
+
+        // ACT
+        Data result = asyncFsm.moveOnPipelineAsync(new Data("S1"), s1s2s3).join();
+
+        // ASSERT
+        assertEquals("S3", result.getState());
+    }
+
+    @Test
+    public void testMoveAll() {
+
+        // ARRANGE
+        List<Data> dataToProcess = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            dataToProcess.add(new Data(i % 10 == 0 ? "S2" : "S1"));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            fsm.withBulkExecutor(executor, 4);
+
+            // ACT
+            List<FsmMoveResult<Data>> results = fsm
+                    .moveAll("TS1S2", dataToProcess);
+
+            // ASSERT
+            assertEquals(dataToProcess.size(), results.size());
+            for (int i = 0; i < results.size(); i++) {
+                FsmMoveResult<Data> result = results.get(i);
+                assertSame(dataToProcess.get(i), result.getData());
+
+                if (i % 10 == 0) {
+                    assertFalse(result.isSuccess());
+                    assertTrue(result.getError() instanceof NoMovementByTriggerInStateException);
+                } else {
+                    assertTrue(result.isSuccess());
+                    assertEquals("S2", result.getData().getState());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testMoveAllOnPipeline() {
+
+        // ARRANGE
+        FsmPipeline<String, String> s1s2s3s4 = new FsmPipeline<String, String>()
+                .addPipe("S1", "TS1S2")
+                .addPipe("S2", "TS2S3")
+                .addPipe("S3", "TS3S4");
+
+        List<Data> dataToProcess = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            dataToProcess.add(new Data("S1"));
+        }
+
+        // ACT
+        List<FsmMoveResult<Data>> results = fsm
+                .moveAllOnPipeline(dataToProcess, s1s2s3s4);
+
+        // ASSERT
+        for (FsmMoveResult<Data> result : results) {
+            assertTrue(result.isSuccess());
+            assertEquals("S4", result.getData().getState());
+        }
+    }
+
 
     public static class Data implements FsmStateHolder<String> {
         private String state;
@@ -0,0 +1,197 @@
+package o.horbenko.fsm.impl;
+
+import o.horbenko.fsm.FiniteStateMachine;
+import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.configurer.FsmBuilder;
+import o.horbenko.fsm.error.InvalidFsmConfigurationException;
+import o.horbenko.fsm.error.NoMovementByTriggerInStateException;
+import o.horbenko.fsm.movementaction.FsmMovementAction;
+import o.horbenko.fsm.pipeline.FsmPipeline;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+public class CompiledEnumFiniteStateMachineTest {
+
+    private FiniteStateMachine<State, Trigger, Data> fsm;
+
+    private MovementAction action = spy(new MovementAction());
+
+    @Before
+    public void initFsm() {
+        fsm = FsmBuilder.<State, Trigger, Data>builder()
+                .withCompiledTransitionTable()
+
+                .andState(State.S1)
+                .andStateMovementBy(Trigger.T1)
+                .targetStateOnSuccess(State.S2)
+                .movementAction(action)
+                .exceptionTrigger(Trigger.ERR)
+
+                .andStateMovementBy(Trigger.ERR)
+                .targetStateOnSuccess(State.S_ERROR)
+
+                .andState(State.S2)
+                .andStateMovementBy(Trigger.T2)
+                .targetStateOnSuccess(State.S3)
+
+                .andState(State.S3)
+                .andState(State.S_ERROR)
+                .buildFsm();
+    }
+
+    @Test
+    public void testBuildFsm_compiled() {
+        assertTrue(fsm instanceof CompiledEnumFiniteStateMachine);
+    }
+
+    @Test
+    public void testBuildFsm_validatedConfigurationIsCopied() {
+
+        // ARRANGE
+        FsmBuilder.MovementBuilder<State, Trigger, Data> t1 = FsmBuilder.<State, Trigger, Data>builder()
+                .withCompiledTransitionTable()
+                .withGraphValidation(List.of(State.S1))
+                .andState(State.S1)
+                .andStateMovementBy(Trigger.T1)
+                .targetStateOnSuccess(State.S2);
+        FiniteStateMachine<State, Trigger, Data> validatedFsm = t1.andState(State.S2).buildFsm();
+
+        // ACT: change builder's movement after validation
+        t1.targetStateOnSuccess(State.S_ERROR);
+
+        // ASSERT
+        assertEquals(State.S2, validatedFsm.move(Trigger.T1, new Data(State.S1)).getState());
+    }
+
+    @Test
+    public void testMove_ok() {
+
+        // ACT
+        Data actual = fsm.move(Trigger.T1, new Data(State.S1));
+
+        // ASSERT
+        assertEquals(State.S2, actual.getState());
+    }
+
+    @Test
+    public void testMove_exceptionInAction() {
+
+        // ARRANGE
+        Data initial = new Data(State.S1);
+        when(action.execute(initial)).thenThrow(new RuntimeException());
+
+        // ACT
+        Data actual = fsm.move(Trigger.T1, initial);
+
+        // ASSERT
+        assertEquals(State.S_ERROR, actual.getState());
+    }
+
+    @Test(expected = NoMovementByTriggerInStateException.class)
+    public void testMove_noMovementByTrigger() {
+        fsm.move(Trigger.T2, new Data(State.S1));
+    }
+
+    @Test(expected = NoMovementByTriggerInStateException.class)
+    public void testMove_stateWithoutMovements() {
+        fsm.move(Trigger.T1, new Data(State.S3));
+    }
+
+    @Test
+    public void testMoveOnPipeline() {
+
+        // ARRANGE
+        FsmPipeline<State, Trigger> pipeline = new FsmPipeline<State, Trigger>()
+                .addPipe(State.S1, Trigger.T1)
+                .addPipe(State.S2, Trigger.T2);
+
+        // ACT
+        Data actual = fsm.moveOnPipeline(new Data(State.S1), pipeline);
+
+        // ASSERT
+        assertEquals(State.S3, actual.getState());
+    }
+
+    @Test(expected = NoMovementByTriggerInStateException.class)
+    public void testMove_triggerOfOtherEnum() {
+
+        // ARRANGE
+        FiniteStateMachine<State, Object, Data> anyTriggerFsm = FsmBuilder.<State, Object, Data>builder()
+                .withCompiledTransitionTable()
+                .andState(State.S1)
+                .andStateMovementBy(Trigger.T1)
+                .targetStateOnSuccess(State.S2)
+                .andState(State.S2)
+                .buildFsm();
+
+        // ACT: same ordinal as Trigger.T1
+        anyTriggerFsm.move(OtherTrigger.T1, new Data(State.S1));
+    }
+
+    @Test(expected = InvalidFsmConfigurationException.class)
+    public void testBuildFsm_notEnumStates() {
+        FsmBuilder.<String, String, StringData>builder()
+                .withCompiledTransitionTable()
+                .andState("S1")
+                .andStateMovementBy("T1")
+                .targetStateOnSuccess("S2")
+                .buildFsm();
+    }
+
+
+    enum State {
+        S1, S2, S3, S_ERROR
+    }
+
+    enum Trigger {
+        T1, T2, ERR
+    }
+
+    enum OtherTrigger {
+        T1
+    }
+
+    public static class Data implements FsmStateHolder<State> {
+        private State state;
+
+        public Data(State state) {
+            this.state = state;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public void setState(State state) {
+            this.state = state;
+        }
+    }
+
+    public static class StringData implements FsmStateHolder<String> {
+        private String state;
+
+        public String getState() {
+            return state;
+        }
+
+        public void setState(String state) {
+            this.state = state;
+        }
+    }
+
+    public static class MovementAction implements FsmMovementAction<Data> {
+
+        @Override
+        public Data execute(Data data) {
+            return data;
+        }
+    }
+
+}
@@ -0,0 +1,120 @@
+package o.horbenko.fsm.impl;
+
+import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.configurer.FsmBuilder;
+import o.horbenko.fsm.error.InvalidFsmConfigurationException;
+import o.horbenko.fsm.error.NoMovementByTriggerInStateException;
+import o.horbenko.fsm.movement.FsmMovement;
+import o.horbenko.fsm.state.FsmState;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MethodHandleFiniteStateMachineTest {
+
+    @Test
+    public void testFindMovement_specialized() {
+        assertSameAsMapLookup(MethodHandleFiniteStateMachine.MAX_SPECIALIZED_STATES, true);
+    }
+
+    @Test
+    public void testFindMovement_tooLargeToSpecialize() {
+        assertSameAsMapLookup(500, false);
+    }
+
+    /**
+     * states with 3 triggers each, states and triggers are new instances on lookup
+     */
+    private void assertSameAsMapLookup(int statesCount, boolean expectedSpecialized) {
+
+        // ARRANGE
+        Map<String, FsmState<String, String, Data>> states = new HashMap<>();
+        for (int i = 0; i < statesCount; i++) {
+            FsmState<String, String, Data> state = new FsmState<>();
+            for (int t = 0; t < 3; t++) {
+                state.withMovement("T" + t, new FsmMovement<String, String, Data>().targetState("S" + (i + t)));
+            }
+            states.put("S" + i, state);
+        }
+
+        // ACT
+        MethodHandleFiniteStateMachine<String, String, Data> fsm = new MethodHandleFiniteStateMachine<>(states);
+
+        // ASSERT
+        assertEquals(expectedSpecialized, fsm.isSpecialized());
+        for (int i = 0; i < statesCount; i++) {
+            for (int t = 0; t < 3; t++) {
+                assertSame(states.get("S" + i).getMovementByTriggerOrNull("T" + t),
+                        fsm.findMovement(new String("S" + i), new String("T" + t)));
+            }
+            assertNull(fsm.findMovement("S" + i, "UNKNOWN"));
+        }
+        assertNull(fsm.findMovement("UNKNOWN", "T0"));
+        assertNull(fsm.findMovement(null, "T0"));
+        assertNull(fsm.findMovement("S0", null));
+    }
+
+    @Test
+    public void testMove_collidingHashCodes() {
+
+        // ARRANGE: "Aa", "BB" and "AaAa", "BBBB", "AaBB" have equal hash codes
+        AbstractFiniteStateMachine<String, String, Data> fsm = FsmBuilder.<String, String, Data>builder()
+                .withMethodHandleDispatch()
+                .andState("Aa")
+                .andStateMovementBy("AaAa")
+                .targetStateOnSuccess("BB")
+                .andStateMovementBy("BBBB")
+                .targetStateOnSuccess("C")
+                .andState("BB")
+                .andStateMovementBy("AaBB")
+                .targetStateOnSuccess("Aa")
+                .buildFsm();
+
+        // ACT & ASSERT
+        assertTrue(fsm instanceof MethodHandleFiniteStateMachine);
+        assertEquals("BB", fsm.move("AaAa", new Data("Aa")).getState());
+        assertEquals("C", fsm.move("BBBB", new Data("Aa")).getState());
+        assertEquals("Aa", fsm.move("AaBB", new Data("BB")).getState());
+    }
+
+    @Test(expected = NoMovementByTriggerInStateException.class)
+    public void testMove_noMovement() {
+        FsmBuilder.<String, String, Data>builder()
+                .withMethodHandleDispatch()
+                .andState("Aa")
+                .andStateMovementBy("AaAa")
+                .targetStateOnSuccess("BB")
+                .buildFsm()
+                .move("AaBB", new Data("Aa"));
+    }
+
+    @Test(expected = InvalidFsmConfigurationException.class)
+    public void testWithState_frozen() {
+        new MethodHandleFiniteStateMachine<String, String, Data>(new HashMap<>())
+                .withState("S", new FsmState<>());
+    }
+
+
+    public static class Data implements FsmStateHolder<String> {
+        private String state;
+
+        public Data(String state) {
+            this.state = state;
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        public void setState(String state) {
+            this.state = state;
+        }
+    }
+
+}
@@ -0,0 +1,240 @@
+package o.horbenko.fsm.journal;
+
+import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.configurer.FsmBuilder;
+import o.horbenko.fsm.impl.AbstractFiniteStateMachine;
+import o.horbenko.fsm.movement.FsmMovement;
+import o.horbenko.fsm.state.FsmState;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FsmJournalRecoveryTest {
+
+    private static final int KEYS = 500;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+    private FsmJournalRecovery<String, Integer, Integer> recovery;
+
+    @Before
+    public void initDirectory() throws IOException {
+        directory = folder.newFolder("journal").toPath();
+        recovery = new FsmJournalRecovery<>(directory,
+                FsmJournalCodec.ofString(), FsmJournalCodec.ofInteger(), FsmJournalCodec.ofInteger());
+    }
+
+    @Test
+    public void testRecover_fromSegments() {
+
+        // ARRANGE
+        moveAll(3);
+
+        // ACT
+        Map<String, Integer> actual = recovery.recover();
+
+        // ASSERT
+        assertStates(actual, 3);
+    }
+
+    @Test
+    public void testRecover_fromSnapshotAndTail() {
+
+        // ARRANGE
+        moveAll(2);
+        assertTrue(recovery.compact());
+        int segmentsAfterCompaction = FsmJournalSegments.listSegments(directory).size();
+        moveAll(2);
+
+        // ACT
+        Map<String, Integer> actual = recovery.recover();
+
+        // ASSERT
+        assertEquals(1, segmentsAfterCompaction);
+        assertStates(actual, 4);
+    }
+
+    @Test
+    public void testCompact_repeatedly() {
+
+        // ARRANGE
+        moveAll(1);
+        recovery.compact();
+        moveAll(1);
+        recovery.compact();
+        moveAll(1);
+
+        // ACT
+        Map<String, Integer> actual = recovery.recover();
+
+        // ASSERT
+        assertStates(actual, 3);
+    }
+
+    @Test
+    public void testCompact_nothingToCompact() {
+        assertFalse(recovery.compact());
+    }
+
+    @Test
+    public void testCompact_entryLargerThanWriteBuffer() {
+
+        // ARRANGE: key of entity is larger than snapshot write buffer
+        String key = "k".repeat(100 * 1024);
+        FsmJournalConfig<String, Integer, Integer, Data> config = new FsmJournalConfig<String, Integer, Integer, Data>(
+                directory,
+                Data::getKey,
+                FsmJournalCodec.ofString(),
+                FsmJournalCodec.ofInteger(),
+                FsmJournalCodec.ofInteger())
+                .setSegmentSize(256 * 1024)
+                .setMaxRecordSize(128 * 1024)
+                .setSyncPolicy(FsmJournalSyncPolicy.NONE);
+
+        try (MappedFsmJournal<String, Integer, Integer, Data> journal = new MappedFsmJournal<>(config)) {
+            AbstractFiniteStateMachine<Integer, Integer, Data> fsm = FsmBuilder.<Integer, Integer, Data>builder()
+                    .withJournal(journal)
+                    .buildFsm();
+            for (int state = 0; state < 10; state++) {
+                fsm.withState(state, new FsmState<Integer, Integer, Data>()
+                        .withMovement(state, new FsmMovement<Integer, Integer, Data>()
+                                .targetState(state + 1)));
+            }
+
+            Data data = new Data(key, 0);
+            for (int i = 0; i < 5; i++) {
+                fsm.move(data.getState(), data);
+            }
+        }
+
+        // ACT
+        boolean compacted = recovery.compact();
+        Map<String, Integer> actual = recovery.recover();
+
+        // ASSERT
+        assertTrue(compacted);
+        assertEquals(Map.of(key, 5), actual);
+    }
+
+    @Test
+    public void testRecover_staleTemporarySnapshotIsDeleted() throws IOException {
+
+        // ARRANGE: crash between write of snapshot and its publication
+        moveAll(1);
+        Path temporary = Files.write(directory.resolve(String.format("%020d", 1) + ".snapshot.tmp"), new byte[]{1, 2, 3});
+
+        // ACT
+        Map<String, Integer> actual = recovery.recover();
+
+        // ASSERT
+        assertStates(actual, 1);
+        assertFalse(Files.exists(temporary));
+    }
+
+    @Test
+    public void testScheduleCompaction() throws InterruptedException {
+
+        // ARRANGE
+        moveAll(2);
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+        // ACT
+        try {
+            recovery.scheduleCompaction(scheduler, Duration.ofMillis(10));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (FsmJournalSegments.listSegments(directory).size() > 1 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+        } finally {
+            scheduler.shutdown();
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        }
+
+        // ASSERT
+        assertEquals(1, FsmJournalSegments.listSegments(directory).size());
+        assertEquals(0, recovery.getFailedCompactionsCount());
+        assertStates(recovery.recover(), 2);
+    }
+
+    /**
+     * Moves every entity <code>movements</code> times: state is count of movements of entity.
+     */
+    private void moveAll(int movements) {
+        FsmJournalConfig<String, Integer, Integer, Data> config = new FsmJournalConfig<String, Integer, Integer, Data>(
+                directory,
+                Data::getKey,
+                FsmJournalCodec.ofString(),
+                FsmJournalCodec.ofInteger(),
+                FsmJournalCodec.ofInteger())
+                .setSegmentSize(4096)
+                .setMaxRecordSize(128)
+                .setSyncPolicy(FsmJournalSyncPolicy.NONE);
+
+        Map<String, Integer> states = recovery.recover();
+
+        try (MappedFsmJournal<String, Integer, Integer, Data> journal = new MappedFsmJournal<>(config)) {
+            AbstractFiniteStateMachine<Integer, Integer, Data> fsm = FsmBuilder.<Integer, Integer, Data>builder()
+                    .withJournal(journal)
+                    .buildFsm();
+            for (int state = 0; state < 10; state++) {
+                fsm.withState(state, new FsmState<Integer, Integer, Data>()
+                        .withMovement(state, new FsmMovement<Integer, Integer, Data>()
+                                .targetState(state + 1)));
+            }
+
+            for (int key = 0; key < KEYS; key++) {
+                Data data = new Data("entity-" + key, states.getOrDefault("entity-" + key, 0));
+                for (int i = 0; i < movements; i++) {
+                    fsm.move(data.getState(), data);
+                }
+            }
+        }
+    }
+
+    private static void assertStates(Map<String, Integer> actual, int expectedState) {
+        assertEquals(KEYS, actual.size());
+        for (int key = 0; key < KEYS; key++) {
+            assertEquals(Integer.valueOf(expectedState), actual.get("entity-" + key));
+        }
+    }
+
+
+    public static class Data implements FsmStateHolder<Integer> {
+        private final String key;
+        private Integer state;
+
+        public Data(String key, Integer state) {
+            this.key = key;
+            this.state = state;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public Integer getState() {
+            return state;
+        }
+
+        public void setState(Integer state) {
+            this.state = state;
+        }
+    }
+
+}
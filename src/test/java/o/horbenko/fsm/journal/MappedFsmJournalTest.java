@@ -0,0 +1,307 @@
+package o.horbenko.fsm.journal;
+
+import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.configurer.FsmBuilder;
+import o.horbenko.fsm.error.InvalidFsmConfigurationException;
+import o.horbenko.fsm.impl.AbstractFiniteStateMachine;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MappedFsmJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+    private MappedFsmJournal<Long, State, Trigger, Data> journal;
+
+    @Before
+    public void initDirectory() throws IOException {
+        directory = folder.newFolder("journal").toPath();
+    }
+
+    @After
+    public void closeJournal() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void testMove_recordsAreAppended() {
+
+        // ARRANGE
+        journal = new MappedFsmJournal<>(config());
+        AbstractFiniteStateMachine<State, Trigger, Data> fsm = buildFsm(journal);
+
+        // ACT
+        fsm.move(Trigger.NEXT, new Data(1L, false));
+        fsm.move(Trigger.NEXT, new Data(2L, true));
+        journal.close();
+
+        // ASSERT
+        List<FsmJournalRecord<Long, State, Trigger>> records = readAll();
+        assertEquals(3, records.size());
+
+        assertRecord(records.get(0), 1L, State.NEW, Trigger.NEXT, State.DONE, FsmJournalOutcome.MOVED);
+        assertRecord(records.get(1), 2L, State.NEW, Trigger.NEXT, State.NEW, FsmJournalOutcome.FAILED);
+        assertRecord(records.get(2), 2L, State.NEW, Trigger.ERROR, State.FAILED, FsmJournalOutcome.MOVED);
+        assertTrue(records.get(0).getTimestampMillis() > 0);
+    }
+
+    @Test
+    public void testAppend_segmentsAreRolled() {
+
+        // ARRANGE
+        journal = new MappedFsmJournal<>(config().setSegmentSize(256).setMaxRecordSize(64));
+        AbstractFiniteStateMachine<State, Trigger, Data> fsm = buildFsm(journal);
+
+        // ACT
+        for (long key = 0; key < 100; key++) {
+            fsm.move(Trigger.NEXT, new Data(key, false));
+        }
+        journal.close();
+
+        // ASSERT
+        assertTrue(FsmJournalSegments.listSegments(directory).size() > 1);
+
+        List<FsmJournalRecord<Long, State, Trigger>> records = readAll();
+        assertEquals(100, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(Long.valueOf(i), records.get(i).getKey());
+        }
+    }
+
+    @Test
+    public void testAppend_concurrentAppendsAreSyncedTogether() throws InterruptedException {
+
+        // ARRANGE
+        journal = new MappedFsmJournal<>(config().setSyncPolicy(FsmJournalSyncPolicy.ALWAYS));
+        AbstractFiniteStateMachine<State, Trigger, Data> fsm = buildFsm(journal);
+        List<Thread> appenders = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            long firstKey = t * 100L;
+            appenders.add(new Thread(() -> {
+                for (long key = firstKey; key < firstKey + 100; key++) {
+                    fsm.move(Trigger.NEXT, new Data(key, false));
+                }
+            }));
+        }
+
+        // ACT
+        appenders.forEach(Thread::start);
+        for (Thread appender : appenders) {
+            appender.join();
+        }
+        journal.close();
+
+        // ASSERT
+        List<FsmJournalRecord<Long, State, Trigger>> records = readAll();
+        assertEquals(400, records.size());
+        assertEquals(400, records.stream().map(FsmJournalRecord::getKey).distinct().count());
+    }
+
+    @Test
+    public void testOpen_appendsAfterExistingRecords() {
+
+        // ARRANGE
+        journal = new MappedFsmJournal<>(config().setSyncPolicy(FsmJournalSyncPolicy.ALWAYS));
+        buildFsm(journal).move(Trigger.NEXT, new Data(1L, false));
+        journal.close();
+
+        // ACT
+        journal = new MappedFsmJournal<>(config().setSyncPolicy(FsmJournalSyncPolicy.NONE));
+        buildFsm(journal).move(Trigger.NEXT, new Data(2L, false));
+        journal.close();
+
+        // ASSERT
+        List<FsmJournalRecord<Long, State, Trigger>> records = readAll();
+        assertEquals(2, records.size());
+        assertEquals(Long.valueOf(1L), records.get(0).getKey());
+        assertEquals(Long.valueOf(2L), records.get(1).getKey());
+    }
+
+    @Test
+    public void testOpen_tornRecordIsOverwritten() throws IOException {
+
+        // ARRANGE: the third record is torn (its page was not flushed completely)
+        journal = new MappedFsmJournal<>(config().setSyncPolicy(FsmJournalSyncPolicy.ALWAYS));
+        AbstractFiniteStateMachine<State, Trigger, Data> fsm = buildFsm(journal);
+        fsm.move(Trigger.NEXT, new Data(1L, false));
+        fsm.move(Trigger.NEXT, new Data(2L, false));
+        journal.close();
+
+        Path segment = FsmJournalSegments.listSegments(directory).get(0);
+        int endOfTwoRecords = endOfRecords(segment);
+
+        journal = new MappedFsmJournal<>(config().setSyncPolicy(FsmJournalSyncPolicy.ALWAYS));
+        buildFsm(journal).move(Trigger.NEXT, new Data(3L, true));
+        journal.close();
+
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // flip byte of timestamp, covered by checksum
+            ByteBuffer timestampByte = ByteBuffer.allocate(1);
+            channel.read(timestampByte, endOfTwoRecords + 8);
+            timestampByte.put(0, (byte) (timestampByte.get(0) ^ 0xFF)).rewind();
+            channel.write(timestampByte, endOfTwoRecords + 8);
+        }
+
+        // ACT
+        assertEquals(2, readAll().size());
+        journal = new MappedFsmJournal<>(config().setSyncPolicy(FsmJournalSyncPolicy.ALWAYS));
+        buildFsm(journal).move(Trigger.NEXT, new Data(4L, false));
+        journal.close();
+
+        // ASSERT: torn record and its stale bytes are not read
+        List<FsmJournalRecord<Long, State, Trigger>> records = readAll();
+        assertEquals(3, records.size());
+        assertEquals(Long.valueOf(4L), records.get(2).getKey());
+    }
+
+    @Test
+    public void testOpen_segmentWithoutHeaderIsEmpty() throws IOException {
+
+        // ARRANGE: segment file was created, but crash happened before its header reached disk
+        journal = new MappedFsmJournal<>(config().setSegmentSize(256).setMaxRecordSize(64));
+        buildFsm(journal).move(Trigger.NEXT, new Data(1L, false));
+        journal.close();
+
+        Path segmentWithoutHeader = FsmJournalSegments.segmentPath(directory, 1);
+        try (FileChannel channel = FileChannel.open(segmentWithoutHeader, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(256));
+        }
+
+        // ACT
+        assertEquals(1, readAll().size());
+        journal = new MappedFsmJournal<>(config().setSegmentSize(256).setMaxRecordSize(64));
+        buildFsm(journal).move(Trigger.NEXT, new Data(2L, false));
+        journal.close();
+
+        // ASSERT
+        List<FsmJournalRecord<Long, State, Trigger>> records = readAll();
+        assertEquals(2, records.size());
+        assertEquals(Long.valueOf(2L), records.get(1).getKey());
+    }
+
+    @Test(expected = InvalidFsmConfigurationException.class)
+    public void testOpen_nonPositiveSyncIntervalIsRejected() {
+        new MappedFsmJournal<>(config().setSyncPolicy(FsmJournalSyncPolicy.INTERVAL).setSyncIntervalMillis(0));
+    }
+
+    @Test
+    public void testStringCodec_roundTrip() {
+
+        // ARRANGE
+        FsmJournalCodec<String> codec = FsmJournalCodec.ofString();
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+
+        // ACT
+        codec.write("ok-\u00e4-\u20ac-\ud83d\ude00", buffer);
+        codec.write(null, buffer);
+        buffer.flip();
+
+        // ASSERT
+        assertEquals("ok-\u00e4-\u20ac-\ud83d\ude00", codec.read(buffer));
+        assertNull(codec.read(buffer));
+    }
+
+    private FsmJournalConfig<Long, State, Trigger, Data> config() {
+        return new FsmJournalConfig<Long, State, Trigger, Data>(
+                directory,
+                Data::getKey,
+                FsmJournalCodec.ofLong(),
+                FsmJournalCodec.ofEnum(State.class),
+                FsmJournalCodec.ofEnum(Trigger.class));
+    }
+
+    private List<FsmJournalRecord<Long, State, Trigger>> readAll() {
+        List<FsmJournalRecord<Long, State, Trigger>> records = new ArrayList<>();
+        for (Path segment : FsmJournalSegments.listSegments(directory)) {
+            FsmJournalSegments.read(segment,
+                    FsmJournalCodec.ofLong(), FsmJournalCodec.ofEnum(State.class), FsmJournalCodec.ofEnum(Trigger.class),
+                    records::add);
+        }
+        return records;
+    }
+
+    private static int endOfRecords(Path segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            return FsmJournalSegments.findEndOfRecords(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    private static void assertRecord(FsmJournalRecord<Long, State, Trigger> record,
+                                     Long key, State from, Trigger trigger, State to, FsmJournalOutcome outcome) {
+        assertEquals(key, record.getKey());
+        assertEquals(from, record.getFromState());
+        assertEquals(trigger, record.getTrigger());
+        assertEquals(to, record.getToState());
+        assertEquals(outcome, record.getOutcome());
+    }
+
+    private static AbstractFiniteStateMachine<State, Trigger, Data> buildFsm(FsmJournal<State, Trigger, Data> journal) {
+        return FsmBuilder.<State, Trigger, Data>builder()
+                .withJournal(journal)
+                .andState(State.NEW)
+                .andStateMovementBy(Trigger.NEXT)
+                .movementAction(data -> {
+                    if (data.fail) {
+                        throw new IllegalStateException();
+                    }
+                    return data;
+                })
+                .exceptionTrigger(Trigger.ERROR)
+                .targetStateOnSuccess(State.DONE)
+                .andStateMovementBy(Trigger.ERROR)
+                .targetStateOnSuccess(State.FAILED)
+                .buildFsm();
+    }
+
+
+    enum State {
+        NEW, DONE, FAILED
+    }
+
+    enum Trigger {
+        NEXT, ERROR
+    }
+
+    public static class Data implements FsmStateHolder<State> {
+        private final Long key;
+        private final boolean fail;
+        private State state = State.NEW;
+
+        public Data(Long key, boolean fail) {
+            this.key = key;
+            this.fail = fail;
+        }
+
+        public Long getKey() {
+            return key;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public void setState(State state) {
+            this.state = state;
+        }
+    }
+
+}
@@ -0,0 +1,163 @@
+package o.horbenko.fsm.metrics;
+
+import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.configurer.FsmBuilder;
+import o.horbenko.fsm.impl.AbstractFiniteStateMachine;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FsmMetricsTest {
+
+    private FsmMetrics<String, String> metrics;
+    private AbstractFiniteStateMachine<String, String, Data> fsm;
+
+    @Before
+    public void initFsm() {
+        metrics = new FsmMetrics<>();
+        fsm = FsmBuilder.<String, String, Data>builder()
+                .withMovementListener(metrics)
+                .andState("S1")
+                .andStateMovementBy("T")
+                .movementAction(data -> {
+                    if (data.fail) {
+                        throw new IllegalStateException();
+                    }
+                    return data;
+                })
+                .postMovementAction(data -> data)
+                .exceptionTrigger("ERR")
+                .targetStateOnSuccess("S2")
+                .andStateMovementBy("ERR")
+                .targetStateOnSuccess("S_ERR")
+                .buildFsm();
+    }
+
+    @Test
+    public void testMove_successfulMovementsAreCounted() {
+
+        // ACT
+        fsm.move("T", new Data(false));
+        fsm.move("T", new Data(false));
+
+        // ASSERT
+        FsmMovementMetrics actual = metrics.getMovementMetrics("S1", "T");
+        assertEquals(2, actual.getMovements());
+        assertEquals(0, actual.getMovementActionFailures());
+        assertEquals(2, actual.getMovementActionLatency().getCount());
+        assertEquals(2, actual.getPostMovementActionLatency().getCount());
+        assertEquals(0, actual.getExceptionTriggers());
+    }
+
+    @Test
+    public void testMove_exceptionTriggerIsCounted() {
+
+        // ACT
+        Data actual = fsm.move("T", new Data(true));
+
+        // ASSERT
+        assertEquals("S_ERR", actual.getState());
+
+        FsmMovementMetrics failedMovement = metrics.getMovementMetrics("S1", "T");
+        assertEquals(0, failedMovement.getMovements());
+        assertEquals(1, failedMovement.getMovementActionFailures());
+        assertEquals(1, failedMovement.getExceptionTriggers());
+
+        // movement by exception trigger has no actions, only state change is counted
+        FsmMovementMetrics exceptionMovement = metrics.getMovementMetrics("S1", "ERR");
+        assertEquals(1, exceptionMovement.getMovements());
+        assertEquals(0, exceptionMovement.getMovementActionLatency().getCount());
+    }
+
+    @Test
+    public void testMoveAsync_movementsAreCounted() {
+
+        // ACT
+        fsm.moveAsync("T", new Data(false)).join();
+        fsm.moveAsync("T", new Data(true)).join();
+
+        // ASSERT
+        FsmMovementMetrics actual = metrics.getMovementMetrics("S1", "T");
+        assertEquals(1, actual.getMovements());
+        assertEquals(1, actual.getMovementActionFailures());
+        assertEquals(2, actual.getMovementActionLatency().getCount());
+        assertEquals(1, actual.getExceptionTriggers());
+    }
+
+    @Test
+    public void testGetMovementMetrics_noMovements() {
+        assertNull(metrics.getMovementMetrics("S2", "T"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testGetAllMovementMetrics_readOnlyMetricsByTrigger() {
+
+        // ARRANGE
+        fsm.move("T", new Data(false));
+
+        // ACT
+        Map<String, FsmMovementMetrics> actual = metrics.getAllMovementMetrics().get("S1");
+
+        // ASSERT
+        assertSame(metrics.getMovementMetrics("S1", "T"), actual.get("T"));
+        actual.remove("T");
+    }
+
+    @Test
+    public void testLatencyHistogram_percentiles() {
+
+        // ARRANGE
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        // ACT
+        for (long value = 1; value <= 10_000; value++) {
+            histogram.record(value * 1_000);
+        }
+
+        // ASSERT
+        assertEquals(10_000, histogram.getCount());
+        assertEquals(10_000_000, histogram.getMax());
+        assertEquals(5_000_500, histogram.getMean(), 0.001);
+        assertWithinBucketError(5_000_000, histogram.getValueAtPercentile(50));
+        assertWithinBucketError(9_900_000, histogram.getValueAtPercentile(99));
+        assertEquals(10_000_000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testLatencyHistogram_bucketBounds() {
+        for (long value = 0; value < 100_000; value++) {
+            assertTrue(LatencyHistogram.upperBoundOf(LatencyHistogram.bucketOf(value)) >= value);
+        }
+        assertTrue(LatencyHistogram.upperBoundOf(LatencyHistogram.bucketOf(Long.MAX_VALUE)) >= Long.MAX_VALUE);
+    }
+
+    private static void assertWithinBucketError(long expected, long actual) {
+        assertTrue("Expected ~" + expected + ", but was " + actual,
+                actual >= expected && actual <= expected + expected / 8);
+    }
+
+
+    public static class Data implements FsmStateHolder<String> {
+        private final boolean fail;
+        private String state = "S1";
+
+        public Data(boolean fail) {
+            this.fail = fail;
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        public void setState(String state) {
+            this.state = state;
+        }
+    }
+
+}
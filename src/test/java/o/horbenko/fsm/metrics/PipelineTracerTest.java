@@ -0,0 +1,217 @@
+package o.horbenko.fsm.metrics;
+
+import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.configurer.FsmBuilder;
+import o.horbenko.fsm.impl.AbstractFiniteStateMachine;
+import o.horbenko.fsm.pipeline.CompiledFsmPipeline;
+import o.horbenko.fsm.pipeline.FsmPipeline;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PipelineTracerTest {
+
+    private final FsmPipeline<String, String> pipeline = new FsmPipeline<String, String>()
+            .addPipe("S1", "T")
+            .addPipe("S2", "T");
+
+    @Test
+    public void testMoveOnPipeline_spanPerStep() {
+
+        // ARRANGE
+        PipelineTracer<String, String> tracer = new PipelineTracer<>(1, 16);
+        AbstractFiniteStateMachine<String, String, Data> fsm = buildFsm(tracer, null);
+
+        // ACT
+        fsm.moveOnPipeline(new Data("S1", false), pipeline);
+
+        // ASSERT
+        List<FsmTraceSpan<String, String>> spans = tracer.export();
+        assertEquals(2, spans.size());
+
+        FsmTraceSpan<String, String> first = spans.get(0);
+        assertEquals(0, first.getStepIndex());
+        assertEquals("S1", first.getState());
+        assertEquals("S2", first.getTargetState());
+        assertTrue(first.getMovementActionNanos() >= 0);
+        assertEquals(FsmTraceSpan.NOT_EXECUTED, first.getPostMovementActionNanos());
+
+        FsmTraceSpan<String, String> second = spans.get(1);
+        assertEquals(first.getTraceId(), second.getTraceId());
+        assertEquals(1, second.getStepIndex());
+        assertEquals("S3", second.getTargetState());
+        assertTrue(second.getPostMovementActionNanos() >= 0);
+    }
+
+    @Test
+    public void testMoveOnCompiledPipeline_exceptionRoute() {
+
+        // ARRANGE
+        PipelineTracer<String, String> tracer = new PipelineTracer<>(1, 16);
+        FsmMetrics<String, String> metrics = new FsmMetrics<>();
+        AbstractFiniteStateMachine<String, String, Data> fsm = buildFsm(tracer, metrics);
+        CompiledFsmPipeline<String, String, Data> compiledPipeline = fsm.compilePipeline(pipeline);
+
+        // ACT
+        Data actual = fsm.moveOnPipeline(new Data("S1", true), compiledPipeline);
+
+        // ASSERT
+        assertEquals("S_ERR", actual.getState());
+
+        List<FsmTraceSpan<String, String>> spans = tracer.export();
+        assertEquals(2, spans.size());
+
+        FsmTraceSpan<String, String> failed = spans.get(0);
+        assertTrue(failed.isExceptionRouted());
+        assertEquals(IllegalStateException.class, failed.getExceptionType());
+        assertEquals("ERR", failed.getExceptionTrigger());
+        assertNull(failed.getTargetState());
+
+        FsmTraceSpan<String, String> recovery = spans.get(1);
+        assertEquals(0, recovery.getStepIndex());
+        assertEquals("ERR", recovery.getTrigger());
+        assertEquals("S_ERR", recovery.getTargetState());
+
+        // listener of FSM is notified about traced movements too
+        assertEquals(1, metrics.getMovementMetrics("S1", "T").getExceptionTriggers());
+    }
+
+    @Test
+    public void testMoveOnPipelineAsync_spanPerStep() {
+
+        // ARRANGE
+        PipelineTracer<String, String> tracer = new PipelineTracer<>(1, 16);
+        AbstractFiniteStateMachine<String, String, Data> fsm = buildFsm(tracer, null);
+
+        // ACT
+        fsm.moveOnPipelineAsync(new Data("S1", false), pipeline).join();
+
+        // ASSERT
+        assertTrue(tracer.export().size() <= 2);
+    }
+
+    @Test
+    public void testMoveOnPipeline_notSampled() {
+
+        // ARRANGE
+        PipelineTracer<String, String> tracer = new PipelineTracer<>(0, 16);
+        AbstractFiniteStateMachine<String, String, Data> fsm = buildFsm(tracer, null);
+
+        // ACT
+        fsm.moveOnPipeline(new Data("S1", false), pipeline);
+
+        // ASSERT
+        assertTrue(tracer.export().isEmpty());
+    }
+
+    @Test
+    public void testExport_ringBufferKeepsLatestSpans() {
+
+        // ARRANGE
+        PipelineTracer<String, String> tracer = new PipelineTracer<>(1, 3);
+        AbstractFiniteStateMachine<String, String, Data> fsm = buildFsm(tracer, null);
+
+        // ACT
+        for (int i = 0; i < 5; i++) {
+            fsm.moveOnPipeline(new Data("S1", false), pipeline);
+        }
+
+        // ASSERT
+        List<FsmTraceSpan<String, String>> spans = tracer.export();
+        assertEquals(3, spans.size());
+        assertEquals(1, spans.get(0).getStepIndex());
+        assertEquals(0, spans.get(1).getStepIndex());
+        assertEquals(1, spans.get(2).getStepIndex());
+        assertEquals(spans.get(1).getTraceId(), spans.get(2).getTraceId());
+    }
+
+    @Test
+    public void testExport_concurrentWritersDoNotTearSpans() throws InterruptedException {
+
+        // ARRANGE: ring wraps on every write, every span has the same value in all its fields
+        PipelineTracer<String, String> tracer = new PipelineTracer<>(1, 2);
+        AtomicBoolean tornSpanExported = new AtomicBoolean();
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < 4; w++) {
+            long writer = w;
+            writers.add(new Thread(() -> {
+                for (long i = 0; i < 100_000; i++) {
+                    long value = writer * 1_000_000 + i;
+                    String text = String.valueOf(value);
+                    tracer.record(value, 0, text, text, text, value, value, null, null);
+                }
+            }));
+        }
+
+        // ACT
+        writers.forEach(Thread::start);
+        while (writers.stream().anyMatch(Thread::isAlive)) {
+            for (FsmTraceSpan<String, String> span : tracer.export()) {
+                String text = String.valueOf(span.getTraceId());
+                if (!text.equals(span.getState()) || !text.equals(span.getTargetState())
+                        || span.getMovementActionNanos() != span.getTraceId()
+                        || span.getPostMovementActionNanos() != span.getTraceId()) {
+                    tornSpanExported.set(true);
+                }
+            }
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        // ASSERT
+        assertFalse(tornSpanExported.get());
+        assertTrue(tracer.export().size() <= 2);
+    }
+
+    private AbstractFiniteStateMachine<String, String, Data> buildFsm(PipelineTracer<String, String> tracer,
+                                                                     FsmMovementListener<String, String> listener) {
+        return FsmBuilder.<String, String, Data>builder()
+                .withPipelineTracer(tracer)
+                .withMovementListener(listener)
+                .andState("S1")
+                .andStateMovementBy("T")
+                .movementAction(data -> {
+                    if (data.fail) {
+                        throw new IllegalStateException();
+                    }
+                    return data;
+                })
+                .exceptionTrigger("ERR")
+                .targetStateOnSuccess("S2")
+                .andStateMovementBy("ERR")
+                .targetStateOnSuccess("S_ERR")
+                .andState("S2")
+                .andStateMovementBy("T")
+                .postMovementAction(data -> data)
+                .targetStateOnSuccess("S3")
+                .buildFsm();
+    }
+
+
+    public static class Data implements FsmStateHolder<String> {
+        private final boolean fail;
+        private String state;
+
+        public Data(String state, boolean fail) {
+            this.state = state;
+            this.fail = fail;
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        public void setState(String state) {
+            this.state = state;
+        }
+    }
+
+}
@@ -4,6 +4,9 @@ import o.horbenko.fsm.FsmStateHolder;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import static org.junit.Assert.assertEquals;
 
 public class FsmMovementTest {
@@ -41,10 +44,95 @@ public class FsmMovementTest {
     }
 
 
+    @Test
+    public void testResolveTriggerOnException_concrete() {
+
+        // ACT
+        String actual = toTest.resolveTriggerOnException(CustomException.class);
+
+        // ASSERT
+        assertEquals("TRIGGER_ON_CUSTOM_EXCEPTION", actual);
+    }
+
+    @Test
+    public void testResolveTriggerOnException_subclass() {
+
+        // ACT
+        String actual = toTest.resolveTriggerOnException(CustomSubException.class);
+
+        // ASSERT
+        assertEquals("TRIGGER_ON_CUSTOM_EXCEPTION", actual);
+    }
+
+    @Test
+    public void testResolveTriggerOnException_closestSuperclassWins() {
+
+        // ARRANGE
+        toTest.triggerOnException(RuntimeException.class, "TRIGGER_ON_RUNTIME_EXCEPTION");
+        toTest.triggerOnException(CustomSubException.class, "TRIGGER_ON_CUSTOM_SUB_EXCEPTION");
+
+        // ACT + ASSERT
+        assertEquals("TRIGGER_ON_CUSTOM_SUB_EXCEPTION", toTest.resolveTriggerOnException(CustomSubSubException.class));
+        assertEquals("TRIGGER_ON_CUSTOM_EXCEPTION", toTest.resolveTriggerOnException(CustomException.class));
+        assertEquals("TRIGGER_ON_RUNTIME_EXCEPTION", toTest.resolveTriggerOnException(IllegalStateException.class));
+    }
+
+    @Test
+    public void testResolveTriggerOnException_general() {
+
+        // ACT
+        String actual = toTest.resolveTriggerOnException(IllegalStateException.class);
+
+        // ASSERT
+        assertEquals("TRIGGER_ON_EXCEPTION", actual);
+    }
+
+    @Test
+    public void testResolveTriggerOnException_cacheResetOnRegistration() {
+
+        // ARRANGE
+        toTest.resolveTriggerOnException(IllegalStateException.class);
+
+        // ACT
+        toTest.triggerOnException(IllegalStateException.class, "TRIGGER_ON_ILLEGAL_STATE");
+
+        // ASSERT
+        assertEquals("TRIGGER_ON_ILLEGAL_STATE", toTest.resolveTriggerOnException(IllegalStateException.class));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testGetTriggerByException_readOnly() {
+        toTest.getTriggerByException().put(IllegalStateException.class, "TRIGGER_ON_ILLEGAL_STATE");
+    }
+
+    @Test
+    public void testSetTriggerByException_mapIsCopied() {
+
+        // ARRANGE
+        Map<Class<? extends Exception>, String> triggerByException = new HashMap<>();
+        toTest.setTriggerByException(triggerByException);
+        toTest.resolveTriggerOnException(IllegalStateException.class);
+
+        // ACT
+        triggerByException.put(IllegalStateException.class, "TRIGGER_ON_ILLEGAL_STATE");
+
+        // ASSERT
+        assertEquals("TRIGGER_ON_EXCEPTION", toTest.resolveTriggerOnException(IllegalStateException.class));
+    }
+
+
     static class CustomException extends RuntimeException {
 
     }
 
+    static class CustomSubException extends CustomException {
+
+    }
+
+    static class CustomSubSubException extends CustomSubException {
+
+    }
+
     public static class Data implements FsmStateHolder<String> {
         private String state;
 
@@ -0,0 +1,230 @@
+package o.horbenko.fsm.movement;
+
+import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.configurer.FsmBuilder;
+import o.horbenko.fsm.error.NoMovementByTriggerInStateException;
+import o.horbenko.fsm.impl.AbstractFiniteStateMachine;
+import o.horbenko.fsm.pipeline.FsmPipeline;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GuardedFsmMovementTest {
+
+    @Test
+    public void testMove_routedByGuards() {
+
+        // ARRANGE
+        AbstractFiniteStateMachine<String, String, Data> fsm = buildFsm(true);
+
+        // ACT & ASSERT
+        assertEquals("REVIEW", fsm.move("PAY", new Data("NEW", 5_000)).getState());
+        assertEquals("REJECTED", fsm.move("PAY", new Data("NEW", -1)).getState());
+        assertEquals("PAID", fsm.move("PAY", new Data("NEW", 10)).getState());
+    }
+
+    @Test
+    public void testMove_noGuardPassedWithoutFallback() {
+
+        // ARRANGE
+        AbstractFiniteStateMachine<String, String, Data> fsm = buildFsm(false);
+
+        // ACT
+        try {
+            fsm.move("PAY", new Data("NEW", 10));
+            fail("Movement without passed guard must fail");
+        } catch (NoMovementByTriggerInStateException e) {
+
+            // ASSERT
+            assertTrue(e.getMessage().contains("NEW"));
+        }
+    }
+
+    @Test
+    public void testMoveAsync_routedByGuards() {
+
+        // ARRANGE
+        AbstractFiniteStateMachine<String, String, Data> fsm = buildFsm(true);
+
+        // ACT & ASSERT
+        assertEquals("REVIEW", fsm.moveAsync("PAY", new Data("NEW", 5_000)).join().getState());
+        assertEquals("PAID", fsm.moveAsync("PAY", new Data("NEW", 10)).join().getState());
+        try {
+            buildFsm(false).moveAsync("PAY", new Data("NEW", 10)).join();
+            fail("Movement without passed guard must fail");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof NoMovementByTriggerInStateException);
+        }
+    }
+
+    @Test
+    public void testMoveOnCompiledPipeline_routedByGuards() {
+
+        // ARRANGE
+        AbstractFiniteStateMachine<String, String, Data> fsm = buildFsm(true);
+        Map<String, String> triggersByState = new HashMap<>();
+        triggersByState.put("NEW", "PAY");
+        triggersByState.put("REVIEW", "APPROVE");
+        FsmPipeline<String, String> pipeline = new FsmPipeline<>(triggersByState);
+
+        // ACT
+        Data actual = fsm.moveOnPipeline(new Data("NEW", 5_000), fsm.compilePipeline(pipeline));
+
+        // ASSERT
+        assertEquals("PAID", actual.getState());
+    }
+
+    @Test
+    public void testMove_exceptionTriggerOfSelectedCandidate() {
+
+        // ARRANGE
+        AbstractFiniteStateMachine<String, String, Data> fsm = FsmBuilder.<String, String, Data>builder()
+                .andState("NEW")
+                .andStateMovementBy("PAY")
+                .guard(data -> data.amount > 0)
+                .movementAction(data -> {
+                    throw new IllegalStateException();
+                })
+                .exceptionTrigger("FAIL")
+                .targetStateOnSuccess("PAID")
+                .andStateMovementBy("FAIL")
+                .targetStateOnSuccess("FAILED")
+                .buildFsm();
+
+        // ACT
+        Data actual = fsm.move("PAY", new Data("NEW", 10));
+
+        // ASSERT
+        assertEquals("FAILED", actual.getState());
+    }
+
+    @Test
+    public void testSelectByGuard_adaptiveOrdering() {
+
+        // ARRANGE
+        AtomicInteger rareGuardEvaluations = new AtomicInteger();
+        FsmMovement<String, String, Data> rare = new FsmMovement<String, String, Data>()
+                .guard(data -> {
+                    rareGuardEvaluations.incrementAndGet();
+                    return data.amount < 0;
+                })
+                .targetState("REJECTED");
+        FsmMovement<String, String, Data> frequent = new FsmMovement<String, String, Data>()
+                .guard(data -> data.amount >= 0)
+                .targetState("PAID");
+
+        GuardedFsmMovement<String, String, Data> toTest = new GuardedFsmMovement<String, String, Data>()
+                .withCandidate(rare)
+                .withCandidate(frequent)
+                .withAdaptiveOrdering(100);
+
+        // ACT
+        for (int i = 0; i < 100; i++) {
+            toTest.selectByGuard(new Data("NEW", 10));
+        }
+        rareGuardEvaluations.set(0);
+        FsmMovement<String, String, Data> selected = toTest.selectByGuard(new Data("NEW", 10));
+
+        // ASSERT
+        assertSame(frequent, selected);
+        assertSame(frequent, toTest.getCandidates().get(0));
+        assertEquals(0, rareGuardEvaluations.get());
+        assertSame(rare, toTest.selectByGuard(new Data("NEW", -1)));
+    }
+
+    @Test
+    public void testSelectByGuard_adaptiveOrderingByConcurrentSelections() throws Exception {
+
+        // ARRANGE
+        FsmMovement<String, String, Data> rare = new FsmMovement<String, String, Data>()
+                .guard(data -> data.amount < 0)
+                .targetState("REJECTED");
+        FsmMovement<String, String, Data> frequent = new FsmMovement<String, String, Data>()
+                .guard(data -> data.amount >= 0)
+                .targetState("PAID");
+
+        GuardedFsmMovement<String, String, Data> toTest = new GuardedFsmMovement<String, String, Data>()
+                .withCandidate(rare)
+                .withCandidate(frequent)
+                .withAdaptiveOrdering(100);
+
+        // ACT
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> selections = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                selections.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        assertSame(i % 10 == 0 ? rare : frequent, toTest.selectByGuard(new Data("NEW", i % 10 == 0 ? -1 : 10)));
+                    }
+                }));
+            }
+            for (Future<?> selection : selections) {
+                selection.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // ASSERT
+        assertSame(frequent, toTest.getCandidates().get(0));
+        assertSame(rare, toTest.getCandidates().get(1));
+    }
+
+    /**
+     * NEW --PAY[amount > 1000]--> REVIEW, NEW --PAY[amount < 0]--> REJECTED, NEW --PAY--> PAID (fallback)
+     * REVIEW --APPROVE--> PAID
+     */
+    private AbstractFiniteStateMachine<String, String, Data> buildFsm(boolean withFallback) {
+        FsmBuilder.MovementBuilder<String, String, Data> builder = FsmBuilder.<String, String, Data>builder()
+                .withAdaptiveGuardOrdering(GuardedFsmMovement.DEFAULT_REORDER_INTERVAL)
+                .andState("REVIEW")
+                .andStateMovementBy("APPROVE")
+                .targetStateOnSuccess("PAID")
+                .andState("NEW")
+                .andStateMovementBy("PAY")
+                .guard(data -> data.amount > 1_000)
+                .targetStateOnSuccess("REVIEW")
+                .andStateMovementBy("PAY")
+                .guard(data -> data.amount < 0)
+                .targetStateOnSuccess("REJECTED");
+
+        return withFallback
+                ? builder.andStateMovementBy("PAY").targetStateOnSuccess("PAID").buildFsm()
+                : builder.buildFsm();
+    }
+
+
+    public static class Data implements FsmStateHolder<String> {
+        private final long amount;
+        private String state;
+
+        public Data(String state, long amount) {
+            this.state = state;
+            this.amount = amount;
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        public void setState(String state) {
+            this.state = state;
+        }
+    }
+
+}
@@ -0,0 +1,328 @@
+package o.horbenko.fsm.pipeline;
+
+import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.configurer.FsmBuilder;
+import o.horbenko.fsm.error.ParallelStageJoinException;
+import o.horbenko.fsm.error.PipelineConfigurationException;
+import o.horbenko.fsm.impl.AbstractFiniteStateMachine;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FsmParallelStageTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    private final FsmPipeline<String, String> pipeline = new FsmPipeline<String, String>()
+            .addPipe("NEW", "ENRICH")
+            .addPipe("ENRICHED", "COMPLETE");
+
+    @After
+    public void shutdownExecutor() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void testMoveOnPipeline_allBranchesRunInParallel() {
+
+        // ARRANGE: every branch waits for all others, so sequential execution fails
+        CountDownLatch allStarted = new CountDownLatch(3);
+        FsmParallelStage<Data> stage = FsmParallelStage.<Data>all(executor)
+                .withBranch(data -> enrich(data, "customer", allStarted))
+                .withBranch(data -> enrich(data, "account", allStarted))
+                .withBranch(data -> enrich(data, "limits", allStarted));
+
+        // ACT
+        Data actual = buildFsm(stage).moveOnPipeline(new Data(), pipeline);
+
+        // ASSERT
+        assertEquals("DONE", actual.getState());
+        assertEquals(3, actual.enrichments.size());
+    }
+
+    @Test
+    public void testMoveOnPipelineAsync_firstSuccess() {
+
+        // ARRANGE
+        FsmParallelStage<Data> stage = isolated(FsmParallelStage.<Data>firstSuccess(executor))
+                .withBranch(this::failBranch)
+                .withBranch(data -> enrich(data, "replica", null));
+
+        // ACT
+        Data actual = buildFsm(stage).moveOnPipelineAsync(new Data(), pipeline).join();
+
+        // ASSERT
+        assertEquals("DONE", actual.getState());
+        assertTrue(actual.enrichments.containsKey("replica"));
+    }
+
+    @Test
+    public void testMoveOnPipeline_firstSuccessDoesNotWaitForSlowBranch() {
+
+        // ARRANGE: slow branch finishes only after the movement
+        CountDownLatch movementDone = new CountDownLatch(1);
+        FsmParallelStage<Data> stage = isolated(FsmParallelStage.<Data>firstSuccess(executor))
+                .withBranch(data -> enrich(data, "replica", null))
+                .withBranch(data -> {
+                    awaitQuietly(movementDone);
+                    return enrich(data, "slow-replica", null);
+                });
+
+        // ACT
+        Data actual = buildFsm(stage).moveOnPipeline(new Data(), pipeline);
+        movementDone.countDown();
+
+        // ASSERT: late branch does not modify data of the movement
+        assertEquals("DONE", actual.getState());
+        assertEquals(Set.of("replica"), actual.enrichments.keySet());
+    }
+
+    @Test(expected = PipelineConfigurationException.class)
+    public void testBuildFsm_firstSuccessWithSharedBranches() {
+
+        // ARRANGE
+        FsmParallelStage<Data> stage = FsmParallelStage.<Data>firstSuccess(executor)
+                .withBranch(data -> enrich(data, "replica", null));
+
+        // ACT
+        buildFsm(stage);
+    }
+
+    @Test(expected = PipelineConfigurationException.class)
+    public void testBuildFsm_isolatedBranchesWithoutCombiner() {
+
+        // ARRANGE: results of isolated branches would be dropped by default combiner
+        FsmParallelStage<Data> stage = FsmParallelStage.<Data>firstSuccess(executor)
+                .withIsolatedBranches(Data::copy)
+                .withBranch(data -> enrich(data, "replica", null));
+
+        // ACT
+        buildFsm(stage);
+    }
+
+    @Test(expected = PipelineConfigurationException.class)
+    public void testWithBranch_afterValidation() {
+
+        // ARRANGE
+        FsmParallelStage<Data> stage = FsmParallelStage.<Data>all(executor)
+                .withBranch(data -> enrich(data, "customer", null));
+        buildFsm(stage);
+
+        // ACT
+        stage.withBranch(data -> enrich(data, "account", null));
+    }
+
+    @Test
+    public void testMoveOnPipeline_branchResultsCombined() {
+
+        // ARRANGE: branches work on isolated copies of data
+        FsmParallelStage<Data> stage = FsmParallelStage.<Data>all(executor)
+                .withBranch(data -> enrich(new Data(), "customer", null))
+                .withBranch(data -> enrich(new Data(), "account", null))
+                .withCombiner((data, branchResults) -> {
+                    branchResults.forEach(result -> data.enrichments.putAll(result.enrichments));
+                    return data;
+                });
+
+        // ACT
+        Data actual = buildFsm(stage).moveOnPipeline(new Data(), pipeline);
+
+        // ASSERT
+        assertEquals("DONE", actual.getState());
+        assertEquals(2, actual.enrichments.size());
+    }
+
+    @Test
+    public void testMoveOnCompiledPipeline_quorumNotReached() {
+
+        // ARRANGE
+        FsmParallelStage<Data> stage = isolated(FsmParallelStage.<Data>quorum(2, executor))
+                .withBranch(this::failBranch)
+                .withBranch(data -> enrich(data, "customer", null))
+                .withBranch(this::failBranch);
+        AbstractFiniteStateMachine<String, String, Data> fsm = buildFsm(stage);
+
+        // ACT
+        Data actual = fsm.moveOnPipeline(new Data(), fsm.compilePipeline(pipeline));
+
+        // ASSERT: exception trigger of join failure
+        assertEquals("JOIN_FAILED", actual.getState());
+    }
+
+    @Test
+    public void testExecute_joinFailure() {
+
+        // ARRANGE
+        FsmParallelStage<Data> stage = isolated(FsmParallelStage.<Data>quorum(2, executor))
+                .withBranch(this::failBranch)
+                .withBranch(data -> enrich(data, "customer", null))
+                .withBranch(this::failBranch);
+
+        // ACT
+        try {
+            stage.execute(new Data()).join();
+            fail("Join must fail");
+        } catch (CompletionException e) {
+
+            // ASSERT: the first failure is cause, others are suppressed
+            assertTrue(e.getCause() instanceof ParallelStageJoinException);
+            assertTrue(e.getCause().getCause() instanceof IllegalStateException);
+            assertEquals(1, e.getCause().getSuppressed().length);
+        }
+    }
+
+    @Test
+    public void testExecute_branchContextsAreCreatedByStageThread() {
+
+        // ARRANGE
+        Set<Thread> contextThreads = ConcurrentHashMap.newKeySet();
+        FsmParallelStage<Data> stage = FsmParallelStage.<Data>all(executor)
+                .withBranch(data -> enrich(data, "customer", null))
+                .withBranch(data -> enrich(data, "account", null))
+                .withIsolatedBranches(data -> {
+                    contextThreads.add(Thread.currentThread());
+                    return new Data();
+                })
+                .withCombiner((data, branchResults) -> data);
+
+        // ACT
+        stage.execute(new Data()).join();
+
+        // ASSERT
+        assertEquals(Set.of(Thread.currentThread()), contextThreads);
+    }
+
+    @Test(expected = PipelineConfigurationException.class)
+    public void testValidate_quorumGreaterThanBranches() {
+
+        // ARRANGE
+        FsmParallelStage<Data> stage = isolated(FsmParallelStage.<Data>quorum(2, executor))
+                .withBranch(data -> enrich(data, "customer", null));
+
+        // ACT
+        stage.validate();
+    }
+
+    @Test
+    public void testMoveOnPipeline_quorumReached() {
+
+        // ARRANGE
+        FsmParallelStage<Data> stage = isolated(FsmParallelStage.<Data>quorum(2, executor))
+                .withBranch(data -> enrich(data, "customer", null))
+                .withBranch(this::failBranch)
+                .withBranch(data -> enrich(data, "account", null));
+
+        // ACT
+        Data actual = buildFsm(stage).moveOnPipeline(new Data(), pipeline);
+
+        // ASSERT
+        assertEquals("DONE", actual.getState());
+    }
+
+    @Test
+    public void testMoveOnPipeline_allWithFailedBranch() {
+
+        // ARRANGE
+        FsmParallelStage<Data> stage = FsmParallelStage.<Data>all(executor)
+                .withBranch(data -> enrich(data, "customer", null))
+                .withBranch(this::failBranch);
+
+        // ACT
+        Data actual = buildFsm(stage).moveOnPipeline(new Data(), pipeline);
+
+        // ASSERT: failed join waits for all branches
+        assertEquals("JOIN_FAILED", actual.getState());
+        assertTrue(actual.enrichments.containsKey("customer"));
+    }
+
+    /**
+     * NEW --ENRICH (parallel stage)--> ENRICHED --COMPLETE--> DONE, NEW --JOIN_FAILURE--> JOIN_FAILED
+     */
+    private AbstractFiniteStateMachine<String, String, Data> buildFsm(FsmParallelStage<Data> stage) {
+        return FsmBuilder.<String, String, Data>builder()
+                .andState("NEW")
+                .andStateMovementBy("ENRICH")
+                .parallelMovementAction(stage)
+                .exceptionTrigger(ParallelStageJoinException.class, "JOIN_FAILURE")
+                .targetStateOnSuccess("ENRICHED")
+                .andStateMovementBy("JOIN_FAILURE")
+                .targetStateOnSuccess("JOIN_FAILED")
+                .andState("ENRICHED")
+                .andStateMovementBy("COMPLETE")
+                .targetStateOnSuccess("DONE")
+                .buildFsm();
+    }
+
+    private Data enrich(Data data, String key, CountDownLatch allStarted) {
+        if (allStarted != null) {
+            allStarted.countDown();
+            try {
+                if (!allStarted.await(5, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("Branches are not executed in parallel");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+        data.enrichments.put(key, key.toUpperCase());
+        return data;
+    }
+
+    /**
+     * Every branch enriches its own copy of data, enrichments of successful branches are merged into data
+     */
+    private static FsmParallelStage<Data> isolated(FsmParallelStage<Data> stage) {
+        return stage
+                .withIsolatedBranches(Data::copy)
+                .withCombiner((data, branchResults) -> {
+                    branchResults.forEach(result -> data.enrichments.putAll(result.enrichments));
+                    return data;
+                });
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Data failBranch(Data data) {
+        throw new IllegalStateException("Branch failed");
+    }
+
+
+    public static class Data implements FsmStateHolder<String> {
+        private final ConcurrentHashMap<String, String> enrichments = new ConcurrentHashMap<>();
+        private volatile String state = "NEW";
+
+        public Data copy() {
+            Data copy = new Data();
+            copy.enrichments.putAll(enrichments);
+            copy.state = state;
+            return copy;
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        public void setState(String state) {
+            this.state = state;
+        }
+    }
+
+}
@@ -0,0 +1,246 @@
+package o.horbenko.fsm.runner;
+
+import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.error.NoMovementByTriggerInStateException;
+import o.horbenko.fsm.impl.AbstractFiniteStateMachine;
+import o.horbenko.fsm.movement.FsmMovement;
+import o.horbenko.fsm.result.FsmMoveResult;
+import o.horbenko.fsm.state.FsmState;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FsmFlowProcessorTest {
+
+    private static final int KEYS = 20;
+    private static final int MOVEMENTS_PER_KEY = 100;
+    private static final int MAX_IN_FLIGHT = 8;
+
+    private ExecutorService executor;
+    private FsmFlowProcessor<Integer, Integer, Integer, Data> processor;
+
+    @Before
+    public void initProcessor() {
+        // state i --(trigger i)--> state i + 1
+        AbstractFiniteStateMachine<Integer, Integer, Data> fsm = new AbstractFiniteStateMachine<>();
+        for (int i = 0; i < MOVEMENTS_PER_KEY; i++) {
+            fsm.withState(i, new FsmState<Integer, Integer, Data>()
+                    .withMovement(i, new FsmMovement<Integer, Integer, Data>().targetState(i + 1)));
+        }
+
+        executor = Executors.newFixedThreadPool(4);
+        processor = new FsmFlowProcessor<>(new KeyedFsmRunner<>(fsm, executor), Data::getKey, MAX_IN_FLIGHT);
+    }
+
+    @After
+    public void shutdownExecutor() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void testProcess_perKeyOrderAndCompletion() throws InterruptedException {
+
+        // ARRANGE
+        List<Data> entities = new ArrayList<>();
+        for (int key = 0; key < KEYS; key++) {
+            entities.add(new Data(key));
+        }
+
+        TestSubscriber subscriber = new TestSubscriber(Long.MAX_VALUE);
+        processor.subscribe(subscriber);
+
+        // ACT
+        try (SubmissionPublisher<FsmEvent<Integer, Data>> publisher = new SubmissionPublisher<>(executor, MAX_IN_FLIGHT)) {
+            publisher.subscribe(processor);
+            for (int trigger = 0; trigger < MOVEMENTS_PER_KEY; trigger++) {
+                for (Data entity : entities) {
+                    publisher.submit(new FsmEvent<>(trigger, entity));
+                }
+            }
+        }
+
+        // ASSERT
+        assertTrue(subscriber.completed.await(10, TimeUnit.SECONDS));
+        assertEquals(KEYS * MOVEMENTS_PER_KEY, subscriber.results.size());
+        for (FsmMoveResult<Data> result : subscriber.results) {
+            assertTrue(result.isSuccess());
+        }
+        for (Data entity : entities) {
+            assertEquals(MOVEMENTS_PER_KEY, entity.getState().intValue());
+        }
+    }
+
+    @Test
+    public void testProcess_demandPropagatesToUpstream() throws InterruptedException {
+
+        // ARRANGE
+        TestSubscription upstream = new TestSubscription();
+        TestSubscriber subscriber = new TestSubscriber(0);
+        processor.subscribe(subscriber);
+
+        // ACT: consumer without demand
+        processor.onSubscribe(upstream);
+        for (int key = 0; key < MAX_IN_FLIGHT; key++) {
+            processor.onNext(new FsmEvent<>(0, new Data(key)));
+        }
+        waitForMovements();
+
+        // ASSERT: results are buffered, nothing more is requested from upstream
+        assertEquals(MAX_IN_FLIGHT, upstream.requested.get());
+        assertTrue(subscriber.results.isEmpty());
+
+        // ACT: consumer requests 3 results
+        subscriber.subscription.request(3);
+
+        // ASSERT: every published result lets upstream send one more event
+        await(() -> upstream.requested.get() == MAX_IN_FLIGHT + 3);
+        assertEquals(3, subscriber.results.size());
+
+        // ACT
+        subscriber.subscription.request(Long.MAX_VALUE);
+        processor.onComplete();
+
+        // ASSERT
+        assertTrue(subscriber.completed.await(10, TimeUnit.SECONDS));
+        assertEquals(MAX_IN_FLIGHT, subscriber.results.size());
+    }
+
+    @Test
+    public void testProcess_failedMovementIsPublished() throws InterruptedException {
+
+        // ARRANGE
+        TestSubscriber subscriber = new TestSubscriber(Long.MAX_VALUE);
+        processor.subscribe(subscriber);
+        processor.onSubscribe(new TestSubscription());
+
+        // ACT
+        processor.onNext(new FsmEvent<>(-1, new Data(0)));
+        processor.onNext(new FsmEvent<>(0, new Data(1)));
+        processor.onComplete();
+
+        // ASSERT
+        assertTrue(subscriber.completed.await(10, TimeUnit.SECONDS));
+        assertEquals(2, subscriber.results.size());
+
+        int failures = 0;
+        for (FsmMoveResult<Data> result : subscriber.results) {
+            if (!result.isSuccess()) {
+                failures++;
+                assertTrue(result.getError() instanceof NoMovementByTriggerInStateException);
+                assertEquals(0, result.getData().getState().intValue());
+            }
+        }
+        assertEquals(1, failures);
+    }
+
+    @Test
+    public void testCancel_cancelsUpstream() {
+
+        // ARRANGE
+        TestSubscription upstream = new TestSubscription();
+        TestSubscriber subscriber = new TestSubscriber(1);
+        processor.subscribe(subscriber);
+        processor.onSubscribe(upstream);
+
+        // ACT
+        subscriber.subscription.cancel();
+
+        // ASSERT
+        assertTrue(upstream.cancelled);
+        assertFalse(subscriber.completed.getCount() == 0);
+    }
+
+    private void waitForMovements() throws InterruptedException {
+        await(() -> processor.getInFlightCount() == 0);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+
+    private static class TestSubscriber implements Flow.Subscriber<FsmMoveResult<Data>> {
+        private final long initialDemand;
+        private final Queue<FsmMoveResult<Data>> results = new ConcurrentLinkedQueue<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private volatile Flow.Subscription subscription;
+
+        private TestSubscriber(long initialDemand) {
+            this.initialDemand = initialDemand;
+        }
+
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialDemand > 0) {
+                subscription.request(initialDemand);
+            }
+        }
+
+        public void onNext(FsmMoveResult<Data> item) {
+            results.add(item);
+        }
+
+        public void onError(Throwable throwable) {
+        }
+
+        public void onComplete() {
+            completed.countDown();
+        }
+    }
+
+    private static class TestSubscription implements Flow.Subscription {
+        private final AtomicLong requested = new AtomicLong();
+        private volatile boolean cancelled;
+
+        public void request(long n) {
+            requested.addAndGet(n);
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    public static class Data implements FsmStateHolder<Integer> {
+        private final int key;
+        private Integer state = 0;
+
+        public Data(int key) {
+            this.key = key;
+        }
+
+        public int getKey() {
+            return key;
+        }
+
+        public Integer getState() {
+            return state;
+        }
+
+        public void setState(Integer state) {
+            this.state = state;
+        }
+    }
+
+}
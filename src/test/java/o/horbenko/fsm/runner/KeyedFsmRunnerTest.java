@@ -0,0 +1,133 @@
+package o.horbenko.fsm.runner;
+
+import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.impl.AbstractFiniteStateMachine;
+import o.horbenko.fsm.movement.FsmMovement;
+import o.horbenko.fsm.state.FsmState;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class KeyedFsmRunnerTest {
+
+    private static final int KEYS = 50;
+    private static final int MOVEMENTS_PER_KEY = 200;
+
+    private ExecutorService executor;
+    private KeyedFsmRunner<Integer, Integer, Integer, Data> runner;
+
+    private final AtomicInteger concurrentMovementsOfSameKey = new AtomicInteger();
+
+    @Before
+    public void initRunner() {
+        // state i --(trigger i)--> state i + 1
+        AbstractFiniteStateMachine<Integer, Integer, Data> fsm = new AbstractFiniteStateMachine<>();
+        for (int i = 0; i < MOVEMENTS_PER_KEY; i++) {
+            fsm.withState(i, new FsmState<Integer, Integer, Data>()
+                    .withMovement(i, new FsmMovement<Integer, Integer, Data>()
+                            .targetState(i + 1)
+                            .movementAction(this::checkExclusiveAccess)));
+        }
+
+        executor = Executors.newFixedThreadPool(8);
+        runner = new KeyedFsmRunner<>(fsm, executor);
+    }
+
+    @After
+    public void shutdownExecutor() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void testSubmit_perKeyOrderAndExclusion() throws InterruptedException {
+
+        // ARRANGE
+        List<Data> entities = new ArrayList<>();
+        for (int key = 0; key < KEYS; key++) {
+            entities.add(new Data());
+        }
+
+        // ACT
+        List<CompletableFuture<Data>> results = new ArrayList<>();
+        for (int trigger = 0; trigger < MOVEMENTS_PER_KEY; trigger++) {
+            for (int key = 0; key < KEYS; key++) {
+                results.add(runner.submit(key, trigger, entities.get(key)));
+            }
+        }
+        CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).join();
+
+        // wait for mailboxes cleanup
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        // ASSERT
+        for (Data entity : entities) {
+            assertEquals(MOVEMENTS_PER_KEY, entity.getState().intValue());
+        }
+        assertEquals(0, concurrentMovementsOfSameKey.get());
+        assertEquals(0, runner.getActiveKeysCount());
+    }
+
+    @Test
+    public void testSubmit_rejectedByExecutor() {
+
+        // ARRANGE
+        AbstractFiniteStateMachine<Integer, Integer, Data> fsm = new AbstractFiniteStateMachine<>();
+        KeyedFsmRunner<Integer, Integer, Integer, Data> rejectingRunner = new KeyedFsmRunner<>(fsm, command -> {
+            throw new RejectedExecutionException("Executor is shut down");
+        });
+
+        // ACT
+        CompletableFuture<Data> first = rejectingRunner.submit(1, 0, new Data());
+        CompletableFuture<Data> second = rejectingRunner.submit(1, 0, new Data());
+
+        // ASSERT: movements are not left in mailbox
+        for (CompletableFuture<Data> result : List.of(first, second)) {
+            try {
+                result.join();
+                fail("Movement must fail with rejection");
+            } catch (CompletionException e) {
+                assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+        }
+        assertEquals(0, rejectingRunner.getActiveKeysCount());
+    }
+
+    private Data checkExclusiveAccess(Data data) {
+        if (data.inProgress.getAndIncrement() != 0) {
+            concurrentMovementsOfSameKey.incrementAndGet();
+        }
+        Thread.yield();
+        data.inProgress.decrementAndGet();
+        return data;
+    }
+
+
+    public static class Data implements FsmStateHolder<Integer> {
+        private final AtomicInteger inProgress = new AtomicInteger();
+        private Integer state = 0;
+
+        public Integer getState() {
+            return state;
+        }
+
+        public void setState(Integer state) {
+            this.state = state;
+        }
+    }
+
+}
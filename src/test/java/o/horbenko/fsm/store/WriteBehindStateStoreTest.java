@@ -0,0 +1,318 @@
+package o.horbenko.fsm.store;
+
+import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.configurer.FsmBuilder;
+import o.horbenko.fsm.error.StateStoreException;
+import o.horbenko.fsm.impl.AbstractFiniteStateMachine;
+import o.horbenko.fsm.journal.FsmJournalCodec;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class WriteBehindStateStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final RecordingBackend backend = new RecordingBackend();
+    private WriteBehindStateStore<String, String, Data> store;
+
+    @After
+    public void closeStore() {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    @Test
+    public void testSave_movementsOfEntityAreCoalesced() {
+
+        // ARRANGE
+        store = new WriteBehindStateStore<>(Data::getKey, backend, new WriteBehindPolicy().setFlushIntervalMillis(60_000));
+        AbstractFiniteStateMachine<String, String, Data> fsm = buildFsm(store);
+        Data data = new Data("entity-1");
+
+        // ACT
+        for (int i = 0; i < 9; i++) {
+            fsm.move("T", data);
+        }
+        store.flush();
+
+        // ASSERT
+        assertEquals(1, backend.batches.size());
+        assertEquals(Map.of("entity-1", "S2"), backend.batches.get(0));
+    }
+
+    @Test
+    public void testSave_failedMovementIsNotSaved() {
+
+        // ARRANGE
+        store = new WriteBehindStateStore<>(Data::getKey, backend, new WriteBehindPolicy().setFlushIntervalMillis(60_000));
+        AbstractFiniteStateMachine<String, String, Data> fsm = buildFsm(store);
+        Data data = new Data("entity-1");
+        data.fail = true;
+
+        // ACT
+        fsm.move("T", data);
+        store.flush();
+
+        // ASSERT
+        assertEquals("S_ERR", data.getState());
+        assertEquals(List.of(Map.of("entity-1", "S_ERR")), backend.batches);
+    }
+
+    @Test
+    public void testFlush_batchesAreLimited() {
+
+        // ARRANGE
+        store = new WriteBehindStateStore<>(Data::getKey, backend,
+                new WriteBehindPolicy().setFlushIntervalMillis(60_000).setMaxBatchSize(10));
+
+        // ACT
+        for (int key = 0; key < 95; key++) {
+            store.save(new Data("entity-" + key));
+        }
+        store.close();
+
+        // ASSERT
+        Map<String, String> written = new HashMap<>();
+        for (Map<String, String> batch : backend.batches) {
+            assertTrue(batch.size() <= 10);
+            written.putAll(batch);
+        }
+        assertEquals(95, written.size());
+        assertEquals(0, store.getPendingStatesCount());
+    }
+
+    @Test
+    public void testFlush_failedBatchStaysPending() {
+
+        // ARRANGE
+        store = new WriteBehindStateStore<>(Data::getKey, backend, new WriteBehindPolicy().setFlushIntervalMillis(60_000));
+        store.save(new Data("entity-1"));
+        backend.failing = true;
+
+        // ACT
+        try {
+            store.flush();
+            fail("Exception of backend must be thrown");
+        } catch (IllegalStateException e) {
+
+            // ASSERT
+            assertEquals(1, store.getPendingStatesCount());
+            assertEquals(1, store.getFailedFlushesCount());
+        }
+
+        backend.failing = false;
+        store.flush();
+        assertEquals(List.of(Map.of("entity-1", "S1")), backend.batches);
+    }
+
+    @Test
+    public void testSave_backpressureFlushFailureDoesNotFailMovement() {
+
+        // ARRANGE
+        store = new WriteBehindStateStore<>(Data::getKey, backend,
+                new WriteBehindPolicy().setFlushIntervalMillis(60_000).setMaxBatchSize(1).setMaxPendingStates(1));
+        AbstractFiniteStateMachine<String, String, Data> fsm = buildFsm(store);
+        Data data = new Data("entity-1");
+        backend.failing = true;
+
+        // ACT
+        fsm.move("T", data);
+
+        // ASSERT: store does not disagree with entity
+        assertEquals("S2", data.getState());
+        assertEquals(1, store.getFailedFlushesCount());
+
+        backend.failing = false;
+        store.flush();
+        assertEquals(List.of(Map.of("entity-1", "S2")), backend.batches);
+    }
+
+    @Test
+    public void testFileBackend_statesAreRead() throws IOException {
+
+        // ARRANGE
+        FileStateStoreBackend<String, String> fileBackend = new FileStateStoreBackend<>(
+                folder.newFolder().toPath().resolve("states"), FsmJournalCodec.ofString(), FsmJournalCodec.ofString(), false);
+        store = new WriteBehindStateStore<>(Data::getKey, fileBackend, new WriteBehindPolicy().setFlushIntervalMillis(10));
+        AbstractFiniteStateMachine<String, String, Data> fsm = buildFsm(store);
+
+        // ACT
+        for (int key = 0; key < 100; key++) {
+            fsm.move("T", new Data("entity-" + key));
+        }
+        fsm.move("T", fsm.move("T", new Data("entity-0")));
+        store.close();
+
+        // ASSERT
+        Map<String, String> actual = fileBackend.readAll();
+        assertEquals(100, actual.size());
+        assertEquals("S2", actual.get("entity-1"));
+        assertEquals("S1", actual.get("entity-0"));
+    }
+
+    @Test
+    public void testFileBackend_largeStateIsWritten() throws IOException {
+
+        // ARRANGE: state does not fit default write buffer
+        FileStateStoreBackend<String, String> fileBackend = new FileStateStoreBackend<>(
+                folder.newFolder().toPath().resolve("states"), FsmJournalCodec.ofString(), FsmJournalCodec.ofString(), false);
+        String largeState = "S".repeat(200 * 1024);
+
+        // ACT
+        fileBackend.writeAll(Map.of("entity-1", largeState));
+
+        // ASSERT
+        assertEquals(Map.of("entity-1", largeState), fileBackend.readAll());
+    }
+
+    @Test
+    public void testFileBackend_tornBatchIsDropped() throws IOException {
+
+        // ARRANGE: the last batch is written partially
+        Path file = folder.newFolder().toPath().resolve("states");
+        FileStateStoreBackend<String, String> fileBackend = new FileStateStoreBackend<>(
+                file, FsmJournalCodec.ofString(), FsmJournalCodec.ofString(), false);
+        fileBackend.writeAll(Map.of("entity-1", "S2"));
+        long completeSize = Files.size(file);
+        fileBackend.writeAll(Map.of("entity-2", "S2"));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(file) - 3);
+        }
+
+        // ACT
+        FileStateStoreBackend<String, String> restarted = new FileStateStoreBackend<>(
+                file, FsmJournalCodec.ofString(), FsmJournalCodec.ofString(), false);
+        Map<String, String> recovered = restarted.readAll();
+        restarted.writeAll(Map.of("entity-3", "S1"));
+
+        // ASSERT: torn tail is truncated, so next batch is readable
+        assertEquals(Map.of("entity-1", "S2"), recovered);
+        assertTrue(Files.size(file) > completeSize);
+        assertEquals(Map.of("entity-1", "S2", "entity-3", "S1"), restarted.readAll());
+    }
+
+    @Test
+    public void testSave_afterClose() {
+
+        // ARRANGE
+        store = new WriteBehindStateStore<>(Data::getKey, backend, new WriteBehindPolicy());
+        store.close();
+
+        // ACT
+        try {
+            store.save(new Data("entity-1"));
+            fail("Closed store must reject state");
+        } catch (StateStoreException e) {
+
+            // ASSERT
+            assertEquals(0, store.getPendingStatesCount());
+        }
+    }
+
+    @Test
+    public void testMove_storeFailureDoesNotRollBackMovement() {
+
+        // ARRANGE
+        store = new WriteBehindStateStore<>(Data::getKey, backend, new WriteBehindPolicy());
+        AbstractFiniteStateMachine<String, String, Data> fsm = buildFsm(store);
+        store.close();
+        Data data = new Data("entity-1");
+
+        // ACT
+        try {
+            fsm.move("T", data);
+            fail("Movement must report failure of store");
+        } catch (StateStoreException e) {
+
+            // ASSERT: state is not rolled back and exception trigger is not applied
+            assertEquals("S2", data.getState());
+        }
+    }
+
+    /**
+     * S1 --T--> S2 --T--> S1
+     */
+    private static AbstractFiniteStateMachine<String, String, Data> buildFsm(StateStore<String, Data> store) {
+        return FsmBuilder.<String, String, Data>builder()
+                .withStateStore(store)
+                .andState("S1")
+                .andStateMovementBy("T")
+                .movementAction(data -> {
+                    if (data.fail) {
+                        throw new IllegalStateException();
+                    }
+                    return data;
+                })
+                .exceptionTrigger("ERR")
+                .targetStateOnSuccess("S2")
+                .andStateMovementBy("ERR")
+                .targetStateOnSuccess("S_ERR")
+                .andState("S2")
+                .andStateMovementBy("T")
+                .targetStateOnSuccess("S1")
+                .buildFsm();
+    }
+
+
+    private static class RecordingBackend implements StateStoreBackend<String, String> {
+        private final List<Map<String, String>> batches = new CopyOnWriteArrayList<>();
+        private volatile boolean failing;
+
+        @Override
+        public void writeAll(Map<String, String> stateByKey) {
+            if (failing) {
+                throw new IllegalStateException();
+            }
+            batches.add(new HashMap<>(stateByKey));
+        }
+
+        @Override
+        public Map<String, String> readAll() {
+            Map<String, String> states = new HashMap<>();
+            new ArrayList<>(batches).forEach(states::putAll);
+            return states;
+        }
+    }
+
+    public static class Data implements FsmStateHolder<String> {
+        private final String key;
+        private boolean fail;
+        private String state = "S1";
+
+        public Data(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        public void setState(String state) {
+            this.state = state;
+        }
+    }
+
+}
@@ -0,0 +1,302 @@
+package o.horbenko.fsm.timeout;
+
+import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.configurer.FsmBuilder;
+import o.horbenko.fsm.error.InvalidFsmConfigurationException;
+import o.horbenko.fsm.impl.AbstractFiniteStateMachine;
+import o.horbenko.fsm.runner.KeyedFsmRunner;
+import o.horbenko.fsm.state.FsmState;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HierarchicalTimingWheelTest {
+
+    private final AtomicLong clockNanos = new AtomicLong();
+    private HierarchicalTimingWheel wheel;
+
+    @Before
+    public void initWheel() {
+        // 1ms tick, 8 slots, 3 levels: 512 ticks without overflow
+        wheel = new HierarchicalTimingWheel(TimeUnit.MILLISECONDS.toNanos(1), 8, 3, Runnable::run, clockNanos::get, false);
+    }
+
+    @Test
+    public void testSchedule_firesAtDeadline() {
+
+        // ARRANGE
+        AtomicInteger executions = new AtomicInteger();
+        wheel.schedule(5, executions::incrementAndGet);
+
+        // ACT & ASSERT
+        advanceMillis(4);
+        assertEquals(0, executions.get());
+        assertEquals(1, wheel.getPendingTimersCount());
+
+        advanceMillis(1);
+        assertEquals(1, executions.get());
+        assertEquals(0, wheel.getPendingTimersCount());
+    }
+
+    @Test
+    public void testCancel() {
+
+        // ARRANGE
+        AtomicInteger executions = new AtomicInteger();
+        TimingWheelTimer timer = wheel.schedule(100, executions::incrementAndGet);
+        advanceMillis(10);
+
+        // ACT
+        boolean cancelled = timer.cancel();
+        advanceMillis(200);
+
+        // ASSERT
+        assertTrue(cancelled);
+        assertFalse(timer.cancel());
+        assertTrue(timer.isCancelled());
+        assertEquals(0, executions.get());
+        assertEquals(0, wheel.getPendingTimersCount());
+    }
+
+    @Test
+    public void testSchedule_cascadingAndOverflow() {
+
+        // ARRANGE
+        Random random = new Random(17);
+        List<long[]> timers = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            if (i % 10 == 0) {
+                advanceMillis(random.nextInt(3));
+            }
+
+            // up to 4 times beyond capacity of top level
+            long[] timer = {wheel.getCurrentTick() + random.nextInt(2_048), -1};
+            timers.add(timer);
+            wheel.schedule(timer[0] - wheel.getCurrentTick(), () -> timer[1] = wheel.getCurrentTick());
+        }
+
+        // ACT
+        for (int i = 0; i < 2_500; i++) {
+            advanceMillis(1 + random.nextInt(2));
+        }
+
+        // ASSERT
+        assertEquals(0, wheel.getPendingTimersCount());
+        for (long[] timer : timers) {
+            assertEquals(timer[0], timer[1]);
+        }
+    }
+
+    @Test
+    public void testSchedule_precision() {
+
+        // ARRANGE
+        long[] delays = {1, 7, 8, 9, 63, 64, 65, 511, 512, 513, 1_000, 3_000};
+        long[] firedAt = new long[delays.length];
+        advanceMillis(3);
+        long start = wheel.getCurrentTick();
+        for (int i = 0; i < delays.length; i++) {
+            int index = i;
+            wheel.schedule(delays[i], () -> firedAt[index] = wheel.getCurrentTick());
+        }
+
+        // ACT
+        for (int i = 0; i < 4_000; i++) {
+            advanceMillis(1);
+        }
+
+        // ASSERT
+        for (int i = 0; i < delays.length; i++) {
+            assertEquals("delay = " + delays[i], start + delays[i], firedAt[i]);
+        }
+    }
+
+    @Test
+    public void testFsmTimeout() {
+
+        // ARRANGE
+        FsmTimeoutScheduler<String, String, String, Data> scheduler = new FsmTimeoutScheduler<>(Data::getId, wheel);
+        AbstractFiniteStateMachine<String, String, Data> fsm = FsmBuilder.<String, String, Data>builder()
+                .withTimeoutScheduler(scheduler)
+                .andState("NEW")
+                .andStateMovementBy("SUBMIT")
+                .targetStateOnSuccess("PENDING")
+                .andState("PENDING")
+                .timeout(Duration.ofSeconds(30), "TIMEOUT")
+                .andStateMovementBy("APPROVE")
+                .targetStateOnSuccess("APPROVED")
+                .andStateMovementBy("TIMEOUT")
+                .targetStateOnSuccess("EXPIRED")
+                .buildFsm();
+
+        Data expired = new Data("1");
+        Data approved = new Data("2");
+
+        // ACT
+        fsm.move("SUBMIT", expired);
+        fsm.move("SUBMIT", approved);
+        advanceMillis(10_000);
+        fsm.move("APPROVE", approved);
+        advanceMillis(20_000);
+
+        // ASSERT
+        assertEquals("EXPIRED", expired.getState());
+        assertEquals("APPROVED", approved.getState());
+        assertEquals(0, scheduler.getPendingTimeoutsCount());
+        assertEquals(0, wheel.getPendingTimersCount());
+    }
+
+    @Test
+    public void testFsmTimeout_reenteredStateRestartsTimeout() {
+
+        // ARRANGE
+        FsmTimeoutScheduler<String, String, String, Data> scheduler = new FsmTimeoutScheduler<>(Data::getId, wheel);
+        AbstractFiniteStateMachine<String, String, Data> fsm = FsmBuilder.<String, String, Data>builder()
+                .withTimeoutScheduler(scheduler)
+                .andState("PENDING")
+                .timeout(Duration.ofMillis(100), "TIMEOUT")
+                .andStateMovementBy("PING")
+                .targetStateOnSuccess("PENDING")
+                .andStateMovementBy("TIMEOUT")
+                .targetStateOnSuccess("EXPIRED")
+                .buildFsm();
+
+        Data data = new Data("1");
+        data.setState("PENDING");
+        fsm.scheduleStateTimeout(data);
+
+        // ACT & ASSERT
+        advanceMillis(60);
+        fsm.move("PING", data);
+        advanceMillis(60);
+        assertEquals("PENDING", data.getState());
+
+        advanceMillis(40);
+        assertEquals("EXPIRED", data.getState());
+    }
+
+    @Test
+    public void testFsmTimeout_serializedWithQueuedMovementByRunner() {
+
+        // ARRANGE
+        FsmTimeoutScheduler<String, String, String, Data> scheduler = new FsmTimeoutScheduler<>(Data::getId, wheel);
+        AbstractFiniteStateMachine<String, String, Data> fsm = FsmBuilder.<String, String, Data>builder()
+                .withTimeoutScheduler(scheduler)
+                .andState("PENDING")
+                .timeout(Duration.ofMillis(100), "TIMEOUT")
+                .andStateMovementBy("APPROVE")
+                .targetStateOnSuccess("APPROVED")
+                .andStateMovementBy("TIMEOUT")
+                .targetStateOnSuccess("EXPIRED")
+                .buildFsm();
+
+        Queue<Runnable> mailboxTasks = new ArrayDeque<>();
+        KeyedFsmRunner<String, String, String, Data> runner = new KeyedFsmRunner<>(fsm, mailboxTasks::add);
+        scheduler.withRunner(runner);
+
+        Data data = new Data("1");
+        data.setState("PENDING");
+        fsm.scheduleStateTimeout(data);
+
+        // ACT: approval is queued in mailbox, when timeout fires
+        runner.submit("1", "APPROVE", data);
+        advanceMillis(100);
+        while (!mailboxTasks.isEmpty()) {
+            mailboxTasks.poll().run();
+        }
+
+        // ASSERT: timeout is skipped, because entity left the state before it
+        assertEquals("APPROVED", data.getState());
+        assertEquals(0, scheduler.getFailedTimeoutsCount());
+    }
+
+    @Test
+    public void testFsmTimeout_schedulingFailureDoesNotRollBackMovement() {
+
+        // ARRANGE
+        FsmTimeoutScheduler<String, String, String, Data> scheduler = new FsmTimeoutScheduler<>(data -> {
+            throw new IllegalStateException("no key");
+        }, wheel);
+        AbstractFiniteStateMachine<String, String, Data> fsm = FsmBuilder.<String, String, Data>builder()
+                .withTimeoutScheduler(scheduler)
+                .andState("NEW")
+                .andStateMovementBy("SUBMIT")
+                .exceptionTrigger("ERROR")
+                .targetStateOnSuccess("PENDING")
+                .andStateMovementBy("ERROR")
+                .targetStateOnSuccess("FAILED")
+                .buildFsm();
+
+        Data blocking = new Data("1");
+        Data async = new Data("2");
+
+        // ACT
+        try {
+            fsm.move("SUBMIT", blocking);
+            fail("Movement must report failure of timeout scheduling");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        boolean asyncFailed = fsm.moveAsync("SUBMIT", async).isCompletedExceptionally();
+
+        // ASSERT: state is not rolled back and exception trigger is not applied in both modes
+        assertEquals("PENDING", blocking.getState());
+        assertTrue(asyncFailed);
+        assertEquals("PENDING", async.getState());
+    }
+
+    @Test
+    public void testStateTimeout_configuration() {
+        assertEquals(2, new FsmState<String, String, Data>().withTimeout(Duration.ofNanos(1_000_001), "T").getTimeoutMillis());
+        assertEquals(1, new FsmState<String, String, Data>().withTimeout(Duration.ofNanos(1), "T").getTimeoutMillis());
+
+        try {
+            new FsmState<String, String, Data>().withTimeout(Duration.ZERO, "T");
+            fail("Zero timeout must be rejected");
+        } catch (InvalidFsmConfigurationException e) {
+            // expected
+        }
+    }
+
+    private void advanceMillis(long millis) {
+        clockNanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+        wheel.advance();
+    }
+
+
+    public static class Data implements FsmStateHolder<String> {
+        private final String id;
+        private String state = "NEW";
+
+        public Data(String id) {
+            this.id = id;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        public void setState(String state) {
+            this.state = state;
+        }
+    }
+
+}
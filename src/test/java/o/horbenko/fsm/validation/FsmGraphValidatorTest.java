@@ -0,0 +1,244 @@
+package o.horbenko.fsm.validation;
+
+import o.horbenko.fsm.FsmStateHolder;
+import o.horbenko.fsm.configurer.FsmBuilder;
+import o.horbenko.fsm.error.FsmValidationException;
+import o.horbenko.fsm.error.InvalidFsmConfigurationException;
+import o.horbenko.fsm.error.NoMovementByTriggerInStateException;
+import o.horbenko.fsm.impl.AbstractFiniteStateMachine;
+import o.horbenko.fsm.impl.ImmutableFiniteStateMachine;
+import o.horbenko.fsm.movement.FsmMovement;
+import o.horbenko.fsm.movement.GuardedFsmMovement;
+import o.horbenko.fsm.state.FsmState;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FsmGraphValidatorTest {
+
+    private static final List<String> INITIAL = List.of("NEW");
+
+    @Test
+    public void testBuildFsm_validGraph() {
+
+        // ARRANGE
+        AbstractFiniteStateMachine<String, String, Data> fsm = validBuilder().buildFsm();
+
+        // ACT
+        Data actual = fsm.move("PAY", new Data("NEW"));
+
+        // ASSERT
+        assertTrue(fsm instanceof ImmutableFiniteStateMachine);
+        assertEquals("PAID", actual.getState());
+        assertEquals("FAILED", fsm.move("FAIL", new Data("NEW")).getState());
+    }
+
+    @Test(expected = InvalidFsmConfigurationException.class)
+    public void testWithState_immutable() {
+        validBuilder().buildFsm().withState("NEW", new FsmState<>());
+    }
+
+    @Test
+    public void testNew_configurationIsCopied() {
+
+        // ARRANGE
+        FsmMovement<String, String, Data> pay = new FsmMovement<String, String, Data>().targetState("PAID");
+        GuardedFsmMovement<String, String, Data> route = new GuardedFsmMovement<String, String, Data>()
+                .withCandidate(new FsmMovement<String, String, Data>().targetState("PAID"));
+        Map<String, FsmState<String, String, Data>> states = new HashMap<>();
+        states.put("NEW", new FsmState<String, String, Data>()
+                .withMovement("PAY", pay)
+                .withMovement("ROUTE", route));
+        states.put("PAID", new FsmState<>());
+        ImmutableFiniteStateMachine<String, String, Data> fsm = new ImmutableFiniteStateMachine<>(states, INITIAL);
+
+        // ACT: change configuration after validation
+        pay.targetState("UNKNOWN");
+        route.getFallbackOrNull().targetState("UNKNOWN");
+        states.get("NEW").withMovement("FAIL", new FsmMovement<String, String, Data>().targetState("UNKNOWN"));
+
+        // ASSERT
+        assertEquals("PAID", fsm.move("PAY", new Data("NEW")).getState());
+        assertEquals("PAID", fsm.move("ROUTE", new Data("NEW")).getState());
+        try {
+            fsm.move("FAIL", new Data("NEW"));
+            fail("Movement added after creation must not be used");
+        } catch (NoMovementByTriggerInStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testBuildFsm_methodHandleDispatchUsesValidatedCopy() {
+
+        // ARRANGE
+        FsmBuilder.MovementBuilder<String, String, Data> pay = FsmBuilder.<String, String, Data>builder()
+                .withMethodHandleDispatch()
+                .withGraphValidation(INITIAL)
+                .andState("NEW")
+                .andStateMovementBy("PAY")
+                .targetStateOnSuccess("PAID");
+        AbstractFiniteStateMachine<String, String, Data> fsm = pay.andState("PAID").buildFsm();
+
+        // ACT: change builder's movement after validation
+        pay.targetStateOnSuccess("UNKNOWN");
+
+        // ASSERT
+        assertEquals("PAID", fsm.move("PAY", new Data("NEW")).getState());
+    }
+
+    @Test
+    public void testBuildFsm_undefinedTargetAndUnresolvedTriggers() {
+
+        // ARRANGE
+        FsmBuilder.StateBuilder<String, String, Data> builder = FsmBuilder.<String, String, Data>builder()
+                .withGraphValidation(INITIAL)
+                .andState("NEW")
+                .timeout(Duration.ofSeconds(1), "TIMEOUT")
+                .andStateMovementBy("PAY")
+                .targetStateOnSuccess("PAID")
+                .exceptionTrigger(IllegalStateException.class, "FAIL")
+                .andState("UNUSED")
+                .andStateMovementBy("T")
+                .targetStateOnSuccess("UNKNOWN")
+                .andState("PAID");
+
+        // ACT
+        Set<FsmValidationIssue.Type> actual = validationIssueTypesOf(builder);
+
+        // ASSERT
+        assertEquals(Set.of(
+                FsmValidationIssue.Type.UNDEFINED_TARGET_STATE,
+                FsmValidationIssue.Type.UNRESOLVED_EXCEPTION_TRIGGER,
+                FsmValidationIssue.Type.UNRESOLVED_TIMEOUT_TRIGGER,
+                FsmValidationIssue.Type.UNREACHABLE_STATE), actual);
+    }
+
+    @Test
+    public void testValidate_trapCycle() {
+
+        // ARRANGE
+        FsmBuilder.StateBuilder<String, String, Data> builder = FsmBuilder.<String, String, Data>builder()
+                .withGraphValidation(INITIAL)
+                .andState("NEW")
+                .andStateMovementBy("START")
+                .targetStateOnSuccess("ACTIVE")
+                .andStateMovementBy("CANCEL")
+                .targetStateOnSuccess("CANCELLED")
+                .andState("CANCELLED")
+                .andState("ACTIVE")
+                .andStateMovementBy("SUSPEND")
+                .targetStateOnSuccess("SUSPENDED")
+                .andState("SUSPENDED")
+                .andStateMovementBy("RESUME")
+                .targetStateOnSuccess("ACTIVE")
+                .andStateMovementBy("RETRY")
+                .targetStateOnSuccess("SUSPENDED")
+                .andState("CANCELLED");
+
+        // ACT
+        try {
+            builder.buildFsm();
+            fail("Cycle without exit must be detected");
+        } catch (FsmValidationException e) {
+
+            // ASSERT
+            assertEquals(1, e.getIssues().size());
+            assertEquals(FsmValidationIssue.Type.TRAP_CYCLE, e.getIssues().get(0).getType());
+            assertTrue(e.getMessage().contains("ACTIVE"));
+            assertTrue(e.getMessage().contains("SUSPENDED"));
+        }
+    }
+
+    @Test
+    public void testStronglyConnectedComponents_deepGraph() {
+
+        // ARRANGE: chain of 100 000 states, last state returns to the first one
+        int count = 100_000;
+        int[][] edges = new int[count][];
+        for (int i = 0; i < count; i++) {
+            edges[i] = new int[]{(i + 1) % count};
+        }
+
+        // ACT
+        List<int[]> actual = FsmGraphValidator.stronglyConnectedComponents(edges);
+
+        // ASSERT
+        assertEquals(1, actual.size());
+        assertEquals(count, actual.get(0).length);
+    }
+
+    @Test
+    public void testStronglyConnectedComponents() {
+
+        // ARRANGE: 0 -> 1 -> 2 -> 0, 2 -> 3, 3 -> 3
+        int[][] edges = {{1}, {2}, {0, 3}, {3}};
+
+        // ACT
+        List<int[]> actual = FsmGraphValidator.stronglyConnectedComponents(edges);
+
+        // ASSERT
+        assertEquals(2, actual.size());
+        assertArrayEquals(new int[]{3}, actual.get(0));
+        int[] cycle = actual.get(1).clone();
+        Arrays.sort(cycle);
+        assertArrayEquals(new int[]{0, 1, 2}, cycle);
+    }
+
+    /**
+     * NEW --PAY--> PAID, NEW --FAIL--> FAILED; PAID and FAILED are terminal
+     */
+    private FsmBuilder.StateBuilder<String, String, Data> validBuilder() {
+        return FsmBuilder.<String, String, Data>builder()
+                .withGraphValidation(INITIAL)
+                .andState("NEW")
+                .andStateMovementBy("PAY")
+                .targetStateOnSuccess("PAID")
+                .exceptionTrigger("FAIL")
+                .andStateMovementBy("FAIL")
+                .targetStateOnSuccess("FAILED")
+                .andState("PAID")
+                .andState("FAILED");
+    }
+
+    private static Set<FsmValidationIssue.Type> validationIssueTypesOf(FsmBuilder.StateBuilder<String, String, Data> builder) {
+        try {
+            builder.buildFsm();
+            fail("FSM graph must be invalid");
+            return null;
+        } catch (FsmValidationException e) {
+            return e.getIssues().stream()
+                    .map(FsmValidationIssue::getType)
+                    .collect(Collectors.toSet());
+        }
+    }
+
+
+    public static class Data implements FsmStateHolder<String> {
+        private String state;
+
+        public Data(String state) {
+            this.state = state;
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        public void setState(String state) {
+            this.state = state;
+        }
+    }
+
+}